@@ -0,0 +1,182 @@
+package com.example.p1;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Gera os perfis utilizados pelos <i>benchmarks</i>.
+ * <p>
+ * Os perfis são determinísticos: o perfil de índice <code>i</code> é sempre o mesmo, de forma que execuções diferentes
+ * medem a mesma carga.
+ */
+final class BenchmarkData {
+    /**
+     * Quantidade de fotos distintas utilizadas pelos perfis.
+     * <p>
+     * Como as fotos são armazenadas uma única vez por conteúdo, apenas os primeiros perfis de uma base enviam a foto;
+     * os demais apenas a referenciam, como faria um cliente que já sabe que a foto existe no servidor.
+     */
+    static final int PICTURE_POOL_SIZE = 16;
+
+    /**
+     * Quantidade de perfis enviados por chamada ao popular uma base de dados.
+     */
+    private static final int POPULATE_BATCH_SIZE = 10_000;
+
+    /**
+     * Formações acadêmicas dos perfis.
+     */
+    private static final String[] FORMATIONS = {
+        "Ciência da Computação", "Engenharia da Computação", "Sistemas de Informação", "Engenharia Elétrica",
+        "Matemática", "Física", "Estatística", "Engenharia de Software",
+    };
+
+    /**
+     * Habilidades dos perfis.
+     */
+    private static final String[] ABILITIES = {
+        "Java", "Python", "C", "C++", "Go", "Rust", "SQL", "Linux", "Redes", "Docker", "Kubernetes", "Git",
+    };
+
+    /**
+     * Quantidade de endereços distintos dos perfis.
+     */
+    private static final int ADDRESS_COUNT = 64;
+
+    /**
+     * Construtor privado.
+     * <p>
+     * Impede que seja instanciado.
+     */
+    private BenchmarkData() {
+    }
+
+    /**
+     * Gera as fotos utilizadas pelos perfis.
+     *
+     * @param size o tamanho, em bytes, de cada foto.
+     * @return as fotos, ou um vetor vazio caso o tamanho seja 0.
+     */
+    static byte[][] pictures(final int size) {
+        if (size == 0) {
+            return new byte[0][];
+        }
+        final Random random = new Random(size);
+        final byte[][] pictures = new byte[PICTURE_POOL_SIZE][size];
+        for (final byte[] picture : pictures) {
+            random.nextBytes(picture);
+        }
+        return pictures;
+    }
+
+    /**
+     * Calcula os identificadores das fotos utilizadas pelos perfis.
+     *
+     * @param pictures as fotos.
+     * @return o identificador de cada foto.
+     */
+    static String[] pictureIds(final byte[][] pictures) {
+        final String[] ids = new String[pictures.length];
+        for (int i = 0; i < pictures.length; i++) {
+            ids[i] = PictureStore.hash(pictures[i]);
+        }
+        return ids;
+    }
+
+    /**
+     * @param index o índice de um perfil.
+     * @return o e-mail do perfil.
+     */
+    static String email(final long index) {
+        return "usuario" + index + "@example.com";
+    }
+
+    /**
+     * @param index o índice de um perfil.
+     * @return a formação acadêmica do perfil.
+     */
+    static String formation(final long index) {
+        return FORMATIONS[(int) (index % FORMATIONS.length)];
+    }
+
+    /**
+     * @param index o índice de um perfil.
+     * @return o endereço do perfil.
+     */
+    static String address(final long index) {
+        return "Rua " + (index % ADDRESS_COUNT) + ", Belém";
+    }
+
+    /**
+     * @param index o índice de uma atualização.
+     * @return uma habilidade a ser adicionada por essa atualização.
+     */
+    static String ability(final long index) {
+        return ABILITIES[(int) (index % ABILITIES.length)];
+    }
+
+    /**
+     * @param index o índice de uma busca.
+     * @return o texto da busca, que combina uma habilidade, presente em parte dos perfis, com palavras presentes em
+     * todos eles.
+     */
+    static String query(final long index) {
+        return ability(index) + " e estágio na empresa " + (index % 100);
+    }
+
+    /**
+     * Gera um perfil.
+     *
+     * @param index      o índice do perfil.
+     * @param pictures   as fotos utilizadas pelos perfis, possivelmente vazio.
+     * @param pictureIds os identificadores das fotos.
+     * @param upload     se o conteúdo da foto deve ser enviado junto ao perfil ou apenas referenciado.
+     * @return o perfil.
+     */
+    static User user(final long index, final byte[][] pictures, final String[] pictureIds, final boolean upload) {
+        final String pictureId;
+        final int pictureSize;
+        final byte[] pictureData;
+        if (pictures.length == 0) {
+            pictureId = null;
+            pictureSize = 0;
+            pictureData = null;
+        } else {
+            final int picture = (int) (index % pictures.length);
+            pictureId = pictureIds[picture];
+            pictureSize = pictures[picture].length;
+            pictureData = upload ? pictures[picture] : null;
+        }
+
+        return new User(email(index), "Usuário " + index, pictureId, pictureSize, pictureData,
+            address(index), formation(index),
+            Arrays.asList(ability(index), ability(index + 1), ability(index + 2)),
+            Arrays.asList("Estágio na empresa " + (index % 100), "Monitoria de " + formation(index + 1)));
+    }
+
+    /**
+     * Popula uma base de dados.
+     * <p>
+     * Cada foto é enviada apenas pelo primeiro perfil que a utiliza.
+     *
+     * @param database   a base de dados a ser populada.
+     * @param size       a quantidade de perfis a serem adicionados, com índices de 0 a <code>size - 1</code>.
+     * @param pictures   as fotos utilizadas pelos perfis, possivelmente vazio.
+     * @param pictureIds os identificadores das fotos.
+     */
+    static void populate(final UserDatabase database, final int size, final byte[][] pictures, final String[] pictureIds) {
+        final List<User> batch = new ArrayList<>(POPULATE_BATCH_SIZE);
+        for (int i = 0; i < size; i++) {
+            batch.add(user(i, pictures, pictureIds, i < pictures.length));
+            if (batch.size() == POPULATE_BATCH_SIZE) {
+                database.createAll(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            database.createAll(batch);
+        }
+    }
+}
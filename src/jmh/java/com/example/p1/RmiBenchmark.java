@@ -0,0 +1,172 @@
+package com.example.p1;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+/**
+ * Mede chamadas RMI a uma {@link UserDatabase} exportada da mesma forma que em {@link Server}, e as mesmas chamadas
+ * pelo protocolo binário de {@link BinaryServer}.
+ * <p>
+ * O servidor e o cliente executam na mesma JVM, mas as chamadas passam pelo <i>stub</i> ou pela conexão binária e pela
+ * interface de <i>loopback</i>, de forma que incluem a serialização dos argumentos e resultados e o custo da pilha TCP.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RmiBenchmark {
+    /**
+     * Quantidade de usuários cadastrados na base de dados.
+     */
+    @Param({"1000", "100000"})
+    public int size;
+
+    /**
+     * Tamanho, em bytes, das fotos dos usuários, ou 0 caso os usuários não possuam foto.
+     */
+    @Param({"0", "65536"})
+    public int pictureSize;
+
+    /**
+     * Quantidade de usuários lidos por página.
+     */
+    @Param({"100"})
+    public int pageSize;
+
+    /**
+     * Transporte das chamadas: <code>rmi</code>, <code>deflate</code>, para RMI com as conexões de
+     * {@link CompressingSocketFactory}, ou <code>binary</code>.
+     */
+    @Param({"rmi", "deflate", "binary"})
+    public String transport;
+
+    /**
+     * Base de dados exportada.
+     */
+    private UserDatabase database;
+
+    /**
+     * Coleção exportada, que envolve {@link #database}.
+     */
+    private MetricsUserCollection exported;
+
+    /**
+     * Servidor binário da coleção exportada, caso o transporte seja binário.
+     */
+    private BinaryServer binary;
+
+    /**
+     * Conexão com {@link #binary}, caso o transporte seja binário.
+     */
+    private BinaryUserCollection connection;
+
+    /**
+     * <i>Stub</i> da coleção exportada ou {@link #connection}, conforme o transporte.
+     */
+    private UserCollection stub;
+
+    /**
+     * Fotos dos usuários.
+     */
+    private byte[][] pictures;
+
+    /**
+     * Identificadores das fotos dos usuários.
+     */
+    private String[] pictureIds;
+
+    /**
+     * Índice do próximo usuário a ser adicionado.
+     */
+    private final AtomicLong next = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        pictures = BenchmarkData.pictures(pictureSize);
+        pictureIds = BenchmarkData.pictureIds(pictures);
+        database = new UserDatabase();
+        BenchmarkData.populate(database, size, pictures, pictureIds);
+        next.set(size);
+
+        exported = new MetricsUserCollection(database);
+        if ("binary".equals(transport)) {
+            binary = new BinaryServer(exported, 0, Runtime.getRuntime().availableProcessors());
+            connection = BinaryUserCollection.connect("localhost", binary.port());
+            stub = connection;
+        } else if ("deflate".equals(transport)) {
+            stub = Server.export(exported, new CompressingSocketFactory(Deflater.BEST_SPEED,
+                CompressingSocketFactory.DEFAULT_THRESHOLD));
+        } else {
+            stub = Server.export(exported);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws NoSuchObjectException {
+        if (binary != null) {
+            connection.close();
+            binary.close();
+        } else {
+            UnicastRemoteObject.unexportObject(exported, true);
+        }
+        database.close();
+    }
+
+    /**
+     * @return o índice de um usuário cadastrado, escolhido aleatoriamente.
+     */
+    private int randomIndex() {
+        return ThreadLocalRandom.current().nextInt(size);
+    }
+
+    @Benchmark
+    public User findByEmail() throws RemoteException {
+        return stub.findByEmail(BenchmarkData.email(randomIndex()));
+    }
+
+    @Benchmark
+    public UserPage readPage() throws RemoteException {
+        return stub.read(BenchmarkData.email(randomIndex()), pageSize);
+    }
+
+    @Benchmark
+    public List<User> findByFormation() throws RemoteException {
+        return stub.findByFormation(BenchmarkData.formation(randomIndex()));
+    }
+
+    @Benchmark
+    public byte[] readPicture() throws RemoteException {
+        if (pictureIds.length == 0) {
+            return null;
+        }
+        return stub.readPicture(pictureIds[randomIndex() % pictureIds.length], 0, PictureStore.CHUNK_SIZE);
+    }
+
+    @Benchmark
+    public boolean create() throws RemoteException {
+        return stub.create(BenchmarkData.user(next.getAndIncrement(), pictures, pictureIds, true));
+    }
+
+    @Benchmark
+    public boolean update() throws RemoteException {
+        final int index = randomIndex();
+        return stub.update(BenchmarkData.email(index), UserCollection.UPDATE_KEY_ABILITY, BenchmarkData.ability(index));
+    }
+}
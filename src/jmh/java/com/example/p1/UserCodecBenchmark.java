@@ -0,0 +1,90 @@
+package com.example.p1;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mede a serialização de listas de usuários, como as retornadas pelas operações de leitura via RMI.
+ * <p>
+ * Uma {@link UserList} compartilha os textos repetidos entre os seus usuários, enquanto uma {@link ArrayList}
+ * serializa cada usuário de forma independente. O tamanho serializado de cada lista é impresso ao fim da preparação.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UserCodecBenchmark {
+    /**
+     * Quantidade de usuários da lista.
+     */
+    @Param({"1", "100", "10000"})
+    public int count;
+
+    /**
+     * Tamanho, em bytes, das fotos dos usuários, ou 0 caso os usuários não possuam foto.
+     * <p>
+     * Apenas o identificador da foto é serializado, de forma que o tamanho da foto não deve alterar o resultado.
+     */
+    @Param({"0", "65536"})
+    public int pictureSize;
+
+    /**
+     * Tipo da lista serializada, <code>UserList</code> ou <code>ArrayList</code>.
+     */
+    @Param({"UserList", "ArrayList"})
+    public String container;
+
+    /**
+     * Lista serializada.
+     */
+    private List<User> users;
+
+    /**
+     * Lista já serializada, a ser desserializada.
+     */
+    private byte[] serialized;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        final byte[][] pictures = BenchmarkData.pictures(pictureSize);
+        final String[] pictureIds = BenchmarkData.pictureIds(pictures);
+        final List<User> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(BenchmarkData.user(i, pictures, pictureIds, false));
+        }
+        users = "UserList".equals(container) ? new UserList(list) : list;
+        serialized = serialize();
+        System.out.println("Tamanho serializado: " + serialized.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (final ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(users);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public Object deserialize() throws IOException, ClassNotFoundException {
+        try (final ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return input.readObject();
+        }
+    }
+}
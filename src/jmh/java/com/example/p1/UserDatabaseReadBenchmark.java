@@ -0,0 +1,137 @@
+package com.example.p1;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mede as operações de leitura de uma {@link UserDatabase} mantida em memória.
+ * <p>
+ * A base de dados é populada uma única vez por combinação de parâmetros, já que nenhuma das operações medidas a
+ * modifica.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UserDatabaseReadBenchmark {
+    /**
+     * Quantidade de usuários cadastrados na base de dados.
+     */
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    /**
+     * Tamanho, em bytes, das fotos dos usuários, ou 0 caso os usuários não possuam foto.
+     */
+    @Param({"0", "65536"})
+    public int pictureSize;
+
+    /**
+     * Se os registros dos usuários são mantidos fora do <i>heap</i>.
+     */
+    @Param({"false", "true"})
+    public boolean offHeap;
+
+    /**
+     * Quantidade de usuários lidos por página.
+     */
+    @Param({"100"})
+    public int pageSize;
+
+    /**
+     * Quantidade máxima de usuários encontrados por busca e de contagens lidas por agregação.
+     */
+    @Param({"10"})
+    public int searchLimit;
+
+    /**
+     * Base de dados medida.
+     */
+    private UserDatabase database;
+
+    /**
+     * Identificadores das fotos dos usuários.
+     */
+    private String[] pictureIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final byte[][] pictures = BenchmarkData.pictures(pictureSize);
+        pictureIds = BenchmarkData.pictureIds(pictures);
+        database = new UserDatabase(offHeap);
+        BenchmarkData.populate(database, size, pictures, pictureIds);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * @return o índice de um usuário cadastrado, escolhido aleatoriamente.
+     */
+    private int randomIndex() {
+        return ThreadLocalRandom.current().nextInt(size);
+    }
+
+    @Benchmark
+    public List<User> read() {
+        return database.read();
+    }
+
+    @Benchmark
+    public UserPage readPage() {
+        return database.read(BenchmarkData.email(randomIndex()), pageSize);
+    }
+
+    @Benchmark
+    public User findByEmail() {
+        return database.findByEmail(BenchmarkData.email(randomIndex()));
+    }
+
+    @Benchmark
+    public List<User> findByFormation() {
+        return database.findByFormation(BenchmarkData.formation(randomIndex()));
+    }
+
+    @Benchmark
+    public Map<String, List<String>> abilitiesByAddress() {
+        return database.abilitiesByAddress(BenchmarkData.address(randomIndex()));
+    }
+
+    @Benchmark
+    public SearchResult search() {
+        return database.search(BenchmarkData.query(randomIndex()), searchLimit);
+    }
+
+    @Benchmark
+    public Map<String, Long> aggregateUsersByFormation() {
+        return database.aggregate(UserCollection.AGGREGATE_USERS_BY_FORMATION, null, searchLimit);
+    }
+
+    @Benchmark
+    public Map<String, Long> aggregateAbilitiesByAddress() {
+        return database.aggregate(UserCollection.AGGREGATE_ABILITIES_BY_ADDRESS, BenchmarkData.address(randomIndex()),
+            searchLimit);
+    }
+
+    @Benchmark
+    public byte[] readPicture() {
+        if (pictureIds.length == 0) {
+            return null;
+        }
+        return database.readPicture(pictureIds[randomIndex() % pictureIds.length], 0, PictureStore.CHUNK_SIZE);
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.p1;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mede as operações de escrita de uma {@link UserDatabase} mantida em memória.
+ * <p>
+ * Como as escritas aumentam a base de dados e os perfis dos usuários, a base é populada novamente a cada iteração,
+ * de forma que todas as iterações partam do mesmo tamanho.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UserDatabaseWriteBenchmark {
+    /**
+     * Quantidade de usuários cadastrados na base de dados no início de cada iteração.
+     */
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    /**
+     * Tamanho, em bytes, das fotos dos usuários, ou 0 caso os usuários não possuam foto.
+     */
+    @Param({"0", "65536"})
+    public int pictureSize;
+
+    /**
+     * Se os registros dos usuários são mantidos fora do <i>heap</i>.
+     */
+    @Param({"false", "true"})
+    public boolean offHeap;
+
+    /**
+     * Quantidade de usuários adicionados por chamada a {@link UserDatabase#createAll(List)}.
+     */
+    @Param({"100"})
+    public int batchSize;
+
+    /**
+     * Base de dados medida.
+     */
+    private UserDatabase database;
+
+    /**
+     * Fotos dos usuários.
+     */
+    private byte[][] pictures;
+
+    /**
+     * Identificadores das fotos dos usuários.
+     */
+    private String[] pictureIds;
+
+    /**
+     * Índice do próximo usuário a ser adicionado.
+     */
+    private final AtomicLong next = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUpPictures() {
+        pictures = BenchmarkData.pictures(pictureSize);
+        pictureIds = BenchmarkData.pictureIds(pictures);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        database = new UserDatabase(offHeap);
+        BenchmarkData.populate(database, size, pictures, pictureIds);
+        next.set(size);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        // A base de cada iteração é fechada, encerrando as suas threads, para que a sua memória seja liberada
+        database.close();
+        database = null;
+    }
+
+    @Benchmark
+    public boolean create() {
+        return database.create(BenchmarkData.user(next.getAndIncrement(), pictures, pictureIds, true));
+    }
+
+    @Benchmark
+    public List<Boolean> createAll() {
+        final long first = next.getAndAdd(batchSize);
+        final List<User> batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(BenchmarkData.user(first + i, pictures, pictureIds, true));
+        }
+        return database.createAll(batch);
+    }
+
+    @Benchmark
+    public boolean update() {
+        final int index = ThreadLocalRandom.current().nextInt(size);
+        return database.update(BenchmarkData.email(index), UserCollection.UPDATE_KEY_ABILITY, BenchmarkData.ability(index));
+    }
+}
@@ -0,0 +1,339 @@
+package com.example.p1;
+
+import java.io.Closeable;
+import java.rmi.RemoteException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Representa uma fachada assíncrona de uma {@link UserCollection}, cujos métodos retornam imediatamente um
+ * {@link CompletableFuture} com o resultado da chamada.
+ * <p>
+ * Como cada chamada RMI bloqueia a <i>thread</i> que a faz até a resposta, as chamadas são executadas por um conjunto
+ * limitado de <i>threads</i>, de forma que várias podem estar em trânsito ao mesmo tempo e as suas latências se
+ * sobrepõem. A quantidade de chamadas pendentes, em trânsito ou aguardando uma <i>thread</i>, também é limitada: ao
+ * atingir o limite, um novo pedido aguarda até que alguma chamada termine, o que impede que um produtor mais rápido que
+ * o servidor acumule pedidos sem limite.
+ * <p>
+ * O <i>future</i> retornado pode ser cancelado ou expirar, por {@link CompletableFuture#orTimeout(long, TimeUnit)} ou
+ * pelo tempo limite padrão dessa fachada. Uma chamada cancelada antes de ser enviada não é enviada; uma chamada já
+ * enviada tem a sua <i>thread</i> interrompida e o seu resultado descartado, mas pode ainda assim ter sido executada
+ * pelo servidor.
+ */
+public class AsyncUserCollection implements Closeable {
+    /**
+     * Coleção cujos métodos são chamados.
+     */
+    private final UserCollection collection;
+
+    /**
+     * Executor das chamadas.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Semáforo que limita a quantidade de chamadas pendentes.
+     */
+    private final Semaphore pending;
+
+    /**
+     * Tempo limite padrão, em milissegundos, de cada chamada, ou 0 caso as chamadas não expirem.
+     */
+    private final long timeoutMillis;
+
+    /**
+     * Constrói uma fachada assíncrona.
+     *
+     * @param collection    a coleção cujos métodos são chamados.
+     * @param concurrency   a quantidade máxima de chamadas em trânsito ao mesmo tempo.
+     * @param maxPending    a quantidade máxima de chamadas pendentes, incluindo as em trânsito.
+     * @param timeoutMillis o tempo limite padrão, em milissegundos, de cada chamada, ou 0 caso elas não expirem.
+     */
+    public AsyncUserCollection(final UserCollection collection, final int concurrency, final int maxPending,
+                               final long timeoutMillis) {
+        if (concurrency <= 0 || maxPending < concurrency || timeoutMillis < 0) {
+            throw new IllegalArgumentException("limites inválidos: " + concurrency + ", " + maxPending + ", "
+                + timeoutMillis);
+        }
+        this.collection = collection;
+        this.pending = new Semaphore(maxPending);
+        this.timeoutMillis = timeoutMillis;
+
+        final AtomicInteger threads = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+            final Thread thread = new Thread(runnable, "user-async-" + threads.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Agenda uma chamada, aguardando caso o limite de chamadas pendentes tenha sido atingido.
+     *
+     * @param call a chamada a ser executada.
+     * @param <T>  o tipo do resultado da chamada.
+     * @return o resultado pendente da chamada.
+     */
+    private <T> CompletableFuture<T> submit(final Call<T> call) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            pending.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(new CancellationException("pedido interrompido."));
+            return future;
+        }
+
+        final Task<T> task = new Task<>(call, future);
+        future.whenComplete((result, error) -> {
+            pending.release();
+            // O futuro só termina antes da chamada caso tenha sido cancelado ou tenha expirado
+            if (error instanceof CancellationException || error instanceof TimeoutException) {
+                task.interrupt();
+            }
+        });
+        try {
+            executor.execute(task);
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
+        return timeoutMillis > 0 ? future.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS) : future;
+    }
+
+    /**
+     * @param user o usuário a ser adicionado.
+     * @return o resultado pendente de {@link UserCollection#create(User)}.
+     */
+    public CompletableFuture<Boolean> create(final User user) {
+        return submit(collection -> collection.create(user));
+    }
+
+    /**
+     * @param users os usuários a serem adicionados.
+     * @return o resultado pendente de {@link UserCollection#createAll(List)}.
+     */
+    public CompletableFuture<List<Boolean>> createAll(final List<User> users) {
+        return submit(collection -> collection.createAll(users));
+    }
+
+    /**
+     * @return o resultado pendente de {@link UserCollection#read()}.
+     */
+    public CompletableFuture<List<User>> read() {
+        return submit(UserCollection::read);
+    }
+
+    /**
+     * @param cursor o cursor da página.
+     * @param limit  a quantidade máxima de usuários da página.
+     * @return o resultado pendente de {@link UserCollection#read(String, int)}.
+     */
+    public CompletableFuture<UserPage> read(final String cursor, final int limit) {
+        return submit(collection -> collection.read(cursor, limit));
+    }
+
+    /**
+     * @param version a versão a partir da qual as mudanças são lidas.
+     * @return o resultado pendente de {@link UserCollection#changesSince(long)}.
+     */
+    public CompletableFuture<ChangeSet> changesSince(final long version) {
+        return submit(collection -> collection.changesSince(version));
+    }
+
+    /**
+     * @return o resultado pendente de {@link UserCollection#version()}.
+     */
+    public CompletableFuture<Long> version() {
+        return submit(UserCollection::version);
+    }
+
+    /**
+     * @param email o e-mail do usuário a ser atualizado.
+     * @param key   o campo a ser atualizado.
+     * @param value o valor a ser atualizado.
+     * @return o resultado pendente de {@link UserCollection#update(String, String, String)}.
+     */
+    public CompletableFuture<Boolean> update(final String email, final String key, final String value) {
+        return submit(collection -> collection.update(email, key, value));
+    }
+
+    /**
+     * @param updates as atualizações a serem aplicadas.
+     * @return o resultado pendente de {@link UserCollection#updateAll(List)}.
+     */
+    public CompletableFuture<List<Boolean>> updateAll(final List<UserUpdate> updates) {
+        return submit(collection -> collection.updateAll(updates));
+    }
+
+    /**
+     * @param pictureId o identificador da foto.
+     * @param offset    a posição do primeiro byte lido.
+     * @param length    a quantidade máxima de bytes lidos.
+     * @return o resultado pendente de {@link UserCollection#readPicture(String, int, int)}.
+     */
+    public CompletableFuture<byte[]> readPicture(final String pictureId, final int offset, final int length) {
+        return submit(collection -> collection.readPicture(pictureId, offset, length));
+    }
+
+    /**
+     * @param email o e-mail a ser buscado.
+     * @return o resultado pendente de {@link UserCollection#findByEmail(String)}.
+     */
+    public CompletableFuture<User> findByEmail(final String email) {
+        return submit(collection -> collection.findByEmail(email));
+    }
+
+    /**
+     * @param formation a formação acadêmica a ser buscada.
+     * @return o resultado pendente de {@link UserCollection#findByFormation(String)}.
+     */
+    public CompletableFuture<List<User>> findByFormation(final String formation) {
+        return submit(collection -> collection.findByFormation(formation));
+    }
+
+    /**
+     * @param address o endereço a ser buscado.
+     * @return o resultado pendente de {@link UserCollection#abilitiesByAddress(String)}.
+     */
+    public CompletableFuture<Map<String, List<String>>> abilitiesByAddress(final String address) {
+        return submit(collection -> collection.abilitiesByAddress(address));
+    }
+
+    /**
+     * @param query a consulta, em texto livre.
+     * @param limit a quantidade máxima de usuários encontrados.
+     * @return o resultado pendente de {@link UserCollection#search(String, int)}.
+     */
+    public CompletableFuture<SearchResult> search(final String query, final int limit) {
+        return submit(collection -> collection.search(query, limit));
+    }
+
+    /**
+     * @param view  a agregação.
+     * @param key   a chave da agregação.
+     * @param limit a quantidade máxima de contagens lidas.
+     * @return o resultado pendente de {@link UserCollection#aggregate(String, String, int)}.
+     */
+    public CompletableFuture<Map<String, Long>> aggregate(final String view, final String key, final int limit) {
+        return submit(collection -> collection.aggregate(view, key, limit));
+    }
+
+    /**
+     * @return o resultado pendente de {@link UserCollection#stats()}.
+     */
+    public CompletableFuture<Map<String, MethodStats>> stats() {
+        return submit(UserCollection::stats);
+    }
+
+    /**
+     * Aguarda o término das chamadas pendentes e encerra as <i>threads</i> dessa fachada.
+     * <p>
+     * Nenhuma chamada pode ser feita após o encerramento.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Representa uma chamada a uma coleção.
+     *
+     * @param <T> o tipo do resultado da chamada.
+     */
+    @FunctionalInterface
+    private interface Call<T> {
+        /**
+         * Executa a chamada.
+         *
+         * @param collection a coleção chamada.
+         * @return o resultado da chamada.
+         * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+         */
+        T apply(UserCollection collection) throws RemoteException;
+    }
+
+    /**
+     * Representa a execução de uma chamada por uma <i>thread</i> dessa fachada.
+     *
+     * @param <T> o tipo do resultado da chamada.
+     */
+    private final class Task<T> implements Runnable {
+        /**
+         * Chamada a ser executada.
+         */
+        private final Call<T> call;
+
+        /**
+         * Resultado pendente da chamada.
+         */
+        private final CompletableFuture<T> future;
+
+        /**
+         * <i>Thread</i> que executa a chamada ou null caso ela não esteja em execução.
+         */
+        private Thread thread;
+
+        /**
+         * Constrói uma execução.
+         *
+         * @param call   a chamada a ser executada.
+         * @param future o resultado pendente da chamada.
+         */
+        Task(final Call<T> call, final CompletableFuture<T> future) {
+            this.call = call;
+            this.future = future;
+        }
+
+        /**
+         * Interrompe a <i>thread</i> que executa a chamada, caso ela esteja em execução.
+         */
+        synchronized void interrupt() {
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            // Uma chamada cancelada ou expirada enquanto aguardava uma thread não é enviada
+            synchronized (this) {
+                if (future.isDone()) {
+                    return;
+                }
+                thread = Thread.currentThread();
+            }
+            try {
+                future.complete(call.apply(collection));
+            } catch (RemoteException | RuntimeException e) {
+                future.completeExceptionally(e);
+            } catch (Error e) {
+                // O resultado é concluído mesmo assim, caso contrário a chamada nunca deixaria de ser pendente
+                future.completeExceptionally(e);
+                throw e;
+            } finally {
+                synchronized (this) {
+                    thread = null;
+                }
+                // A interrupção de uma chamada descartada não deve afetar a próxima chamada dessa thread
+                Thread.interrupted();
+            }
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.example.p1;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Define o protocolo binário utilizado por {@link BinaryServer} e {@link BinaryUserCollection}.
+ * <p>
+ * Cada mensagem é um quadro composto pelo seu tamanho em bytes (<code>int</code>, sem contar ele próprio), pelo
+ * identificador do pedido (<code>long</code>), por um byte e pelo conteúdo. Em um pedido, o byte é a operação, uma
+ * das constantes <code>OP_</code>, e o conteúdo são os argumentos do método correspondente de {@link UserCollection};
+ * em uma resposta, o byte é {@link #STATUS_OK} seguido do resultado ou {@link #STATUS_ERROR} seguido da classe e da
+ * mensagem da exceção lançada.
+ * <p>
+ * O cliente escolhe os identificadores dos pedidos, e cada resposta repete o identificador do seu pedido. Assim, o
+ * cliente pode enviar vários pedidos sem aguardar as respostas, e o servidor pode respondê-los em qualquer ordem.
+ * <p>
+ * Usuários são codificados por {@link UserCodec}, e listas de usuários compartilham as cadeias repetidas, como em
+ * {@link UserList}. Inteiros de tamanho são gravados como <i>varints</i>.
+ */
+final class BinaryProtocol {
+    /**
+     * Tamanho, em bytes, do cabeçalho de um quadro: tamanho, identificador e operação ou estado.
+     */
+    static final int HEADER_SIZE = 4 + 8 + 1;
+
+    /**
+     * Tamanho máximo, em bytes, de um quadro, sem contar o campo de tamanho.
+     */
+    static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Operação {@link UserCollection#create(User)}.
+     */
+    static final byte OP_CREATE = 1;
+
+    /**
+     * Operação {@link UserCollection#createAll(List)}.
+     */
+    static final byte OP_CREATE_ALL = 2;
+
+    /**
+     * Operação {@link UserCollection#read()}.
+     */
+    static final byte OP_READ = 3;
+
+    /**
+     * Operação {@link UserCollection#read(String, int)}.
+     */
+    static final byte OP_READ_PAGE = 4;
+
+    /**
+     * Operação {@link UserCollection#changesSince(long)}.
+     */
+    static final byte OP_CHANGES_SINCE = 5;
+
+    /**
+     * Operação {@link UserCollection#version()}.
+     */
+    static final byte OP_VERSION = 6;
+
+    /**
+     * Operação {@link UserCollection#update(String, String, String)}.
+     */
+    static final byte OP_UPDATE = 7;
+
+    /**
+     * Operação {@link UserCollection#updateAll(List)}.
+     */
+    static final byte OP_UPDATE_ALL = 8;
+
+    /**
+     * Operação {@link UserCollection#readPicture(String, int, int)}.
+     */
+    static final byte OP_READ_PICTURE = 9;
+
+    /**
+     * Operação {@link UserCollection#findByEmail(String)}.
+     */
+    static final byte OP_FIND_BY_EMAIL = 10;
+
+    /**
+     * Operação {@link UserCollection#findByFormation(String)}.
+     */
+    static final byte OP_FIND_BY_FORMATION = 11;
+
+    /**
+     * Operação {@link UserCollection#abilitiesByAddress(String)}.
+     */
+    static final byte OP_ABILITIES_BY_ADDRESS = 12;
+
+    /**
+     * Operação {@link UserCollection#search(String, int)}.
+     */
+    static final byte OP_SEARCH = 13;
+
+    /**
+     * Operação {@link UserCollection#aggregate(String, String, int)}.
+     */
+    static final byte OP_AGGREGATE = 14;
+
+    /**
+     * Operação {@link UserCollection#stats()}.
+     */
+    static final byte OP_STATS = 15;
+
+    /**
+     * Estado de uma resposta cujo pedido foi executado com sucesso.
+     */
+    static final byte STATUS_OK = 0;
+
+    /**
+     * Estado de uma resposta cujo pedido lançou uma exceção.
+     */
+    static final byte STATUS_ERROR = 1;
+
+    /**
+     * Construtor privado.
+     * <p>
+     * Impede que seja instanciado.
+     */
+    private BinaryProtocol() {
+    }
+
+    /**
+     * Grava uma cadeia de caracteres que pode ser nula.
+     *
+     * @param output o destino da cadeia.
+     * @param value  a cadeia a ser gravada ou null.
+     * @throws IOException caso ocorra um erro de escrita.
+     */
+    static void writeNullableString(final DataOutput output, final String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            UserCodec.writeString(output, value);
+        }
+    }
+
+    /**
+     * Lê uma cadeia de caracteres gravada por {@link #writeNullableString(DataOutput, String)}.
+     *
+     * @param input a origem da cadeia.
+     * @return a cadeia lida ou null.
+     * @throws IOException caso ocorra um erro de leitura.
+     */
+    static String readNullableString(final DataInput input) throws IOException {
+        return input.readBoolean() ? UserCodec.readString(input) : null;
+    }
+
+    /**
+     * Grava uma lista de cadeias de caracteres.
+     *
+     * @param output o destino da lista.
+     * @param values a lista a ser gravada.
+     * @throws IOException caso ocorra um erro de escrita.
+     */
+    static void writeStrings(final DataOutput output, final List<String> values) throws IOException {
+        UserCodec.writeVarInt(output, values.size());
+        for (final String value : values) {
+            UserCodec.writeString(output, value);
+        }
+    }
+
+    /**
+     * Lê uma lista de cadeias de caracteres gravada por {@link #writeStrings(DataOutput, List)}.
+     *
+     * @param input a origem da lista.
+     * @return a lista lida.
+     * @throws IOException caso ocorra um erro de leitura.
+     */
+    static List<String> readStrings(final DataInput input) throws IOException {
+        final int size = UserCodec.readVarInt(input);
+        final List<String> values = new ArrayList<>(UserCodec.capacity(size));
+        for (int i = 0; i < size; i++) {
+            values.add(UserCodec.readString(input));
+        }
+        return values;
+    }
+
+    /**
+     * Grava uma lista de usuários, compartilhando as cadeias repetidas entre eles.
+     * <p>
+     * O formato é o mesmo da serialização de {@link UserList}, de forma que uma lista já codificada é gravada sem ser
+     * codificada novamente.
+     *
+     * @param output o destino da lista.
+     * @param users  a lista a ser gravada.
+     * @throws IOException caso ocorra um erro de escrita.
+     */
+    static void writeUsers(final DataOutput output, final List<User> users) throws IOException {
+        (users instanceof UserList ? (UserList) users : new UserList(users)).write(output);
+    }
+
+    /**
+     * Lê uma lista de usuários gravada por {@link #writeUsers(DataOutput, List)}.
+     *
+     * @param input a origem da lista.
+     * @return a lista lida.
+     * @throws IOException caso ocorra um erro de leitura.
+     */
+    static List<User> readUsers(final DataInput input) throws IOException {
+        final List<String> table = new ArrayList<>();
+        final int size = UserCodec.readVarInt(input);
+        final List<User> users = new ArrayList<>(UserCodec.capacity(size));
+        for (int i = 0; i < size; i++) {
+            users.add(UserCodec.read(input, table));
+        }
+        return new UserList(users);
+    }
+
+    /**
+     * Grava uma lista de resultados de operações em lote.
+     *
+     * @param output  o destino da lista.
+     * @param results a lista a ser gravada.
+     * @throws IOException caso ocorra um erro de escrita.
+     */
+    static void writeBooleans(final DataOutput output, final List<Boolean> results) throws IOException {
+        UserCodec.writeVarInt(output, results.size());
+        for (final boolean result : results) {
+            output.writeBoolean(result);
+        }
+    }
+
+    /**
+     * Lê uma lista de resultados gravada por {@link #writeBooleans(DataOutput, List)}.
+     *
+     * @param input a origem da lista.
+     * @return a lista lida.
+     * @throws IOException caso ocorra um erro de leitura.
+     */
+    static List<Boolean> readBooleans(final DataInput input) throws IOException {
+        final int size = UserCodec.readVarInt(input);
+        final List<Boolean> results = new ArrayList<>(UserCodec.capacity(size));
+        for (int i = 0; i < size; i++) {
+            results.add(input.readBoolean());
+        }
+        return results;
+    }
+
+    /**
+     * Representa um quadro sendo construído.
+     * <p>
+     * O cabeçalho é reservado no início do quadro e preenchido apenas ao final, quando o tamanho do conteúdo é
+     * conhecido, de forma que o quadro é gravado sem cópias intermediárias.
+     */
+    static final class Frame extends ByteArrayOutputStream {
+        /**
+         * Destino do conteúdo do quadro.
+         */
+        final DataOutputStream data = new DataOutputStream(this);
+
+        /**
+         * Identificador do pedido do quadro.
+         */
+        private final long id;
+
+        /**
+         * Constrói um quadro vazio.
+         *
+         * @param id o identificador do pedido do quadro.
+         */
+        Frame(final long id) {
+            super(256);
+            this.id = id;
+            reset();
+        }
+
+        /**
+         * Descarta o conteúdo desse quadro, mantendo o cabeçalho reservado.
+         */
+        @Override
+        public synchronized void reset() {
+            super.reset();
+            count = HEADER_SIZE;
+        }
+
+        /**
+         * Termina esse quadro, preenchendo o seu cabeçalho.
+         *
+         * @param code  a operação, caso o quadro seja um pedido, ou o estado, caso seja uma resposta.
+         * @param extra os bytes finais do quadro, enviados sem serem copiados para ele, ou null.
+         * @return os <i>buffers</i> que compõem o quadro, na ordem em que devem ser enviados, todos não vazios.
+         * @throws IOException caso o quadro seja maior que {@link #MAX_FRAME_SIZE}, e não possa ser lido do outro lado.
+         */
+        ByteBuffer[] finish(final byte code, final ByteBuffer extra) throws IOException {
+            final long length = (long) count - 4 + (extra == null ? 0 : extra.remaining());
+            if (length > MAX_FRAME_SIZE) {
+                throw new IOException("quadro maior que o máximo de " + MAX_FRAME_SIZE + " bytes: " + length + ".");
+            }
+            final ByteBuffer header = ByteBuffer.wrap(buf, 0, count);
+            header.putInt(0, (int) length);
+            header.putLong(4, id);
+            header.put(12, code);
+            return extra == null || !extra.hasRemaining() ? new ByteBuffer[]{header} : new ByteBuffer[]{header, extra};
+        }
+    }
+}
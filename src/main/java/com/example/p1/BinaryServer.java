@@ -0,0 +1,547 @@
+package com.example.p1;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Representa um servidor que expõe uma {@link UserCollection} pelo {@link BinaryProtocol}, como alternativa ao RMI.
+ * <p>
+ * Uma única <i>thread</i> atende todas as conexões com um {@link Selector}: ela aceita conexões, lê os quadros dos
+ * pedidos e grava as respostas, sem nunca bloquear. Os pedidos são executados por um conjunto fixo de <i>threads</i>,
+ * de forma que os pedidos de uma mesma conexão são executados em paralelo e respondidos assim que terminam. As
+ * respostas prontas de uma conexão são gravadas juntas, em uma única escrita, e o conteúdo das fotos é enviado sem ser
+ * copiado para o quadro da resposta.
+ * <p>
+ * Cada conexão pode ter até {@link #MAX_PIPELINED_REQUESTS} pedidos cujas respostas ainda não foram gravadas; ao
+ * atingir esse limite, a leitura dos seus pedidos é suspensa até que o cliente leia as respostas.
+ */
+public class BinaryServer implements Closeable {
+    /**
+     * Quantidade máxima de pedidos de uma conexão cujas respostas ainda não foram gravadas.
+     */
+    static final int MAX_PIPELINED_REQUESTS = 256;
+
+    /**
+     * Tamanho inicial, em bytes, do <i>buffer</i> de leitura de uma conexão.
+     */
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Quantidade máxima de <i>buffers</i> gravados em uma única escrita.
+     */
+    private static final int MAX_GATHER = 64;
+
+    /**
+     * Coleção cujos métodos são expostos.
+     */
+    private final UserCollection collection;
+
+    /**
+     * Executor dos pedidos.
+     */
+    private final ExecutorService workers;
+
+    /**
+     * Seletor das conexões.
+     */
+    private final Selector selector;
+
+    /**
+     * Canal que aceita as conexões.
+     */
+    private final ServerSocketChannel server;
+
+    /**
+     * Conexões com respostas a serem gravadas pela <i>thread</i> do seletor.
+     */
+    private final Queue<Connection> ready = new ConcurrentLinkedQueue<>();
+
+    /**
+     * <i>Thread</i> do seletor.
+     */
+    private final Thread thread;
+
+    /**
+     * Se esse servidor foi encerrado.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Constrói e inicia um servidor.
+     *
+     * @param collection a coleção cujos métodos são expostos.
+     * @param port       a porta onde as conexões são aceitas, ou 0 para uma porta livre qualquer.
+     * @param workers    a quantidade de pedidos executados simultaneamente.
+     * @throws IOException caso a porta não possa ser aberta.
+     */
+    public BinaryServer(final UserCollection collection, final int port, final int workers) throws IOException {
+        this.collection = collection;
+        final AtomicInteger threads = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workers, runnable -> {
+            final Thread thread = new Thread(runnable, "binary-worker-" + threads.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+
+        this.thread = new Thread(this::run, "binary-server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return a porta onde esse servidor aceita conexões.
+     */
+    public int port() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Atende as conexões até que esse servidor seja encerrado.
+     */
+    private void run() {
+        while (!closed) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+
+            for (Connection connection; (connection = ready.poll()) != null; ) {
+                connection.flush();
+            }
+            for (final SelectionKey key : selector.selectedKeys()) {
+                if (!key.isValid()) {
+                    continue;
+                }
+                if (key.isAcceptable()) {
+                    accept();
+                    continue;
+                }
+                final Connection connection = (Connection) key.attachment();
+                if (key.isReadable()) {
+                    connection.read();
+                }
+                if (key.isValid() && key.isWritable()) {
+                    connection.flush();
+                }
+            }
+            selector.selectedKeys().clear();
+        }
+    }
+
+    /**
+     * Aceita uma conexão pendente.
+     */
+    private void accept() {
+        try {
+            final SocketChannel channel = server.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            final SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            key.attach(new Connection(channel, key));
+        } catch (IOException e) {
+            // A conexão foi encerrada pelo cliente antes de ser aceita
+        }
+    }
+
+    /**
+     * Executa um pedido e constrói a sua resposta.
+     *
+     * @param id      o identificador do pedido.
+     * @param op      a operação do pedido.
+     * @param payload os argumentos do pedido.
+     * @return os <i>buffers</i> da resposta.
+     */
+    private ByteBuffer[] respond(final long id, final byte op, final byte[] payload) {
+        final BinaryProtocol.Frame frame = new BinaryProtocol.Frame(id);
+        try {
+            final ByteBuffer extra = dispatch(op, new DataInputStream(new ByteArrayInputStream(payload)), frame.data);
+            return frame.finish(BinaryProtocol.STATUS_OK, extra);
+
+        } catch (IOException | RuntimeException e) {
+            frame.reset();
+            try {
+                UserCodec.writeString(frame.data, e.getClass().getName());
+                BinaryProtocol.writeNullableString(frame.data, e.getMessage());
+            } catch (IOException never) {
+                // A escrita em memória não lança exceções
+                throw new AssertionError(never);
+            }
+            try {
+                return frame.finish(BinaryProtocol.STATUS_ERROR, null);
+            } catch (IOException never) {
+                // A mensagem de uma exceção é sempre menor que um quadro
+                throw new AssertionError(never);
+            }
+        }
+    }
+
+    /**
+     * Executa uma operação na coleção exposta.
+     *
+     * @param op     a operação.
+     * @param input  os argumentos da operação.
+     * @param output o destino do resultado da operação.
+     * @return os bytes finais do resultado, enviados sem serem copiados para o quadro, ou null.
+     * @throws IOException caso os argumentos sejam inválidos ou a coleção lance uma {@link RemoteException}.
+     */
+    private ByteBuffer dispatch(final byte op, final DataInputStream input, final DataOutputStream output)
+        throws IOException {
+        switch (op) {
+            case BinaryProtocol.OP_CREATE:
+                output.writeBoolean(collection.create(UserCodec.read(input)));
+                return null;
+
+            case BinaryProtocol.OP_CREATE_ALL:
+                BinaryProtocol.writeBooleans(output, collection.createAll(BinaryProtocol.readUsers(input)));
+                return null;
+
+            case BinaryProtocol.OP_READ:
+                BinaryProtocol.writeUsers(output, collection.read());
+                return null;
+
+            case BinaryProtocol.OP_READ_PAGE: {
+                final UserPage page = collection.read(BinaryProtocol.readNullableString(input), input.readInt());
+                BinaryProtocol.writeUsers(output, page.users);
+                BinaryProtocol.writeNullableString(output, page.nextCursor);
+                return null;
+            }
+            case BinaryProtocol.OP_CHANGES_SINCE: {
+                final ChangeSet changes = collection.changesSince(input.readLong());
+                BinaryProtocol.writeUsers(output, changes.users);
+                output.writeLong(changes.version);
+                output.writeBoolean(changes.reset);
+                return null;
+            }
+            case BinaryProtocol.OP_VERSION:
+                output.writeLong(collection.version());
+                return null;
+
+            case BinaryProtocol.OP_UPDATE:
+                output.writeBoolean(collection.update(
+                    UserCodec.readString(input), UserCodec.readString(input), UserCodec.readString(input)));
+                return null;
+
+            case BinaryProtocol.OP_UPDATE_ALL: {
+                final int size = UserCodec.readVarInt(input);
+                final List<UserUpdate> updates = new ArrayList<>(UserCodec.capacity(size));
+                for (int i = 0; i < size; i++) {
+                    updates.add(new UserUpdate(
+                        UserCodec.readString(input), UserCodec.readString(input), UserCodec.readString(input)));
+                }
+                BinaryProtocol.writeBooleans(output, collection.updateAll(updates));
+                return null;
+            }
+            case BinaryProtocol.OP_READ_PICTURE: {
+                final byte[] chunk = collection.readPicture(UserCodec.readString(input), input.readInt(), input.readInt());
+                output.writeInt(chunk == null ? -1 : chunk.length);
+                return chunk == null ? null : ByteBuffer.wrap(chunk);
+            }
+            case BinaryProtocol.OP_FIND_BY_EMAIL: {
+                final User user = collection.findByEmail(UserCodec.readString(input));
+                output.writeBoolean(user != null);
+                if (user != null) {
+                    UserCodec.write(output, user);
+                }
+                return null;
+            }
+            case BinaryProtocol.OP_FIND_BY_FORMATION:
+                BinaryProtocol.writeUsers(output, collection.findByFormation(UserCodec.readString(input)));
+                return null;
+
+            case BinaryProtocol.OP_ABILITIES_BY_ADDRESS: {
+                final Map<String, List<String>> abilities = collection.abilitiesByAddress(UserCodec.readString(input));
+                UserCodec.writeVarInt(output, abilities.size());
+                for (final Map.Entry<String, List<String>> entry : abilities.entrySet()) {
+                    UserCodec.writeString(output, entry.getKey());
+                    BinaryProtocol.writeStrings(output, entry.getValue());
+                }
+                return null;
+            }
+            case BinaryProtocol.OP_SEARCH: {
+                final SearchResult result = collection.search(UserCodec.readString(input), input.readInt());
+                BinaryProtocol.writeUsers(output, result.users);
+                for (final double score : result.scores) {
+                    output.writeDouble(score);
+                }
+                return null;
+            }
+            case BinaryProtocol.OP_AGGREGATE: {
+                final Map<String, Long> counts = collection.aggregate(
+                    UserCodec.readString(input), BinaryProtocol.readNullableString(input), input.readInt());
+                UserCodec.writeVarInt(output, counts.size());
+                for (final Map.Entry<String, Long> entry : counts.entrySet()) {
+                    UserCodec.writeString(output, entry.getKey());
+                    output.writeLong(entry.getValue());
+                }
+                return null;
+            }
+            case BinaryProtocol.OP_STATS: {
+                final Map<String, MethodStats> stats = collection.stats();
+                UserCodec.writeVarInt(output, stats.size());
+                for (final Map.Entry<String, MethodStats> entry : stats.entrySet()) {
+                    final MethodStats methodStats = entry.getValue();
+                    UserCodec.writeString(output, entry.getKey());
+                    output.writeLong(methodStats.calls);
+                    output.writeLong(methodStats.errors);
+                    output.writeLong(methodStats.payload);
+                    output.writeLong(methodStats.p50);
+                    output.writeLong(methodStats.p99);
+                    output.writeLong(methodStats.p999);
+                }
+                return null;
+            }
+            default:
+                throw new IllegalArgumentException("operação desconhecida: " + op);
+        }
+    }
+
+    /**
+     * Encerra esse servidor e todas as suas conexões.
+     * <p>
+     * Os pedidos em execução terminam, mas as suas respostas são descartadas.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (final SelectionKey key : selector.keys()) {
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                // O canal já estava encerrado
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // O seletor já estava encerrado
+        }
+        workers.shutdown();
+        try {
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Representa uma conexão de um cliente.
+     * <p>
+     * A leitura, a escrita e as mudanças de interesse da conexão são feitas apenas pela <i>thread</i> do seletor; as
+     * <i>threads</i> dos pedidos apenas colocam as respostas em {@link #output}.
+     */
+    private final class Connection {
+        /**
+         * Canal da conexão.
+         */
+        private final SocketChannel channel;
+
+        /**
+         * Registro da conexão no seletor.
+         */
+        private final SelectionKey key;
+
+        /**
+         * <i>Buffer</i> dos pedidos lidos e ainda não executados, em modo de escrita.
+         */
+        private ByteBuffer input = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+        /**
+         * Respostas a serem gravadas, na ordem em que ficaram prontas.
+         */
+        private final Queue<ByteBuffer[]> output = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Se a conexão já se encontra em {@link #ready}.
+         */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /**
+         * Quantidade de pedidos lidos cujas respostas ainda não foram gravadas.
+         */
+        private final AtomicInteger pending = new AtomicInteger();
+
+        /**
+         * Constrói uma conexão.
+         *
+         * @param channel o canal da conexão.
+         * @param key     o registro da conexão no seletor.
+         */
+        Connection(final SocketChannel channel, final SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        /**
+         * Lê os pedidos disponíveis e os envia para execução.
+         */
+        void read() {
+            try {
+                if (channel.read(input) < 0) {
+                    close();
+                    return;
+                }
+                input.flip();
+                int required = 0;
+                while (input.remaining() >= 4) {
+                    final int length = input.getInt(input.position());
+                    if (length < BinaryProtocol.HEADER_SIZE - 4 || length > BinaryProtocol.MAX_FRAME_SIZE) {
+                        throw new IOException("quadro inválido: " + length);
+                    }
+                    if (input.remaining() < 4 + length) {
+                        required = 4 + length;
+                        break;
+                    }
+
+                    input.getInt();
+                    final long id = input.getLong();
+                    final byte op = input.get();
+                    final byte[] payload = new byte[length - (BinaryProtocol.HEADER_SIZE - 4)];
+                    input.get(payload);
+                    pending.incrementAndGet();
+                    workers.execute(() -> send(respond(id, op, payload)));
+                }
+                input.compact();
+                if (required > input.capacity()) {
+                    final ByteBuffer larger = ByteBuffer.allocate(required);
+                    input.flip();
+                    larger.put(input);
+                    input = larger;
+                }
+                if (pending.get() >= MAX_PIPELINED_REQUESTS) {
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                }
+
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        /**
+         * Coloca uma resposta na fila da conexão e avisa a <i>thread</i> do seletor.
+         *
+         * @param response os <i>buffers</i> da resposta.
+         */
+        void send(final ByteBuffer[] response) {
+            output.add(response);
+            if (scheduled.compareAndSet(false, true)) {
+                ready.add(this);
+                selector.wakeup();
+            }
+        }
+
+        /**
+         * Grava as respostas prontas até que elas acabem ou o canal não aceite mais bytes.
+         */
+        void flush() {
+            scheduled.set(false);
+            if (!key.isValid()) {
+                return;
+            }
+            try {
+                final List<ByteBuffer> batch = new ArrayList<>(MAX_GATHER);
+                for (; ; ) {
+                    batch.clear();
+                    for (final ByteBuffer[] response : output) {
+                        for (final ByteBuffer buffer : response) {
+                            if (buffer.hasRemaining()) {
+                                batch.add(buffer);
+                            }
+                        }
+                        if (batch.size() >= MAX_GATHER) {
+                            break;
+                        }
+                    }
+                    if (batch.isEmpty()) {
+                        break;
+                    }
+
+                    channel.write(batch.toArray(new ByteBuffer[0]));
+                    int completed = 0;
+                    for (ByteBuffer[] head; (head = output.peek()) != null && drained(head); ) {
+                        output.poll();
+                        completed++;
+                    }
+                    pending.addAndGet(-completed);
+                    if (batch.get(batch.size() - 1).hasRemaining()) {
+                        // O canal está cheio; a gravação continua quando ele voltar a aceitar bytes
+                        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                        return;
+                    }
+                }
+
+                int interest = key.interestOps() & ~SelectionKey.OP_WRITE;
+                if (pending.get() < MAX_PIPELINED_REQUESTS) {
+                    interest |= SelectionKey.OP_READ;
+                }
+                key.interestOps(interest);
+
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        /**
+         * @param response os <i>buffers</i> de uma resposta.
+         * @return se todos os <i>buffers</i> da resposta foram gravados.
+         */
+        private boolean drained(final ByteBuffer[] response) {
+            for (final ByteBuffer buffer : response) {
+                if (buffer.hasRemaining()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Encerra a conexão, descartando as respostas pendentes.
+         */
+        void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // O canal já estava encerrado
+            }
+        }
+    }
+}
@@ -0,0 +1,443 @@
+package com.example.p1;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.rmi.ConnectException;
+import java.rmi.RemoteException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Representa uma coleção de usuários acessada por uma conexão com um {@link BinaryServer}.
+ * <p>
+ * Todas as chamadas compartilham uma única conexão. Cada chamada envia o seu pedido e aguarda a resposta com o mesmo
+ * identificador, de forma que chamadas feitas por <i>threads</i> diferentes ficam em trânsito ao mesmo tempo, sem que
+ * uma aguarde a resposta da outra. As respostas são lidas por uma <i>thread</i> própria dessa coleção.
+ * <p>
+ * Exceções {@link IllegalArgumentException}, {@link IllegalStateException} e {@link UnsupportedOperationException}
+ * lançadas pelo servidor são lançadas novamente por essa coleção; as demais são lançadas como
+ * {@link RemoteException}, assim como as falhas da conexão.
+ * <p>
+ * O protocolo binário não envia as mudanças da base aos clientes, então {@link #addListener(UserListener)} não é
+ * suportado.
+ */
+public class BinaryUserCollection implements UserCollection, Closeable {
+    /**
+     * Tamanho, em bytes, do <i>buffer</i> de leitura das respostas.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Conexão com o servidor.
+     */
+    private final Socket socket;
+
+    /**
+     * Destino dos pedidos, cuja escrita é sincronizada nele próprio.
+     */
+    private final OutputStream output;
+
+    /**
+     * Origem das respostas, lida apenas por {@link #reader}.
+     */
+    private final DataInputStream input;
+
+    /**
+     * Próximo identificador de pedido.
+     */
+    private final AtomicLong ids = new AtomicLong();
+
+    /**
+     * Respostas aguardadas, indexadas pelo identificador do pedido.
+     */
+    private final ConcurrentMap<Long, CompletableFuture<byte[]>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * <i>Thread</i> que lê as respostas.
+     */
+    private final Thread reader;
+
+    /**
+     * Falha da conexão ou null caso ela esteja aberta.
+     */
+    private volatile RemoteException failure;
+
+    /**
+     * Constrói uma coleção a partir de uma conexão aberta.
+     *
+     * @param socket a conexão com o servidor.
+     * @throws IOException caso a conexão não possa ser utilizada.
+     */
+    private BinaryUserCollection(final Socket socket) throws IOException {
+        this.socket = socket;
+        this.output = socket.getOutputStream();
+        this.input = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+
+        this.reader = new Thread(this::receive, "binary-client-" + socket.getLocalPort());
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Conecta a um {@link BinaryServer}.
+     *
+     * @param hostname o endereço do servidor.
+     * @param port     a porta do servidor.
+     * @return a coleção acessada pela conexão.
+     * @throws RemoteException caso a conexão não possa ser aberta.
+     */
+    public static BinaryUserCollection connect(final String hostname, final int port) throws RemoteException {
+        final Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(hostname, port));
+            return new BinaryUserCollection(socket);
+
+        } catch (IOException e) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // A conexão já estava encerrada
+            }
+            throw new ConnectException("não foi possível conectar a " + hostname + ":" + port, e);
+        }
+    }
+
+    /**
+     * Lê as respostas e as entrega às chamadas que as aguardam, até que a conexão seja encerrada.
+     */
+    private void receive() {
+        try {
+            while (true) {
+                final int length = input.readInt();
+                if (length < BinaryProtocol.HEADER_SIZE - 4 || length > BinaryProtocol.MAX_FRAME_SIZE) {
+                    throw new IOException("quadro inválido: " + length);
+                }
+                final byte[] body = new byte[length];
+                input.readFully(body);
+
+                final CompletableFuture<byte[]> future = pending.remove(ByteBuffer.wrap(body).getLong(0));
+                if (future != null) {
+                    future.complete(body);
+                }
+            }
+        } catch (IOException e) {
+            fail(new ConnectException(e instanceof EOFException ? "conexão encerrada pelo servidor." : "erro de conexão.", e));
+        }
+    }
+
+    /**
+     * Encerra a conexão após uma falha, falhando todas as chamadas que aguardam uma resposta.
+     *
+     * @param cause a falha da conexão.
+     */
+    private void fail(final RemoteException cause) {
+        if (failure == null) {
+            failure = cause;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // A conexão já estava encerrada
+        }
+        for (final Long id : pending.keySet()) {
+            final CompletableFuture<byte[]> future = pending.remove(id);
+            if (future != null) {
+                future.completeExceptionally(failure);
+            }
+        }
+    }
+
+    /**
+     * Envia um pedido e aguarda a sua resposta.
+     *
+     * @param op      a operação do pedido.
+     * @param request o escritor dos argumentos do pedido.
+     * @param reply   o leitor do resultado do pedido.
+     * @param <T>     o tipo do resultado do pedido.
+     * @return o resultado do pedido.
+     * @throws RemoteException caso a conexão falhe ou o servidor lance uma exceção.
+     */
+    private <T> T call(final byte op, final Request request, final Reply<T> reply) throws RemoteException {
+        final long id = ids.incrementAndGet();
+        final BinaryProtocol.Frame frame = new BinaryProtocol.Frame(id);
+        final ByteBuffer buffer;
+        try {
+            request.write(frame.data);
+            buffer = frame.finish(op, null)[0];
+        } catch (IOException e) {
+            throw new RemoteException("pedido inválido.", e);
+        }
+
+        final DataInputStream body;
+        try {
+
+            final CompletableFuture<byte[]> future = new CompletableFuture<>();
+            pending.put(id, future);
+            if (failure != null) {
+                pending.remove(id);
+                throw failure;
+            }
+            try {
+                synchronized (output) {
+                    output.write(buffer.array(), 0, buffer.limit());
+                }
+            } catch (IOException e) {
+                fail(new ConnectException("erro de conexão.", e));
+            }
+            try {
+                body = new DataInputStream(new ByteArrayInputStream(future.get()));
+            } catch (InterruptedException e) {
+                pending.remove(id);
+                Thread.currentThread().interrupt();
+                throw new RemoteException("chamada interrompida.", e);
+            } catch (ExecutionException e) {
+                throw (RemoteException) e.getCause();
+            }
+
+            body.skipBytes(8);
+            if (body.readByte() == BinaryProtocol.STATUS_ERROR) {
+                throw error(UserCodec.readString(body), BinaryProtocol.readNullableString(body));
+            }
+            return reply.read(body);
+
+        } catch (RemoteException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new RemoteException("resposta inválida.", e);
+        }
+    }
+
+    /**
+     * Reconstrói uma exceção lançada pelo servidor.
+     *
+     * @param type    o nome da classe da exceção.
+     * @param message a mensagem da exceção.
+     * @return a exceção a ser lançada, caso seja verificada.
+     */
+    private static RemoteException error(final String type, final String message) {
+        if (IllegalArgumentException.class.getName().equals(type)) {
+            throw new IllegalArgumentException(message);
+        }
+        if (IllegalStateException.class.getName().equals(type)) {
+            throw new IllegalStateException(message);
+        }
+        if (UnsupportedOperationException.class.getName().equals(type)) {
+            throw new UnsupportedOperationException(message);
+        }
+        return new RemoteException(type + ": " + message);
+    }
+
+    @Override
+    public boolean create(final User user) throws RemoteException {
+        return call(BinaryProtocol.OP_CREATE, output -> UserCodec.write(output, user), DataInputStream::readBoolean);
+    }
+
+    @Override
+    public List<Boolean> createAll(final List<User> users) throws RemoteException {
+        return call(BinaryProtocol.OP_CREATE_ALL, output -> BinaryProtocol.writeUsers(output, users),
+            BinaryProtocol::readBooleans);
+    }
+
+    @Override
+    public List<User> read() throws RemoteException {
+        return call(BinaryProtocol.OP_READ, output -> {
+        }, BinaryProtocol::readUsers);
+    }
+
+    @Override
+    public UserPage read(final String cursor, final int limit) throws RemoteException {
+        return call(BinaryProtocol.OP_READ_PAGE, output -> {
+            BinaryProtocol.writeNullableString(output, cursor);
+            output.writeInt(limit);
+        }, input -> new UserPage(BinaryProtocol.readUsers(input), BinaryProtocol.readNullableString(input)));
+    }
+
+    @Override
+    public ChangeSet changesSince(final long version) throws RemoteException {
+        return call(BinaryProtocol.OP_CHANGES_SINCE, output -> output.writeLong(version),
+            input -> new ChangeSet(BinaryProtocol.readUsers(input), input.readLong(), input.readBoolean()));
+    }
+
+    @Override
+    public long version() throws RemoteException {
+        return call(BinaryProtocol.OP_VERSION, output -> {
+        }, DataInputStream::readLong);
+    }
+
+    @Override
+    public boolean update(final String email, final String key, final String value) throws RemoteException {
+        return call(BinaryProtocol.OP_UPDATE, output -> {
+            UserCodec.writeString(output, email);
+            UserCodec.writeString(output, key);
+            UserCodec.writeString(output, value);
+        }, DataInputStream::readBoolean);
+    }
+
+    @Override
+    public List<Boolean> updateAll(final List<UserUpdate> updates) throws RemoteException {
+        return call(BinaryProtocol.OP_UPDATE_ALL, output -> {
+            UserCodec.writeVarInt(output, updates.size());
+            for (final UserUpdate update : updates) {
+                UserCodec.writeString(output, update.email);
+                UserCodec.writeString(output, update.key);
+                UserCodec.writeString(output, update.value);
+            }
+        }, BinaryProtocol::readBooleans);
+    }
+
+    @Override
+    public byte[] readPicture(final String pictureId, final int offset, final int length) throws RemoteException {
+        return call(BinaryProtocol.OP_READ_PICTURE, output -> {
+            UserCodec.writeString(output, pictureId);
+            output.writeInt(offset);
+            output.writeInt(length);
+        }, input -> {
+            final int size = input.readInt();
+            if (size < 0) {
+                return null;
+            }
+            final byte[] chunk = UserCodec.readBytes(input, size);
+            return chunk;
+        });
+    }
+
+    @Override
+    public User findByEmail(final String email) throws RemoteException {
+        return call(BinaryProtocol.OP_FIND_BY_EMAIL, output -> UserCodec.writeString(output, email),
+            input -> input.readBoolean() ? UserCodec.read(input) : null);
+    }
+
+    @Override
+    public List<User> findByFormation(final String formation) throws RemoteException {
+        return call(BinaryProtocol.OP_FIND_BY_FORMATION, output -> UserCodec.writeString(output, formation),
+            BinaryProtocol::readUsers);
+    }
+
+    @Override
+    public Map<String, List<String>> abilitiesByAddress(final String address) throws RemoteException {
+        return call(BinaryProtocol.OP_ABILITIES_BY_ADDRESS, output -> UserCodec.writeString(output, address), input -> {
+            final int size = UserCodec.readVarInt(input);
+            final Map<String, List<String>> abilities = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                abilities.put(UserCodec.readString(input), BinaryProtocol.readStrings(input));
+            }
+            return abilities;
+        });
+    }
+
+    @Override
+    public SearchResult search(final String query, final int limit) throws RemoteException {
+        return call(BinaryProtocol.OP_SEARCH, output -> {
+            UserCodec.writeString(output, query);
+            output.writeInt(limit);
+        }, input -> {
+            final List<User> users = BinaryProtocol.readUsers(input);
+            final double[] scores = new double[users.size()];
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] = input.readDouble();
+            }
+            return new SearchResult(users, scores);
+        });
+    }
+
+    @Override
+    public Map<String, Long> aggregate(final String view, final String key, final int limit) throws RemoteException {
+        return call(BinaryProtocol.OP_AGGREGATE, output -> {
+            UserCodec.writeString(output, view);
+            BinaryProtocol.writeNullableString(output, key);
+            output.writeInt(limit);
+        }, input -> {
+            final int size = UserCodec.readVarInt(input);
+            final Map<String, Long> counts = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                counts.put(UserCodec.readString(input), input.readLong());
+            }
+            return counts;
+        });
+    }
+
+    @Override
+    public void addListener(final UserListener listener) throws RemoteException {
+        throw new RemoteException("o protocolo binário não envia mudanças aos clientes.");
+    }
+
+    @Override
+    public void removeListener(final UserListener listener) throws RemoteException {
+        throw new RemoteException("o protocolo binário não envia mudanças aos clientes.");
+    }
+
+    @Override
+    public Map<String, MethodStats> stats() throws RemoteException {
+        return call(BinaryProtocol.OP_STATS, output -> {
+        }, input -> {
+            final int size = UserCodec.readVarInt(input);
+            final Map<String, MethodStats> stats = new LinkedHashMap<>();
+            for (int i = 0; i < size; i++) {
+                stats.put(UserCodec.readString(input), new MethodStats(
+                    input.readLong(), input.readLong(), input.readLong(),
+                    input.readLong(), input.readLong(), input.readLong()));
+            }
+            return stats;
+        });
+    }
+
+    /**
+     * Encerra a conexão, falhando as chamadas que aguardam uma resposta.
+     */
+    @Override
+    public void close() {
+        fail(new ConnectException("conexão encerrada pelo cliente."));
+        try {
+            reader.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Representa a escrita dos argumentos de um pedido.
+     */
+    @FunctionalInterface
+    private interface Request {
+        /**
+         * Escreve os argumentos.
+         *
+         * @param output o destino dos argumentos.
+         * @throws IOException caso ocorra um erro de escrita.
+         */
+        void write(DataOutput output) throws IOException;
+    }
+
+    /**
+     * Representa a leitura do resultado de um pedido.
+     *
+     * @param <T> o tipo do resultado.
+     */
+    @FunctionalInterface
+    private interface Reply<T> {
+        /**
+         * Lê o resultado.
+         *
+         * @param input a origem do resultado.
+         * @return o resultado lido.
+         * @throws IOException caso ocorra um erro de leitura.
+         */
+        T read(DataInputStream input) throws IOException;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.p1;
+
+import java.util.Collection;
+
+/**
+ * Representa um registro limitado das mudanças de uma {@link UserDatabase}.
+ * <p>
+ * Cada escrita recebe uma versão sequencial e guarda o e-mail normalizado dos usuários que modificou. Apenas as
+ * {@link #capacity} mudanças mais recentes são mantidas, em um vetor circular; uma versão mais antiga que isso não
+ * pode mais ser sincronizada incrementalmente.
+ * <p>
+ * As versões começam a partir de um valor informado na construção. Uma base de dados usa o instante da sua criação,
+ * de forma que as versões de uma instância anterior do servidor sejam menores que a primeira versão retida e levem a
+ * uma sincronização completa.
+ */
+final class ChangeLog {
+    /**
+     * Quantidade máxima de mudanças retidas por esse registro.
+     */
+    private final int capacity;
+
+    /**
+     * E-mails das mudanças retidas, onde a mudança de versão <code>v</code> ocupa a posição
+     * <code>v % capacity</code>.
+     */
+    private final String[] emails;
+
+    /**
+     * Versão da mudança mais recente desse registro.
+     */
+    private long version;
+
+    /**
+     * Versão a partir da qual esse registro começou; nenhuma mudança anterior a ela pode ser sincronizada.
+     */
+    private final long base;
+
+    /**
+     * Constrói um registro vazio.
+     *
+     * @param capacity a quantidade máxima de mudanças retidas.
+     * @param base     a versão inicial do registro.
+     */
+    ChangeLog(final int capacity, final long base) {
+        this.capacity = capacity;
+        this.emails = new String[capacity];
+        this.version = base;
+        this.base = base;
+    }
+
+    /**
+     * Registra uma mudança.
+     *
+     * @param changed os e-mails normalizados dos usuários modificados, possivelmente vazio.
+     * @return a versão da mudança mais recente após o registro.
+     */
+    synchronized long append(final Collection<String> changed) {
+        for (final String email : changed) {
+            version++;
+            emails[(int) Math.floorMod(version, (long) capacity)] = email;
+        }
+        return version;
+    }
+
+    /**
+     * @return a versão da mudança mais recente desse registro.
+     */
+    synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Lê as mudanças posteriores a uma versão.
+     *
+     * @param since   a versão a partir da qual as mudanças são lidas, exclusiva.
+     * @param changed a coleção onde são colocados os e-mails modificados desde a versão informada.
+     * @return a versão da mudança mais recente desse registro, ou -1 caso as mudanças desde a versão informada não
+     * estejam mais retidas ou a versão não pertença a esse registro.
+     */
+    synchronized long since(final long since, final Collection<String> changed) {
+        if (since < base || since > version || version - since > capacity) {
+            return -1;
+        }
+        for (long v = since + 1; v <= version; v++) {
+            changed.add(emails[(int) Math.floorMod(v, (long) capacity)]);
+        }
+        return version;
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.p1;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * Representa o envio das mudanças de uma {@link UserDatabase} aos seus {@link UserListener}s.
+ * <p>
+ * Cada objeto registrado possui uma fila própria de e-mails pendentes, em que mudanças repetidas de um mesmo usuário
+ * ocupam uma única posição. As filas são esvaziadas por <i>threads</i> próprias desse notificador, no máximo uma por
+ * objeto, de forma que a chamada que causou a mudança nunca aguarda um objeto remoto. O estado de cada usuário é lido
+ * no momento do envio, e não no momento da mudança.
+ * <p>
+ * Um objeto cuja fila ultrapassa {@link #MAX_PENDING_CHANGES} usuários, ou cuja chamada lança uma exceção, deixa de
+ * ser notificado.
+ */
+final class ChangeNotifier {
+    /**
+     * Quantidade máxima de usuários pendentes de envio a um mesmo objeto antes que ele deixe de ser notificado.
+     */
+    static final int MAX_PENDING_CHANGES = 10_000;
+
+    /**
+     * Função que lê o estado atual de um usuário a partir do seu e-mail normalizado.
+     */
+    private final Function<String, User> resolver;
+
+    /**
+     * Inscrições desse notificador, indexadas pelo objeto notificado.
+     */
+    private final ConcurrentMap<UserListener, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * Executor que envia as mudanças aos objetos registrados.
+     */
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "user-change-notifier");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Constrói um notificador sem objetos registrados.
+     *
+     * @param resolver a função que lê o estado atual de um usuário a partir do seu e-mail normalizado, retornando
+     *                 null caso ele não exista.
+     */
+    ChangeNotifier(final Function<String, User> resolver) {
+        this.resolver = resolver;
+    }
+
+    /**
+     * Registra um objeto para ser notificado das mudanças posteriores a esse registro.
+     * <p>
+     * Caso o objeto já esteja registrado, nada é feito.
+     *
+     * @param listener o objeto a ser registrado.
+     */
+    void add(final UserListener listener) {
+        subscriptions.putIfAbsent(listener, new Subscription(listener));
+    }
+
+    /**
+     * Remove o registro de um objeto.
+     * <p>
+     * Um envio já iniciado ainda pode ser concluído.
+     *
+     * @param listener o objeto a ser removido.
+     */
+    void remove(final UserListener listener) {
+        subscriptions.remove(listener);
+    }
+
+    /**
+     * Coloca uma mudança na fila de cada objeto registrado.
+     * <p>
+     * Deve ser chamado na mesma ordem das versões das mudanças.
+     *
+     * @param changed os e-mails normalizados dos usuários modificados.
+     * @param version a versão da mudança.
+     */
+    void publish(final Collection<String> changed, final long version) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        for (final Subscription subscription : subscriptions.values()) {
+            if (!subscription.offer(changed, version)) {
+                subscriptions.remove(subscription.listener, subscription);
+            }
+        }
+    }
+
+    /**
+     * Interrompe os envios desse notificador.
+     */
+    void close() {
+        subscriptions.clear();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Representa a inscrição de um objeto nesse notificador.
+     */
+    private final class Subscription implements Runnable {
+        /**
+         * Objeto notificado.
+         */
+        final UserListener listener;
+
+        /**
+         * E-mails normalizados dos usuários modificados e ainda não enviados, na ordem da primeira mudança.
+         */
+        private Set<String> pending = new LinkedHashSet<>();
+
+        /**
+         * Versão da mudança mais recente colocada na fila.
+         */
+        private long version;
+
+        /**
+         * Se um envio está agendado ou em andamento.
+         */
+        private boolean scheduled;
+
+        /**
+         * Constrói uma inscrição.
+         *
+         * @param listener o objeto notificado.
+         */
+        Subscription(final UserListener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * Coloca uma mudança na fila dessa inscrição, agendando um envio caso nenhum esteja em andamento.
+         *
+         * @param changed os e-mails normalizados dos usuários modificados.
+         * @param version a versão da mudança.
+         * @return se a mudança foi colocada na fila, ou false caso a fila tenha ultrapassado o seu limite.
+         */
+        synchronized boolean offer(final Collection<String> changed, final long version) {
+            pending.addAll(changed);
+            this.version = version;
+            if (pending.size() > MAX_PENDING_CHANGES) {
+                pending = new LinkedHashSet<>();
+                return false;
+            }
+            if (!scheduled) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // O notificador foi encerrado
+                    return false;
+                }
+                scheduled = true;
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            for (; ; ) {
+                final Set<String> batch;
+                final long version;
+                synchronized (this) {
+                    if (pending.isEmpty() || subscriptions.get(listener) != this) {
+                        scheduled = false;
+                        return;
+                    }
+                    batch = pending;
+                    version = this.version;
+                    pending = new LinkedHashSet<>();
+                }
+
+                final List<User> users = new ArrayList<>(batch.size());
+                for (final String email : batch) {
+                    final User user = resolver.apply(email);
+                    if (user != null) {
+                        users.add(user);
+                    }
+                }
+
+                try {
+                    listener.usersChanged(new ChangeSet(users, version, false));
+                } catch (RemoteException | RuntimeException e) {
+                    subscriptions.remove(listener, this);
+                    synchronized (this) {
+                        pending.clear();
+                        scheduled = false;
+                    }
+                    return;
+                }
+            }
+        }
+    }
+}
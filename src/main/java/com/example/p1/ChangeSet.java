@@ -0,0 +1,48 @@
+package com.example.p1;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Representa as mudanças de uma {@link UserCollection} desde uma versão, retornadas por
+ * {@link UserCollection#changesSince(long)}.
+ * <p>
+ * Caso as mudanças desde a versão pedida não estejam mais disponíveis, {@link #reset} é verdadeiro e nenhum usuário
+ * é retornado: o cliente deve ler novamente todos os usuários com {@link UserCollection#read(String, int)} e, em
+ * seguida, pedir as mudanças desde {@link #version}.
+ */
+public final class ChangeSet implements Serializable {
+    /**
+     * Campo de serialização.
+     */
+    private static final long serialVersionUID = 1409315237L;
+
+    /**
+     * Estado atual dos usuários adicionados ou atualizados desde a versão pedida, sem repetições.
+     */
+    public final List<User> users;
+
+    /**
+     * Versão da coleção refletida por essas mudanças, a ser passada na próxima chamada a
+     * {@link UserCollection#changesSince(long)}.
+     */
+    public final long version;
+
+    /**
+     * Se as mudanças desde a versão pedida não estão mais disponíveis e todos os usuários devem ser lidos novamente.
+     */
+    public final boolean reset;
+
+    /**
+     * Constrói um conjunto de mudanças.
+     *
+     * @param users   os usuários adicionados ou atualizados.
+     * @param version a versão refletida pelas mudanças.
+     * @param reset   se todos os usuários devem ser lidos novamente.
+     */
+    public ChangeSet(final List<User> users, final long version, final boolean reset) {
+        this.users = new UserList(users);
+        this.version = version;
+        this.reset = reset;
+    }
+}
@@ -5,11 +5,9 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
-import java.rmi.registry.LocateRegistry;
-import java.rmi.registry.Registry;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.Scanner;
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -25,6 +23,21 @@ public class Client {
      */
     private static final Scanner scanner = new Scanner(System.in);
 
+    /**
+     * Quantidade de usuários lidos por chamada ao listar todos os usuários.
+     */
+    private static final int PAGE_SIZE = 100;
+
+    /**
+     * Quantidade máxima de usuários exibidos por uma busca.
+     */
+    private static final int SEARCH_LIMIT = 20;
+
+    /**
+     * Quantidade máxima de valores exibidos por uma agregação.
+     */
+    private static final int AGGREGATE_LIMIT = 20;
+
     /**
      * Construtor privado.
      * <p>
@@ -79,6 +92,10 @@ public class Client {
         System.out.println("5. Exibir experiência de um usuário");
         System.out.println("6. Listar informações de todos os usuários");
         System.out.println("7. Exibir informação de um usuário");
+        System.out.println("8. Exibir estatísticas do servidor");
+        System.out.println("9. Buscar usuários por habilidades e experiências");
+        System.out.println("10. Contar usuários por curso");
+        System.out.println("11. Listar habilidades mais comuns de um endereço");
         System.out.println("0. Sair da sessão");
         System.out.println();
         System.out.println("Operação: ");
@@ -86,7 +103,7 @@ public class Client {
         final String input = scanner.nextLine().strip();
         try {
             final int result = Integer.parseInt(input);
-            return (result < 0 || result > 7) ? null : result;
+            return (result < 0 || result > 11) ? null : result;
 
         } catch (NumberFormatException e) {
             return null;
@@ -103,11 +120,49 @@ public class Client {
         System.out.println("E-mail: " + user.email);
         System.out.println("Endereço: " + user.address);
         System.out.println("Formação acadêmica: " + user.formation);
-        System.out.println("Possui foto? " + (user.pictureData.length > 0 ? "Sim" : "Não"));
+        System.out.println("Possui foto? " + (user.hasPicture() ? "Sim (" + user.pictureSize + " bytes)" : "Não"));
         System.out.println("Habilidades: " + user.getAbilities());
         System.out.println("Experiências: " + user.getExperiences());
     }
 
+    /**
+     * Lê e mostra uma agregação dos usuários na tela.
+     *
+     * @param collection a coleção cujos usuários são agregados.
+     * @param view       a agregação a ser lida.
+     * @param key        a chave da agregação.
+     */
+    private static void showAggregate(final UserCollection collection, final String view, final String key) {
+        final Map<String, Long> counts;
+        try {
+            counts = collection.aggregate(view, key, AGGREGATE_LIMIT);
+
+        } catch (RemoteException e) {
+            System.out.println("Erro remoto.");
+            e.printStackTrace();
+            return;
+        }
+
+        if (counts.isEmpty()) {
+            System.out.println("Nenhum usuário encontrado.");
+            return;
+        }
+        counts.forEach((value, count) -> System.out.println(value + ": " + count));
+    }
+
+    /**
+     * Mostra as estatísticas de execução dos métodos de uma coleção na tela.
+     *
+     * @param stats as estatísticas de cada método, indexadas pelo nome do método.
+     */
+    private static void showStats(final Map<String, MethodStats> stats) {
+        if (stats.isEmpty()) {
+            System.out.println("Nenhuma estatística disponível.");
+            return;
+        }
+        stats.forEach((method, methodStats) -> System.out.println(method + ": " + methodStats));
+    }
+
     /**
      * Mostra um menu que permite ao usuário construir um perfil para a base de dados.
      *
@@ -155,26 +210,47 @@ public class Client {
 
     public static void main(String[] args) {
         if (args.length < 1) {
-            System.out.println("Uso: java com.example.p1.Client host [debug=true,false]");
+            System.out.println("Uso: java com.example.p1.Client host [debug=true,false] [fragmentos] [réplicas] "
+                + "[compressão=nível[/limiar]]");
             return;
         }
         final String hostname = args[0];
         final boolean debug = args.length >= 2 && Boolean.parseBoolean(args[1]);
-
-        // Configuração da conexão RMI
-        final Registry registry;
+        final int shards;
         try {
-            registry = LocateRegistry.getRegistry(hostname);
-        } catch (RemoteException e) {
-            System.out.println("Erro remoto.");
-            e.printStackTrace();
+            shards = args.length >= 3 ? Integer.parseInt(args[2]) : 0;
+        } catch (NumberFormatException e) {
+            System.out.println("Fragmentos inválidos: " + args[2]);
+            return;
+        }
+        if (shards < 0) {
+            System.out.println("Fragmentos inválidos: " + args[2]);
+            return;
+        }
+        final int replicas;
+        try {
+            replicas = args.length >= 4 ? Integer.parseInt(args[3]) : 0;
+        } catch (NumberFormatException e) {
+            System.out.println("Réplicas inválidas: " + args[3]);
+            return;
+        }
+        if (replicas < 0) {
+            System.out.println("Réplicas inválidas: " + args[3]);
+            return;
+        }
+        // A compressão das chamadas ao servidor é escolhida pelo servidor; a do cliente vale para as mudanças recebidas
+        final CompressingSocketFactory sockets;
+        try {
+            sockets = args.length >= 5 ? CompressingSocketFactory.parse(args[4]) : null;
+        } catch (IllegalArgumentException e) {
+            System.out.println("Compressão inválida: " + args[4]);
             return;
         }
 
-        final UserCollection collection;
+        // Configuração da conexão RMI
+        final UserCollection server;
         try {
-            final UserCollection obj = (UserCollection) registry.lookup("UserManager");
-            collection = debug ? new DebugUserCollection(obj) : obj;
+            server = ShardedUserCollection.connect(hostname, shards, replicas);
 
         } catch (RemoteException | NotBoundException e) {
             System.out.println("Erro remoto.");
@@ -182,6 +258,40 @@ public class Client {
             return;
         }
 
+        final MetricsUserCollection metrics = debug ? new MetricsUserCollection(server) : null;
+        final UserCollection collection = debug ? metrics : server;
+        final UserCache cache = new UserCache(collection);
+
+        // As mudanças enviadas pelos fragmentos possuem versões próprias, que não podem ser combinadas pela cópia local
+        if (shards <= 0) {
+            try {
+                cache.listen(sockets);
+            } catch (RemoteException e) {
+                System.out.println("Não foi possível receber as mudanças do servidor; elas serão lidas a cada consulta.");
+            }
+        }
+
+        try {
+            session(server, collection, metrics, cache);
+        } finally {
+            try {
+                cache.close();
+            } catch (RemoteException e) {
+                // O servidor pode já estar indisponível, e a cópia deixa de ser exportada de qualquer forma
+            }
+        }
+    }
+
+    /**
+     * Executa o menu interativo até que o usuário saia da sessão.
+     *
+     * @param server     a coleção remota.
+     * @param collection a coleção utilizada pelas operações, que pode medir as chamadas feitas a <code>server</code>.
+     * @param metrics    o decorador que mede as chamadas feitas ao servidor ou null caso elas não sejam medidas.
+     * @param cache      a cópia local dos usuários consultados pelo e-mail.
+     */
+    private static void session(final UserCollection server, final UserCollection collection,
+                                final MetricsUserCollection metrics, final UserCache cache) {
         // Aplicação do usuário
         System.out.println("========== BANCO DE DADOS ==========");
         for (; ; ) {
@@ -210,9 +320,7 @@ public class Client {
                     System.out.println("2. Listar usuários por curso");
                     fetchAnswer("Curso: ", answer -> {
                         try {
-                            final List<User> users = collection.read().stream()
-                                .filter(user -> user.formation.equalsIgnoreCase(answer))
-                                .collect(Collectors.toList());
+                            final List<User> users = collection.findByFormation(answer);
 
                             System.out.println("Usuários: ");
                             users.forEach(user -> System.out.println(user.email));
@@ -228,12 +336,10 @@ public class Client {
                     System.out.println("3. Listar habilidades de usuários por endereço");
                     fetchAnswer("Endereço: ", answer -> {
                         try {
-                            final List<User> users = collection.read().stream()
-                                .filter(user -> user.address.equalsIgnoreCase(answer))
-                                .collect(Collectors.toList());
+                            final Map<String, List<String>> abilities = collection.abilitiesByAddress(answer);
 
                             System.out.println("Habilidades: ");
-                            users.forEach(user -> System.out.println(user.getAbilities()));
+                            abilities.values().forEach(System.out::println);
 
                         } catch (RemoteException e) {
                             System.out.println("Erro remoto.");
@@ -245,6 +351,8 @@ public class Client {
                 case 4: {
                     System.out.println("4. Acrescentar experiência de um usuário");
                     fetchAnswer("E-mail: ", email -> fetchAnswer("Experiência: ", job -> {
+                        // A próxima consulta a esse usuário deve refletir a experiência adicionada
+                        cache.invalidate(email);
                         try {
                             final boolean result = collection.update(email, UserCollection.UPDATE_KEY_EXPERIENCE, job);
                             if (result) {
@@ -263,11 +371,9 @@ public class Client {
                 case 5: {
                     System.out.println("5. Exibir experiência de um usuário");
                     fetchAnswer("E-mail: ", email -> {
-                        final Optional<User> optional;
+                        final User user;
                         try {
-                            optional = collection.read().stream()
-                                .filter(u -> u.email.equalsIgnoreCase(email))
-                                .findFirst();
+                            user = cache.findByEmail(email);
 
                         } catch (RemoteException e) {
                             System.out.println("Erro remoto.");
@@ -275,8 +381,8 @@ public class Client {
                             return;
                         }
 
-                        if (optional.isPresent()) {
-                            System.out.println("Experiências: " + optional.get().getExperiences());
+                        if (user != null) {
+                            System.out.println("Experiências: " + user.getExperiences());
                         } else {
                             System.out.println("O e-mail informado não se encontra na base de dados.");
                         }
@@ -285,30 +391,32 @@ public class Client {
                 }
                 case 6: {
                     System.out.println("6. Listar informações de todos os usuários");
-                    final List<User> users;
-                    try {
-                        users = collection.read();
+                    String cursor = null;
+                    do {
+                        final UserPage page;
+                        try {
+                            page = collection.read(cursor, PAGE_SIZE);
 
-                    } catch (RemoteException e) {
-                        System.out.println("Erro remoto.");
-                        e.printStackTrace();
-                        return;
-                    }
+                        } catch (RemoteException e) {
+                            System.out.println("Erro remoto.");
+                            e.printStackTrace();
+                            break;
+                        }
 
-                    users.forEach(user -> {
-                        System.out.println();
-                        showUserInformation(user);
-                    });
+                        page.users.forEach(user -> {
+                            System.out.println();
+                            showUserInformation(user);
+                        });
+                        cursor = page.nextCursor;
+                    } while (cursor != null);
                     break;
                 }
                 case 7: {
                     System.out.println("7. Exibir informação de um usuário");
                     fetchAnswer("E-mail: ", email -> {
-                        final Optional<User> optional;
+                        final User user;
                         try {
-                            optional = collection.read().stream()
-                                .filter(u -> u.email.equalsIgnoreCase(email))
-                                .findFirst();
+                            user = cache.findByEmail(email);
 
                         } catch (RemoteException e) {
                             System.out.println("Erro remoto.");
@@ -316,18 +424,72 @@ public class Client {
                             return;
                         }
 
-                        if (optional.isPresent()) {
-                            showUserInformation(optional.get());
+                        if (user != null) {
+                            showUserInformation(user);
                         } else {
                             System.out.println("O e-mail informado não se encontra na base de dados.");
                         }
                     });
                     break;
                 }
+                case 8: {
+                    System.out.println("8. Exibir estatísticas do servidor");
+                    final Map<String, MethodStats> stats;
+                    try {
+                        stats = server.stats();
+
+                    } catch (RemoteException e) {
+                        System.out.println("Erro remoto.");
+                        e.printStackTrace();
+                        break;
+                    }
+                    showStats(stats);
+                    if (metrics != null) {
+                        System.out.println();
+                        System.out.println("Estatísticas do cliente:");
+                        showStats(metrics.stats());
+                    }
+                    break;
+                }
+                case 9: {
+                    System.out.println("9. Buscar usuários por habilidades e experiências");
+                    fetchAnswer("Busca: ", query -> {
+                        final SearchResult result;
+                        try {
+                            result = collection.search(query, SEARCH_LIMIT);
+
+                        } catch (RemoteException e) {
+                            System.out.println("Erro remoto.");
+                            e.printStackTrace();
+                            return;
+                        }
+
+                        if (result.users.isEmpty()) {
+                            System.out.println("Nenhum usuário encontrado.");
+                            return;
+                        }
+                        System.out.println("Usuários: ");
+                        for (final User user : result.users) {
+                            System.out.println(user.email + " " + user.getAbilities() + " " + user.getExperiences());
+                        }
+                    });
+                    break;
+                }
+                case 10: {
+                    System.out.println("10. Contar usuários por curso");
+                    showAggregate(collection, UserCollection.AGGREGATE_USERS_BY_FORMATION, null);
+                    break;
+                }
+                case 11: {
+                    System.out.println("11. Listar habilidades mais comuns de um endereço");
+                    fetchAnswer("Endereço: ", address ->
+                        showAggregate(collection, UserCollection.AGGREGATE_ABILITIES_BY_ADDRESS, address));
+                    break;
+                }
                 case 0:
                     return;
             }
             System.out.println();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,547 @@
+package com.example.p1;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.server.RMIClientSocketFactory;
+import java.rmi.server.RMIServerSocketFactory;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.Objects;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Representa uma fábrica de conexões RMI que comprimem os bytes enviados.
+ * <p>
+ * Os bytes escritos em uma conexão são acumulados em blocos de até {@link #BLOCK_SIZE} bytes, enviados quando o bloco
+ * enche ou quando o RMI esvazia a conexão ao final de uma mensagem. Cada bloco é comprimido de forma independente, por
+ * um {@link Deflater} com o nível escolhido, e precedido pelos seus tamanhos original e enviado. Blocos menores que o
+ * limiar da fábrica, como os pedidos e respostas curtos, e blocos que não diminuem ao serem comprimidos, como o
+ * conteúdo das fotos, são enviados sem compressão.
+ * <p>
+ * A fábrica é serializada junto ao <i>stub</i> de um objeto exportado com ela, de forma que os clientes passam a
+ * utilizá-la ao se conectar ao objeto, sem nenhuma configuração própria. Os dois lados de cada conexão comprimem os
+ * bytes que enviam.
+ */
+public class CompressingSocketFactory implements RMIClientSocketFactory, RMIServerSocketFactory, Serializable {
+    /**
+     * Campo de serialização.
+     */
+    private static final long serialVersionUID = 2094188120L;
+
+    /**
+     * Tamanho máximo, em bytes, de um bloco.
+     */
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * Tamanho mínimo padrão, em bytes, de um bloco comprimido.
+     */
+    static final int DEFAULT_THRESHOLD = 1024;
+
+    /**
+     * Nível de compressão, de {@link Deflater#NO_COMPRESSION} a {@link Deflater#BEST_COMPRESSION}.
+     */
+    private final int level;
+
+    /**
+     * Tamanho mínimo, em bytes, de um bloco comprimido.
+     */
+    private final int threshold;
+
+    /**
+     * Constrói uma fábrica.
+     *
+     * @param level     o nível de compressão, de {@link Deflater#NO_COMPRESSION} a {@link Deflater#BEST_COMPRESSION}.
+     * @param threshold o tamanho mínimo, em bytes, de um bloco comprimido.
+     */
+    public CompressingSocketFactory(final int level, final int threshold) {
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION || threshold < 0) {
+            throw new IllegalArgumentException("compressão inválida: " + level + "/" + threshold);
+        }
+        this.level = level;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Constrói uma fábrica a partir de uma opção da linha de comando.
+     *
+     * @param option a opção, no formato <code>nível</code> ou <code>nível/limiar</code>.
+     * @return a fábrica.
+     * @throws IllegalArgumentException caso a opção seja inválida.
+     */
+    static CompressingSocketFactory parse(final String option) {
+        final String[] parts = option.split("/");
+        if (parts.length > 2) {
+            throw new IllegalArgumentException("compressão inválida: " + option);
+        }
+        return new CompressingSocketFactory(Integer.parseInt(parts[0].strip()),
+            parts.length == 2 ? Integer.parseInt(parts[1].strip()) : DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Exporta um objeto para que ele receba chamadas RMI em uma porta anônima.
+     *
+     * @param object  o objeto a ser exportado.
+     * @param sockets a fábrica das conexões do objeto ou null para as conexões padrão do RMI.
+     * @return o <i>stub</i> do objeto.
+     * @throws RemoteException caso o objeto não possa ser exportado.
+     */
+    static Remote export(final Remote object, final CompressingSocketFactory sockets) throws RemoteException {
+        return sockets == null
+            ? UnicastRemoteObject.exportObject(object, 0)
+            : UnicastRemoteObject.exportObject(object, 0, sockets, sockets);
+    }
+
+    @Override
+    public Socket createSocket(final String host, final int port) throws IOException {
+        final Socket socket = new CompressingSocket(level, threshold);
+        try {
+            socket.connect(new InetSocketAddress(host, port));
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        return socket;
+    }
+
+    @Override
+    public ServerSocket createServerSocket(final int port) throws IOException {
+        return new CompressingServerSocket(port, level, threshold);
+    }
+
+    // O RMI reaproveita as conexões abertas por fábricas iguais
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final CompressingSocketFactory that = (CompressingSocketFactory) o;
+        return level == that.level && threshold == that.threshold;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(level, threshold);
+    }
+
+    @Override
+    public String toString() {
+        return "CompressingSocketFactory{" +
+            "level=" + level +
+            ", threshold=" + threshold +
+            '}';
+    }
+
+    /**
+     * Representa uma conexão que comprime os bytes enviados.
+     */
+    private static final class CompressingSocket extends Socket {
+        /**
+         * Nível de compressão.
+         */
+        private final int level;
+
+        /**
+         * Tamanho mínimo, em bytes, de um bloco comprimido.
+         */
+        private final int threshold;
+
+        /**
+         * Origem dos bytes recebidos, criada na primeira leitura.
+         */
+        private InflatingInputStream input;
+
+        /**
+         * Destino dos bytes enviados, criado na primeira escrita.
+         */
+        private DeflatingOutputStream output;
+
+        /**
+         * Constrói uma conexão ainda não conectada.
+         *
+         * @param level     o nível de compressão.
+         * @param threshold o tamanho mínimo, em bytes, de um bloco comprimido.
+         */
+        CompressingSocket(final int level, final int threshold) {
+            this.level = level;
+            this.threshold = threshold;
+        }
+
+        @Override
+        public synchronized InputStream getInputStream() throws IOException {
+            if (input == null) {
+                input = new InflatingInputStream(super.getInputStream());
+            }
+            return input;
+        }
+
+        @Override
+        public synchronized OutputStream getOutputStream() throws IOException {
+            if (output == null) {
+                output = new DeflatingOutputStream(super.getOutputStream(), level, threshold);
+            }
+            return output;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                // O compressor e o descompressor mantêm memória nativa, liberada apenas ao serem encerrados
+                if (input != null) {
+                    input.end();
+                }
+                if (output != null) {
+                    output.end();
+                }
+            }
+        }
+    }
+
+    /**
+     * Representa o canal que aceita conexões que comprimem os bytes enviados.
+     */
+    private static final class CompressingServerSocket extends ServerSocket {
+        /**
+         * Nível de compressão.
+         */
+        private final int level;
+
+        /**
+         * Tamanho mínimo, em bytes, de um bloco comprimido.
+         */
+        private final int threshold;
+
+        /**
+         * Constrói e abre um canal.
+         *
+         * @param port      a porta onde as conexões são aceitas, ou 0 para uma porta livre qualquer.
+         * @param level     o nível de compressão.
+         * @param threshold o tamanho mínimo, em bytes, de um bloco comprimido.
+         * @throws IOException caso a porta não possa ser aberta.
+         */
+        CompressingServerSocket(final int port, final int level, final int threshold) throws IOException {
+            super(port);
+            this.level = level;
+            this.threshold = threshold;
+        }
+
+        @Override
+        public Socket accept() throws IOException {
+            final Socket socket = new CompressingSocket(level, threshold);
+            implAccept(socket);
+            return socket;
+        }
+    }
+
+    /**
+     * Representa o destino dos bytes enviados por uma conexão, que os envia em blocos comprimidos.
+     */
+    private static final class DeflatingOutputStream extends FilterOutputStream {
+        /**
+         * Compressor dos blocos.
+         */
+        private final Deflater deflater;
+
+        /**
+         * Tamanho mínimo, em bytes, de um bloco comprimido.
+         */
+        private final int threshold;
+
+        /**
+         * Bytes do bloco atual.
+         */
+        private final byte[] block = new byte[BLOCK_SIZE];
+
+        /**
+         * Bytes do bloco atual comprimido.
+         */
+        private final byte[] compressed = new byte[BLOCK_SIZE];
+
+        /**
+         * Quantidade de bytes do bloco atual.
+         */
+        private int count;
+
+        /**
+         * Se {@link #deflater} foi encerrado.
+         * <p>
+         * Protegido pelo monitor de {@link #deflater}.
+         */
+        private boolean ended;
+
+        /**
+         * Constrói um destino.
+         *
+         * @param output    o destino dos blocos.
+         * @param level     o nível de compressão.
+         * @param threshold o tamanho mínimo, em bytes, de um bloco comprimido.
+         */
+        DeflatingOutputStream(final OutputStream output, final int level, final int threshold) {
+            super(new BufferedOutputStream(output, 8 + BLOCK_SIZE));
+            this.deflater = new Deflater(level);
+            this.threshold = threshold;
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            if (count == block.length) {
+                writeBlock();
+            }
+            block[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(final byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            while (len > 0) {
+                if (count == block.length) {
+                    writeBlock();
+                }
+                final int n = Math.min(len, block.length - count);
+                System.arraycopy(b, off, block, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writeBlock();
+            out.flush();
+        }
+
+        /**
+         * Envia o bloco atual, comprimido caso ele atinja o limiar e diminua ao ser comprimido.
+         *
+         * @throws IOException caso ocorra um erro de escrita.
+         */
+        private void writeBlock() throws IOException {
+            if (count == 0) {
+                return;
+            }
+            int size = 0;
+            if (count >= threshold) {
+                // A conexão pode ser fechada por outra thread enquanto esse bloco é comprimido
+                synchronized (deflater) {
+                    if (ended) {
+                        throw new IOException("conexão encerrada.");
+                    }
+                    deflater.reset();
+                    deflater.setInput(block, 0, count);
+                    deflater.finish();
+                    while (!deflater.finished() && size < compressed.length) {
+                        size += deflater.deflate(compressed, size, compressed.length - size);
+                    }
+                    if (!deflater.finished()) {
+                        size = 0;
+                    }
+                }
+            }
+
+            final boolean deflated = size > 0 && size < count;
+            writeInt(count);
+            writeInt(deflated ? size : count);
+            out.write(deflated ? compressed : block, 0, deflated ? size : count);
+            count = 0;
+        }
+
+        /**
+         * Grava um inteiro de um cabeçalho de bloco.
+         *
+         * @param value o inteiro a ser gravado.
+         * @throws IOException caso ocorra um erro de escrita.
+         */
+        private void writeInt(final int value) throws IOException {
+            out.write(value >>> 24);
+            out.write(value >>> 16);
+            out.write(value >>> 8);
+            out.write(value);
+        }
+
+        /**
+         * Encerra o compressor desse destino, após o qual nenhum bloco pode ser comprimido.
+         */
+        void end() {
+            synchronized (deflater) {
+                if (!ended) {
+                    ended = true;
+                    deflater.end();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                end();
+            }
+        }
+    }
+
+    /**
+     * Representa a origem dos bytes recebidos por uma conexão, que os lê dos blocos enviados pelo outro lado.
+     */
+    private static final class InflatingInputStream extends InputStream {
+        /**
+         * Origem dos blocos.
+         */
+        private final DataInputStream input;
+
+        /**
+         * Descompressor dos blocos.
+         */
+        private final Inflater inflater = new Inflater();
+
+        /**
+         * Bytes do bloco atual.
+         */
+        private final byte[] block = new byte[BLOCK_SIZE];
+
+        /**
+         * Bytes do bloco atual comprimido.
+         */
+        private final byte[] compressed = new byte[BLOCK_SIZE];
+
+        /**
+         * Posição do próximo byte lido do bloco atual.
+         */
+        private int position;
+
+        /**
+         * Quantidade de bytes do bloco atual.
+         */
+        private int count;
+
+        /**
+         * Se {@link #inflater} foi encerrado.
+         * <p>
+         * Protegido pelo monitor de {@link #inflater}.
+         */
+        private boolean ended;
+
+        /**
+         * Constrói uma origem.
+         *
+         * @param input a origem dos blocos.
+         */
+        InflatingInputStream(final InputStream input) {
+            this.input = new DataInputStream(new BufferedInputStream(input, 8 + BLOCK_SIZE));
+        }
+
+        /**
+         * Lê o próximo bloco, caso o atual tenha sido consumido.
+         *
+         * @return se há bytes a serem lidos, ou false caso a conexão tenha sido encerrada.
+         * @throws IOException caso ocorra um erro de leitura ou o bloco seja inválido.
+         */
+        private boolean fill() throws IOException {
+            if (position < count) {
+                return true;
+            }
+            final int first = input.read();
+            if (first < 0) {
+                return false;
+            }
+            final int length = (first << 24) | (input.readUnsignedByte() << 16) | input.readUnsignedShort();
+            final int size = input.readInt();
+            if (length <= 0 || length > BLOCK_SIZE || size <= 0 || size > length) {
+                throw new IOException("bloco inválido: " + length + "/" + size);
+            }
+
+            if (size == length) {
+                input.readFully(block, 0, length);
+            } else {
+                input.readFully(compressed, 0, size);
+                // A conexão pode ser fechada por outra thread enquanto esse bloco é descomprimido
+                synchronized (inflater) {
+                    if (ended) {
+                        throw new IOException("conexão encerrada.");
+                    }
+                    inflater.reset();
+                    inflater.setInput(compressed, 0, size);
+                    int inflated = 0;
+                    try {
+                        while (inflated < length && !inflater.finished()) {
+                            final int n = inflater.inflate(block, inflated, length - inflated);
+                            if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                                break;
+                            }
+                            inflated += n;
+                        }
+                    } catch (DataFormatException e) {
+                        throw new IOException("bloco inválido.", e);
+                    }
+                    if (inflated != length || !inflater.finished()) {
+                        throw new EOFException("bloco comprimido incompleto.");
+                    }
+                }
+            }
+            position = 0;
+            count = length;
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? block[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            final int n = Math.min(len, count - position);
+            System.arraycopy(block, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return count - position;
+        }
+
+        /**
+         * Encerra o descompressor dessa origem, após o qual nenhum bloco pode ser descomprimido.
+         */
+        void end() {
+            synchronized (inflater) {
+                if (!ended) {
+                    ended = true;
+                    inflater.end();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                input.close();
+            } finally {
+                end();
+            }
+        }
+    }
+}
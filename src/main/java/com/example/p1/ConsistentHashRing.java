@@ -0,0 +1,88 @@
+package com.example.p1;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Representa um anel de <i>hash</i> consistente que distribui e-mails entre fragmentos.
+ * <p>
+ * Cada fragmento ocupa {@link #VIRTUAL_NODES} posições pseudoaleatórias do anel, e um e-mail pertence ao fragmento da
+ * primeira posição igual ou posterior ao seu <i>hash</i>. Assim, as faixas de cada fragmento são equilibradas e, ao
+ * adicionar um fragmento, apenas cerca de <code>1 / n</code> dos e-mails mudam de dono.
+ * <p>
+ * O <i>hash</i> depende apenas dos bytes do e-mail, de forma que todos os clientes, em qualquer JVM, constroem o mesmo
+ * anel a partir da mesma quantidade de fragmentos.
+ */
+final class ConsistentHashRing {
+    /**
+     * Quantidade de posições de cada fragmento no anel.
+     */
+    static final int VIRTUAL_NODES = 512;
+
+    /**
+     * Posições do anel, em ordem crescente.
+     */
+    private final long[] positions;
+
+    /**
+     * Fragmento dono de cada posição de {@link #positions}.
+     */
+    private final int[] owners;
+
+    /**
+     * Constrói um anel.
+     *
+     * @param shards a quantidade de fragmentos, devendo ser positiva.
+     */
+    ConsistentHashRing(final int shards) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("a quantidade de fragmentos deve ser positiva: " + shards);
+        }
+
+        final long[][] nodes = new long[shards * VIRTUAL_NODES][];
+        for (int shard = 0; shard < shards; shard++) {
+            for (int node = 0; node < VIRTUAL_NODES; node++) {
+                nodes[shard * VIRTUAL_NODES + node] = new long[]{hash("fragmento-" + shard + "#" + node), shard};
+            }
+        }
+        Arrays.sort(nodes, (a, b) -> Long.compare(a[0], b[0]));
+
+        this.positions = new long[nodes.length];
+        this.owners = new int[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            positions[i] = nodes[i][0];
+            owners[i] = (int) nodes[i][1];
+        }
+    }
+
+    /**
+     * Calcula o <i>hash</i> de 64 bits de uma cadeia de caracteres.
+     * <p>
+     * Utiliza FNV-1a sobre os bytes UTF-8 da cadeia, seguido do finalizador do SplitMix64 para espalhar os bits.
+     *
+     * @param value a cadeia.
+     * @return o <i>hash</i> da cadeia.
+     */
+    static long hash(final String value) {
+        long h = 0xCBF29CE484222325L;
+        for (final byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001B3L;
+        }
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    /**
+     * Encontra o fragmento dono de um e-mail.
+     *
+     * @param email o e-mail normalizado.
+     * @return o índice do fragmento, entre 0 e a quantidade de fragmentos menos 1.
+     */
+    int shardOf(final String email) {
+        final int index = Arrays.binarySearch(positions, hash(email));
+        final int position = index >= 0 ? index : -index - 1;
+        return owners[position == positions.length ? 0 : position];
+    }
+}
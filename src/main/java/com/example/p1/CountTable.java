@@ -0,0 +1,103 @@
+package com.example.p1;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Representa uma tabela de contagens mantida incrementalmente por uma {@link UserDatabase}, como a quantidade de
+ * usuários de cada formação acadêmica.
+ * <p>
+ * As contagens são indexadas pelo código de um valor normalizado de um {@link StringDictionary}, de forma que valores
+ * que diferem apenas em letras maiúsculas e minúsculas são contados juntos, e são exibidas com a grafia do primeiro
+ * valor contado. Como a tabela é atualizada a cada escrita, lê-la custa apenas o tamanho do resultado, e não o da base.
+ * <p>
+ * Essa tabela pode ser atualizada e lida concorrentemente; uma leitura simultânea a escritas pode refletir apenas
+ * parte delas.
+ */
+final class CountTable {
+    /**
+     * Contagens dessa tabela, indexadas pelo código do valor normalizado.
+     */
+    private final ConcurrentMap<Integer, Count> counts = new ConcurrentHashMap<>();
+
+    /**
+     * Altera a contagem de um valor.
+     *
+     * @param key   o código do valor normalizado.
+     * @param label o código do valor como deve ser exibido, utilizado caso o valor ainda não tenha sido contado.
+     * @param delta a variação da contagem.
+     */
+    void add(final int key, final int label, final long delta) {
+        counts.computeIfAbsent(key, k -> new Count(label)).value.add(delta);
+    }
+
+    /**
+     * Lê as maiores contagens dessa tabela.
+     * <p>
+     * Valores cuja contagem voltou a 0 são omitidos.
+     *
+     * @param limit      a quantidade máxima de contagens lidas.
+     * @param dictionary o dicionário que codificou os valores.
+     * @return as contagens, indexadas pelo valor, da maior para a menor.
+     */
+    Map<String, Long> top(final int limit, final StringDictionary dictionary) {
+        final Comparator<Map.Entry<String, Long>> order = Map.Entry.<String, Long>comparingByValue()
+            .thenComparing(Map.Entry.<String, Long>comparingByKey().reversed());
+
+        // O menor elemento do heap é a menor das maiores contagens lidas até o momento
+        final PriorityQueue<Map.Entry<String, Long>> best = new PriorityQueue<>(order);
+        for (final Count count : counts.values()) {
+            final long value = count.value.sum();
+            if (value <= 0) {
+                continue;
+            }
+            final Map.Entry<String, Long> entry = Map.entry(dictionary.decode(count.label), value);
+            if (best.size() < limit) {
+                best.add(entry);
+            } else if (order.compare(entry, best.peek()) > 0) {
+                best.poll();
+                best.add(entry);
+            }
+        }
+
+        final List<Map.Entry<String, Long>> entries = new ArrayList<>(best);
+        entries.sort(Collections.reverseOrder(order));
+        final Map<String, Long> result = new LinkedHashMap<>();
+        for (final Map.Entry<String, Long> entry : entries) {
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Representa a contagem de um valor.
+     */
+    private static final class Count {
+        /**
+         * Código do valor como deve ser exibido.
+         */
+        final int label;
+
+        /**
+         * Contagem do valor.
+         */
+        final LongAdder value = new LongAdder();
+
+        /**
+         * Constrói uma contagem zerada.
+         *
+         * @param label o código do valor como deve ser exibido.
+         */
+        Count(final int label) {
+            this.label = label;
+        }
+    }
+}
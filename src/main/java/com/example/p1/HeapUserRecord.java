@@ -0,0 +1,117 @@
+package com.example.p1;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Representa um {@link UserRecord} cujos campos são objetos do <i>heap</i>.
+ * <p>
+ * As habilidades e experiências são vetores em vez de listas encadeadas. Os vetores são substituídos a cada
+ * atualização, de forma que podem ser lidos sem sincronização.
+ */
+final class HeapUserRecord extends UserRecord {
+    /**
+     * Vetor vazio compartilhado por registros sem experiências.
+     */
+    private static final String[] NO_EXPERIENCES = new String[0];
+
+    /**
+     * E-mail do usuário.
+     */
+    private final String email;
+
+    /**
+     * Nome do usuário.
+     */
+    private final String name;
+
+    /**
+     * Identificador da foto de perfil do usuário ou null caso ele não possua foto.
+     */
+    private final String pictureId;
+
+    /**
+     * Tamanho, em bytes, da foto de perfil do usuário.
+     */
+    private final int pictureSize;
+
+    /**
+     * Códigos das habilidades do usuário.
+     */
+    private volatile int[] abilities;
+
+    /**
+     * Experiências profissionais do usuário.
+     */
+    private volatile String[] experiences;
+
+    /**
+     * Constrói um registro a partir de um usuário.
+     *
+     * @param user       o usuário.
+     * @param dictionary o dicionário que codifica os campos repetíveis.
+     */
+    HeapUserRecord(final User user, final StringDictionary dictionary) {
+        super(user, dictionary);
+        this.email = user.email;
+        this.name = user.name;
+        this.pictureId = user.pictureId;
+        this.pictureSize = user.pictureSize;
+
+        final List<String> abilities = user.getAbilities();
+        final int[] codes = new int[abilities.size()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = dictionary.encode(abilities.get(i));
+        }
+        this.abilities = codes;
+
+        final List<String> experiences = user.getExperiences();
+        this.experiences = experiences.isEmpty() ? NO_EXPERIENCES : experiences.toArray(new String[0]);
+    }
+
+    @Override
+    String email() {
+        return email;
+    }
+
+    @Override
+    void assign(final UserRecord other) {
+        final HeapUserRecord record = (HeapUserRecord) other;
+        this.abilities = record.abilities;
+        this.experiences = record.experiences;
+    }
+
+    @Override
+    int[] abilities() {
+        return abilities;
+    }
+
+    @Override
+    void addAbility(final int ability) {
+        final int[] current = abilities;
+        final int[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = ability;
+        abilities = updated;
+    }
+
+    @Override
+    void addExperience(final String experience) {
+        final String[] current = experiences;
+        final String[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = experience;
+        experiences = updated;
+    }
+
+    @Override
+    List<String> texts(final StringDictionary dictionary) {
+        final List<String> texts = decodeAbilities(dictionary);
+        texts.addAll(Arrays.asList(experiences));
+        return texts;
+    }
+
+    @Override
+    User toUser(final StringDictionary dictionary) {
+        return new User(email, name, pictureId, pictureSize, null, dictionary.decode(address),
+            dictionary.decode(formation), decodeAbilities(dictionary), Arrays.asList(experiences));
+    }
+}
@@ -0,0 +1,537 @@
+package com.example.p1;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.util.*;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Representa uma ferramenta não interativa que importa perfis de um arquivo para o servidor.
+ * <p>
+ * São aceitos arquivos CSV (extensão <code>.csv</code>) e JSON Lines (extensão <code>.jsonl</code>). Ambos possuem
+ * os campos <code>email</code>, <code>name</code>, <code>address</code>, <code>formation</code>, <code>picture</code>
+ * (caminho opcional da foto de perfil, relativo ao arquivo importado), <code>abilities</code> e
+ * <code>experiences</code>. No CSV, a primeira linha pode nomear as colunas, e as habilidades e experiências são
+ * separadas por ponto e vírgula; no JSON Lines, elas são vetores de cadeias de caracteres.
+ * <p>
+ * O arquivo é lido à medida que os perfis são enviados, em lotes por {@link UserCollection#createAll(List)}, por
+ * meio de uma {@link AsyncUserCollection}. A quantidade de lotes em trânsito é limitada, de forma que a leitura do
+ * arquivo aguarda o servidor quando ele não acompanha o ritmo, e a memória utilizada independe do tamanho do arquivo.
+ */
+public class Importer {
+    /**
+     * Quantidade padrão de perfis enviados por lote.
+     */
+    private static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * Quantidade padrão de lotes enviados simultaneamente.
+     */
+    private static final int DEFAULT_CONCURRENCY = 4;
+
+    /**
+     * Quantidade de linhas entre dois relatórios de progresso.
+     */
+    private static final long PROGRESS_INTERVAL = 100_000;
+
+    /**
+     * Nomes dos campos de um perfil, na ordem padrão das colunas de um arquivo CSV sem cabeçalho.
+     */
+    private static final List<String> FIELDS = List.of(
+        "email", "name", "address", "formation", "picture", "abilities", "experiences");
+
+    /**
+     * Construtor privado.
+     * <p>
+     * Impede que seja instanciado.
+     */
+    private Importer() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Uso: java com.example.p1.Importer host arquivo [tamanho do lote] [lotes simultâneos] "
+                + "[fragmentos]");
+            return;
+        }
+        final String hostname = args[0];
+        final Path path = Paths.get(args[1]);
+
+        final int batchSize;
+        final int concurrency;
+        final int shards;
+        try {
+            batchSize = args.length >= 3 ? Integer.parseInt(args[2]) : DEFAULT_BATCH_SIZE;
+            concurrency = args.length >= 4 ? Integer.parseInt(args[3]) : DEFAULT_CONCURRENCY;
+            shards = args.length >= 5 ? Integer.parseInt(args[4]) : 0;
+            if (batchSize <= 0 || concurrency <= 0 || shards < 0) {
+                throw new IllegalArgumentException("o tamanho do lote e a quantidade de lotes simultâneos devem ser "
+                    + "positivos, e a quantidade de fragmentos não negativa.");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Opção inválida: " + e.getMessage());
+            return;
+        }
+
+        final UserCollection collection;
+        try {
+            collection = ShardedUserCollection.connect(hostname, shards);
+        } catch (RemoteException | NotBoundException e) {
+            System.out.println("Erro remoto.");
+            e.printStackTrace();
+            return;
+        }
+
+        final String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        final Path base = path.toAbsolutePath().getParent();
+        final Statistics statistics = new Statistics();
+        final long start = System.nanoTime();
+
+        // Cada lote aguarda uma thread livre, de forma que apenas os lotes em trânsito ficam pendentes
+        try (final AsyncUserCollection async = new AsyncUserCollection(collection, concurrency, concurrency, 0);
+             final BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            final ProfileReader profiles;
+            if (name.endsWith(".csv")) {
+                profiles = new CsvProfileReader(reader);
+            } else if (name.endsWith(".jsonl")) {
+                profiles = new JsonProfileReader(reader);
+            } else {
+                System.out.println("Formato de arquivo não suportado: " + path);
+                return;
+            }
+
+            read(profiles, base, batchSize, batch -> submit(async, batch, statistics), statistics, start);
+        } catch (IOException e) {
+            System.out.println("Não foi possível ler o arquivo.");
+            e.printStackTrace();
+        }
+
+        report(statistics, start);
+    }
+
+    /**
+     * Lê todos os perfis de um arquivo, agrupando-os em lotes.
+     * <p>
+     * Os perfis mal formatados são contados como inválidos e descartados, sem interromper a leitura.
+     *
+     * @param profiles   o leitor dos perfis.
+     * @param base       o diretório a partir do qual os caminhos das fotos são resolvidos.
+     * @param batchSize  a quantidade de perfis por lote.
+     * @param sink       o destino de cada lote completo e do último lote, caso não esteja vazio.
+     * @param statistics as estatísticas da importação.
+     * @param start      o instante, em nanossegundos, do início da importação.
+     * @throws IOException caso ocorra um erro de leitura.
+     */
+    static void read(final ProfileReader profiles, final Path base, final int batchSize,
+                     final Consumer<List<User>> sink, final Statistics statistics, final long start) throws IOException {
+        List<User> batch = new ArrayList<>(batchSize);
+        for (; ; ) {
+            final Map<String, Object> fields;
+            try {
+                fields = profiles.next();
+            } catch (IllegalArgumentException e) {
+                statistics.rows.incrementAndGet();
+                statistics.invalid.incrementAndGet();
+                System.err.println("Linha " + profiles.line() + ": " + e.getMessage());
+                continue;
+            }
+            if (fields == null) {
+                break;
+            }
+
+            final long rows = statistics.rows.incrementAndGet();
+            try {
+                batch.add(buildUser(fields, base));
+            } catch (IllegalArgumentException | IllegalStateException | ClassCastException | IOException e) {
+                statistics.invalid.incrementAndGet();
+                System.err.println("Linha " + profiles.line() + ": " + e.getMessage());
+            }
+            if (batch.size() == batchSize) {
+                sink.accept(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+            if (rows % PROGRESS_INTERVAL == 0) {
+                report(statistics, start);
+            }
+        }
+        if (!batch.isEmpty()) {
+            sink.accept(batch);
+        }
+    }
+
+    /**
+     * Envia um lote de perfis ao servidor, aguardando caso o limite de lotes em trânsito tenha sido atingido.
+     *
+     * @param async      a coleção para onde o lote será enviado.
+     * @param batch      o lote a ser enviado.
+     * @param statistics as estatísticas da importação.
+     */
+    private static void submit(final AsyncUserCollection async, final List<User> batch, final Statistics statistics) {
+        async.createAll(batch).whenComplete((results, error) -> {
+            if (error == null) {
+                for (final boolean created : results) {
+                    (created ? statistics.created : statistics.duplicated).incrementAndGet();
+                }
+                return;
+            }
+            statistics.failed.addAndGet(batch.size());
+            System.out.println("Erro remoto.");
+            (error instanceof CompletionException ? error.getCause() : error).printStackTrace();
+        });
+    }
+
+    /**
+     * Constrói um perfil a partir dos campos lidos do arquivo.
+     *
+     * @param fields os campos do perfil.
+     * @param base   o diretório a partir do qual os caminhos das fotos são resolvidos.
+     * @return o perfil construído.
+     * @throws IOException caso a foto não possa ser lida.
+     */
+    @SuppressWarnings("unchecked")
+    private static User buildUser(final Map<String, Object> fields, final Path base) throws IOException {
+        final User.Builder builder = new User.Builder()
+            .setEmail((String) fields.get("email"))
+            .setName((String) fields.get("name"))
+            .setAddress((String) fields.get("address"))
+            .setFormation((String) fields.get("formation"));
+
+        final String picture = (String) fields.get("picture");
+        if (picture != null && !picture.isEmpty()) {
+            builder.setPictureData(Files.readAllBytes(base.resolve(picture)));
+        }
+        if (fields.get("abilities") != null) {
+            builder.setAbilities((List<String>) fields.get("abilities"));
+        }
+        if (fields.get("experiences") != null) {
+            builder.setExperience((List<String>) fields.get("experiences"));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Mostra o progresso da importação na tela.
+     *
+     * @param statistics as estatísticas da importação.
+     * @param start      o instante, em nanossegundos, do início da importação.
+     */
+    private static void report(final Statistics statistics, final long start) {
+        final double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Linhas: %d | Adicionados: %d | Duplicados: %d | Inválidos: %d | Falhas: %d | %.1f s | %.0f linhas/s%n",
+            statistics.rows.get(), statistics.created.get(), statistics.duplicated.get(), statistics.invalid.get(),
+            statistics.failed.get(), seconds, statistics.rows.get() / Math.max(seconds, 1e-9));
+    }
+
+    /**
+     * Representa as estatísticas de uma importação.
+     */
+    static final class Statistics {
+        final AtomicLong rows = new AtomicLong();
+        final AtomicLong created = new AtomicLong();
+        final AtomicLong duplicated = new AtomicLong();
+        final AtomicLong invalid = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+    }
+
+    /**
+     * Representa um leitor de perfis de um arquivo.
+     */
+    interface ProfileReader {
+        /**
+         * Lê o próximo perfil do arquivo.
+         *
+         * @return os campos do perfil, onde habilidades e experiências são listas de cadeias de caracteres, ou null
+         * caso o arquivo tenha terminado.
+         * @throws IOException              caso ocorra um erro de leitura.
+         * @throws IllegalArgumentException caso o perfil esteja mal formatado.
+         */
+        Map<String, Object> next() throws IOException;
+
+        /**
+         * @return o número da última linha lida do arquivo.
+         */
+        long line();
+    }
+
+    /**
+     * Leitor de perfis de um arquivo CSV.
+     */
+    static final class CsvProfileReader implements ProfileReader {
+        private final BufferedReader reader;
+        private List<String> columns = FIELDS;
+        private long line;
+        private boolean first = true;
+
+        CsvProfileReader(final BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public Map<String, Object> next() throws IOException {
+            List<String> record = readRecord();
+            if (first && record != null) {
+                // A primeira linha é um cabeçalho caso todas as suas colunas nomeiem campos, inclusive o e-mail
+                final List<String> header = new ArrayList<>();
+                for (final String column : record) {
+                    header.add(column.strip().toLowerCase(Locale.ROOT));
+                }
+                if (header.contains("email") && FIELDS.containsAll(header)) {
+                    columns = header;
+                    record = readRecord();
+                }
+            }
+            first = false;
+            if (record == null) {
+                return null;
+            }
+            if (record.size() > columns.size()) {
+                throw new IllegalArgumentException("quantidade de colunas inválida: " + record.size());
+            }
+
+            final Map<String, Object> fields = new HashMap<>();
+            for (int i = 0; i < record.size(); i++) {
+                final String column = columns.get(i);
+                final String value = record.get(i).strip();
+                if (column.equals("abilities") || column.equals("experiences")) {
+                    final List<String> values = new ArrayList<>();
+                    for (final String item : value.split(";")) {
+                        if (!item.isBlank()) {
+                            values.add(item.strip());
+                        }
+                    }
+                    fields.put(column, values);
+                } else {
+                    fields.put(column, value);
+                }
+            }
+            return fields;
+        }
+
+        @Override
+        public long line() {
+            return line;
+        }
+
+        /**
+         * Lê o próximo registro do arquivo, que pode ocupar várias linhas caso possua campos entre aspas.
+         *
+         * @return os campos do registro ou null caso o arquivo tenha terminado.
+         * @throws IOException caso ocorra um erro de leitura.
+         */
+        private List<String> readRecord() throws IOException {
+            final List<String> record = new ArrayList<>();
+            final StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean empty = true;
+            for (; ; ) {
+                final int c = reader.read();
+                if (c == -1) {
+                    if (quoted) {
+                        throw new IllegalArgumentException("aspas não fechadas.");
+                    }
+                    if (empty) {
+                        return null;
+                    }
+                    record.add(field.toString());
+                    return record;
+                }
+                empty = false;
+
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            field.append('"');
+                        } else {
+                            reader.reset();
+                            quoted = false;
+                        }
+                    } else {
+                        if (c == '\n') {
+                            line++;
+                        }
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    record.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    line++;
+                    if (record.isEmpty() && field.length() == 0) {
+                        // Linhas em branco são ignoradas
+                        empty = true;
+                        continue;
+                    }
+                    record.add(field.toString());
+                    return record;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+            }
+        }
+    }
+
+    /**
+     * Leitor de perfis de um arquivo JSON Lines, onde cada linha é um objeto cujos valores são cadeias de caracteres
+     * ou vetores de cadeias de caracteres.
+     */
+    static final class JsonProfileReader implements ProfileReader {
+        private final BufferedReader reader;
+        private long line;
+        private String text;
+        private int position;
+
+        JsonProfileReader(final BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public Map<String, Object> next() throws IOException {
+            do {
+                text = reader.readLine();
+                if (text == null) {
+                    return null;
+                }
+                line++;
+            } while (text.isBlank());
+            position = 0;
+
+            final Map<String, Object> fields = new HashMap<>();
+            expect('{');
+            if (peek() != '}') {
+                do {
+                    final String key = readString();
+                    expect(':');
+                    if (peek() == '[') {
+                        position++;
+                        final List<String> values = new ArrayList<>();
+                        if (peek() != ']') {
+                            do {
+                                values.add(readString());
+                            } while (accept(','));
+                        }
+                        expect(']');
+                        fields.put(key, values);
+                    } else if (peek() == 'n' && text.startsWith("null", position)) {
+                        position += "null".length();
+                    } else {
+                        fields.put(key, readString());
+                    }
+                } while (accept(','));
+            }
+            expect('}');
+            if (peek() != 0) {
+                throw new IllegalArgumentException("conteúdo inesperado após o objeto.");
+            }
+            return fields;
+        }
+
+        @Override
+        public long line() {
+            return line;
+        }
+
+        /**
+         * @return o próximo caractere diferente de espaço da linha, sem consumi-lo, ou zero caso a linha tenha terminado.
+         */
+        private char peek() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+            return position < text.length() ? text.charAt(position) : 0;
+        }
+
+        /**
+         * Consome um caractere caso ele seja o próximo da linha.
+         *
+         * @param c o caractere esperado.
+         * @return se o caractere foi consumido.
+         */
+        private boolean accept(final char c) {
+            if (peek() == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Consome um caractere obrigatório.
+         *
+         * @param c o caractere esperado.
+         */
+        private void expect(final char c) {
+            if (!accept(c)) {
+                throw new IllegalArgumentException("esperado '" + c + "' na coluna " + (position + 1) + ".");
+            }
+        }
+
+        /**
+         * Consome uma cadeia de caracteres entre aspas.
+         *
+         * @return a cadeia consumida, sem as aspas e com os escapes resolvidos.
+         */
+        private String readString() {
+            expect('"');
+            final StringBuilder builder = new StringBuilder();
+            while (position < text.length()) {
+                final char c = text.charAt(position++);
+                if (c == '"') {
+                    return builder.toString();
+                }
+                if (c != '\\') {
+                    builder.append(c);
+                    continue;
+                }
+                if (position >= text.length()) {
+                    break;
+                }
+                final char escaped = text.charAt(position++);
+                switch (escaped) {
+                    case 'n':
+                        builder.append('\n');
+                        break;
+                    case 't':
+                        builder.append('\t');
+                        break;
+                    case 'r':
+                        builder.append('\r');
+                        break;
+                    case 'b':
+                        builder.append('\b');
+                        break;
+                    case 'f':
+                        builder.append('\f');
+                        break;
+                    case 'u':
+                        if (position + 4 > text.length()) {
+                            throw new IllegalArgumentException("escape unicode incompleto.");
+                        }
+                        char code = 0;
+                        for (final int end = position + 4; position < end; position++) {
+                            final int digit = Character.digit(text.charAt(position), 16);
+                            if (digit < 0) {
+                                throw new IllegalArgumentException("escape unicode inválido.");
+                            }
+                            code = (char) (code << 4 | digit);
+                        }
+                        builder.append(code);
+                        break;
+                    default:
+                        builder.append(escaped);
+                }
+            }
+            throw new IllegalArgumentException("cadeia de caracteres não fechada.");
+        }
+    }
+}
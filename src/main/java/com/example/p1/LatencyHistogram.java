@@ -0,0 +1,101 @@
+package com.example.p1;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Representa um histograma de latências em nanossegundos.
+ * <p>
+ * Os valores são agrupados em faixas log-lineares: cada potência de dois é dividida em {@link #SUB_BUCKETS} faixas
+ * de mesmo tamanho, o que limita o erro relativo de um percentil a cerca de 6%. Registrar um valor é apenas um
+ * incremento atômico em um vetor de tamanho fixo, sem alocação nem travas, de forma que o histograma pode ser
+ * atualizado por várias <i>threads</i> no caminho crítico de uma chamada.
+ */
+final class LatencyHistogram {
+    /**
+     * Quantidade de bits que definem a faixa de um valor dentro da sua potência de dois.
+     */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /**
+     * Quantidade de faixas em cada potência de dois.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Quantidade de valores registrados em cada faixa.
+     * <p>
+     * O bit mais significativo de um valor não negativo é no máximo o bit 62, de forma que a última faixa possível
+     * é a de índice <code>(62 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + SUB_BUCKETS - 1</code>.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray((63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+
+    /**
+     * Registra um valor.
+     *
+     * @param nanos o valor, em nanossegundos. Valores negativos são registrados como zero.
+     */
+    void record(final long nanos) {
+        counts.incrementAndGet(indexOf(Math.max(nanos, 0)));
+    }
+
+    /**
+     * Calcula percentis dos valores registrados.
+     * <p>
+     * O cálculo não é atômico em relação a registros concorrentes, o que é aceitável para fins de monitoramento.
+     *
+     * @param percentiles os percentis desejados, entre 0 e 1, em ordem crescente.
+     * @return o valor aproximado de cada percentil, em nanossegundos, ou zeros caso nenhum valor tenha sido registrado.
+     */
+    long[] percentiles(final double... percentiles) {
+        final long[] snapshot = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+
+        final long[] result = new long[percentiles.length];
+        if (total == 0) {
+            return result;
+        }
+
+        long seen = 0;
+        int p = 0;
+        for (int i = 0; i < snapshot.length && p < percentiles.length; i++) {
+            seen += snapshot[i];
+            while (p < percentiles.length && seen >= Math.ceil(percentiles[p] * total) && seen > 0) {
+                result[p++] = valueOf(i);
+            }
+        }
+        while (p < percentiles.length) {
+            result[p++] = valueOf(snapshot.length - 1);
+        }
+        return result;
+    }
+
+    /**
+     * @param value um valor não negativo.
+     * @return a faixa do valor.
+     */
+    private static int indexOf(final long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int shift = exponent - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * @param index uma faixa.
+     * @return o valor central da faixa.
+     */
+    private static long valueOf(final int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKETS - 1;
+        final long lower = ((long) (SUB_BUCKETS + index % SUB_BUCKETS)) << shift;
+        return lower + ((1L << shift) >> 1);
+    }
+}
@@ -0,0 +1,600 @@
+package com.example.p1;
+
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Representa uma ferramenta não interativa que gera carga sobre o servidor.
+ * <p>
+ * Vários trabalhadores executam simultaneamente uma mistura configurável de operações de adição, leitura paginada,
+ * atualização e busca por e-mail. Os usuários afetados são escolhidos entre um conjunto fixo de chaves, cadastradas
+ * antes da medição, com distribuição uniforme ou Zipf.
+ * <p>
+ * Caso uma taxa alvo seja informada, as operações são agendadas em intervalos regulares e a latência de cada uma é
+ * medida a partir do instante em que ela deveria ter começado, e não de quando de fato começou. Assim, quando o
+ * servidor satura, o tempo de espera das operações atrasadas aparece nos percentis em vez de ser omitido.
+ */
+public class LoadGenerator {
+    /**
+     * Quantidade padrão de trabalhadores.
+     */
+    private static final int DEFAULT_WORKERS = 16;
+
+    /**
+     * Duração padrão da medição, em segundos.
+     */
+    private static final long DEFAULT_DURATION_SECONDS = 30;
+
+    /**
+     * Quantidade padrão de chaves cadastradas antes da medição.
+     */
+    private static final int DEFAULT_KEYS = 10_000;
+
+    /**
+     * Mistura padrão de operações, com o peso de cada uma.
+     */
+    private static final String DEFAULT_MIX = "create:5,read:10,update:25,find:60";
+
+    /**
+     * Distribuição padrão das chaves.
+     */
+    private static final String DEFAULT_DISTRIBUTION = "uniform";
+
+    /**
+     * Quantidade de usuários lidos por uma operação de leitura.
+     */
+    private static final int PAGE_SIZE = 20;
+
+    /**
+     * Quantidade de perfis enviados por lote durante o cadastro das chaves.
+     */
+    private static final int PRELOAD_BATCH_SIZE = 500;
+
+    /**
+     * Intervalo, em segundos, entre dois relatórios de progresso.
+     */
+    private static final long PROGRESS_INTERVAL_SECONDS = 5;
+
+    /**
+     * Percentis mostrados no relatório final.
+     */
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999, 1};
+
+    /**
+     * Formações acadêmicas dos perfis gerados.
+     */
+    private static final String[] FORMATIONS = {
+        "Ciência da Computação", "Engenharia da Computação", "Sistemas de Informação", "Engenharia Elétrica",
+    };
+
+    /**
+     * Habilidades dos perfis gerados.
+     */
+    private static final String[] ABILITIES = {"Java", "Python", "C", "SQL", "Redes", "Linux", "Git", "Docker"};
+
+    /**
+     * Construtor privado.
+     * <p>
+     * Impede que seja instanciado.
+     */
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 1) {
+            System.out.println("Uso: java com.example.p1.LoadGenerator host [workers=N] [duration=segundos] "
+                + "[rate=operações/s] [keys=N] [mix=create:P,read:P,update:P,find:P] [distribution=uniform,zipf:θ] "
+                + "[shards=N] [replicas=N] [binary=porta]");
+            return;
+        }
+        final String hostname = args[0];
+
+        final int workers;
+        final long duration;
+        final double rate;
+        final int keys;
+        final Mix mix;
+        final KeyDistribution distribution;
+        final int shards;
+        final int replicas;
+        final int binaryPort;
+        try {
+            final Map<String, String> options = parseOptions(Arrays.copyOfRange(args, 1, args.length));
+            workers = Integer.parseInt(options.getOrDefault("workers", String.valueOf(DEFAULT_WORKERS)));
+            duration = Long.parseLong(options.getOrDefault("duration", String.valueOf(DEFAULT_DURATION_SECONDS)));
+            rate = Double.parseDouble(options.getOrDefault("rate", "0"));
+            keys = Integer.parseInt(options.getOrDefault("keys", String.valueOf(DEFAULT_KEYS)));
+            mix = Mix.parse(options.getOrDefault("mix", DEFAULT_MIX));
+            distribution = KeyDistribution.parse(options.getOrDefault("distribution", DEFAULT_DISTRIBUTION), keys);
+            shards = Integer.parseInt(options.getOrDefault("shards", "0"));
+            replicas = Integer.parseInt(options.getOrDefault("replicas", "0"));
+            binaryPort = Integer.parseInt(options.getOrDefault("binary", "-1"));
+            if (workers <= 0 || duration <= 0 || rate < 0) {
+                throw new IllegalArgumentException("trabalhadores e duração devem ser positivos, e a taxa não negativa.");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Opção inválida: " + e.getMessage());
+            return;
+        }
+
+        final UserCollection collection;
+        try {
+            collection = binaryPort >= 0
+                ? BinaryUserCollection.connect(hostname, binaryPort)
+                : ShardedUserCollection.connect(hostname, shards, replicas);
+        } catch (RemoteException | NotBoundException e) {
+            System.out.println("Erro remoto.");
+            e.printStackTrace();
+            return;
+        }
+
+        try {
+            preload(collection, keys);
+        } catch (RemoteException e) {
+            System.out.println("Erro remoto.");
+            e.printStackTrace();
+            return;
+        }
+
+        System.out.printf("Gerando carga com %d trabalhadores por %d s%s...%n", workers, duration,
+            rate > 0 ? String.format(Locale.ROOT, " a %.0f operações/s", rate) : "");
+
+        final Statistics statistics = new Statistics();
+        final long intervalNanos = rate > 0 ? (long) (workers * 1e9 / rate) : 0;
+        final long start = System.nanoTime();
+        final long deadline = start + TimeUnit.SECONDS.toNanos(duration);
+        final String run = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(workers);
+        for (int i = 0; i < workers; i++) {
+            // Os trabalhadores são defasados para que as operações agendadas não cheguem em rajadas
+            final long first = start + (intervalNanos * i) / workers;
+            executor.execute(() -> work(collection, mix, distribution, run, first, intervalNanos, deadline, statistics));
+        }
+        executor.shutdown();
+
+        long previous = 0;
+        while (!executor.awaitTermination(PROGRESS_INTERVAL_SECONDS, TimeUnit.SECONDS)) {
+            final long completed = statistics.completed();
+            System.out.printf("%.0f s | %d operações | %.0f operações/s%n", (System.nanoTime() - start) / 1e9,
+                completed, (completed - previous) / (double) PROGRESS_INTERVAL_SECONDS);
+            previous = completed;
+        }
+
+        report(statistics, (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Lê as opções da linha de comando, no formato <code>chave=valor</code>.
+     *
+     * @param args as opções.
+     * @return o valor de cada opção, indexado pela sua chave.
+     * @throws IllegalArgumentException caso alguma opção não esteja no formato esperado.
+     */
+    private static Map<String, String> parseOptions(final String[] args) {
+        final Map<String, String> options = new HashMap<>();
+        for (final String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException(arg);
+            }
+            options.put(arg.substring(0, separator).strip().toLowerCase(Locale.ROOT), arg.substring(separator + 1).strip());
+        }
+        return options;
+    }
+
+    /**
+     * Constrói um perfil gerado.
+     *
+     * @param email o e-mail do perfil.
+     * @param index um número que determina os demais campos do perfil.
+     * @return o perfil.
+     */
+    private static User buildUser(final String email, final long index) {
+        return new User.Builder()
+            .setEmail(email)
+            .setName("Usuário " + index)
+            .setAddress("Rua " + (index % 64) + ", Belém")
+            .setFormation(FORMATIONS[(int) (index % FORMATIONS.length)])
+            .setAbilities(List.of(ABILITIES[(int) (index % ABILITIES.length)]))
+            .build();
+    }
+
+    /**
+     * @param key o índice de uma chave.
+     * @return o e-mail do usuário correspondente a essa chave.
+     */
+    private static String keyEmail(final long key) {
+        return "carga" + key + "@example.com";
+    }
+
+    /**
+     * Cadastra os usuários correspondentes às chaves que ainda não se encontram no servidor.
+     *
+     * @param collection a coleção onde os usuários serão cadastrados.
+     * @param keys       a quantidade de chaves.
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    private static void preload(final UserCollection collection, final int keys) throws RemoteException {
+        long created = 0;
+        final List<User> batch = new ArrayList<>(PRELOAD_BATCH_SIZE);
+        for (int key = 0; key < keys; key++) {
+            batch.add(buildUser(keyEmail(key), key));
+            if (batch.size() == PRELOAD_BATCH_SIZE || key == keys - 1) {
+                for (final boolean result : collection.createAll(batch)) {
+                    created += result ? 1 : 0;
+                }
+                batch.clear();
+            }
+        }
+        System.out.printf("%d chaves, das quais %d foram cadastradas agora.%n", keys, created);
+    }
+
+    /**
+     * Executa as operações de um trabalhador até o fim da medição.
+     *
+     * @param collection    a coleção sobre a qual as operações são executadas.
+     * @param mix           a mistura de operações.
+     * @param distribution  a distribuição das chaves.
+     * @param run           um identificador dessa execução, que diferencia os usuários adicionados por ela.
+     * @param first         o instante, em nanossegundos, em que a primeira operação deve começar.
+     * @param intervalNanos o intervalo entre duas operações, ou 0 caso elas devam ser executadas sem pausa.
+     * @param deadline      o instante, em nanossegundos, do fim da medição.
+     * @param statistics    as estatísticas da medição.
+     */
+    private static void work(final UserCollection collection, final Mix mix, final KeyDistribution distribution,
+                             final String run, final long first, final long intervalNanos, final long deadline,
+                             final Statistics statistics) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        long scheduled = first;
+        for (; ; ) {
+            final long begin;
+            if (intervalNanos > 0) {
+                if (scheduled >= deadline) {
+                    return;
+                }
+                final long now = System.nanoTime();
+                if (scheduled > now) {
+                    LockSupport.parkNanos(scheduled - now);
+                }
+                begin = scheduled;
+                scheduled += intervalNanos;
+            } else {
+                begin = System.nanoTime();
+                if (begin >= deadline) {
+                    return;
+                }
+            }
+
+            final Operation operation = mix.next(random);
+            final long key = distribution.next(random);
+            boolean failed = false;
+            try {
+                switch (operation) {
+                    case CREATE: {
+                        final long index = statistics.created.getAndIncrement();
+                        collection.create(buildUser("carga-" + run + "-" + index + "@example.com", index));
+                        break;
+                    }
+                    case READ: {
+                        collection.read(keyEmail(key), PAGE_SIZE);
+                        break;
+                    }
+                    case UPDATE: {
+                        collection.update(keyEmail(key), UserCollection.UPDATE_KEY_ABILITY,
+                            ABILITIES[random.nextInt(ABILITIES.length)]);
+                        break;
+                    }
+                    case FIND: {
+                        collection.findByEmail(keyEmail(key));
+                        break;
+                    }
+                }
+            } catch (RemoteException | RuntimeException e) {
+                failed = true;
+                if (statistics.errorReported.compareAndSet(false, true)) {
+                    System.out.println("Erro remoto.");
+                    e.printStackTrace();
+                }
+            }
+            statistics.record(operation, System.nanoTime() - begin, failed);
+        }
+    }
+
+    /**
+     * Mostra o resultado da medição na tela.
+     *
+     * @param statistics as estatísticas da medição.
+     * @param seconds    a duração da medição, em segundos.
+     */
+    private static void report(final Statistics statistics, final double seconds) {
+        System.out.println();
+        System.out.printf("%-10s %10s %8s %10s %10s %10s %10s %10s %10s%n",
+            "Operação", "Chamadas", "Erros", "op/s", "p50 ms", "p90 ms", "p99 ms", "p99,9 ms", "máx ms");
+        for (final Operation operation : Operation.values()) {
+            final int i = operation.ordinal();
+            final long calls = statistics.calls[i].sum();
+            if (calls == 0) {
+                continue;
+            }
+            final long[] percentiles = statistics.latencies[i].percentiles(PERCENTILES);
+            System.out.printf("%-10s %10d %8d %10.0f %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+                operation.name().toLowerCase(Locale.ROOT), calls, statistics.errors[i].sum(), calls / seconds,
+                percentiles[0] / 1e6, percentiles[1] / 1e6, percentiles[2] / 1e6, percentiles[3] / 1e6,
+                percentiles[4] / 1e6);
+        }
+        System.out.printf("%nTotal: %d operações em %.1f s | %.0f operações/s%n",
+            statistics.completed(), seconds, statistics.completed() / seconds);
+    }
+
+    /**
+     * Representa uma operação executada pelos trabalhadores.
+     */
+    private enum Operation {
+        /**
+         * Adição de um novo usuário.
+         */
+        CREATE,
+
+        /**
+         * Leitura de uma página de usuários a partir de uma chave.
+         */
+        READ,
+
+        /**
+         * Adição de uma habilidade a uma chave.
+         */
+        UPDATE,
+
+        /**
+         * Busca de uma chave por e-mail.
+         */
+        FIND,
+    }
+
+    /**
+     * Representa uma mistura de operações, em que cada operação é escolhida com probabilidade proporcional ao seu peso.
+     */
+    private static final class Mix {
+        /**
+         * Soma acumulada dos pesos das operações, na ordem de {@link Operation#values()}.
+         */
+        private final int[] cumulative;
+
+        /**
+         * Constrói uma mistura.
+         *
+         * @param weights o peso de cada operação, na ordem de {@link Operation#values()}.
+         */
+        private Mix(final int[] weights) {
+            this.cumulative = new int[weights.length];
+            int sum = 0;
+            for (int i = 0; i < weights.length; i++) {
+                sum += weights[i];
+                cumulative[i] = sum;
+            }
+            if (sum <= 0) {
+                throw new IllegalArgumentException("a mistura deve possuir ao menos uma operação.");
+            }
+        }
+
+        /**
+         * Lê uma mistura no formato <code>operação:peso,operação:peso,...</code>.
+         * <p>
+         * Operações ausentes possuem peso 0.
+         *
+         * @param value a mistura.
+         * @return a mistura lida.
+         * @throws IllegalArgumentException caso a mistura não esteja no formato esperado.
+         */
+        static Mix parse(final String value) {
+            final int[] weights = new int[Operation.values().length];
+            for (final String entry : value.split(",")) {
+                final String[] parts = entry.split(":");
+                if (parts.length != 2) {
+                    throw new IllegalArgumentException(entry);
+                }
+                final int weight = Integer.parseInt(parts[1].strip());
+                if (weight < 0) {
+                    throw new IllegalArgumentException(entry);
+                }
+                weights[Operation.valueOf(parts[0].strip().toUpperCase(Locale.ROOT)).ordinal()] = weight;
+            }
+            return new Mix(weights);
+        }
+
+        /**
+         * @param random o gerador de números aleatórios.
+         * @return uma operação escolhida aleatoriamente.
+         */
+        Operation next(final ThreadLocalRandom random) {
+            final int value = random.nextInt(cumulative[cumulative.length - 1]);
+            int i = 0;
+            while (cumulative[i] <= value) {
+                i++;
+            }
+            return Operation.values()[i];
+        }
+    }
+
+    /**
+     * Representa a distribuição das chaves escolhidas pelos trabalhadores.
+     */
+    private interface KeyDistribution {
+        /**
+         * @param random o gerador de números aleatórios.
+         * @return o índice de uma chave, entre 0 e a quantidade de chaves menos 1.
+         */
+        long next(ThreadLocalRandom random);
+
+        /**
+         * Lê uma distribuição no formato <code>uniform</code> ou <code>zipf:θ</code>, com 0 &lt; θ &lt; 1.
+         *
+         * @param value a distribuição.
+         * @param keys  a quantidade de chaves.
+         * @return a distribuição lida.
+         * @throws IllegalArgumentException caso a distribuição não esteja no formato esperado.
+         */
+        static KeyDistribution parse(final String value, final int keys) {
+            if (keys <= 0) {
+                throw new IllegalArgumentException("a quantidade de chaves deve ser positiva.");
+            }
+            if ("uniform".equals(value)) {
+                return random -> random.nextInt(keys);
+            }
+            if (value.startsWith("zipf:")) {
+                return new ZipfDistribution(keys, Double.parseDouble(value.substring("zipf:".length())));
+            }
+            throw new IllegalArgumentException(value);
+        }
+    }
+
+    /**
+     * Representa uma distribuição Zipf das chaves, em que a chave de posição <code>i</code> no ranking é escolhida com
+     * probabilidade proporcional a <code>1 / i^θ</code>.
+     * <p>
+     * As amostras são geradas em tempo constante pelo método de Gray et al., "Quickly Generating Billion-Record
+     * Synthetic Databases", após um cálculo inicial proporcional à quantidade de chaves. As posições do ranking são
+     * embaralhadas, de forma que as chaves mais acessadas não sejam vizinhas na ordem dos e-mails.
+     */
+    private static final class ZipfDistribution implements KeyDistribution {
+        /**
+         * Quantidade de chaves.
+         */
+        private final int keys;
+
+        /**
+         * Expoente θ da distribuição.
+         */
+        private final double theta;
+
+        /**
+         * Soma de <code>1 / i^θ</code> para <code>i</code> de 1 até {@link #keys}.
+         */
+        private final double zeta;
+
+        /**
+         * Constante α do método de geração.
+         */
+        private final double alpha;
+
+        /**
+         * Constante η do método de geração.
+         */
+        private final double eta;
+
+        /**
+         * Chave de cada posição do ranking, uma permutação de todas as chaves.
+         * <p>
+         * Sem ela, as chaves mais acessadas seriam sempre as primeiras cadastradas.
+         */
+        private final int[] keyOfRank;
+
+        /**
+         * Constrói uma distribuição.
+         *
+         * @param keys  a quantidade de chaves.
+         * @param theta o expoente da distribuição, entre 0 e 1 exclusivos.
+         */
+        ZipfDistribution(final int keys, final double theta) {
+            if (!(theta > 0 && theta < 1)) {
+                throw new IllegalArgumentException("o expoente da distribuição Zipf deve estar entre 0 e 1: " + theta);
+            }
+            this.keys = keys;
+            this.theta = theta;
+
+            double zeta = 0;
+            for (int i = 1; i <= keys; i++) {
+                zeta += 1 / Math.pow(i, theta);
+            }
+            this.zeta = zeta;
+            this.alpha = 1 / (1 - theta);
+            final double zeta2 = 1 + 1 / Math.pow(2, theta);
+            this.eta = (1 - Math.pow(2.0 / keys, 1 - theta)) / (1 - zeta2 / zeta);
+
+            // A semente fixa mantém as mesmas chaves mais acessadas entre execuções, que podem então ser comparadas
+            final Random shuffler = new Random(keys);
+            this.keyOfRank = new int[keys];
+            for (int i = 0; i < keys; i++) {
+                final int j = shuffler.nextInt(i + 1);
+                keyOfRank[i] = keyOfRank[j];
+                keyOfRank[j] = i;
+            }
+        }
+
+        @Override
+        public long next(final ThreadLocalRandom random) {
+            final double u = random.nextDouble();
+            final double uz = u * zeta;
+            final int rank;
+            if (uz < 1) {
+                rank = 0;
+            } else if (uz < 1 + Math.pow(0.5, theta)) {
+                rank = 1;
+            } else {
+                rank = (int) Math.min((long) (keys * Math.pow(eta * u - eta + 1, alpha)), keys - 1);
+            }
+            return keyOfRank[rank];
+        }
+    }
+
+    /**
+     * Representa as estatísticas de uma medição.
+     */
+    private static final class Statistics {
+        final LongAdder[] calls = new LongAdder[Operation.values().length];
+        final LongAdder[] errors = new LongAdder[Operation.values().length];
+        final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+        final AtomicLong created = new AtomicLong();
+        final AtomicBoolean errorReported = new AtomicBoolean();
+
+        Statistics() {
+            for (int i = 0; i < calls.length; i++) {
+                calls[i] = new LongAdder();
+                errors[i] = new LongAdder();
+                latencies[i] = new LatencyHistogram();
+            }
+        }
+
+        /**
+         * Registra uma operação executada.
+         *
+         * @param operation a operação.
+         * @param nanos     a latência da operação, em nanossegundos.
+         * @param failed    se a operação lançou uma exceção.
+         */
+        void record(final Operation operation, final long nanos, final boolean failed) {
+            calls[operation.ordinal()].increment();
+            if (failed) {
+                errors[operation.ordinal()].increment();
+            }
+            latencies[operation.ordinal()].record(nanos);
+        }
+
+        /**
+         * @return a quantidade de operações executadas até o momento.
+         */
+        long completed() {
+            long completed = 0;
+            for (final LongAdder adder : calls) {
+                completed += adder.sum();
+            }
+            return completed;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.p1;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Acumula as métricas de execução de um método de uma {@link UserCollection}.
+ * <p>
+ * Os contadores são {@link LongAdder}s e a latência é um {@link LatencyHistogram}, de forma que registrar uma chamada
+ * não adquire travas nem causa disputa entre <i>threads</i> que chamam o mesmo método.
+ */
+public final class MethodMetrics implements MethodMetricsMBean {
+    /**
+     * Quantidade de chamadas ao método.
+     */
+    private final LongAdder calls = new LongAdder();
+
+    /**
+     * Quantidade de chamadas ao método que lançaram uma exceção.
+     */
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Quantidade total de itens transferidos pelo método.
+     */
+    private final LongAdder payload = new LongAdder();
+
+    /**
+     * Histograma da latência do método.
+     */
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * Registra uma chamada ao método.
+     *
+     * @param nanos  a duração da chamada, em nanossegundos.
+     * @param items  a quantidade de itens transferidos pela chamada.
+     * @param failed se a chamada lançou uma exceção.
+     */
+    void record(final long nanos, final long items, final boolean failed) {
+        calls.increment();
+        if (failed) {
+            errors.increment();
+        }
+        if (items > 0) {
+            payload.add(items);
+        }
+        latency.record(nanos);
+    }
+
+    /**
+     * @return as estatísticas acumuladas até o momento.
+     */
+    MethodStats snapshot() {
+        final long[] percentiles = latency.percentiles(0.5, 0.99, 0.999);
+        return new MethodStats(calls.sum(), errors.sum(), payload.sum(), percentiles[0], percentiles[1], percentiles[2]);
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getPayload() {
+        return payload.sum();
+    }
+
+    @Override
+    public long getP50Nanos() {
+        return latency.percentiles(0.5)[0];
+    }
+
+    @Override
+    public long getP99Nanos() {
+        return latency.percentiles(0.99)[0];
+    }
+
+    @Override
+    public long getP999Nanos() {
+        return latency.percentiles(0.999)[0];
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.p1;
+
+/**
+ * Interface JMX das métricas de um método de uma {@link UserCollection}, registradas por
+ * {@link MetricsUserCollection#registerMBeans(String)}.
+ */
+public interface MethodMetricsMBean {
+    /**
+     * @return a quantidade de chamadas ao método.
+     */
+    long getCalls();
+
+    /**
+     * @return a quantidade de chamadas ao método que lançaram uma exceção.
+     */
+    long getErrors();
+
+    /**
+     * @return a quantidade total de itens transferidos pelo método.
+     */
+    long getPayload();
+
+    /**
+     * @return a mediana da latência do método, em nanossegundos.
+     */
+    long getP50Nanos();
+
+    /**
+     * @return o percentil 99 da latência do método, em nanossegundos.
+     */
+    long getP99Nanos();
+
+    /**
+     * @return o percentil 99,9 da latência do método, em nanossegundos.
+     */
+    long getP999Nanos();
+}
@@ -0,0 +1,71 @@
+package com.example.p1;
+
+import java.io.Serializable;
+
+/**
+ * Representa as estatísticas de execução de um método de uma {@link UserCollection}, retornadas por
+ * {@link UserCollection#stats()}.
+ */
+public final class MethodStats implements Serializable {
+    /**
+     * Campo de serialização.
+     */
+    private static final long serialVersionUID = -1416925307L;
+
+    /**
+     * Quantidade de chamadas ao método.
+     */
+    public final long calls;
+
+    /**
+     * Quantidade de chamadas ao método que lançaram uma exceção.
+     */
+    public final long errors;
+
+    /**
+     * Quantidade total de itens transferidos pelo método.
+     * <p>
+     * Um item é um usuário ou uma atualização enviada ou recebida, ou um byte no caso das fotos de perfil.
+     */
+    public final long payload;
+
+    /**
+     * Mediana da latência do método, em nanossegundos.
+     */
+    public final long p50;
+
+    /**
+     * Percentil 99 da latência do método, em nanossegundos.
+     */
+    public final long p99;
+
+    /**
+     * Percentil 99,9 da latência do método, em nanossegundos.
+     */
+    public final long p999;
+
+    /**
+     * Constrói as estatísticas de um método.
+     *
+     * @param calls   a quantidade de chamadas.
+     * @param errors  a quantidade de chamadas que lançaram uma exceção.
+     * @param payload a quantidade total de itens transferidos.
+     * @param p50     a mediana da latência, em nanossegundos.
+     * @param p99     o percentil 99 da latência, em nanossegundos.
+     * @param p999    o percentil 99,9 da latência, em nanossegundos.
+     */
+    public MethodStats(final long calls, final long errors, final long payload, final long p50, final long p99, final long p999) {
+        this.calls = calls;
+        this.errors = errors;
+        this.payload = payload;
+        this.p50 = p50;
+        this.p99 = p99;
+        this.p999 = p999;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("chamadas=%d erros=%d itens=%d p50=%.3fms p99=%.3fms p999=%.3fms",
+            calls, errors, payload, p50 / 1e6, p99 / 1e6, p999 / 1e6);
+    }
+}
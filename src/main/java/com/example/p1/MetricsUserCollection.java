@@ -0,0 +1,364 @@
+package com.example.p1;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.rmi.RemoteException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Decorador que mede o desempenho das operações de uma {@link UserCollection}.
+ * <p>
+ * Para cada método são medidos a quantidade de chamadas, de erros e de itens transferidos, além de um histograma
+ * da latência com resolução de nanossegundos. As medições não adquirem travas nem fazem E/S, de forma que esse
+ * decorador pode ser mantido em produção. As estatísticas podem ser lidas por {@link #stats()} ou, após
+ * {@link #registerMBeans(String)}, por JMX.
+ */
+public class MetricsUserCollection implements UserCollection {
+    /**
+     * Coleção cujos métodos são medidos.
+     */
+    private final UserCollection collection;
+
+    /**
+     * Métricas de {@link #create(User)}.
+     */
+    private final MethodMetrics create = new MethodMetrics();
+
+    /**
+     * Métricas de {@link #createAll(List)}.
+     */
+    private final MethodMetrics createAll = new MethodMetrics();
+
+    /**
+     * Métricas de {@link #read()}.
+     */
+    private final MethodMetrics read = new MethodMetrics();
+
+    /**
+     * Métricas de {@link #read(String, int)}.
+     */
+    private final MethodMetrics readPage = new MethodMetrics();
+
+    /**
+     * Métricas de {@link #changesSince(long)}.
+     */
+    private final MethodMetrics changesSince = new MethodMetrics();
+
+    /**
+     * Métricas de {@link #version()}.
+     */
+    private final MethodMetrics version = new MethodMetrics();
+
+    /**
+     * Métricas de {@link #update(String, String, String)}.
+     */
+    private final MethodMetrics update = new MethodMetrics();
+
+    /**
+     * Métricas de {@link #updateAll(List)}.
+     */
+    private final MethodMetrics updateAll = new MethodMetrics();
+
+    /**
+     * Métricas de {@link #readPicture(String, int, int)}.
+     */
+    private final MethodMetrics readPicture = new MethodMetrics();
+
+    /**
+     * Métricas de {@link #findByEmail(String)}.
+     */
+    private final MethodMetrics findByEmail = new MethodMetrics();
+
+    /**
+     * Métricas de {@link #findByFormation(String)}.
+     */
+    private final MethodMetrics findByFormation = new MethodMetrics();
+
+    /**
+     * Métricas de {@link #abilitiesByAddress(String)}.
+     */
+    private final MethodMetrics abilitiesByAddress = new MethodMetrics();
+
+    /**
+     * Métricas de {@link #search(String, int)}.
+     */
+    private final MethodMetrics search = new MethodMetrics();
+
+    /**
+     * Métricas de {@link #aggregate(String, String, int)}.
+     */
+    private final MethodMetrics aggregate = new MethodMetrics();
+
+    /**
+     * Métricas de {@link #addListener(UserListener)}.
+     */
+    private final MethodMetrics addListener = new MethodMetrics();
+
+    /**
+     * Métricas de {@link #removeListener(UserListener)}.
+     */
+    private final MethodMetrics removeListener = new MethodMetrics();
+
+    /**
+     * Constrói um decorador.
+     *
+     * @param collection a coleção cujos métodos serão medidos.
+     */
+    public MetricsUserCollection(final UserCollection collection) {
+        this.collection = collection;
+    }
+
+    /**
+     * @return as métricas de cada método, indexadas pelo nome do método.
+     */
+    private Map<String, MethodMetrics> metrics() {
+        final Map<String, MethodMetrics> metrics = new TreeMap<>();
+        metrics.put("create", create);
+        metrics.put("createAll", createAll);
+        metrics.put("read", read);
+        metrics.put("readPage", readPage);
+        metrics.put("changesSince", changesSince);
+        metrics.put("version", version);
+        metrics.put("update", update);
+        metrics.put("updateAll", updateAll);
+        metrics.put("readPicture", readPicture);
+        metrics.put("findByEmail", findByEmail);
+        metrics.put("findByFormation", findByFormation);
+        metrics.put("abilitiesByAddress", abilitiesByAddress);
+        metrics.put("search", search);
+        metrics.put("aggregate", aggregate);
+        metrics.put("addListener", addListener);
+        metrics.put("removeListener", removeListener);
+        return metrics;
+    }
+
+    /**
+     * Registra as métricas de cada método como MBeans no servidor de MBeans da plataforma.
+     * <p>
+     * Cada método é registrado sob o nome <code>com.example.p1:type=UserCollection,scope=[escopo],name=[método]</code>.
+     *
+     * @param scope o escopo das métricas, que diferencia decoradores de um mesmo processo.
+     * @throws JMException caso algum MBean não possa ser registrado.
+     */
+    public void registerMBeans(final String scope) throws JMException {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (final Map.Entry<String, MethodMetrics> entry : metrics().entrySet()) {
+            server.registerMBean(entry.getValue(),
+                new ObjectName("com.example.p1:type=UserCollection,scope=" + scope + ",name=" + entry.getKey()));
+        }
+    }
+
+    @Override
+    public boolean create(final User user) throws RemoteException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final boolean result = collection.create(user);
+            failed = false;
+            return result;
+        } finally {
+            create.record(System.nanoTime() - start, 1, failed);
+        }
+    }
+
+    @Override
+    public List<Boolean> createAll(final List<User> users) throws RemoteException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final List<Boolean> result = collection.createAll(users);
+            failed = false;
+            return result;
+        } finally {
+            createAll.record(System.nanoTime() - start, users.size(), failed);
+        }
+    }
+
+    @Override
+    public List<User> read() throws RemoteException {
+        final long start = System.nanoTime();
+        List<User> result = null;
+        try {
+            result = collection.read();
+            return result;
+        } finally {
+            read.record(System.nanoTime() - start, result == null ? 0 : result.size(), result == null);
+        }
+    }
+
+    @Override
+    public UserPage read(final String cursor, final int limit) throws RemoteException {
+        final long start = System.nanoTime();
+        UserPage result = null;
+        try {
+            result = collection.read(cursor, limit);
+            return result;
+        } finally {
+            readPage.record(System.nanoTime() - start, result == null ? 0 : result.users.size(), result == null);
+        }
+    }
+
+    @Override
+    public ChangeSet changesSince(final long version) throws RemoteException {
+        final long start = System.nanoTime();
+        ChangeSet result = null;
+        try {
+            result = collection.changesSince(version);
+            return result;
+        } finally {
+            changesSince.record(System.nanoTime() - start, result == null ? 0 : result.users.size(), result == null);
+        }
+    }
+
+    @Override
+    public long version() throws RemoteException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final long result = collection.version();
+            failed = false;
+            return result;
+        } finally {
+            version.record(System.nanoTime() - start, 0, failed);
+        }
+    }
+
+    @Override
+    public boolean update(final String email, final String key, final String value) throws RemoteException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final boolean result = collection.update(email, key, value);
+            failed = false;
+            return result;
+        } finally {
+            update.record(System.nanoTime() - start, 1, failed);
+        }
+    }
+
+    @Override
+    public List<Boolean> updateAll(final List<UserUpdate> updates) throws RemoteException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            final List<Boolean> result = collection.updateAll(updates);
+            failed = false;
+            return result;
+        } finally {
+            updateAll.record(System.nanoTime() - start, updates.size(), failed);
+        }
+    }
+
+    @Override
+    public byte[] readPicture(final String pictureId, final int offset, final int length) throws RemoteException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        byte[] result = null;
+        try {
+            result = collection.readPicture(pictureId, offset, length);
+            failed = false;
+            return result;
+        } finally {
+            readPicture.record(System.nanoTime() - start, result == null ? 0 : result.length, failed);
+        }
+    }
+
+    @Override
+    public User findByEmail(final String email) throws RemoteException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        User result = null;
+        try {
+            result = collection.findByEmail(email);
+            failed = false;
+            return result;
+        } finally {
+            findByEmail.record(System.nanoTime() - start, result == null ? 0 : 1, failed);
+        }
+    }
+
+    @Override
+    public List<User> findByFormation(final String formation) throws RemoteException {
+        final long start = System.nanoTime();
+        List<User> result = null;
+        try {
+            result = collection.findByFormation(formation);
+            return result;
+        } finally {
+            findByFormation.record(System.nanoTime() - start, result == null ? 0 : result.size(), result == null);
+        }
+    }
+
+    @Override
+    public Map<String, List<String>> abilitiesByAddress(final String address) throws RemoteException {
+        final long start = System.nanoTime();
+        Map<String, List<String>> result = null;
+        try {
+            result = collection.abilitiesByAddress(address);
+            return result;
+        } finally {
+            abilitiesByAddress.record(System.nanoTime() - start, result == null ? 0 : result.size(), result == null);
+        }
+    }
+
+    @Override
+    public SearchResult search(final String query, final int limit) throws RemoteException {
+        final long start = System.nanoTime();
+        SearchResult result = null;
+        try {
+            result = collection.search(query, limit);
+            return result;
+        } finally {
+            search.record(System.nanoTime() - start, result == null ? 0 : result.users.size(), result == null);
+        }
+    }
+
+    @Override
+    public Map<String, Long> aggregate(final String view, final String key, final int limit) throws RemoteException {
+        final long start = System.nanoTime();
+        Map<String, Long> result = null;
+        try {
+            result = collection.aggregate(view, key, limit);
+            return result;
+        } finally {
+            aggregate.record(System.nanoTime() - start, result == null ? 0 : result.size(), result == null);
+        }
+    }
+
+    @Override
+    public void addListener(final UserListener listener) throws RemoteException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            collection.addListener(listener);
+            failed = false;
+        } finally {
+            addListener.record(System.nanoTime() - start, 1, failed);
+        }
+    }
+
+    @Override
+    public void removeListener(final UserListener listener) throws RemoteException {
+        final long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            collection.removeListener(listener);
+            failed = false;
+        } finally {
+            removeListener.record(System.nanoTime() - start, 1, failed);
+        }
+    }
+
+    @Override
+    public Map<String, MethodStats> stats() {
+        final Map<String, MethodStats> stats = new TreeMap<>();
+        for (final Map.Entry<String, MethodMetrics> entry : metrics().entrySet()) {
+            stats.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return stats;
+    }
+}
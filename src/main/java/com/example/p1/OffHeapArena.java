@@ -0,0 +1,175 @@
+package com.example.p1;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Representa uma região de memória fora do <i>heap</i>, de onde são alocados espaços para conteúdos binários.
+ * <p>
+ * A memória é obtida em lâminas de {@link #SLAB_SIZE} bytes alocadas por {@link ByteBuffer#allocateDirect(int)}, de
+ * forma que o volume dos conteúdos não aumenta o trabalho do coletor de lixo. Cada espaço tem o tamanho de uma classe
+ * de tamanho, calculada por {@link #blockSize(int)}, e o espaço liberado é reaproveitado por alocações da mesma classe.
+ * Um espaço é identificado pela sua localização, um <code>long</code> com o índice da lâmina e a posição nela.
+ * <p>
+ * A alocação e a liberação são sincronizadas nessa região; a leitura e a escrita de um espaço não são, e cabe a quem
+ * o alocou garantir que ele não seja liberado enquanto é lido.
+ */
+final class OffHeapArena {
+    /**
+     * Tamanho, em bytes, de uma lâmina.
+     */
+    static final int SLAB_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Tamanho máximo, em bytes, de um espaço.
+     */
+    static final int MAX_BLOCK_SIZE = SLAB_SIZE / 4;
+
+    /**
+     * Menor classe de tamanho, em bytes.
+     */
+    private static final int MIN_BLOCK_SIZE = 32;
+
+    /**
+     * Lâminas dessa região, na ordem em que foram alocadas.
+     * <p>
+     * O vetor é substituído a cada nova lâmina, de forma que pode ser lido sem sincronização.
+     */
+    private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+
+    /**
+     * Espaços livres, indexados pela classe de tamanho.
+     */
+    private final Map<Integer, ArrayDeque<Long>> free = new HashMap<>();
+
+    /**
+     * Posição do primeiro byte nunca alocado da última lâmina.
+     */
+    private int top = SLAB_SIZE;
+
+    /**
+     * Arredonda um tamanho para a sua classe de tamanho.
+     * <p>
+     * As classes são os múltiplos de um quarto de cada potência de 2, de forma que no máximo um quarto de cada espaço
+     * é desperdiçado.
+     *
+     * @param size o tamanho, em bytes.
+     * @return o tamanho, em bytes, do espaço que comporta o tamanho.
+     */
+    static int blockSize(final int size) {
+        if (size <= MIN_BLOCK_SIZE) {
+            return MIN_BLOCK_SIZE;
+        }
+        final int step = Integer.highestOneBit(size - 1) >> 2;
+        return (size + step - 1) & -step;
+    }
+
+    /**
+     * @param location a localização de um espaço.
+     * @return o índice da lâmina do espaço.
+     */
+    static int slab(final long location) {
+        return (int) (location >>> 32);
+    }
+
+    /**
+     * @param location a localização de um espaço.
+     * @return a posição do espaço na sua lâmina.
+     */
+    static int offset(final long location) {
+        return (int) location;
+    }
+
+    /**
+     * Aloca um espaço.
+     *
+     * @param block o tamanho, em bytes, do espaço, já arredondado por {@link #blockSize(int)}.
+     * @return a localização do espaço.
+     * @throws IllegalArgumentException caso o tamanho seja maior que {@link #MAX_BLOCK_SIZE}.
+     */
+    synchronized long allocate(final int block) {
+        if (block > MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("espaço maior que o máximo: " + block);
+        }
+        final ArrayDeque<Long> available = free.get(block);
+        final Long location = available == null ? null : available.poll();
+        if (location != null) {
+            return location;
+        }
+
+        // O final da lâmina atual é descartado caso o espaço não caiba nele
+        ByteBuffer[] current = slabs;
+        if (top + block > SLAB_SIZE) {
+            current = Arrays.copyOf(current, current.length + 1);
+            current[current.length - 1] = ByteBuffer.allocateDirect(SLAB_SIZE);
+            slabs = current;
+            top = 0;
+        }
+        final long allocated = (long) (current.length - 1) << 32 | top;
+        top += block;
+        return allocated;
+    }
+
+    /**
+     * Libera um espaço para que ele seja reaproveitado.
+     *
+     * @param location a localização do espaço.
+     * @param block    o tamanho, em bytes, com o qual o espaço foi alocado.
+     */
+    synchronized void free(final long location, final int block) {
+        free.computeIfAbsent(block, k -> new ArrayDeque<>()).push(location);
+    }
+
+    /**
+     * @param location a localização de um espaço.
+     * @param position a posição, relativa ao espaço, do primeiro byte acessado.
+     * @return uma visão da lâmina do espaço posicionada no primeiro byte acessado.
+     */
+    private ByteBuffer view(final long location, final int position) {
+        final ByteBuffer view = slabs[slab(location)].duplicate();
+        view.position(offset(location) + position);
+        return view;
+    }
+
+    /**
+     * Escreve bytes em um espaço.
+     *
+     * @param location a localização do espaço.
+     * @param position a posição, relativa ao espaço, do primeiro byte escrito.
+     * @param source   o vetor de onde os bytes são lidos.
+     * @param offset   a posição do primeiro byte lido do vetor.
+     * @param length   a quantidade de bytes escritos.
+     */
+    void write(final long location, final int position, final byte[] source, final int offset, final int length) {
+        view(location, position).put(source, offset, length);
+    }
+
+    /**
+     * Lê bytes de um espaço.
+     *
+     * @param location a localização do espaço.
+     * @param position a posição, relativa ao espaço, do primeiro byte lido.
+     * @param target   o vetor onde os bytes são escritos.
+     * @param offset   a posição do primeiro byte escrito no vetor.
+     * @param length   a quantidade de bytes lidos.
+     */
+    void read(final long location, final int position, final byte[] target, final int offset, final int length) {
+        view(location, position).get(target, offset, length);
+    }
+
+    /**
+     * Copia o início de um espaço para outro.
+     *
+     * @param source a localização do espaço copiado.
+     * @param target a localização do espaço de destino.
+     * @param length a quantidade de bytes copiados.
+     */
+    void copy(final long source, final long target, final int length) {
+        final ByteBuffer from = view(source, 0);
+        from.limit(from.position() + length);
+        view(target, 0).put(from);
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.p1;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Representa um {@link UserRecord} cujos campos são guardados em um registro binário fora do <i>heap</i>.
+ * <p>
+ * O registro é um espaço de uma {@link OffHeapArena} com o e-mail, o nome, o identificador e o tamanho da foto,
+ * seguidos das habilidades e experiências, na ordem em que foram adicionadas. Cada habilidade é o seu código e cada
+ * experiência é o seu texto, precedidos de um byte que indica o tipo. Assim, uma atualização apenas acrescenta bytes
+ * ao final do registro, no próprio espaço enquanto houver folga ou em um espaço maior quando ela acabar.
+ * <p>
+ * A localização e o tamanho do registro são publicados juntos em {@link #slot}. As leituras copiam o registro para o
+ * <i>heap</i> e só o aceitam caso o registro não tenha mudado de espaço durante a cópia, já que o espaço anterior pode
+ * ter sido reaproveitado. Bytes acrescentados no próprio espaço ficam além do tamanho publicado até estarem completos.
+ */
+final class OffHeapUserRecord extends UserRecord {
+    /**
+     * Tipo de uma habilidade no registro.
+     */
+    private static final byte ABILITY = 1;
+
+    /**
+     * Tipo de uma experiência no registro.
+     */
+    private static final byte EXPERIENCE = 2;
+
+    /**
+     * Bits do tamanho do registro em {@link #slot}.
+     */
+    private static final int LENGTH_BITS = 23;
+
+    /**
+     * Bits da posição do registro na lâmina em {@link #slot}.
+     */
+    private static final int OFFSET_BITS = 24;
+
+    /**
+     * Região onde o registro é armazenado.
+     */
+    private final OffHeapArena arena;
+
+    /**
+     * Índice da lâmina, posição na lâmina e tamanho do registro.
+     */
+    private volatile long slot;
+
+    /**
+     * Tamanho, em bytes, do espaço alocado para o registro.
+     * <p>
+     * Deve ser acessado sincronizado nesse registro.
+     */
+    private int capacity;
+
+    /**
+     * Constrói um registro a partir de um usuário.
+     *
+     * @param user       o usuário.
+     * @param dictionary o dicionário que codifica os campos repetíveis.
+     * @param arena      a região onde o registro é armazenado.
+     * @throws IllegalArgumentException caso o registro seja maior que {@link OffHeapArena#MAX_BLOCK_SIZE}.
+     */
+    OffHeapUserRecord(final User user, final StringDictionary dictionary, final OffHeapArena arena) {
+        super(user, dictionary);
+        this.arena = arena;
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        final DataOutputStream output = new DataOutputStream(bytes);
+        try {
+            UserCodec.writeString(output, user.email);
+            UserCodec.writeString(output, user.name);
+            UserCodec.writePictureId(output, user.pictureId);
+            output.writeInt(user.pictureSize);
+            for (final String ability : user.getAbilities()) {
+                output.writeByte(ABILITY);
+                UserCodec.writeVarInt(output, dictionary.encode(ability));
+            }
+            for (final String experience : user.getExperiences()) {
+                output.writeByte(EXPERIENCE);
+                UserCodec.writeString(output, experience);
+            }
+        } catch (IOException e) {
+            // A escrita em memória não lança exceções
+            throw new AssertionError(e);
+        }
+
+        final byte[] content = bytes.toByteArray();
+        final int block = OffHeapArena.blockSize(checkLength(content.length));
+        final long location = arena.allocate(block);
+        arena.write(location, 0, content, 0, content.length);
+        this.capacity = block;
+        this.slot = slot(location, content.length);
+    }
+
+    /**
+     * Verifica se um registro cabe em um espaço de uma {@link OffHeapArena}.
+     *
+     * @param length o tamanho, em bytes, do registro.
+     * @return o tamanho do registro.
+     * @throws IllegalArgumentException caso o registro seja maior que {@link OffHeapArena#MAX_BLOCK_SIZE}.
+     */
+    private static int checkLength(final int length) {
+        if (length > OffHeapArena.MAX_BLOCK_SIZE) {
+            throw new IllegalArgumentException("perfil maior que o máximo: " + length + " bytes.");
+        }
+        return length;
+    }
+
+    /**
+     * @param location a localização do registro.
+     * @param length   o tamanho, em bytes, do registro.
+     * @return o valor de {@link #slot} correspondente.
+     */
+    private static long slot(final long location, final int length) {
+        return (long) OffHeapArena.slab(location) << (OFFSET_BITS + LENGTH_BITS)
+            | (long) OffHeapArena.offset(location) << LENGTH_BITS | length;
+    }
+
+    /**
+     * @param slot um valor de {@link #slot}.
+     * @return a localização do registro.
+     */
+    private static long location(final long slot) {
+        return (slot >>> (OFFSET_BITS + LENGTH_BITS)) << 32 | ((slot >>> LENGTH_BITS) & ((1 << OFFSET_BITS) - 1));
+    }
+
+    /**
+     * @param slot um valor de {@link #slot}.
+     * @return o tamanho, em bytes, do registro.
+     */
+    private static int length(final long slot) {
+        return (int) (slot & ((1 << LENGTH_BITS) - 1));
+    }
+
+    /**
+     * Copia o registro para o <i>heap</i>.
+     *
+     * @return os bytes do registro.
+     */
+    private byte[] content() {
+        for (; ; ) {
+            final long current = slot;
+            final byte[] content = new byte[length(current)];
+            arena.read(location(current), 0, content, 0, content.length);
+            // Impede que a cópia seja reordenada após a verificação, como em StampedLock#validate
+            VarHandle.acquireFence();
+            if (slot == current) {
+                return content;
+            }
+        }
+    }
+
+    /**
+     * Acrescenta bytes ao final do registro.
+     * <p>
+     * Deve ser chamado sincronizado nesse registro.
+     *
+     * @param entry os bytes a serem acrescentados.
+     */
+    private void append(final byte[] entry) {
+        final long current = slot;
+        final int length = length(current);
+        final int updated = checkLength(length + entry.length);
+        if (updated <= capacity) {
+            arena.write(location(current), length, entry, 0, entry.length);
+            slot = slot(location(current), updated);
+            return;
+        }
+
+        // O novo espaço tem folga proporcional ao registro, para que as próximas atualizações caibam nele
+        final int block = OffHeapArena.blockSize(Math.min(updated + updated / 2, OffHeapArena.MAX_BLOCK_SIZE));
+        final long location = arena.allocate(block);
+        arena.copy(location(current), location, length);
+        arena.write(location, length, entry, 0, entry.length);
+        slot = slot(location, updated);
+        arena.free(location(current), capacity);
+        capacity = block;
+    }
+
+    @Override
+    String email() {
+        try {
+            return UserCodec.readString(new DataInputStream(new ByteArrayInputStream(content())));
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Override
+    void assign(final UserRecord other) {
+        final byte[] content = ((OffHeapUserRecord) other).content();
+
+        // O registro sempre muda de espaço, de forma que nenhuma leitura veja uma mistura do conteúdo antigo e do novo
+        final long current = slot;
+        final int block = OffHeapArena.blockSize(content.length);
+        final long location = arena.allocate(block);
+        arena.write(location, 0, content, 0, content.length);
+        slot = slot(location, content.length);
+        arena.free(location(current), capacity);
+        capacity = block;
+    }
+
+    @Override
+    int[] abilities() {
+        return decode().abilities;
+    }
+
+    @Override
+    void addAbility(final int ability) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(6);
+        final DataOutputStream output = new DataOutputStream(bytes);
+        try {
+            output.writeByte(ABILITY);
+            UserCodec.writeVarInt(output, ability);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        append(bytes.toByteArray());
+    }
+
+    @Override
+    void addExperience(final String experience) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(experience.length() + 6);
+        final DataOutputStream output = new DataOutputStream(bytes);
+        try {
+            output.writeByte(EXPERIENCE);
+            UserCodec.writeString(output, experience);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+        append(bytes.toByteArray());
+    }
+
+    @Override
+    List<String> texts(final StringDictionary dictionary) {
+        final Contents contents = decode();
+        final List<String> texts = decode(contents.abilities, dictionary);
+        texts.addAll(contents.experiences);
+        return texts;
+    }
+
+    @Override
+    User toUser(final StringDictionary dictionary) {
+        final Contents contents = decode();
+        return new User(contents.email, contents.name, contents.pictureId, contents.pictureSize, null,
+            dictionary.decode(address), dictionary.decode(formation), decode(contents.abilities, dictionary),
+            contents.experiences);
+    }
+
+    @Override
+    void discard() {
+        arena.free(location(slot), capacity);
+    }
+
+    /**
+     * Decodifica o registro.
+     *
+     * @return os campos do registro.
+     */
+    private Contents decode() {
+        final byte[] content = content();
+        final DataInputStream input = new DataInputStream(new ByteArrayInputStream(content));
+        try {
+            final Contents contents = new Contents();
+            contents.email = UserCodec.readString(input);
+            contents.name = UserCodec.readString(input);
+            contents.pictureId = UserCodec.readPictureId(input);
+            contents.pictureSize = input.readInt();
+
+            int[] abilities = new int[4];
+            int count = 0;
+            while (input.available() > 0) {
+                final byte type = input.readByte();
+                if (type == ABILITY) {
+                    if (count == abilities.length) {
+                        abilities = Arrays.copyOf(abilities, count * 2);
+                    }
+                    abilities[count++] = UserCodec.readVarInt(input);
+                } else if (type == EXPERIENCE) {
+                    contents.experiences.add(UserCodec.readString(input));
+                } else {
+                    throw new IOException("tipo inválido: " + type);
+                }
+            }
+            contents.abilities = Arrays.copyOf(abilities, count);
+            return contents;
+
+        } catch (IOException e) {
+            // O registro foi gravado por esse próprio objeto
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Representa os campos decodificados de um registro.
+     */
+    private static final class Contents {
+        /**
+         * E-mail do usuário.
+         */
+        String email;
+
+        /**
+         * Nome do usuário.
+         */
+        String name;
+
+        /**
+         * Identificador da foto de perfil do usuário ou null caso ele não possua foto.
+         */
+        String pictureId;
+
+        /**
+         * Tamanho, em bytes, da foto de perfil do usuário.
+         */
+        int pictureSize;
+
+        /**
+         * Códigos das habilidades do usuário.
+         */
+        int[] abilities;
+
+        /**
+         * Experiências profissionais do usuário.
+         */
+        final List<String> experiences = new ArrayList<>();
+    }
+}
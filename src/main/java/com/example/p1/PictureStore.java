@@ -0,0 +1,307 @@
+package com.example.p1;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Representa um armazém de fotos de perfil.
+ * <p>
+ * Cada foto é identificada pelo <i>hash</i> SHA-256 do seu conteúdo, de forma que fotos idênticas são armazenadas
+ * uma única vez. Os perfis dos usuários guardam apenas esse identificador, e o conteúdo é lido sob demanda em
+ * blocos de no máximo {@link #CHUNK_SIZE} bytes.
+ * <p>
+ * O conteúdo das fotos fica fora do <i>heap</i>, em uma {@link OffHeapArena}, de forma que o volume de fotos não
+ * aumenta o trabalho do coletor de lixo, e o espaço de uma foto removida é reaproveitado por outras fotos. Fotos maiores
+ * que {@link OffHeapArena#MAX_BLOCK_SIZE} recebem um <i>buffer</i> próprio, também fora do <i>heap</i>.
+ * <p>
+ * Cada foto conta as suas referências: {@link #put(byte[])} e {@link #retain(String)} adquirem uma referência, e
+ * {@link #release(String)} a devolve. Quando a última referência é devolvida, a foto é removida. As leituras também
+ * adquirem uma referência enquanto copiam o conteúdo, de forma que o espaço de uma foto nunca é reaproveitado durante
+ * uma leitura.
+ */
+final class PictureStore {
+    /**
+     * Tamanho máximo, em bytes, de um bloco lido desse armazém.
+     */
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Dígitos utilizados para representar um <i>hash</i> em hexadecimal.
+     */
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Fotos desse armazém, indexadas pelo identificador do seu conteúdo.
+     */
+    private final ConcurrentMap<String, Picture> pictures = new ConcurrentHashMap<>();
+
+    /**
+     * Região onde o conteúdo das fotos é armazenado.
+     */
+    private final OffHeapArena arena = new OffHeapArena();
+
+    /**
+     * Calcula o identificador de uma foto.
+     *
+     * @param data o conteúdo da foto.
+     * @return o <i>hash</i> SHA-256 do conteúdo, em hexadecimal.
+     */
+    static String hash(final byte[] data) {
+        final byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            // Toda implementação da plataforma Java deve suportar SHA-256
+            throw new AssertionError(e);
+        }
+
+        final byte[] hex = new byte[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xF];
+        }
+        return new String(hex, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Adiciona uma foto a esse armazém e adquire uma referência a ela.
+     * <p>
+     * Caso uma foto com o mesmo conteúdo já exista, apenas a referência é adquirida.
+     *
+     * @param data o conteúdo da foto.
+     * @return o identificador da foto.
+     */
+    String put(final byte[] data) {
+        final String id = hash(data);
+        for (; ; ) {
+            final Picture existing = pictures.get(id);
+            if (existing != null) {
+                if (existing.retain()) {
+                    return id;
+                }
+                // A última referência foi devolvida, mas a foto ainda não foi removida
+                pictures.remove(id, existing);
+                continue;
+            }
+
+            final Picture created = allocate(data);
+            if (pictures.putIfAbsent(id, created) == null) {
+                return id;
+            }
+            deallocate(created);
+        }
+    }
+
+    /**
+     * Adquire uma referência a uma foto desse armazém.
+     *
+     * @param id o identificador da foto.
+     * @return se a referência foi adquirida, ou false caso a foto não se encontre nesse armazém.
+     */
+    boolean retain(final String id) {
+        final Picture picture = pictures.get(id);
+        return picture != null && picture.retain();
+    }
+
+    /**
+     * Devolve uma referência a uma foto desse armazém, removendo-a caso seja a última.
+     *
+     * @param id o identificador da foto.
+     */
+    void release(final String id) {
+        final Picture picture = pictures.get(id);
+        if (picture != null) {
+            release(id, picture);
+        }
+    }
+
+    /**
+     * Devolve uma referência a uma foto, removendo-a caso seja a última.
+     *
+     * @param id      o identificador da foto.
+     * @param picture a foto.
+     */
+    private void release(final String id, final Picture picture) {
+        if (picture.references.decrementAndGet() == 0) {
+            pictures.remove(id, picture);
+            deallocate(picture);
+        }
+    }
+
+    /**
+     * @param id o identificador de uma foto.
+     * @return se a foto se encontra nesse armazém.
+     */
+    boolean contains(final String id) {
+        return pictures.containsKey(id);
+    }
+
+    /**
+     * @param id o identificador de uma foto.
+     * @return o tamanho, em bytes, da foto ou -1 caso ela não se encontre nesse armazém.
+     */
+    int size(final String id) {
+        final Picture picture = pictures.get(id);
+        return picture == null ? -1 : picture.size;
+    }
+
+    /**
+     * Lê o conteúdo completo de uma foto desse armazém.
+     *
+     * @param id o identificador da foto.
+     * @return uma cópia do conteúdo da foto ou null caso a foto não se encontre nesse armazém.
+     */
+    byte[] get(final String id) {
+        final Picture picture = pictures.get(id);
+        if (picture == null || !picture.retain()) {
+            return null;
+        }
+        try {
+            return copy(picture, 0, picture.size);
+        } finally {
+            release(id, picture);
+        }
+    }
+
+    /**
+     * Lê um bloco de uma foto desse armazém.
+     *
+     * @param id     o identificador da foto.
+     * @param offset a posição, em bytes, do início do bloco.
+     * @param length a quantidade máxima de bytes a serem lidos, limitada a {@link #CHUNK_SIZE}.
+     * @return o bloco lido, que pode ser menor que o tamanho pedido caso o fim da foto seja alcançado, ou null caso
+     * a foto não se encontre nesse armazém.
+     */
+    byte[] read(final String id, final int offset, final int length) {
+        final Picture picture = pictures.get(id);
+        if (picture == null || !picture.retain()) {
+            return null;
+        }
+        try {
+            if (offset < 0 || length < 0) {
+                throw new IllegalArgumentException("posição e tamanho devem ser não negativos.");
+            }
+            final int start = Math.min(offset, picture.size);
+            return copy(picture, start, Math.min(Math.min(length, CHUNK_SIZE), picture.size - start));
+        } finally {
+            release(id, picture);
+        }
+    }
+
+    /**
+     * Aloca o espaço de uma foto e copia o seu conteúdo para ele.
+     *
+     * @param data o conteúdo da foto.
+     * @return a foto, com uma referência adquirida.
+     */
+    private Picture allocate(final byte[] data) {
+        if (data.length > OffHeapArena.MAX_BLOCK_SIZE) {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+            buffer.put(data);
+            return new Picture(buffer, 0, data.length, 0);
+        }
+        final int block = OffHeapArena.blockSize(data.length);
+        final long location = arena.allocate(block);
+        arena.write(location, 0, data, 0, data.length);
+        return new Picture(null, location, data.length, block);
+    }
+
+    /**
+     * Libera o espaço de uma foto removida.
+     *
+     * @param picture a foto.
+     */
+    private void deallocate(final Picture picture) {
+        // O buffer próprio de uma foto grande é liberado junto ao objeto
+        if (picture.buffer == null) {
+            arena.free(picture.location, picture.block);
+        }
+    }
+
+    /**
+     * Copia parte do conteúdo de uma foto para o <i>heap</i>.
+     *
+     * @param picture a foto, cuja referência deve ser mantida durante a cópia.
+     * @param start   a posição, em bytes, do início da cópia.
+     * @param length  a quantidade de bytes copiados.
+     * @return a cópia.
+     */
+    private byte[] copy(final Picture picture, final int start, final int length) {
+        final byte[] data = new byte[length];
+        if (picture.buffer == null) {
+            arena.read(picture.location, start, data, 0, length);
+        } else {
+            final ByteBuffer source = picture.buffer.duplicate();
+            source.position(start);
+            source.get(data);
+        }
+        return data;
+    }
+
+    /**
+     * Representa uma foto armazenada fora do <i>heap</i>.
+     */
+    private static final class Picture {
+        /**
+         * <i>Buffer</i> próprio onde o conteúdo da foto é armazenado, ou null caso ele esteja na região do armazém.
+         */
+        final ByteBuffer buffer;
+
+        /**
+         * Localização do conteúdo da foto em {@link PictureStore#arena}.
+         */
+        final long location;
+
+        /**
+         * Tamanho, em bytes, do conteúdo da foto.
+         */
+        final int size;
+
+        /**
+         * Tamanho, em bytes, do espaço alocado para a foto em {@link PictureStore#arena}.
+         */
+        final int block;
+
+        /**
+         * Quantidade de referências à foto, que é 0 apenas após a sua remoção.
+         */
+        final AtomicInteger references = new AtomicInteger(1);
+
+        /**
+         * Constrói uma foto com uma referência adquirida.
+         *
+         * @param buffer   o <i>buffer</i> próprio onde o conteúdo é armazenado, ou null caso ele esteja na região.
+         * @param location a localização do conteúdo na região.
+         * @param size     o tamanho, em bytes, do conteúdo.
+         * @param block    o tamanho, em bytes, do espaço alocado na região.
+         */
+        Picture(final ByteBuffer buffer, final long location, final int size, final int block) {
+            this.buffer = buffer;
+            this.location = location;
+            this.size = size;
+            this.block = block;
+        }
+
+        /**
+         * Adquire uma referência a essa foto.
+         *
+         * @return se a referência foi adquirida, ou false caso a foto já tenha sido removida.
+         */
+        boolean retain() {
+            for (; ; ) {
+                final int current = references.get();
+                if (current == 0) {
+                    return false;
+                }
+                if (references.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
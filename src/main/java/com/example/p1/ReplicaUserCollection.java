@@ -0,0 +1,163 @@
+package com.example.p1;
+
+import java.rmi.RemoteException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Representa a coleção exportada por uma réplica de leitura de um servidor primário.
+ * <p>
+ * As leituras são respondidas pela base de dados local, mantida atualizada por um {@link Replicator}. Caso a base
+ * não seja confirmada como atualizada há mais de {@link #MAX_STALENESS_MILLIS} milissegundos, como quando o primário
+ * está inacessível, as leituras lançam {@link RemoteException}, de forma que o cliente possa recorrer a outra réplica
+ * ou ao primário. As escritas não são aceitas, e as operações que dependem das versões do primário são repassadas a
+ * ele.
+ */
+public class ReplicaUserCollection implements UserCollection {
+    /**
+     * Tempo máximo, em milissegundos, desde a última confirmação de que a réplica está atualizada para que ela
+     * responda leituras.
+     */
+    static final long MAX_STALENESS_MILLIS = 2000;
+
+    /**
+     * Coleção primária.
+     */
+    private final UserCollection primary;
+
+    /**
+     * Base de dados local.
+     */
+    private final UserDatabase database;
+
+    /**
+     * Replicador que mantém {@link #database} atualizada.
+     */
+    private final Replicator replicator;
+
+    /**
+     * Constrói uma réplica.
+     *
+     * @param primary    a coleção primária.
+     * @param database   a base de dados local.
+     * @param replicator o replicador que mantém a base de dados local atualizada, já iniciado.
+     */
+    ReplicaUserCollection(final UserCollection primary, final UserDatabase database, final Replicator replicator) {
+        this.primary = primary;
+        this.database = database;
+        this.replicator = replicator;
+    }
+
+    /**
+     * Verifica se a réplica está atualizada o suficiente para responder leituras.
+     *
+     * @throws RemoteException caso a réplica esteja desatualizada.
+     */
+    private void checkFresh() throws RemoteException {
+        final long staleness = replicator.staleness();
+        if (staleness > MAX_STALENESS_MILLIS) {
+            throw new RemoteException("réplica desatualizada há " + staleness + " ms.");
+        }
+    }
+
+    /**
+     * @return a exceção lançada pelas escritas.
+     */
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("réplicas são somente leitura; as escritas devem ser feitas no primário.");
+    }
+
+    @Override
+    public boolean create(final User user) {
+        throw readOnly();
+    }
+
+    @Override
+    public List<Boolean> createAll(final List<User> users) {
+        throw readOnly();
+    }
+
+    @Override
+    public List<User> read() throws RemoteException {
+        checkFresh();
+        return database.read();
+    }
+
+    @Override
+    public UserPage read(final String cursor, final int limit) throws RemoteException {
+        checkFresh();
+        return database.read(cursor, limit);
+    }
+
+    @Override
+    public ChangeSet changesSince(final long version) throws RemoteException {
+        return primary.changesSince(version);
+    }
+
+    @Override
+    public long version() {
+        return replicator.version();
+    }
+
+    @Override
+    public boolean update(final String email, final String key, final String value) {
+        throw readOnly();
+    }
+
+    @Override
+    public List<Boolean> updateAll(final List<UserUpdate> updates) {
+        throw readOnly();
+    }
+
+    @Override
+    public byte[] readPicture(final String pictureId, final int offset, final int length) throws RemoteException {
+        checkFresh();
+        return database.readPicture(pictureId, offset, length);
+    }
+
+    @Override
+    public User findByEmail(final String email) throws RemoteException {
+        checkFresh();
+        return database.findByEmail(email);
+    }
+
+    @Override
+    public List<User> findByFormation(final String formation) throws RemoteException {
+        checkFresh();
+        return database.findByFormation(formation);
+    }
+
+    @Override
+    public Map<String, List<String>> abilitiesByAddress(final String address) throws RemoteException {
+        checkFresh();
+        return database.abilitiesByAddress(address);
+    }
+
+    @Override
+    public SearchResult search(final String query, final int limit) throws RemoteException {
+        checkFresh();
+        return database.search(query, limit);
+    }
+
+    @Override
+    public Map<String, Long> aggregate(final String view, final String key, final int limit) throws RemoteException {
+        checkFresh();
+        return database.aggregate(view, key, limit);
+    }
+
+    @Override
+    public void addListener(final UserListener listener) throws RemoteException {
+        primary.addListener(listener);
+    }
+
+    @Override
+    public void removeListener(final UserListener listener) throws RemoteException {
+        primary.removeListener(listener);
+    }
+
+    @Override
+    public Map<String, MethodStats> stats() {
+        return Collections.emptyMap();
+    }
+}
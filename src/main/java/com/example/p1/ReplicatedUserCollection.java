@@ -0,0 +1,243 @@
+package com.example.p1;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Representa uma coleção de usuários composta por um servidor primário e as suas réplicas de leitura.
+ * <p>
+ * As escritas são enviadas ao primário, e as leituras são distribuídas entre as réplicas em rodízio. Para que um
+ * cliente sempre leia as próprias escritas, a versão do primário é lida antes da primeira leitura após uma escrita, e
+ * uma réplica só é usada caso já tenha aplicado essa versão. A versão conhecida de cada réplica é guardada, de forma
+ * que ela só é consultada novamente quando não é suficiente. Caso nenhuma réplica esteja atualizada ou acessível, a
+ * leitura é feita no primário.
+ */
+public class ReplicatedUserCollection implements UserCollection {
+    /**
+     * Coleção primária.
+     */
+    private final UserCollection primary;
+
+    /**
+     * Réplicas de leitura do primário.
+     */
+    private final List<UserCollection> replicas;
+
+    /**
+     * Versão do primário aplicada por cada réplica, pelo que se sabe.
+     */
+    private final AtomicLongArray replicaVersions;
+
+    /**
+     * Índice da próxima réplica do rodízio.
+     */
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Versão do primário que as réplicas devem ter aplicado para responder leituras desse cliente.
+     */
+    private final AtomicLong requiredVersion = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Se houve uma escrita cuja versão ainda não foi lida do primário.
+     */
+    private final AtomicBoolean written = new AtomicBoolean();
+
+    /**
+     * Constrói uma coleção replicada.
+     *
+     * @param primary  a coleção primária.
+     * @param replicas as réplicas de leitura do primário.
+     */
+    public ReplicatedUserCollection(final UserCollection primary, final List<UserCollection> replicas) {
+        this.primary = primary;
+        this.replicas = new ArrayList<>(replicas);
+        this.replicaVersions = new AtomicLongArray(replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            replicaVersions.set(i, Long.MIN_VALUE);
+        }
+    }
+
+    /**
+     * @return a versão do primário que inclui todas as escritas desse cliente.
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    private long requiredVersion() throws RemoteException {
+        if (written.getAndSet(false)) {
+            try {
+                requiredVersion.accumulateAndGet(primary.version(), Math::max);
+            } catch (RemoteException | RuntimeException e) {
+                written.set(true);
+                throw e;
+            }
+        }
+        return requiredVersion.get();
+    }
+
+    /**
+     * Executa uma escrita no primário.
+     * <p>
+     * A versão do primário só é lida após a escrita, de forma que a inclua. Ela também é lida caso a escrita falhe, já
+     * que o primário pode tê-la aplicado antes da falha.
+     *
+     * @param call a escrita a ser executada.
+     * @param <T>  o tipo do resultado da escrita.
+     * @return o resultado da escrita.
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI com o primário.
+     */
+    private <T> T write(final Call<T> call) throws RemoteException {
+        try {
+            return call.apply(primary);
+        } finally {
+            written.set(true);
+        }
+    }
+
+    /**
+     * Executa uma leitura em uma réplica atualizada ou, caso nenhuma esteja disponível, no primário.
+     *
+     * @param call a leitura a ser executada.
+     * @param <T>  o tipo do resultado da leitura.
+     * @return o resultado da leitura.
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI com o primário.
+     */
+    private <T> T read(final Call<T> call) throws RemoteException {
+        final long required = requiredVersion();
+        for (int attempt = 0; attempt < replicas.size(); attempt++) {
+            final int i = Math.floorMod(next.getAndIncrement(), replicas.size());
+            final UserCollection replica = replicas.get(i);
+            try {
+                if (replicaVersions.get(i) < required) {
+                    replicaVersions.accumulateAndGet(i, replica.version(), Math::max);
+                    if (replicaVersions.get(i) < required) {
+                        continue;
+                    }
+                }
+                return call.apply(replica);
+
+            } catch (RemoteException e) {
+                // A réplica está inacessível ou desatualizada; a próxima é tentada
+            }
+        }
+        return call.apply(primary);
+    }
+
+    @Override
+    public boolean create(final User user) throws RemoteException {
+        return write(collection -> collection.create(user));
+    }
+
+    @Override
+    public List<Boolean> createAll(final List<User> users) throws RemoteException {
+        return write(collection -> collection.createAll(users));
+    }
+
+    @Override
+    public List<User> read() throws RemoteException {
+        return read(UserCollection::read);
+    }
+
+    @Override
+    public UserPage read(final String cursor, final int limit) throws RemoteException {
+        return read(collection -> collection.read(cursor, limit));
+    }
+
+    @Override
+    public ChangeSet changesSince(final long version) throws RemoteException {
+        return primary.changesSince(version);
+    }
+
+    @Override
+    public long version() throws RemoteException {
+        return primary.version();
+    }
+
+    @Override
+    public boolean update(final String email, final String key, final String value) throws RemoteException {
+        return write(collection -> collection.update(email, key, value));
+    }
+
+    @Override
+    public List<Boolean> updateAll(final List<UserUpdate> updates) throws RemoteException {
+        return write(collection -> collection.updateAll(updates));
+    }
+
+    @Override
+    public byte[] readPicture(final String pictureId, final int offset, final int length) throws RemoteException {
+        return read(collection -> collection.readPicture(pictureId, offset, length));
+    }
+
+    @Override
+    public User findByEmail(final String email) throws RemoteException {
+        return read(collection -> collection.findByEmail(email));
+    }
+
+    @Override
+    public List<User> findByFormation(final String formation) throws RemoteException {
+        return read(collection -> collection.findByFormation(formation));
+    }
+
+    @Override
+    public Map<String, List<String>> abilitiesByAddress(final String address) throws RemoteException {
+        return read(collection -> collection.abilitiesByAddress(address));
+    }
+
+    @Override
+    public SearchResult search(final String query, final int limit) throws RemoteException {
+        return read(collection -> collection.search(query, limit));
+    }
+
+    @Override
+    public Map<String, Long> aggregate(final String view, final String key, final int limit) throws RemoteException {
+        return read(collection -> collection.aggregate(view, key, limit));
+    }
+
+    @Override
+    public void addListener(final UserListener listener) throws RemoteException {
+        primary.addListener(listener);
+    }
+
+    @Override
+    public void removeListener(final UserListener listener) throws RemoteException {
+        primary.removeListener(listener);
+    }
+
+    @Override
+    public Map<String, MethodStats> stats() throws RemoteException {
+        final Map<String, MethodStats> stats = new TreeMap<>(primary.stats());
+        for (int i = 0; i < replicas.size(); i++) {
+            try {
+                for (final Map.Entry<String, MethodStats> entry : replicas.get(i).stats().entrySet()) {
+                    stats.put("replica-" + i + "." + entry.getKey(), entry.getValue());
+                }
+            } catch (RemoteException e) {
+                // As estatísticas de uma réplica inacessível são omitidas
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Representa uma chamada a uma coleção.
+     *
+     * @param <T> o tipo do resultado da chamada.
+     */
+    @FunctionalInterface
+    private interface Call<T> {
+        /**
+         * Executa a chamada.
+         *
+         * @param collection a coleção chamada.
+         * @return o resultado da chamada.
+         * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+         */
+        T apply(UserCollection collection) throws RemoteException;
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.p1;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Representa a cópia contínua dos usuários de um servidor primário para uma base de dados local, mantida por uma
+ * réplica.
+ * <p>
+ * O replicador se registra como {@link UserListener} do primário e aplica as mudanças assim que elas são enviadas.
+ * Além disso, a cada {@link #SYNC_INTERVAL_MILLIS} milissegundos, ele pede ao primário as mudanças desde a última
+ * versão aplicada, o que recupera mudanças perdidas caso o registro tenha sido removido e confirma que a cópia está
+ * atualizada. As fotos dos usuários são copiadas antes dos seus perfis.
+ */
+final class Replicator implements UserListener, Closeable {
+    /**
+     * Intervalo, em milissegundos, entre duas sincronizações periódicas com o primário.
+     */
+    static final long SYNC_INTERVAL_MILLIS = 200;
+
+    /**
+     * Quantidade de usuários lidos por página ao copiar todos os usuários do primário.
+     */
+    private static final int PAGE_SIZE = 1000;
+
+    /**
+     * Coleção primária, de onde os usuários são copiados.
+     */
+    private final UserCollection primary;
+
+    /**
+     * Base de dados local, para onde os usuários são copiados.
+     */
+    private final UserDatabase database;
+
+    /**
+     * Executor das sincronizações periódicas.
+     */
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "user-replicator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Versão do primário refletida pela base de dados local.
+     * <p>
+     * O valor inicial não pertence a nenhuma coleção, de forma que a primeira sincronização copia todos os usuários.
+     */
+    private volatile long version = Long.MIN_VALUE;
+
+    /**
+     * Se as mudanças enviadas pelo primário podem ser aplicadas.
+     * <p>
+     * Um registro refeito só envia as mudanças posteriores a ele, e as mudanças entre a versão aplicada e o registro
+     * só são obtidas pela sincronização seguinte. Por isso, as mudanças enviadas são descartadas de cada registro até
+     * o fim da sincronização que o segue. Deve ser acessado sincronizado nesse replicador.
+     */
+    private boolean subscribed;
+
+    /**
+     * Instante, em nanossegundos, da última sincronização periódica concluída.
+     * <p>
+     * A base de dados local reflete ao menos todas as mudanças do primário até esse instante.
+     */
+    private volatile long syncedAt;
+
+    /**
+     * Constrói um replicador.
+     *
+     * @param primary  a coleção primária.
+     * @param database a base de dados local, mantida apenas em memória.
+     */
+    Replicator(final UserCollection primary, final UserDatabase database) {
+        this.primary = primary;
+        this.database = database;
+    }
+
+    /**
+     * Copia todos os usuários do primário e passa a acompanhar as suas mudanças.
+     *
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    void start() throws RemoteException {
+        UnicastRemoteObject.exportObject(this, 0);
+        subscribe();
+
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                // O registro é refeito caso o primário o tenha removido; caso contrário, nada muda
+                subscribe();
+            } catch (RemoteException | RuntimeException e) {
+                // A próxima sincronização tenta novamente; até lá, a cópia é considerada desatualizada
+            }
+        }, SYNC_INTERVAL_MILLIS, SYNC_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return a versão do primário refletida pela base de dados local.
+     */
+    long version() {
+        return version;
+    }
+
+    /**
+     * @return há quantos milissegundos a base de dados local foi confirmada como atualizada pela última vez.
+     */
+    long staleness() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - syncedAt);
+    }
+
+    /**
+     * Registra esse replicador no primário e sincroniza a base de dados local.
+     * <p>
+     * O registro precede a sincronização, de forma que nenhuma mudança posterior a ela deixe de ser enviada.
+     *
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    private void subscribe() throws RemoteException {
+        synchronized (this) {
+            subscribed = false;
+        }
+        primary.addListener(this);
+        sync();
+    }
+
+    /**
+     * Aplica à base de dados local as mudanças do primário desde a última versão aplicada.
+     *
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    private synchronized void sync() throws RemoteException {
+        final long start = System.nanoTime();
+        for (; ; ) {
+            final ChangeSet changes = primary.changesSince(version);
+            if (!changes.reset) {
+                apply(changes.users);
+                version = changes.version;
+                syncedAt = start;
+                subscribed = true;
+                return;
+            }
+
+            // As escritas feitas durante a cópia são obtidas na próxima iteração, a partir da versão anterior a ela
+            String cursor = null;
+            do {
+                final UserPage page = primary.read(cursor, PAGE_SIZE);
+                apply(page.users);
+                cursor = page.nextCursor;
+            } while (cursor != null);
+            version = changes.version;
+        }
+    }
+
+    /**
+     * Copia usuários e as suas fotos para a base de dados local.
+     *
+     * @param users o estado atual dos usuários no primário.
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    private void apply(final List<User> users) throws RemoteException {
+        final Map<String, byte[]> pictures = new HashMap<>();
+        for (final User user : users) {
+            if (user.hasPicture() && !pictures.containsKey(user.pictureId) && !database.hasPicture(user.pictureId)) {
+                final byte[] data = fetchPicture(user.pictureId, user.pictureSize);
+                if (data != null) {
+                    pictures.put(user.pictureId, data);
+                }
+            }
+        }
+        database.replicate(users, pictures);
+    }
+
+    /**
+     * Lê uma foto completa do primário, em blocos.
+     *
+     * @param pictureId o identificador da foto.
+     * @param size      o tamanho, em bytes, da foto.
+     * @return o conteúdo da foto ou null caso ela não se encontre no primário.
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    private byte[] fetchPicture(final String pictureId, final int size) throws RemoteException {
+        final ByteArrayOutputStream data = new ByteArrayOutputStream(size);
+        while (data.size() < size) {
+            final byte[] chunk = primary.readPicture(pictureId, data.size(), PictureStore.CHUNK_SIZE);
+            if (chunk == null || chunk.length == 0) {
+                return null;
+            }
+            data.write(chunk, 0, chunk.length);
+        }
+        return data.toByteArray();
+    }
+
+    @Override
+    public synchronized void usersChanged(final ChangeSet changes) throws RemoteException {
+        // Mudanças anteriores à sincronização que segue o registro são obtidas por ela
+        if (!subscribed || changes.version <= version) {
+            return;
+        }
+        apply(changes.users);
+        version = changes.version;
+    }
+
+    /**
+     * Interrompe a cópia, removendo o registro no primário quando possível.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            primary.removeListener(this);
+        } catch (RemoteException e) {
+            // O primário pode já estar indisponível
+        }
+        try {
+            UnicastRemoteObject.unexportObject(this, true);
+        } catch (RemoteException e) {
+            // O replicador já não estava exportado
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.p1;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Representa os usuários encontrados por {@link UserCollection#search(String, int)}, do mais relevante ao menos
+ * relevante.
+ * <p>
+ * As pontuações de uma mesma coleção são comparáveis entre si, de forma que os resultados de vários fragmentos podem
+ * ser combinados ordenando-os pela pontuação.
+ */
+public final class SearchResult implements Serializable {
+    /**
+     * Campo de serialização.
+     */
+    private static final long serialVersionUID = 1801742093L;
+
+    /**
+     * Usuários encontrados, do mais relevante ao menos relevante.
+     */
+    public final List<User> users;
+
+    /**
+     * Pontuação de relevância de cada usuário de {@link #users}, em ordem decrescente.
+     */
+    public final double[] scores;
+
+    /**
+     * Constrói um resultado de busca.
+     *
+     * @param users  os usuários encontrados, do mais relevante ao menos relevante.
+     * @param scores as pontuações dos usuários.
+     */
+    public SearchResult(final List<User> users, final double[] scores) {
+        if (users.size() != scores.length) {
+            throw new IllegalArgumentException("cada usuário deve possuir uma pontuação.");
+        }
+        this.users = new UserList(users);
+        this.scores = scores;
+    }
+}
@@ -1,13 +1,31 @@
 package com.example.p1;
 
+import javax.management.JMException;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
-import java.rmi.server.UnicastRemoteObject;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Representa o servidor de uma conexão RMI.
  */
 public class Server {
+    /**
+     * Intervalo, em minutos, entre duas imagens consecutivas de uma base de dados durável.
+     */
+    private static final long CHECKPOINT_INTERVAL_MINUTES = 5;
+
+    /**
+     * Intervalo, em segundos, entre dois relatórios consecutivos das métricas no modo de depuração.
+     */
+    private static final long STATS_INTERVAL_SECONDS = 10;
+
     /**
      * Construtor privado.
      * <p>
@@ -16,31 +34,196 @@ public class Server {
     private Server() {
     }
 
+    /**
+     * Exporta uma coleção de usuários para que ela receba chamadas RMI em uma porta anônima.
+     *
+     * @param collection a coleção a ser exportada.
+     * @return o <i>stub</i> da coleção.
+     * @throws RemoteException caso a coleção não possa ser exportada.
+     */
+    static UserCollection export(final UserCollection collection) throws RemoteException {
+        return export(collection, null);
+    }
+
+    /**
+     * Exporta uma coleção de usuários para que ela receba chamadas RMI em uma porta anônima.
+     *
+     * @param collection a coleção a ser exportada.
+     * @param sockets    a fábrica das conexões da coleção ou null para as conexões padrão do RMI.
+     * @return o <i>stub</i> da coleção.
+     * @throws RemoteException caso a coleção não possa ser exportada.
+     */
+    static UserCollection export(final UserCollection collection, final CompressingSocketFactory sockets)
+        throws RemoteException {
+        return (UserCollection) CompressingSocketFactory.export(collection, sockets);
+    }
+
     public static void main(String[] args) {
         if (args.length < 1) {
-            System.out.println("Uso: java com.example.p1.Server host [debug=true,false]");
+            System.out.println("Uso: java com.example.p1.Server host [debug=true,false] [diretório de dados,-] "
+                + "[fragmento/total,-] [réplica,-] [porta binária,-] "
+                + "[compressão=nível[/limiar],-] [registros=heap,offheap]");
             return;
         }
         final boolean debug = args.length >= 2 && Boolean.parseBoolean(args[1]);
+        final String directory = args.length >= 3 && !"-".equals(args[2]) ? args[2] : null;
+
+        final String primaryName;
+        final int shardIndex;
+        final int shardTotal;
+        if (args.length >= 4 && !"-".equals(args[3])) {
+            final String[] shard = args[3].split("/");
+            try {
+                shardIndex = Integer.parseInt(shard[0]);
+                shardTotal = shard.length == 2 ? Integer.parseInt(shard[1]) : -1;
+            } catch (NumberFormatException e) {
+                System.out.println("Fragmento inválido: " + args[3]);
+                return;
+            }
+            if (shardIndex < 0 || shardIndex >= shardTotal) {
+                System.out.println("Fragmento inválido: " + args[3]);
+                return;
+            }
+            primaryName = ShardedUserCollection.registryName(shardIndex);
+        } else {
+            shardIndex = -1;
+            shardTotal = 0;
+            primaryName = ShardedUserCollection.REGISTRY_NAME;
+        }
+
+        final int replica;
+        try {
+            replica = args.length >= 5 && !"-".equals(args[4]) ? Integer.parseInt(args[4]) : -1;
+        } catch (NumberFormatException e) {
+            System.out.println("Réplica inválida: " + args[4]);
+            return;
+        }
+        final int binaryPort;
+        try {
+            binaryPort = args.length >= 6 && !"-".equals(args[5]) ? Integer.parseInt(args[5]) : -1;
+        } catch (NumberFormatException e) {
+            System.out.println("Porta binária inválida: " + args[5]);
+            return;
+        }
+        final CompressingSocketFactory sockets;
+        try {
+            sockets = args.length >= 7 && !"-".equals(args[6]) ? CompressingSocketFactory.parse(args[6]) : null;
+        } catch (IllegalArgumentException e) {
+            System.out.println("Compressão inválida: " + args[6]);
+            return;
+        }
+        final String name = replica >= 0 ? ShardedUserCollection.replicaName(primaryName, replica) : primaryName;
+
+        final boolean offHeap = args.length >= 8 && "offheap".equalsIgnoreCase(args[7]);
+        if (args.length >= 8 && !offHeap && !"heap".equalsIgnoreCase(args[7])) {
+            System.out.println("Armazenamento inválido: " + args[7]);
+            return;
+        }
 
         final String hostname = args[0];
         System.setProperty("java.rmi.server.hostname", hostname);
 
-        UserCollection obj = new UserDatabase();
+        final UserDatabase database;
+        if (replica >= 0) {
+            if (directory != null) {
+                System.out.println("Réplicas são mantidas apenas em memória; o diretório de dados será ignorado.");
+            }
+            database = new UserDatabase(offHeap);
+
+        } else if (directory != null) {
+            try {
+                database = new UserDatabase(Paths.get(directory), offHeap);
+            } catch (IOException e) {
+                System.out.println("Não foi possível restaurar a base de dados.");
+                e.printStackTrace();
+                return;
+            }
+
+            final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "user-database-checkpoint");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    database.checkpoint();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }, CHECKPOINT_INTERVAL_MINUTES, CHECKPOINT_INTERVAL_MINUTES, TimeUnit.MINUTES);
+
+        } else {
+            database = new UserDatabase(offHeap);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(database::close));
+
+        final UserCollection collection;
+        if (replica >= 0) {
+            final UserCollection primary;
+            final Replicator replicator;
+            try {
+                primary = (UserCollection) LocateRegistry.getRegistry().lookup(primaryName);
+                replicator = new Replicator(primary, database);
+                replicator.start();
+            } catch (RemoteException | NotBoundException e) {
+                System.out.println("Erro remoto.");
+                e.printStackTrace();
+                return;
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(replicator::close));
+            collection = new ReplicaUserCollection(primary, database, replicator);
+
+        } else if (shardIndex >= 0) {
+            // Um fragmento só aceita os usuários que os clientes, com a mesma quantidade de fragmentos, buscariam nele
+            collection = new ShardUserCollection(database, shardIndex, shardTotal);
+
+        } else {
+            collection = database;
+        }
+
+        final MetricsUserCollection obj = new MetricsUserCollection(collection);
+        try {
+            obj.registerMBeans("server");
+        } catch (JMException e) {
+            System.out.println("Não foi possível registrar as métricas por JMX.");
+        }
         if (debug) {
-            obj = new DebugUserCollection(obj);
+            final ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "user-database-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reporter.scheduleWithFixedDelay(() -> {
+                for (final Map.Entry<String, MethodStats> entry : obj.stats().entrySet()) {
+                    if (entry.getValue().calls > 0) {
+                        System.out.println(entry.getKey() + ": " + entry.getValue());
+                    }
+                }
+            }, STATS_INTERVAL_SECONDS, STATS_INTERVAL_SECONDS, TimeUnit.SECONDS);
         }
 
         try {
-            final UserCollection stub = (UserCollection) UnicastRemoteObject.exportObject(obj, 0);
+            final UserCollection stub = export(obj, sockets);
 
             final Registry registry = LocateRegistry.getRegistry();
-            registry.bind("UserManager", stub);
+            registry.bind(name, stub);
 
-            System.out.println("Pronto.");
+            System.out.println("Pronto: " + name + ".");
 
         } catch (Exception e) {
             e.printStackTrace();
+            return;
+        }
+
+        if (binaryPort >= 0) {
+            try {
+                final BinaryServer binary = new BinaryServer(obj, binaryPort, Runtime.getRuntime().availableProcessors());
+                Runtime.getRuntime().addShutdownHook(new Thread(binary::close));
+                System.out.println("Protocolo binário na porta " + binary.port() + ".");
+            } catch (IOException e) {
+                System.out.println("Não foi possível abrir a porta binária.");
+                e.printStackTrace();
+            }
         }
     }
 }
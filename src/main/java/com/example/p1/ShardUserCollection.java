@@ -0,0 +1,154 @@
+package com.example.p1;
+
+import java.rmi.RemoteException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Representa a coleção exportada por um fragmento de uma {@link ShardedUserCollection}.
+ * <p>
+ * As escritas só são aceitas para os e-mails que pertencem a esse fragmento segundo o mesmo {@link ConsistentHashRing}
+ * utilizado pelos clientes, de forma que um cliente configurado com outra quantidade de fragmentos não espalhe um
+ * usuário por fragmentos que não o encontrariam. As leituras são repassadas à coleção sem verificação.
+ */
+public class ShardUserCollection implements UserCollection {
+    /**
+     * Coleção desse fragmento.
+     */
+    private final UserCollection collection;
+
+    /**
+     * Anel que distribui os e-mails entre os fragmentos.
+     */
+    private final ConsistentHashRing ring;
+
+    /**
+     * Índice desse fragmento.
+     */
+    private final int shard;
+
+    /**
+     * Constrói um fragmento.
+     *
+     * @param collection a coleção desse fragmento.
+     * @param shard      o índice desse fragmento.
+     * @param shards     a quantidade total de fragmentos.
+     */
+    ShardUserCollection(final UserCollection collection, final int shard, final int shards) {
+        if (shard < 0 || shard >= shards) {
+            throw new IllegalArgumentException("fragmento inválido: " + shard + "/" + shards);
+        }
+        this.collection = collection;
+        this.ring = new ConsistentHashRing(shards);
+        this.shard = shard;
+    }
+
+    /**
+     * Verifica se um e-mail pertence a esse fragmento.
+     *
+     * @param email o e-mail a ser verificado.
+     * @throws IllegalArgumentException caso o e-mail pertença a outro fragmento.
+     */
+    private void checkOwner(final String email) {
+        final int owner = ring.shardOf(email.toLowerCase(Locale.ROOT));
+        if (owner != shard) {
+            throw new IllegalArgumentException("o e-mail " + email + " pertence ao fragmento " + owner
+                + ", e não ao fragmento " + shard + ".");
+        }
+    }
+
+    @Override
+    public boolean create(final User user) throws RemoteException {
+        checkOwner(user.email);
+        return collection.create(user);
+    }
+
+    @Override
+    public List<Boolean> createAll(final List<User> users) throws RemoteException {
+        // Os e-mails são verificados antes que qualquer usuário seja adicionado
+        for (final User user : users) {
+            checkOwner(user.email);
+        }
+        return collection.createAll(users);
+    }
+
+    @Override
+    public List<User> read() throws RemoteException {
+        return collection.read();
+    }
+
+    @Override
+    public UserPage read(final String cursor, final int limit) throws RemoteException {
+        return collection.read(cursor, limit);
+    }
+
+    @Override
+    public ChangeSet changesSince(final long version) throws RemoteException {
+        return collection.changesSince(version);
+    }
+
+    @Override
+    public long version() throws RemoteException {
+        return collection.version();
+    }
+
+    @Override
+    public boolean update(final String email, final String key, final String value) throws RemoteException {
+        checkOwner(email);
+        return collection.update(email, key, value);
+    }
+
+    @Override
+    public List<Boolean> updateAll(final List<UserUpdate> updates) throws RemoteException {
+        for (final UserUpdate update : updates) {
+            checkOwner(update.email);
+        }
+        return collection.updateAll(updates);
+    }
+
+    @Override
+    public byte[] readPicture(final String pictureId, final int offset, final int length) throws RemoteException {
+        return collection.readPicture(pictureId, offset, length);
+    }
+
+    @Override
+    public User findByEmail(final String email) throws RemoteException {
+        return collection.findByEmail(email);
+    }
+
+    @Override
+    public List<User> findByFormation(final String formation) throws RemoteException {
+        return collection.findByFormation(formation);
+    }
+
+    @Override
+    public Map<String, List<String>> abilitiesByAddress(final String address) throws RemoteException {
+        return collection.abilitiesByAddress(address);
+    }
+
+    @Override
+    public SearchResult search(final String query, final int limit) throws RemoteException {
+        return collection.search(query, limit);
+    }
+
+    @Override
+    public Map<String, Long> aggregate(final String view, final String key, final int limit) throws RemoteException {
+        return collection.aggregate(view, key, limit);
+    }
+
+    @Override
+    public void addListener(final UserListener listener) throws RemoteException {
+        collection.addListener(listener);
+    }
+
+    @Override
+    public void removeListener(final UserListener listener) throws RemoteException {
+        collection.removeListener(listener);
+    }
+
+    @Override
+    public Map<String, MethodStats> stats() throws RemoteException {
+        return collection.stats();
+    }
+}
@@ -0,0 +1,540 @@
+package com.example.p1;
+
+import java.rmi.NotBoundException;
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+/**
+ * Representa uma coleção de usuários distribuída entre vários servidores, chamados fragmentos.
+ * <p>
+ * Cada usuário pertence ao fragmento indicado por um {@link ConsistentHashRing} a partir do seu e-mail normalizado.
+ * As operações sobre um usuário são enviadas apenas ao seu fragmento, as operações em lote são divididas entre os
+ * fragmentos envolvidos, e as leituras e consultas são enviadas a todos os fragmentos em paralelo, com os resultados
+ * combinados nesse cliente.
+ * <p>
+ * As versões retornadas por {@link #changesSince(long)} são identificadores locais dessa instância, que guardam a
+ * versão de cada fragmento. Já as mudanças enviadas aos objetos registrados por {@link #addListener(UserListener)}
+ * vêm diretamente de cada fragmento, com a versão daquele fragmento, e não podem ser passadas a
+ * {@link #changesSince(long)}.
+ */
+public class ShardedUserCollection implements UserCollection {
+    /**
+     * Nome sob o qual um servidor não fragmentado é registrado, e prefixo dos nomes dos fragmentos.
+     */
+    static final String REGISTRY_NAME = "UserManager";
+
+    /**
+     * Quantidade máxima de versões guardadas por {@link #changesSince(long)}.
+     */
+    private static final int MAX_VERSIONS = 64;
+
+    /**
+     * Fragmentos dessa coleção, indexados pela sua posição no anel.
+     */
+    private final List<UserCollection> shards;
+
+    /**
+     * Anel que define o fragmento de cada e-mail.
+     */
+    private final ConsistentHashRing ring;
+
+    /**
+     * Executor que envia as chamadas aos fragmentos em paralelo.
+     */
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "user-shard-client");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Versões de cada fragmento, indexadas pelo identificador retornado por {@link #changesSince(long)}.
+     * <p>
+     * Apenas as {@link #MAX_VERSIONS} versões mais recentes são guardadas.
+     */
+    private final Map<Long, long[]> versions = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Long, long[]> eldest) {
+            return size() > MAX_VERSIONS;
+        }
+    };
+
+    /**
+     * Próximo identificador de versão a ser retornado por {@link #changesSince(long)}.
+     */
+    private long nextVersion = 1;
+
+    /**
+     * Constrói uma coleção distribuída.
+     *
+     * @param shards os fragmentos, onde o fragmento de índice <code>i</code> é o <code>i</code>-ésimo servidor.
+     */
+    public ShardedUserCollection(final List<UserCollection> shards) {
+        this.shards = new ArrayList<>(shards);
+        this.ring = new ConsistentHashRing(shards.size());
+    }
+
+    /**
+     * @param shard o índice de um fragmento.
+     * @return o nome sob o qual esse fragmento é registrado.
+     */
+    static String registryName(final int shard) {
+        return REGISTRY_NAME + "-" + shard;
+    }
+
+    /**
+     * @param name    o nome sob o qual um servidor primário é registrado.
+     * @param replica o índice de uma réplica desse servidor.
+     * @return o nome sob o qual essa réplica é registrada.
+     */
+    static String replicaName(final String name, final int replica) {
+        return name + "-replica-" + replica;
+    }
+
+    /**
+     * Obtém a coleção de um servidor ou de um conjunto de fragmentos registrados em um host.
+     *
+     * @param hostname o host do registro RMI.
+     * @param shards   a quantidade de fragmentos, ou 0 caso o servidor não seja fragmentado.
+     * @return a coleção obtida.
+     * @throws RemoteException   caso ocorra uma exceção durante a conexão RMI.
+     * @throws NotBoundException caso algum servidor não esteja registrado.
+     */
+    static UserCollection connect(final String hostname, final int shards) throws RemoteException, NotBoundException {
+        return connect(hostname, shards, 0);
+    }
+
+    /**
+     * Obtém a coleção de um servidor ou de um conjunto de fragmentos registrados em um host, cada um com as suas
+     * réplicas de leitura.
+     *
+     * @param hostname o host do registro RMI.
+     * @param shards   a quantidade de fragmentos, ou 0 caso o servidor não seja fragmentado.
+     * @param replicas a quantidade de réplicas de cada servidor, ou 0 caso as leituras sejam feitas nos primários.
+     * @return a coleção obtida.
+     * @throws RemoteException   caso ocorra uma exceção durante a conexão RMI.
+     * @throws NotBoundException caso algum servidor não esteja registrado.
+     */
+    static UserCollection connect(final String hostname, final int shards, final int replicas)
+        throws RemoteException, NotBoundException {
+        final Registry registry = LocateRegistry.getRegistry(hostname);
+        if (shards <= 0) {
+            return lookup(registry, REGISTRY_NAME, replicas);
+        }
+
+        final List<UserCollection> collections = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            collections.add(lookup(registry, registryName(i), replicas));
+        }
+        return new ShardedUserCollection(collections);
+    }
+
+    /**
+     * Obtém a coleção de um servidor primário, combinada com as suas réplicas de leitura.
+     *
+     * @param registry o registro RMI.
+     * @param name     o nome sob o qual o primário é registrado.
+     * @param replicas a quantidade de réplicas do primário.
+     * @return a coleção obtida.
+     * @throws RemoteException   caso ocorra uma exceção durante a conexão RMI.
+     * @throws NotBoundException caso algum servidor não esteja registrado.
+     */
+    private static UserCollection lookup(final Registry registry, final String name, final int replicas)
+        throws RemoteException, NotBoundException {
+        final UserCollection primary = (UserCollection) registry.lookup(name);
+        if (replicas <= 0) {
+            return primary;
+        }
+
+        final List<UserCollection> collections = new ArrayList<>(replicas);
+        for (int r = 0; r < replicas; r++) {
+            collections.add((UserCollection) registry.lookup(replicaName(name, r)));
+        }
+        return new ReplicatedUserCollection(primary, collections);
+    }
+
+    /**
+     * Normaliza um e-mail, da mesma forma que {@link UserDatabase}.
+     *
+     * @param email o e-mail a ser normalizado.
+     * @return o e-mail normalizado.
+     */
+    private static String normalize(final String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param email um e-mail.
+     * @return o fragmento dono desse e-mail.
+     */
+    private UserCollection shardOf(final String email) {
+        return shards.get(ring.shardOf(normalize(email)));
+    }
+
+    /**
+     * Executa uma chamada em todos os fragmentos em paralelo.
+     *
+     * @param call a chamada a ser executada.
+     * @param <T>  o tipo do resultado da chamada.
+     * @return o resultado da chamada em cada fragmento, na ordem dos fragmentos.
+     * @throws RemoteException caso a chamada lance uma exceção em algum fragmento.
+     */
+    private <T> List<T> scatter(final ShardCall<T> call) throws RemoteException {
+        final List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            final int shard = i;
+            futures.add(executor.submit(() -> call.apply(shard, shards.get(shard))));
+        }
+        return gather(futures);
+    }
+
+    /**
+     * Aguarda o resultado de chamadas enviadas aos fragmentos.
+     *
+     * @param futures os resultados pendentes das chamadas.
+     * @param <T>     o tipo do resultado das chamadas.
+     * @return o resultado de cada chamada, na ordem informada.
+     * @throws RemoteException caso alguma chamada lance uma exceção.
+     */
+    private static <T> List<T> gather(final List<Future<T>> futures) throws RemoteException {
+        final List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (final Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("chamada aos fragmentos interrompida.", e);
+
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RemoteException) {
+                throw (RemoteException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RemoteException("falha na chamada a um fragmento.", e.getCause());
+
+        } finally {
+            for (final Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Divide uma operação em lote entre os fragmentos donos de cada item e executa as partes em paralelo.
+     *
+     * @param items os itens do lote.
+     * @param email a função que obtém o e-mail de um item.
+     * @param call  a chamada em lote a ser executada em cada fragmento, que retorna um resultado por item.
+     * @param <T>   o tipo dos itens.
+     * @return o resultado de cada item, na ordem do lote.
+     * @throws RemoteException caso a chamada lance uma exceção em algum fragmento.
+     */
+    private <T> List<Boolean> partition(final List<T> items, final Function<T, String> email,
+                                        final BatchCall<T> call) throws RemoteException {
+        final Map<Integer, List<Integer>> indices = new TreeMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            indices.computeIfAbsent(ring.shardOf(normalize(email.apply(items.get(i)))), shard -> new ArrayList<>()).add(i);
+        }
+
+        final List<Future<List<Boolean>>> futures = new ArrayList<>(indices.size());
+        for (final Map.Entry<Integer, List<Integer>> entry : indices.entrySet()) {
+            final List<T> part = new ArrayList<>(entry.getValue().size());
+            for (final int index : entry.getValue()) {
+                part.add(items.get(index));
+            }
+            final UserCollection shard = shards.get(entry.getKey());
+            futures.add(executor.submit(() -> call.apply(shard, part)));
+        }
+
+        final Boolean[] results = new Boolean[items.size()];
+        final List<List<Boolean>> parts = gather(futures);
+        int i = 0;
+        for (final List<Integer> part : indices.values()) {
+            final List<Boolean> partResults = parts.get(i++);
+            for (int j = 0; j < part.size(); j++) {
+                results[part.get(j)] = partResults.get(j);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    @Override
+    public boolean create(final User user) throws RemoteException {
+        return shardOf(user.email).create(user);
+    }
+
+    @Override
+    public List<Boolean> createAll(final List<User> users) throws RemoteException {
+        return partition(users, user -> user.email, UserCollection::createAll);
+    }
+
+    @Override
+    public List<User> read() throws RemoteException {
+        final List<User> users = new ArrayList<>();
+        for (final List<User> shardUsers : scatter((i, shard) -> shard.read())) {
+            users.addAll(shardUsers);
+        }
+        return new UserList(users);
+    }
+
+    @Override
+    public UserPage read(final String cursor, final int limit) throws RemoteException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("o limite da página deve ser positivo: " + limit);
+        }
+
+        // Cada fragmento retorna os seus primeiros usuários após o cursor, dentre os quais estão os primeiros no total
+        final List<UserPage> pages = scatter((i, shard) -> shard.read(cursor, limit));
+        final List<User> users = new ArrayList<>();
+        boolean more = false;
+        for (final UserPage page : pages) {
+            users.addAll(page.users);
+            more |= page.hasNext();
+        }
+        users.sort(Comparator.comparing(user -> normalize(user.email)));
+
+        if (users.size() > limit) {
+            more = true;
+        }
+        final List<User> page = users.subList(0, Math.min(limit, users.size()));
+        final String nextCursor = more && !page.isEmpty() ? normalize(page.get(page.size() - 1).email) : null;
+        return new UserPage(page, nextCursor);
+    }
+
+    @Override
+    public ChangeSet changesSince(final long version) throws RemoteException {
+        final long[] previous;
+        synchronized (versions) {
+            previous = versions.get(version);
+        }
+
+        // Uma versão desconhecida leva cada fragmento a indicar que os usuários devem ser lidos novamente
+        final List<ChangeSet> changes = scatter((i, shard) -> shard.changesSince(previous == null ? Long.MIN_VALUE : previous[i]));
+        final long[] current = new long[shards.size()];
+        boolean reset = false;
+        final List<User> users = new ArrayList<>();
+        for (int i = 0; i < current.length; i++) {
+            current[i] = changes.get(i).version;
+            reset |= changes.get(i).reset;
+            users.addAll(changes.get(i).users);
+        }
+
+        final long next = register(current);
+        return reset ? new ChangeSet(Collections.emptyList(), next, true) : new ChangeSet(users, next, false);
+    }
+
+    @Override
+    public long version() throws RemoteException {
+        final List<Long> shardVersions = scatter((i, shard) -> shard.version());
+        final long[] current = new long[shardVersions.size()];
+        for (int i = 0; i < current.length; i++) {
+            current[i] = shardVersions.get(i);
+        }
+        return register(current);
+    }
+
+    /**
+     * Guarda as versões de cada fragmento sob um novo identificador.
+     *
+     * @param current a versão de cada fragmento.
+     * @return o identificador, maior que todos os anteriores.
+     */
+    private long register(final long[] current) {
+        synchronized (versions) {
+            final long next = nextVersion++;
+            versions.put(next, current);
+            return next;
+        }
+    }
+
+    @Override
+    public boolean update(final String email, final String key, final String value) throws RemoteException {
+        return shardOf(email).update(email, key, value);
+    }
+
+    @Override
+    public List<Boolean> updateAll(final List<UserUpdate> updates) throws RemoteException {
+        return partition(updates, update -> update.email, UserCollection::updateAll);
+    }
+
+    @Override
+    public byte[] readPicture(final String pictureId, final int offset, final int length) throws RemoteException {
+        // A foto se encontra no fragmento do usuário que a enviou primeiro, que não é conhecido por esse cliente
+        for (final byte[] chunk : scatter((i, shard) -> shard.readPicture(pictureId, offset, length))) {
+            if (chunk != null) {
+                return chunk;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public User findByEmail(final String email) throws RemoteException {
+        return shardOf(email).findByEmail(email);
+    }
+
+    @Override
+    public List<User> findByFormation(final String formation) throws RemoteException {
+        final List<User> users = new ArrayList<>();
+        for (final List<User> shardUsers : scatter((i, shard) -> shard.findByFormation(formation))) {
+            users.addAll(shardUsers);
+        }
+        return new UserList(users);
+    }
+
+    @Override
+    public Map<String, List<String>> abilitiesByAddress(final String address) throws RemoteException {
+        final Map<String, List<String>> abilities = new LinkedHashMap<>();
+        for (final Map<String, List<String>> shardAbilities : scatter((i, shard) -> shard.abilitiesByAddress(address))) {
+            abilities.putAll(shardAbilities);
+        }
+        return abilities;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Cada fragmento pontua os seus usuários com as frequências das palavras apenas entre os seus próprios usuários, e
+     * os resultados são ordenados por essas pontuações. Uma palavra rara em um fragmento e comum em outro tem, assim,
+     * pesos diferentes em cada um, e a ordem pode diferir da ordem de uma única base com todos os usuários. A
+     * diferença diminui conforme os fragmentos crescem, já que o anel distribui os usuários de maneira uniforme.
+     */
+    @Override
+    public SearchResult search(final String query, final int limit) throws RemoteException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("o limite da busca deve ser positivo: " + limit);
+        }
+
+        // Os mais bem pontuados no total estão entre os mais bem pontuados de cada fragmento
+        final List<SearchResult> results = scatter((i, shard) -> shard.search(query, limit));
+        final List<double[]> matches = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            final double[] scores = results.get(i).scores;
+            for (int j = 0; j < scores.length; j++) {
+                matches.add(new double[]{scores[j], i, j});
+            }
+        }
+        matches.sort((a, b) -> Double.compare(b[0], a[0]));
+
+        final int count = Math.min(limit, matches.size());
+        final List<User> users = new ArrayList<>(count);
+        final double[] scores = new double[count];
+        for (int i = 0; i < count; i++) {
+            final double[] match = matches.get(i);
+            users.add(results.get((int) match[1]).users.get((int) match[2]));
+            scores[i] = match[0];
+        }
+        return new SearchResult(users, scores);
+    }
+
+    @Override
+    public Map<String, Long> aggregate(final String view, final String key, final int limit) throws RemoteException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("o limite da agregação deve ser positivo: " + limit);
+        }
+
+        // As maiores contagens de cada fragmento não determinam as maiores somas, então cada fragmento envia todas
+        final Map<String, String> labels = new HashMap<>();
+        final Map<String, Long> totals = new HashMap<>();
+        for (final Map<String, Long> counts : scatter((i, shard) -> shard.aggregate(view, key, Integer.MAX_VALUE))) {
+            for (final Map.Entry<String, Long> entry : counts.entrySet()) {
+                final String value = normalize(entry.getKey());
+                labels.putIfAbsent(value, entry.getKey());
+                totals.merge(value, entry.getValue(), Long::sum);
+            }
+        }
+
+        final List<Map.Entry<String, Long>> entries = new ArrayList<>(totals.entrySet());
+        entries.sort(Map.Entry.<String, Long>comparingByValue().reversed()
+            .thenComparing(entry -> labels.get(entry.getKey())));
+        final Map<String, Long> result = new LinkedHashMap<>();
+        for (final Map.Entry<String, Long> entry : entries.subList(0, Math.min(limit, entries.size()))) {
+            result.put(labels.get(entry.getKey()), entry.getValue());
+        }
+        return result;
+    }
+
+    @Override
+    public void addListener(final UserListener listener) throws RemoteException {
+        scatter((i, shard) -> {
+            shard.addListener(listener);
+            return null;
+        });
+    }
+
+    @Override
+    public void removeListener(final UserListener listener) throws RemoteException {
+        scatter((i, shard) -> {
+            shard.removeListener(listener);
+            return null;
+        });
+    }
+
+    @Override
+    public Map<String, MethodStats> stats() throws RemoteException {
+        final Map<String, MethodStats> stats = new TreeMap<>();
+        final List<Map<String, MethodStats>> shardStats = scatter((i, shard) -> shard.stats());
+        for (int i = 0; i < shardStats.size(); i++) {
+            for (final Map.Entry<String, MethodStats> entry : shardStats.get(i).entrySet()) {
+                stats.put(registryName(i) + "." + entry.getKey(), entry.getValue());
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Representa uma chamada a um fragmento.
+     *
+     * @param <T> o tipo do resultado da chamada.
+     */
+    @FunctionalInterface
+    private interface ShardCall<T> {
+        /**
+         * Executa a chamada.
+         *
+         * @param index o índice do fragmento.
+         * @param shard o fragmento.
+         * @return o resultado da chamada.
+         * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+         */
+        T apply(int index, UserCollection shard) throws RemoteException;
+    }
+
+    /**
+     * Representa uma chamada em lote a um fragmento.
+     *
+     * @param <T> o tipo dos itens do lote.
+     */
+    @FunctionalInterface
+    private interface BatchCall<T> {
+        /**
+         * Executa a chamada.
+         *
+         * @param shard o fragmento.
+         * @param items os itens do lote pertencentes a esse fragmento.
+         * @return o resultado de cada item.
+         * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+         */
+        List<Boolean> apply(UserCollection shard, List<T> items) throws RemoteException;
+    }
+}
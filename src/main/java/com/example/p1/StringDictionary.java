@@ -0,0 +1,84 @@
+package com.example.p1;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Representa um dicionário que associa cadeias de caracteres a códigos inteiros.
+ * <p>
+ * Cada cadeia distinta recebe um código sequencial na primeira vez em que é codificada, e o código nunca muda. Assim,
+ * campos que se repetem entre muitos perfis (como formações, endereços e habilidades) são mantidos em memória uma
+ * única vez, e dois valores podem ser comparados pelos seus códigos.
+ * <p>
+ * A consulta e a decodificação não bloqueiam; apenas a inserção de uma cadeia nova é sincronizada.
+ */
+final class StringDictionary {
+    /**
+     * Códigos das cadeias desse dicionário.
+     */
+    private final ConcurrentMap<String, Integer> codes = new ConcurrentHashMap<>();
+
+    /**
+     * Cadeias desse dicionário, indexadas pelos seus códigos.
+     * <p>
+     * O vetor é substituído por um maior quando está cheio; posições a partir de {@link #size} ainda não foram usadas.
+     */
+    private volatile String[] values = new String[256];
+
+    /**
+     * Quantidade de cadeias desse dicionário.
+     */
+    private int size;
+
+    /**
+     * Codifica uma cadeia, adicionando-a a esse dicionário caso ela ainda não exista.
+     *
+     * @param value a cadeia a ser codificada.
+     * @return o código da cadeia.
+     */
+    int encode(final String value) {
+        final Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+
+        synchronized (this) {
+            final Integer existing = codes.get(value);
+            if (existing != null) {
+                return existing;
+            }
+
+            String[] values = this.values;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+                this.values = values;
+            }
+            values[size] = value;
+            // O código só é publicado após a cadeia estar no vetor
+            codes.put(value, size);
+            return size++;
+        }
+    }
+
+    /**
+     * Consulta o código de uma cadeia sem adicioná-la a esse dicionário.
+     *
+     * @param value a cadeia a ser consultada.
+     * @return o código da cadeia ou -1 caso ela não exista nesse dicionário.
+     */
+    int lookup(final String value) {
+        final Integer code = codes.get(value);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * Decodifica um código.
+     *
+     * @param code um código retornado por {@link #encode(String)}.
+     * @return a cadeia associada ao código.
+     */
+    String decode(final int code) {
+        return values[code];
+    }
+}
@@ -0,0 +1,478 @@
+package com.example.p1;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * Representa um índice invertido dos textos dos registros de uma {@link UserDatabase}.
+ * <p>
+ * Cada registro indexado recebe um número sequencial, e cada termo é associado à lista dos números dos registros que
+ * o contêm, em ordem crescente, com a quantidade de ocorrências em cada um. Os termos são as palavras dos textos sem
+ * acentos e em letras minúsculas, de forma que "Programação" e "programacao" são o mesmo termo, e palavras muito
+ * comuns do português são descartadas.
+ * <p>
+ * Uma busca percorre as listas dos termos pedidos em paralelo, pontuando cada registro com BM25, e mantém apenas os
+ * melhores resultados em um <i>heap</i> limitado. Assim, ela não ordena nem guarda todos os registros encontrados.
+ * Assim que o <i>heap</i> está cheio, os termos comuns demais para colocar um registro entre os melhores deixam de ser
+ * percorridos e são apenas consultados nos registros encontrados pelos demais termos.
+ * <p>
+ * As mudanças dos textos de um mesmo registro devem ser sincronizadas nele. As listas não bloqueiam leituras: uma
+ * mudança que insere ou remove um registro no meio de uma lista publica uma nova versão dela, e as versões anteriores
+ * continuam válidas para as buscas em andamento.
+ */
+final class TextIndex {
+    /**
+     * Parâmetro de saturação da frequência dos termos no BM25.
+     */
+    private static final double K1 = 1.2;
+
+    /**
+     * Parâmetro de normalização pelo tamanho dos textos no BM25.
+     */
+    private static final double B = 0.75;
+
+    /**
+     * Padrão que separa os termos de um texto normalizado.
+     */
+    private static final Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /**
+     * Padrão das marcas diacríticas de um texto decomposto.
+     */
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    /**
+     * Palavras que não são indexadas, já normalizadas.
+     */
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+        "a", "o", "as", "os", "e", "de", "da", "do", "das", "dos", "em", "na", "no", "nas", "nos", "um", "uma",
+        "com", "para", "por", "pela", "pelo", "ao", "aos", "que", "se"));
+
+    /**
+     * Listas invertidas desse índice, indexadas pelo termo.
+     */
+    private final ConcurrentMap<String, Postings> postings = new ConcurrentHashMap<>();
+
+    /**
+     * Registros desse índice, indexados pelo número.
+     * <p>
+     * O vetor é substituído por um maior quando está cheio; posições a partir de {@link #size} ainda não foram usadas.
+     */
+    private volatile UserRecord[] records = new UserRecord[1024];
+
+    /**
+     * Quantidade de termos do texto de cada registro, indexada pelo número do registro.
+     */
+    private volatile int[] lengths = new int[1024];
+
+    /**
+     * Quantidade de registros desse índice.
+     */
+    private volatile int size;
+
+    /**
+     * Soma das quantidades de termos dos textos de todos os registros.
+     */
+    private volatile long totalLength;
+
+    /**
+     * Divide um texto em termos normalizados.
+     *
+     * @param text o texto.
+     * @return os termos do texto, na ordem em que aparecem, possivelmente repetidos.
+     */
+    static List<String> tokenize(final String text) {
+        final String folded = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+            .toLowerCase(Locale.ROOT);
+
+        final List<String> terms = new ArrayList<>();
+        for (final String term : SEPARATOR.split(folded)) {
+            if (!term.isEmpty() && !STOP_WORDS.contains(term)) {
+                terms.add(term);
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Conta as ocorrências dos termos de textos.
+     *
+     * @param texts os textos.
+     * @return a quantidade de ocorrências de cada termo.
+     */
+    private static Map<String, Integer> count(final Iterable<String> texts) {
+        final Map<String, Integer> counts = new HashMap<>();
+        for (final String text : texts) {
+            for (final String term : tokenize(text)) {
+                counts.merge(term, 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Adiciona um registro a esse índice.
+     * <p>
+     * Deve ser chamado uma única vez por registro, sincronizado nele.
+     *
+     * @param record o registro.
+     * @param texts  os textos do registro.
+     */
+    void add(final UserRecord record, final Iterable<String> texts) {
+        final int document;
+        synchronized (this) {
+            document = size;
+            if (document == records.length) {
+                records = Arrays.copyOf(records, document * 2);
+                lengths = Arrays.copyOf(lengths, document * 2);
+            }
+            records[document] = record;
+            record.document = document;
+            size = document + 1;
+        }
+        change(document, count(texts));
+    }
+
+    /**
+     * Adiciona textos a um registro desse índice.
+     * <p>
+     * Deve ser chamado sincronizado no registro.
+     *
+     * @param record o registro, já adicionado com {@link #add(UserRecord, Iterable)}.
+     * @param texts  os textos adicionados.
+     */
+    void append(final UserRecord record, final Iterable<String> texts) {
+        change(record.document, count(texts));
+    }
+
+    /**
+     * Substitui os textos de um registro desse índice.
+     * <p>
+     * Deve ser chamado sincronizado no registro.
+     *
+     * @param record   o registro, já adicionado com {@link #add(UserRecord, Iterable)}.
+     * @param previous os textos anteriores do registro.
+     * @param current  os textos atuais do registro.
+     */
+    void replace(final UserRecord record, final Iterable<String> previous, final Iterable<String> current) {
+        final Map<String, Integer> counts = count(current);
+        for (final Map.Entry<String, Integer> entry : count(previous).entrySet()) {
+            counts.merge(entry.getKey(), -entry.getValue(), Integer::sum);
+        }
+        counts.values().removeIf(delta -> delta == 0);
+        change(record.document, counts);
+    }
+
+    /**
+     * Altera as ocorrências de termos em um registro desse índice.
+     *
+     * @param document o número do registro.
+     * @param deltas   a variação da quantidade de ocorrências de cada termo.
+     */
+    private void change(final int document, final Map<String, Integer> deltas) {
+        int length = 0;
+        for (final Map.Entry<String, Integer> entry : deltas.entrySet()) {
+            final Postings list = postings.computeIfAbsent(entry.getKey(), term -> new Postings());
+            synchronized (list) {
+                list.change(document, entry.getValue());
+            }
+            length += entry.getValue();
+        }
+        synchronized (this) {
+            lengths[document] += length;
+            totalLength += length;
+        }
+    }
+
+    /**
+     * Busca os registros mais relevantes para uma consulta.
+     * <p>
+     * Um registro é encontrado caso contenha qualquer termo da consulta; os que contêm mais termos, ou termos mais
+     * raros, são mais relevantes.
+     *
+     * @param query a consulta, em texto livre.
+     * @param limit a quantidade máxima de registros encontrados.
+     * @return os registros encontrados e as suas pontuações, do mais relevante ao menos relevante.
+     */
+    Matches search(final String query, final int limit) {
+        final int documents = size;
+        final double averageLength = Math.max(1, documents == 0 ? 0 : (double) totalLength / documents);
+        final int[] lengths = this.lengths;
+        final UserRecord[] records = this.records;
+
+        final List<Postings.Snapshot> lists = new ArrayList<>();
+        for (final String term : new LinkedHashSet<>(tokenize(query))) {
+            final Postings list = postings.get(term);
+            if (list != null) {
+                final Postings.Snapshot snapshot = list.snapshot();
+                if (snapshot.size > 0) {
+                    lists.add(snapshot);
+                }
+            }
+        }
+        if (lists.isEmpty() || limit <= 0) {
+            return new Matches(Collections.emptyList(), new double[0]);
+        }
+
+        // Os termos são ordenados pela maior pontuação que podem dar a um registro, que só depende da sua raridade
+        lists.sort(Comparator.comparingInt(list -> -list.size));
+        final int terms = lists.size();
+        final double[] idf = new double[terms];
+        final double[] bounds = new double[terms];
+        final int[] positions = new int[terms];
+        for (int t = 0; t < terms; t++) {
+            final int frequency = lists.get(t).size;
+            idf[t] = Math.log(1 + (documents - frequency + 0.5) / (frequency + 0.5));
+            bounds[t] = idf[t] * (K1 + 1) + (t > 0 ? bounds[t - 1] : 0);
+        }
+
+        // O menor elemento do heap é o pior dos melhores registros encontrados até o momento
+        final PriorityQueue<double[]> best = new PriorityQueue<>(Math.min(limit, 1024) + 1,
+            (a, b) -> a[0] != b[0] ? Double.compare(a[0], b[0]) : Double.compare(b[1], a[1]));
+        double threshold = -1;
+
+        // MaxScore: os termos iniciais, que juntos não superam o limiar, apenas completam a pontuação dos registros
+        // encontrados pelos demais, em vez de serem percorridos por inteiro
+        int essential = 0;
+        for (; ; ) {
+            int document = Integer.MAX_VALUE;
+            for (int t = essential; t < terms; t++) {
+                final Postings.Snapshot list = lists.get(t);
+                if (positions[t] < list.size) {
+                    document = Math.min(document, list.documents[positions[t]]);
+                }
+            }
+            // Registros adicionados após o início da busca ficam ao final das listas e são ignorados
+            if (document >= documents) {
+                break;
+            }
+
+            final double norm = K1 * (1 - B + B * lengths[document] / averageLength);
+            double score = 0;
+            for (int t = essential; t < terms; t++) {
+                final Postings.Snapshot list = lists.get(t);
+                if (positions[t] < list.size && list.documents[positions[t]] == document) {
+                    score += score(idf[t], list.frequencies[positions[t]], norm);
+                    positions[t]++;
+                }
+            }
+            for (int t = essential - 1; t >= 0 && score + bounds[t] > threshold; t--) {
+                final Postings.Snapshot list = lists.get(t);
+                positions[t] = list.advance(positions[t], document);
+                if (positions[t] < list.size && list.documents[positions[t]] == document) {
+                    score += score(idf[t], list.frequencies[positions[t]], norm);
+                }
+            }
+
+            if (best.size() < limit) {
+                best.add(new double[]{score, document});
+            } else if (score > threshold) {
+                best.poll();
+                best.add(new double[]{score, document});
+            } else {
+                continue;
+            }
+            if (best.size() == limit) {
+                threshold = best.peek()[0];
+                while (essential < terms && bounds[essential] <= threshold) {
+                    essential++;
+                }
+            }
+        }
+
+        final int count = best.size();
+        final UserRecord[] found = new UserRecord[count];
+        final double[] scores = new double[count];
+        for (int i = count - 1; i >= 0; i--) {
+            final double[] entry = best.poll();
+            found[i] = records[(int) entry[1]];
+            scores[i] = entry[0];
+        }
+        return new Matches(Arrays.asList(found), scores);
+    }
+
+    /**
+     * Calcula a pontuação BM25 de um termo em um registro.
+     *
+     * @param idf       o peso do termo pela sua raridade.
+     * @param frequency a quantidade de ocorrências do termo no registro.
+     * @param norm      o fator de normalização pelo tamanho do texto do registro.
+     * @return a pontuação do termo no registro.
+     */
+    private static double score(final double idf, final int frequency, final double norm) {
+        return idf * frequency * (K1 + 1) / (frequency + norm);
+    }
+
+    /**
+     * Representa os registros encontrados por uma busca.
+     */
+    static final class Matches {
+        /**
+         * Registros encontrados, do mais relevante ao menos relevante.
+         */
+        final List<UserRecord> records;
+
+        /**
+         * Pontuação de cada registro de {@link #records}.
+         */
+        final double[] scores;
+
+        /**
+         * Constrói um resultado de busca.
+         *
+         * @param records os registros encontrados.
+         * @param scores  as pontuações dos registros.
+         */
+        Matches(final List<UserRecord> records, final double[] scores) {
+            this.records = records;
+            this.scores = scores;
+        }
+    }
+
+    /**
+     * Representa a lista invertida de um termo.
+     * <p>
+     * As mudanças devem ser sincronizadas na lista.
+     */
+    private static final class Postings {
+        /**
+         * Versão atual dessa lista.
+         */
+        private volatile Snapshot snapshot = new Snapshot(new int[4], new int[4], 0);
+
+        /**
+         * @return a versão atual dessa lista, cujos registros não mudam com mudanças posteriores.
+         */
+        Snapshot snapshot() {
+            return snapshot;
+        }
+
+        /**
+         * Altera a quantidade de ocorrências do termo em um registro.
+         *
+         * @param document o número do registro.
+         * @param delta    a variação da quantidade de ocorrências.
+         */
+        void change(final int document, final int delta) {
+            final Snapshot current = snapshot;
+            final int[] documents = current.documents;
+            final int[] frequencies = current.frequencies;
+            final int size = current.size;
+
+            // Os registros são numerados em ordem de adição, então novos registros quase sempre vão ao final
+            final int index = size > 0 && documents[size - 1] < document
+                ? -size - 1 : Arrays.binarySearch(documents, 0, size, document);
+            if (index >= 0) {
+                final int frequency = frequencies[index] + delta;
+                if (frequency > 0) {
+                    // Uma busca em andamento pode ver qualquer uma das duas quantidades, o que não a invalida
+                    frequencies[index] = frequency;
+                    return;
+                }
+
+                final int[] updatedDocuments = new int[documents.length];
+                final int[] updatedFrequencies = new int[documents.length];
+                System.arraycopy(documents, 0, updatedDocuments, 0, index);
+                System.arraycopy(frequencies, 0, updatedFrequencies, 0, index);
+                System.arraycopy(documents, index + 1, updatedDocuments, index, size - index - 1);
+                System.arraycopy(frequencies, index + 1, updatedFrequencies, index, size - index - 1);
+                snapshot = new Snapshot(updatedDocuments, updatedFrequencies, size - 1);
+                return;
+            }
+            if (delta <= 0) {
+                return;
+            }
+
+            final int insertion = -index - 1;
+            if (insertion == size && size < documents.length) {
+                // Posições a partir de size não são lidas pelas versões anteriores
+                documents[size] = document;
+                frequencies[size] = delta;
+                snapshot = new Snapshot(documents, frequencies, size + 1);
+                return;
+            }
+
+            final int capacity = size < documents.length ? documents.length : documents.length * 2;
+            final int[] updatedDocuments = new int[capacity];
+            final int[] updatedFrequencies = new int[capacity];
+            System.arraycopy(documents, 0, updatedDocuments, 0, insertion);
+            System.arraycopy(frequencies, 0, updatedFrequencies, 0, insertion);
+            updatedDocuments[insertion] = document;
+            updatedFrequencies[insertion] = delta;
+            System.arraycopy(documents, insertion, updatedDocuments, insertion + 1, size - insertion);
+            System.arraycopy(frequencies, insertion, updatedFrequencies, insertion + 1, size - insertion);
+            snapshot = new Snapshot(updatedDocuments, updatedFrequencies, size + 1);
+        }
+
+        /**
+         * Representa uma versão de uma lista invertida.
+         */
+        static final class Snapshot {
+            /**
+             * Números dos registros que contêm o termo, em ordem crescente.
+             */
+            final int[] documents;
+
+            /**
+             * Quantidade de ocorrências do termo em cada registro de {@link #documents}.
+             */
+            final int[] frequencies;
+
+            /**
+             * Quantidade de registros dessa versão.
+             */
+            final int size;
+
+            /**
+             * Constrói uma versão de uma lista invertida.
+             *
+             * @param documents   os números dos registros.
+             * @param frequencies as quantidades de ocorrências.
+             * @param size        a quantidade de registros.
+             */
+            Snapshot(final int[] documents, final int[] frequencies, final int size) {
+                this.documents = documents;
+                this.frequencies = frequencies;
+                this.size = size;
+            }
+
+            /**
+             * Encontra a primeira posição, a partir de outra, cujo registro não é anterior a um registro.
+             * <p>
+             * A busca salta posições em passos crescentes e depois faz uma busca binária, de forma que avançar por
+             * poucas posições é barato mesmo em listas longas.
+             *
+             * @param from     a posição inicial.
+             * @param document o número do registro.
+             * @return a posição encontrada ou {@link #size} caso todos os registros sejam anteriores.
+             */
+            int advance(final int from, final int document) {
+                int low = from;
+                int step = 1;
+                while (low + step < size && documents[low + step] < document) {
+                    low += step;
+                    step <<= 1;
+                }
+                if (low >= size || documents[low] >= document) {
+                    return low;
+                }
+                final int index = Arrays.binarySearch(documents, low + 1, Math.min(low + step + 1, size), document);
+                return index >= 0 ? index : -index - 1;
+            }
+        }
+    }
+}
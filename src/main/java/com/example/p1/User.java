@@ -1,13 +1,18 @@
 package com.example.p1;
 
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Representa o perfil de um usuário.
+ * <p>
+ * Ao ser serializado, um usuário é codificado no formato compacto de {@link UserCodec}.
  */
 public final class User implements Serializable {
     /**
@@ -26,11 +31,27 @@ public final class User implements Serializable {
     public final String name;
 
     /**
-     * Conteúdo do arquivo da foto de perfil do usuário.
+     * Identificador da foto de perfil do usuário.
      * <p>
-     * Caso o usuário não possua foto, esse vetor tem comprimento zero.
+     * O conteúdo da foto não faz parte do perfil e deve ser lido sob demanda por
+     * {@link UserCollection#readPicture(String, int, int)}. Caso o usuário não possua foto, esse campo é nulo.
      */
-    public final byte[] pictureData;
+    public final String pictureId;
+
+    /**
+     * Tamanho, em bytes, do arquivo da foto de perfil do usuário.
+     * <p>
+     * Caso o usuário não possua foto, esse campo é zero.
+     */
+    public final int pictureSize;
+
+    /**
+     * Conteúdo do arquivo da foto de perfil do usuário, enquanto ela ainda não foi enviada para a coleção.
+     * <p>
+     * Esse campo só é preenchido em perfis recém-construídos e é descartado pela coleção ao adicionar o usuário, de
+     * forma que perfis lidos de uma coleção não transportam o conteúdo da foto.
+     */
+    private byte[] pictureData;
 
     /**
      * Residência do usuário.
@@ -46,6 +67,9 @@ public final class User implements Serializable {
      * Habilidades do usuário.
      * <p>
      * Exemplos de habilidades seriam análise de dados, Internet das Coisas, computação em nuvem, etc.
+     * <p>
+     * Essa lista é copiada a cada escrita, de forma que possa ser lida (ou serializada) enquanto outra
+     * <i>thread</i> adiciona uma habilidade.
      */
     private final List<String> abilities;
 
@@ -54,6 +78,8 @@ public final class User implements Serializable {
      * <p>
      * Algumas experiências seriam "Estágio de 1 ano na Empresa X, onde trabalhei como analista de dados" ou
      * "Trabalhei com IoT e Computação em Nuvem por 5 anos na Empresa Y".
+     * <p>
+     * Assim como {@link #abilities}, essa lista é copiada a cada escrita.
      */
     private final List<String> experiences;
 
@@ -62,20 +88,50 @@ public final class User implements Serializable {
      *
      * @param email       o e-mail do usuário.
      * @param name        o nome do usuário.
-     * @param pictureData o conteúdo do arquivo da foto de perfil do usuário.
+     * @param pictureId   o identificador da foto de perfil do usuário.
+     * @param pictureSize o tamanho do arquivo da foto de perfil do usuário.
+     * @param pictureData o conteúdo do arquivo da foto de perfil do usuário ainda não enviado.
      * @param address     a residência do usuário.
      * @param formation   a formação acadêmica do usuário.
-     * @param abilities   as habilidades do usuário.
-     * @param experiences as experiências profissional do usuário.
+     * @param abilities   as habilidades do usuário, que são copiadas.
+     * @param experiences as experiências profissional do usuário, que são copiadas.
      */
-    private User(String email, String name, byte[] pictureData, String address, String formation, List<String> abilities, List<String> experiences) {
+    User(String email, String name, String pictureId, int pictureSize, byte[] pictureData, String address, String formation, List<String> abilities, List<String> experiences) {
         this.email = email;
         this.name = name;
+        this.pictureId = pictureId;
+        this.pictureSize = pictureSize;
         this.pictureData = pictureData;
         this.address = address;
         this.formation = formation;
-        this.abilities = abilities;
-        this.experiences = experiences;
+        this.abilities = new CopyOnWriteArrayList<>(abilities);
+        this.experiences = new CopyOnWriteArrayList<>(experiences);
+    }
+
+    /**
+     * @return se o usuário possui foto de perfil.
+     */
+    public boolean hasPicture() {
+        return pictureId != null;
+    }
+
+    /**
+     * Remove desse perfil o conteúdo da foto ainda não enviado.
+     *
+     * @return o conteúdo da foto ou null caso ele já tenha sido removido ou o usuário não possua foto.
+     */
+    byte[] detachPictureData() {
+        final byte[] data = pictureData;
+        pictureData = null;
+        return data;
+    }
+
+    /**
+     * @return o conteúdo da foto ainda não enviado ou null caso ele já tenha sido removido ou o usuário não possua
+     * foto.
+     */
+    byte[] pendingPictureData() {
+        return pictureData;
     }
 
     /**
@@ -110,6 +166,25 @@ public final class User implements Serializable {
         experiences.add(experience);
     }
 
+    /**
+     * Substitui esse usuário pela sua forma serializada compacta.
+     *
+     * @return a forma serializada desse usuário.
+     */
+    private Object writeReplace() {
+        return new UserCodec.SerializedUser(this);
+    }
+
+    /**
+     * Impede que um usuário seja desserializado sem passar pela sua forma serializada.
+     *
+     * @param input a origem do usuário.
+     * @throws InvalidObjectException sempre.
+     */
+    private void readObject(final ObjectInputStream input) throws InvalidObjectException {
+        throw new InvalidObjectException("um usuário deve ser desserializado a partir de UserCodec.SerializedUser.");
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -132,6 +207,8 @@ public final class User implements Serializable {
         private String address;
         private String formation;
         private byte[] pictureData = new byte[0];
+        private String pictureId;
+        private int pictureSize;
         private final List<String> abilities = new LinkedList<>();
         private final List<String> experience = new LinkedList<>();
 
@@ -200,6 +277,21 @@ public final class User implements Serializable {
             return this;
         }
 
+        /**
+         * Define uma foto de perfil já armazenada a ser utilizada para construir o usuário.
+         * <p>
+         * Esse campo é ignorado caso {@link #setPictureData(byte[])} receba uma foto não vazia.
+         *
+         * @param id   o identificador da foto.
+         * @param size o tamanho, em bytes, da foto.
+         * @return esse construtor.
+         */
+        Builder setPictureReference(final String id, final int size) {
+            this.pictureId = id;
+            this.pictureSize = size;
+            return this;
+        }
+
         /**
          * Define as habilidades a serem utilizadas para construir o usuário.
          * <p>
@@ -245,7 +337,11 @@ public final class User implements Serializable {
                 throw new IllegalStateException("a formação do usuário deve ser inserida.");
             }
 
-            return new User(email, name, pictureData, address, formation, abilities, experience);
+            if (pictureData.length == 0) {
+                return new User(email, name, pictureId, pictureSize, null, address, formation, abilities, experience);
+            }
+            return new User(email, name, PictureStore.hash(pictureData), pictureData.length, pictureData, address, formation,
+                abilities, experience);
         }
     }
 }
@@ -0,0 +1,227 @@
+package com.example.p1;
+
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Representa uma cópia local dos usuários de uma {@link UserCollection} consultados recentemente pelo e-mail.
+ * <p>
+ * A cópia guarda no máximo {@link #MAX_USERS} usuários, os consultados mais recentemente; um usuário ausente é buscado
+ * na coleção por {@link UserCollection#findByEmail(String)} e passa a ser guardado. As demais consultas não passam por
+ * essa cópia, já que a coleção as responde por índices e em páginas, sem que o cliente precise de todos os usuários.
+ * <p>
+ * A cópia é atualizada com apenas as mudanças desde a última atualização, obtidas por
+ * {@link UserCollection#changesSince(long)} antes de cada consulta. Apenas os usuários já guardados são atualizados,
+ * e todos são descartados caso as mudanças não estejam mais disponíveis no servidor.
+ * <p>
+ * Após {@link #listen(CompressingSocketFactory)}, essa cópia também é registrada como {@link UserListener} da coleção
+ * e recebe as mudanças assim que elas ocorrem, de forma que um usuário guardado é retornado sem acessar a coleção. O
+ * registro é refeito e as mudanças são obtidas da coleção a cada {@link #RESYNC_INTERVAL_MILLIS} milissegundos, o que
+ * recupera as mudanças perdidas caso o registro tenha sido removido pelo servidor.
+ */
+final class UserCache implements UserListener {
+    /**
+     * Quantidade máxima de usuários guardados.
+     */
+    static final int MAX_USERS = 1000;
+
+    /**
+     * Intervalo, em milissegundos, após o qual uma cópia registrada volta a obter as mudanças da coleção.
+     */
+    static final long RESYNC_INTERVAL_MILLIS = 5000;
+
+    /**
+     * Coleção cujos usuários são copiados.
+     */
+    private final UserCollection collection;
+
+    /**
+     * Usuários guardados, indexados pelo e-mail normalizado, do consultado há mais tempo ao mais recente.
+     */
+    private final Map<String, User> users = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, User> eldest) {
+            return size() > MAX_USERS;
+        }
+    };
+
+    /**
+     * Versão da coleção refletida por essa cópia.
+     * <p>
+     * O valor inicial não pertence a nenhuma coleção, de forma que a primeira atualização apenas obtém a versão atual.
+     */
+    private long version = Long.MIN_VALUE;
+
+    /**
+     * Forma exportada dessa cópia, registrada na coleção, ou null caso ela não receba as mudanças da coleção.
+     */
+    private UserListener stub;
+
+    /**
+     * Se as mudanças enviadas pela coleção podem ser aplicadas.
+     * <p>
+     * Um registro refeito só envia as mudanças posteriores a ele; as anteriores são obtidas pela atualização que o
+     * segue, e as mudanças enviadas até o fim dela são descartadas.
+     */
+    private boolean subscribed;
+
+    /**
+     * Instante, em nanossegundos, da última atualização concluída.
+     */
+    private long syncedAt;
+
+    /**
+     * Constrói uma cópia vazia.
+     *
+     * @param collection a coleção cujos usuários serão copiados.
+     */
+    UserCache(final UserCollection collection) {
+        this.collection = collection;
+    }
+
+    /**
+     * Normaliza uma chave de busca, da mesma forma que {@link UserDatabase}.
+     *
+     * @param value a chave a ser normalizada.
+     * @return a chave normalizada.
+     */
+    private static String normalize(final String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Atualiza essa cópia com as mudanças da coleção desde a última atualização, caso as mudanças enviadas pela
+     * coleção não bastem.
+     * <p>
+     * Deve ser chamado sincronizado nessa cópia.
+     *
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    private void refresh() throws RemoteException {
+        final long start = System.nanoTime();
+        if (subscribed && start - syncedAt < TimeUnit.MILLISECONDS.toNanos(RESYNC_INTERVAL_MILLIS)) {
+            return;
+        }
+
+        if (stub != null) {
+            // O registro é refeito caso a coleção o tenha removido; caso contrário, nada muda
+            subscribed = false;
+            collection.addListener(stub);
+        }
+        final ChangeSet changes = collection.changesSince(version);
+        if (changes.reset) {
+            users.clear();
+        } else {
+            apply(changes);
+        }
+        version = changes.version;
+        syncedAt = start;
+        subscribed = stub != null;
+    }
+
+    /**
+     * Aplica mudanças da coleção aos usuários guardados.
+     *
+     * @param changes as mudanças.
+     */
+    private void apply(final ChangeSet changes) {
+        for (final User user : changes.users) {
+            final String key = normalize(user.email);
+            // Usuários que não estão guardados são ignorados, de forma que a cópia continua limitada
+            if (users.containsKey(key)) {
+                users.put(key, user);
+            }
+        }
+    }
+
+    /**
+     * Exporta essa cópia e a registra para receber as mudanças da coleção.
+     *
+     * @param sockets a fábrica das conexões pelas quais as mudanças são recebidas ou null para as conexões padrão do
+     *                RMI.
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    synchronized void listen(final CompressingSocketFactory sockets) throws RemoteException {
+        if (stub != null) {
+            return;
+        }
+        final UserListener stub = (UserListener) CompressingSocketFactory.export(this, sockets);
+        try {
+            collection.addListener(stub);
+        } catch (RemoteException e) {
+            UnicastRemoteObject.unexportObject(this, true);
+            throw e;
+        }
+        this.stub = stub;
+    }
+
+    /**
+     * Remove o registro dessa cópia na coleção, caso exista, e deixa de exportá-la.
+     *
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    synchronized void close() throws RemoteException {
+        if (stub == null) {
+            return;
+        }
+        stub = null;
+        subscribed = false;
+        try {
+            collection.removeListener(this);
+        } finally {
+            UnicastRemoteObject.unexportObject(this, true);
+        }
+    }
+
+    @Override
+    public synchronized void usersChanged(final ChangeSet changes) {
+        if (!subscribed || changes.version <= version) {
+            return;
+        }
+        apply(changes);
+        version = changes.version;
+    }
+
+    /**
+     * Busca um usuário pelo seu e-mail, nessa cópia ou na coleção.
+     *
+     * @param email o e-mail do usuário, sem diferenciar letras maiúsculas de minúsculas.
+     * @return o usuário ou null caso ele não se encontre na coleção.
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    User findByEmail(final String email) throws RemoteException {
+        final String key = normalize(email);
+        final long before;
+        synchronized (this) {
+            refresh();
+            final User cached = users.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            before = version;
+        }
+
+        final User user = collection.findByEmail(email);
+        synchronized (this) {
+            // Uma mudança aplicada durante a busca pode ser posterior ao usuário lido, que então não é guardado
+            if (user != null && version == before) {
+                users.put(key, user);
+            }
+        }
+        return user;
+    }
+
+    /**
+     * Descarta um usuário dessa cópia, como após uma escrita desse cliente, de forma que a próxima consulta o leia
+     * da coleção.
+     *
+     * @param email o e-mail do usuário, sem diferenciar letras maiúsculas de minúsculas.
+     */
+    synchronized void invalidate(final String email) {
+        users.remove(normalize(email));
+    }
+}
@@ -0,0 +1,451 @@
+package com.example.p1;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Codifica usuários em um formato binário compacto, utilizado na serialização de {@link User} e {@link UserList}.
+ * <p>
+ * Cada usuário começa com um byte de versão do formato, seguido dos seus campos. Inteiros são gravados como
+ * <i>varints</i> (7 bits por byte, do menos para o mais significativo) e cadeias de caracteres como UTF-8 precedido
+ * do seu tamanho. O identificador da foto, por ser um <i>hash</i> SHA-256 em hexadecimal, é gravado nos seus 32 bytes
+ * originais.
+ * <p>
+ * Ao codificar vários usuários em sequência, as cadeias que costumam se repetir entre perfis (endereço, formação,
+ * habilidades e experiências) são gravadas por completo apenas na primeira ocorrência; as demais ocorrências gravam
+ * apenas o índice da primeira.
+ */
+final class UserCodec {
+    /**
+     * Versão atual do formato.
+     */
+    static final byte VERSION = 1;
+
+    /**
+     * Quantidade máxima de bytes ou elementos alocados antes que os dados correspondentes sejam lidos.
+     * <p>
+     * Um tamanho lido da entrada pode estar corrompido; acima desse limite, os vetores e listas crescem conforme os
+     * dados são lidos, de forma que uma entrada truncada termina em {@link EOFException} em vez de alocar toda a memória
+     * indicada pelo tamanho.
+     */
+    static final int MAX_PREALLOCATION = 64 * 1024;
+
+    /**
+     * Construtor privado.
+     * <p>
+     * Impede que seja instanciado.
+     */
+    private UserCodec() {
+    }
+
+    /**
+     * Codifica um usuário.
+     *
+     * @param output o destino do usuário.
+     * @param user   o usuário a ser codificado.
+     * @throws IOException caso ocorra um erro de escrita.
+     */
+    static void write(final DataOutput output, final User user) throws IOException {
+        write(output, user, null);
+    }
+
+    /**
+     * Codifica um usuário como parte de uma sequência de usuários.
+     *
+     * @param output o destino do usuário.
+     * @param user   o usuário a ser codificado.
+     * @param table  as cadeias repetíveis já gravadas na sequência, associadas aos seus índices, ou null caso o
+     *               usuário seja codificado isoladamente.
+     * @throws IOException caso ocorra um erro de escrita.
+     */
+    static void write(final DataOutput output, final User user, final Map<String, Integer> table) throws IOException {
+        output.writeByte(VERSION);
+        writeString(output, user.email);
+        writeString(output, user.name);
+        writeShared(output, user.address, table);
+        writeShared(output, user.formation, table);
+        writePictureId(output, user.pictureId);
+        writeVarInt(output, user.pictureSize);
+        writeNullableBytes(output, user.pendingPictureData());
+        writeStrings(output, user.getAbilities(), table);
+        writeStrings(output, user.getExperiences(), table);
+    }
+
+    /**
+     * Decodifica um usuário codificado por {@link #write(DataOutput, User)}.
+     *
+     * @param input a origem do usuário.
+     * @return o usuário decodificado.
+     * @throws IOException caso ocorra um erro de leitura ou a versão do formato seja desconhecida.
+     */
+    static User read(final DataInput input) throws IOException {
+        return read(input, null);
+    }
+
+    /**
+     * Decodifica um usuário codificado por {@link #write(DataOutput, User, Map)}.
+     *
+     * @param input a origem do usuário.
+     * @param table as cadeias repetíveis já lidas na sequência, na ordem dos seus índices, ou null caso o usuário
+     *              tenha sido codificado isoladamente.
+     * @return o usuário decodificado.
+     * @throws IOException caso ocorra um erro de leitura ou a versão do formato seja desconhecida.
+     */
+    static User read(final DataInput input, final List<String> table) throws IOException {
+        final byte version = input.readByte();
+        if (version != VERSION) {
+            throw new InvalidObjectException("versão de formato desconhecida: " + version);
+        }
+
+        final String email = readString(input);
+        final String name = readString(input);
+        final String address = readShared(input, table);
+        final String formation = readShared(input, table);
+        final String pictureId = readPictureId(input);
+        final int pictureSize = readVarInt(input);
+        final byte[] pictureData = readNullableBytes(input);
+        final List<String> abilities = readStrings(input, table);
+        final List<String> experiences = readStrings(input, table);
+        return new User(email, name, pictureId, pictureSize, pictureData, address, formation, abilities, experiences);
+    }
+
+    /**
+     * Grava um inteiro não negativo como <i>varint</i>.
+     *
+     * @param output o destino do inteiro.
+     * @param value  o inteiro a ser gravado.
+     * @throws IOException caso ocorra um erro de escrita.
+     */
+    static void writeVarInt(final DataOutput output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    /**
+     * Lê um inteiro gravado por {@link #writeVarInt(DataOutput, int)}.
+     *
+     * @param input a origem do inteiro.
+     * @return o inteiro lido, que nunca é negativo.
+     * @throws IOException caso ocorra um erro de leitura ou o inteiro esteja mal formatado.
+     */
+    static int readVarInt(final DataInput input) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            final byte b = input.readByte();
+            // O quinto byte só pode conter os 3 bits restantes de um inteiro não negativo
+            if (shift == 28 && (b & 0xF8) != 0) {
+                break;
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("varint mal formatado.");
+    }
+
+    /**
+     * Retorna a capacidade inicial de uma coleção cujo tamanho foi lido da entrada.
+     *
+     * @param size o tamanho lido.
+     * @return a capacidade inicial, limitada por {@link #MAX_PREALLOCATION}.
+     */
+    static int capacity(final int size) {
+        return Math.min(size, MAX_PREALLOCATION);
+    }
+
+    /**
+     * Lê um vetor de bytes cujo tamanho foi lido da entrada.
+     * <p>
+     * Vetores maiores que {@link #MAX_PREALLOCATION} são lidos em partes, de forma que a memória alocada não ultrapassa
+     * o dobro dos dados de fato presentes na entrada.
+     *
+     * @param input  a origem do vetor.
+     * @param length o tamanho do vetor.
+     * @return o vetor lido.
+     * @throws IOException caso ocorra um erro de leitura, inclusive caso a entrada termine antes do vetor.
+     */
+    static byte[] readBytes(final DataInput input, final int length) throws IOException {
+        byte[] bytes = new byte[capacity(length)];
+        int read = 0;
+        while (read < length) {
+            if (read == bytes.length) {
+                bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * bytes.length));
+            }
+            input.readFully(bytes, read, bytes.length - read);
+            read = bytes.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Grava uma cadeia de caracteres em UTF-8 precedida do seu tamanho.
+     *
+     * @param output o destino da cadeia.
+     * @param value  a cadeia a ser gravada.
+     * @throws IOException caso ocorra um erro de escrita.
+     */
+    static void writeString(final DataOutput output, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(output, bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Lê uma cadeia de caracteres gravada por {@link #writeString(DataOutput, String)}.
+     *
+     * @param input a origem da cadeia.
+     * @return a cadeia lida.
+     * @throws IOException caso ocorra um erro de leitura.
+     */
+    static String readString(final DataInput input) throws IOException {
+        return new String(readBytes(input, readVarInt(input)), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Grava uma cadeia de caracteres que pode se repetir em uma sequência de usuários.
+     * <p>
+     * É gravado zero seguido da cadeia na sua primeira ocorrência, ou o seu índice somado de um nas demais.
+     *
+     * @param output o destino da cadeia.
+     * @param value  a cadeia a ser gravada.
+     * @param table  as cadeias já gravadas na sequência ou null caso não exista uma sequência.
+     * @throws IOException caso ocorra um erro de escrita.
+     */
+    private static void writeShared(final DataOutput output, final String value, final Map<String, Integer> table) throws IOException {
+        if (table != null) {
+            final Integer index = table.putIfAbsent(value, table.size());
+            if (index != null) {
+                writeVarInt(output, index + 1);
+                return;
+            }
+        }
+        writeVarInt(output, 0);
+        writeString(output, value);
+    }
+
+    /**
+     * Lê uma cadeia de caracteres gravada por {@link #writeShared(DataOutput, String, Map)}.
+     *
+     * @param input a origem da cadeia.
+     * @param table as cadeias já lidas na sequência ou null caso não exista uma sequência.
+     * @return a cadeia lida.
+     * @throws IOException caso ocorra um erro de leitura ou o índice seja inválido.
+     */
+    private static String readShared(final DataInput input, final List<String> table) throws IOException {
+        final int index = readVarInt(input);
+        if (index == 0) {
+            final String value = readString(input);
+            if (table != null) {
+                table.add(value);
+            }
+            return value;
+        }
+        if (table == null || index > table.size()) {
+            throw new StreamCorruptedException("referência de cadeia inválida: " + index);
+        }
+        return table.get(index - 1);
+    }
+
+    /**
+     * Grava o identificador de uma foto.
+     * <p>
+     * É gravado zero caso o identificador seja nulo, um seguido dos 32 bytes do <i>hash</i> caso o identificador seja
+     * um <i>hash</i> SHA-256 em hexadecimal, ou dois seguido da cadeia nos demais casos.
+     *
+     * @param output o destino do identificador.
+     * @param value  o identificador a ser gravado.
+     * @throws IOException caso ocorra um erro de escrita.
+     */
+    static void writePictureId(final DataOutput output, final String value) throws IOException {
+        if (value == null) {
+            output.writeByte(0);
+            return;
+        }
+        final byte[] digest = decodeHex(value);
+        if (digest == null) {
+            output.writeByte(2);
+            writeString(output, value);
+            return;
+        }
+        output.writeByte(1);
+        output.write(digest);
+    }
+
+    /**
+     * Lê um identificador gravado por {@link #writePictureId(DataOutput, String)}.
+     *
+     * @param input a origem do identificador.
+     * @return o identificador lido.
+     * @throws IOException caso ocorra um erro de leitura.
+     */
+    static String readPictureId(final DataInput input) throws IOException {
+        switch (input.readByte()) {
+            case 0:
+                return null;
+            case 1: {
+                final byte[] digest = new byte[32];
+                input.readFully(digest);
+                final char[] hex = new char[64];
+                for (int i = 0; i < digest.length; i++) {
+                    hex[2 * i] = Character.forDigit((digest[i] >> 4) & 0xF, 16);
+                    hex[2 * i + 1] = Character.forDigit(digest[i] & 0xF, 16);
+                }
+                return new String(hex);
+            }
+            case 2:
+                return readString(input);
+            default:
+                throw new StreamCorruptedException("identificador de foto mal formatado.");
+        }
+    }
+
+    /**
+     * Converte um <i>hash</i> SHA-256 em hexadecimal minúsculo para os seus bytes.
+     *
+     * @param value o <i>hash</i> em hexadecimal.
+     * @return os bytes do <i>hash</i> ou null caso o valor não seja um <i>hash</i> SHA-256 em hexadecimal minúsculo.
+     */
+    private static byte[] decodeHex(final String value) {
+        if (value.length() != 64) {
+            return null;
+        }
+        final byte[] bytes = new byte[32];
+        for (int i = 0; i < bytes.length; i++) {
+            final char high = value.charAt(2 * i);
+            final char low = value.charAt(2 * i + 1);
+            if (Character.isUpperCase(high) || Character.isUpperCase(low)) {
+                return null;
+            }
+            final int h = Character.digit(high, 16);
+            final int l = Character.digit(low, 16);
+            if (h < 0 || l < 0) {
+                return null;
+            }
+            bytes[i] = (byte) ((h << 4) | l);
+        }
+        return bytes;
+    }
+
+    /**
+     * Grava um vetor de bytes que pode ser nulo.
+     *
+     * @param output o destino do vetor.
+     * @param value  o vetor a ser gravado.
+     * @throws IOException caso ocorra um erro de escrita.
+     */
+    private static void writeNullableBytes(final DataOutput output, final byte[] value) throws IOException {
+        if (value == null) {
+            writeVarInt(output, 0);
+            return;
+        }
+        writeVarInt(output, value.length + 1);
+        output.write(value);
+    }
+
+    /**
+     * Lê um vetor de bytes gravado por {@link #writeNullableBytes(DataOutput, byte[])}.
+     *
+     * @param input a origem do vetor.
+     * @return o vetor lido.
+     * @throws IOException caso ocorra um erro de leitura.
+     */
+    private static byte[] readNullableBytes(final DataInput input) throws IOException {
+        final int length = readVarInt(input);
+        if (length == 0) {
+            return null;
+        }
+        return readBytes(input, length - 1);
+    }
+
+    /**
+     * Grava uma lista de cadeias de caracteres repetíveis precedida do seu tamanho.
+     *
+     * @param output o destino da lista.
+     * @param values a lista a ser gravada.
+     * @param table  as cadeias já gravadas na sequência ou null caso não exista uma sequência.
+     * @throws IOException caso ocorra um erro de escrita.
+     */
+    private static void writeStrings(final DataOutput output, final List<String> values, final Map<String, Integer> table) throws IOException {
+        // A lista é copiada antes, pois seu tamanho pode mudar enquanto é percorrida
+        final Object[] snapshot = values.toArray();
+        writeVarInt(output, snapshot.length);
+        for (final Object value : snapshot) {
+            writeShared(output, (String) value, table);
+        }
+    }
+
+    /**
+     * Lê uma lista de cadeias de caracteres gravada por {@link #writeStrings(DataOutput, List, Map)}.
+     *
+     * @param input a origem da lista.
+     * @param table as cadeias já lidas na sequência ou null caso não exista uma sequência.
+     * @return a lista lida.
+     * @throws IOException caso ocorra um erro de leitura.
+     */
+    private static List<String> readStrings(final DataInput input, final List<String> table) throws IOException {
+        final int size = readVarInt(input);
+        final List<String> values = new ArrayList<>(capacity(size));
+        for (int i = 0; i < size; i++) {
+            values.add(readShared(input, table));
+        }
+        return values;
+    }
+
+    /**
+     * Forma serializada de um {@link User}.
+     * <p>
+     * Um usuário é substituído por essa classe ao ser serializado, o que evita que a serialização padrão grave os
+     * descritores e os nós das listas do usuário.
+     */
+    static final class SerializedUser implements Externalizable {
+        /**
+         * Campo de serialização.
+         */
+        private static final long serialVersionUID = 1;
+
+        /**
+         * O usuário serializado.
+         */
+        private User user;
+
+        /**
+         * Construtor utilizado pela desserialização.
+         */
+        public SerializedUser() {
+        }
+
+        /**
+         * Constrói a forma serializada de um usuário.
+         *
+         * @param user o usuário a ser serializado.
+         */
+        SerializedUser(final User user) {
+            this.user = user;
+        }
+
+        @Override
+        public void writeExternal(final ObjectOutput output) throws IOException {
+            write(output, user);
+        }
+
+        @Override
+        public void readExternal(final ObjectInput input) throws IOException {
+            user = read(input);
+        }
+
+        /**
+         * @return o usuário desserializado.
+         */
+        private Object readResolve() {
+            return user;
+        }
+    }
+}
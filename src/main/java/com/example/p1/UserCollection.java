@@ -3,6 +3,7 @@ package com.example.p1;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Representa ações que manipulam uma coleção de usuários.
@@ -20,8 +21,23 @@ public interface UserCollection extends Remote {
      */
     String UPDATE_KEY_ABILITY = "ability";
 
+    /**
+     * Uma agregação que pode ser lida no método {@link #aggregate(String, String, int)}: a quantidade de usuários de
+     * cada formação acadêmica. A chave da agregação é ignorada.
+     */
+    String AGGREGATE_USERS_BY_FORMATION = "usersByFormation";
+
+    /**
+     * Uma agregação que pode ser lida no método {@link #aggregate(String, String, int)}: a quantidade de usuários
+     * com cada habilidade, dentre os residentes no endereço dado como chave.
+     */
+    String AGGREGATE_ABILITIES_BY_ADDRESS = "abilitiesByAddress";
+
     /**
      * Adiciona um usuário a essa coleção.
+     * <p>
+     * Um usuário com foto deve conter o seu conteúdo ou referenciar uma foto já armazenada pela coleção, como um
+     * usuário lido dela.
      *
      * @param user o usuário a ser adicionado.
      * @return se o usuário conseguiu ser adicionado.
@@ -29,6 +45,18 @@ public interface UserCollection extends Remote {
      */
     boolean create(final User user) throws RemoteException;
 
+    /**
+     * Adiciona vários usuários a essa coleção em uma única chamada.
+     * <p>
+     * Equivale a chamar {@link #create(User)} para cada usuário, na ordem da lista, porém sem o custo de uma
+     * chamada RMI por usuário.
+     *
+     * @param users os usuários a serem adicionados.
+     * @return se cada usuário conseguiu ser adicionado, na mesma ordem da lista recebida.
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    List<Boolean> createAll(final List<User> users) throws RemoteException;
+
     /**
      * Lê os usuários dessa coleção.
      *
@@ -37,6 +65,46 @@ public interface UserCollection extends Remote {
      */
     List<User> read() throws RemoteException;
 
+    /**
+     * Lê uma página de usuários dessa coleção.
+     * <p>
+     * Diferente de {@link #read()}, esse método limita a quantidade de usuários transmitidos em uma única chamada,
+     * de forma que a memória utilizada por cada chamada independe do tamanho dessa coleção. Os usuários são
+     * percorridos em ordem de e-mail, e usuários adicionados durante a leitura podem ou não aparecer nas páginas
+     * seguintes.
+     *
+     * @param cursor o cursor retornado pela página anterior em {@link UserPage#nextCursor} ou null para ler a
+     *               primeira página.
+     * @param limit  a quantidade máxima de usuários da página, devendo ser positiva.
+     * @return a página lida.
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    UserPage read(final String cursor, final int limit) throws RemoteException;
+
+    /**
+     * Lê os usuários adicionados ou atualizados desde uma versão dessa coleção.
+     * <p>
+     * Um cliente que mantém uma cópia local dos usuários pode atualizá-la com apenas as mudanças recentes, passando a
+     * versão retornada pela chamada anterior. Caso essas mudanças não estejam mais disponíveis, como na primeira
+     * chamada ou após muitas escritas, o conjunto retornado indica que todos os usuários devem ser lidos novamente.
+     *
+     * @param version a versão retornada pela última chamada a esse método, ou qualquer valor na primeira chamada.
+     * @return as mudanças desde a versão informada.
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    ChangeSet changesSince(final long version) throws RemoteException;
+
+    /**
+     * Lê a versão atual dessa coleção, que aumenta a cada usuário adicionado ou atualizado.
+     * <p>
+     * Após uma escrita, a versão retornada por esse método pode ser comparada com a de outra coleção que copia essa,
+     * como uma réplica, para saber se a escrita já se encontra na cópia.
+     *
+     * @return a versão atual.
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    long version() throws RemoteException;
+
     /**
      * Atualiza o perfil de um usuário dessa coleção.
      *
@@ -49,4 +117,124 @@ public interface UserCollection extends Remote {
      * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
      */
     boolean update(final String email, final String key, final String value) throws RemoteException;
+
+    /**
+     * Atualiza os perfis de vários usuários dessa coleção em uma única chamada.
+     * <p>
+     * Equivale a chamar {@link #update(String, String, String)} para cada atualização, na ordem da lista, porém
+     * sem o custo de uma chamada RMI por atualização. Caso alguma atualização possua uma chave inválida, nenhuma
+     * atualização é aplicada.
+     *
+     * @param updates as atualizações a serem aplicadas.
+     * @return se cada usuário conseguiu ser atualizado, na mesma ordem da lista recebida.
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    List<Boolean> updateAll(final List<UserUpdate> updates) throws RemoteException;
+
+    /**
+     * Lê um bloco do conteúdo de uma foto de perfil dessa coleção.
+     * <p>
+     * Fotos maiores que o tamanho máximo de um bloco devem ser lidas em múltiplas chamadas, avançando a posição
+     * até que {@link User#pictureSize} bytes sejam lidos.
+     *
+     * @param pictureId o identificador da foto, dado por {@link User#pictureId}.
+     * @param offset    a posição, em bytes, do início do bloco.
+     * @param length    a quantidade máxima de bytes a serem lidos.
+     * @return o bloco lido, que pode ser menor que o tamanho pedido, ou null caso a foto não se encontre nessa
+     * coleção.
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    byte[] readPicture(final String pictureId, final int offset, final int length) throws RemoteException;
+
+    /**
+     * Lê um usuário dessa coleção.
+     * <p>
+     * A comparação entre os e-mails não diferencia letras maiúsculas de minúsculas.
+     *
+     * @param email o e-mail do usuário a ser lido.
+     * @return o usuário com o e-mail informado ou null caso ele não se encontre nessa coleção.
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    User findByEmail(final String email) throws RemoteException;
+
+    /**
+     * Lê os usuários dessa coleção que possuem uma determinada formação acadêmica.
+     * <p>
+     * A comparação entre as formações não diferencia letras maiúsculas de minúsculas.
+     *
+     * @param formation a formação acadêmica a ser buscada.
+     * @return os usuários dessa coleção com a formação acadêmica informada.
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    List<User> findByFormation(final String formation) throws RemoteException;
+
+    /**
+     * Lê as habilidades dos usuários dessa coleção que residem em um determinado endereço.
+     * <p>
+     * A comparação entre os endereços não diferencia letras maiúsculas de minúsculas.
+     *
+     * @param address o endereço a ser buscado.
+     * @return as habilidades de cada usuário residente no endereço informado, indexadas pelo e-mail do usuário.
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    Map<String, List<String>> abilitiesByAddress(final String address) throws RemoteException;
+
+    /**
+     * Busca os usuários dessa coleção cujas habilidades ou experiências mais se aproximam de uma consulta.
+     * <p>
+     * A consulta é dividida em palavras, e a comparação não diferencia letras maiúsculas de minúsculas nem letras
+     * acentuadas de não acentuadas. Um usuário é encontrado caso possua qualquer uma das palavras, e os usuários que
+     * possuem mais palavras, ou palavras mais raras, são mais relevantes.
+     *
+     * @param query a consulta, em texto livre.
+     * @param limit a quantidade máxima de usuários encontrados, devendo ser positiva.
+     * @return os usuários mais relevantes, do mais relevante ao menos relevante.
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    SearchResult search(final String query, final int limit) throws RemoteException;
+
+    /**
+     * Lê as maiores contagens de uma agregação dos usuários dessa coleção.
+     * <p>
+     * As agregações são mantidas a cada escrita, de forma que a leitura não percorre os usuários. Os valores contados
+     * não diferenciam letras maiúsculas de minúsculas, e cada um é exibido com a grafia do primeiro usuário que o
+     * possui.
+     *
+     * @param view  a agregação, {@link #AGGREGATE_USERS_BY_FORMATION} ou {@link #AGGREGATE_ABILITIES_BY_ADDRESS}.
+     * @param key   a chave da agregação, cujo significado depende dela.
+     * @param limit a quantidade máxima de contagens lidas, devendo ser positiva.
+     * @return as contagens, indexadas pelo valor contado, da maior para a menor.
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    Map<String, Long> aggregate(final String view, final String key, final int limit) throws RemoteException;
+
+    /**
+     * Registra um objeto para ser notificado das mudanças dessa coleção.
+     * <p>
+     * As mudanças posteriores ao registro são enviadas ao objeto de forma assíncrona, em lotes, por
+     * {@link UserListener#usersChanged(ChangeSet)}. Um objeto que não acompanha o ritmo das mudanças, ou cuja
+     * notificação falha, tem o seu registro removido, e pode se atualizar com {@link #changesSince(long)} antes de
+     * se registrar novamente.
+     *
+     * @param listener o objeto a ser registrado, exportado pelo cliente.
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    void addListener(final UserListener listener) throws RemoteException;
+
+    /**
+     * Remove o registro de um objeto, que deixa de ser notificado das mudanças dessa coleção.
+     *
+     * @param listener o objeto registrado por {@link #addListener(UserListener)}.
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    void removeListener(final UserListener listener) throws RemoteException;
+
+    /**
+     * Lê as estatísticas de execução dos métodos dessa coleção.
+     *
+     * @return as estatísticas de cada método, indexadas pelo nome do método, ou um mapa vazio caso essa coleção não
+     * seja monitorada por um {@link MetricsUserCollection}.
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    Map<String, MethodStats> stats() throws RemoteException;
 }
@@ -1,53 +1,934 @@
 package com.example.p1;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Representa uma base de dados de múltiplos usuários.
  * <p>
- * Um usuário só pode ser adicionado nessa base se não existe um usuário com seu e-mail já presente.
+ * Um usuário só pode ser adicionado nessa base se não existe um usuário com seu e-mail já presente. A comparação
+ * entre e-mails não diferencia letras maiúsculas de minúsculas.
+ * <p>
+ * Essa base pode ser acessada concorrentemente por múltiplas <i>threads</i>, como ocorre quando várias chamadas RMI
+ * são atendidas ao mesmo tempo. Nenhuma operação bloqueia a base inteira: a inserção de um usuário é decidida
+ * atomicamente pelo seu e-mail e as leituras percorrem os índices sem impedir escritas simultâneas. A lista de todos os
+ * usuários é a exceção: ela é construída e codificada uma única vez por versão da base e compartilhada entre as
+ * chamadas de {@link #read()}.
+ * <p>
+ * Os perfis são armazenados como {@link UserRecord}s, onde endereços, formações e habilidades são códigos de um
+ * {@link StringDictionary} compartilhado pela base. Os índices secundários também são organizados por esses códigos.
+ * Os registros podem ser mantidos no <i>heap</i> ou, para bases com milhões de usuários, como registros binários fora
+ * dele, em uma {@link OffHeapArena}, o que reduz o <i>heap</i> e o trabalho do coletor de lixo ao custo de
+ * decodificar cada perfil lido.
+ * <p>
+ * Uma base construída com um diretório de dados é durável: cada escrita só é confirmada após ser registrada em
+ * disco por um {@link UserJournal}, e a base é restaurada a partir desse diretório ao ser construída novamente.
  */
-public class UserDatabase implements UserCollection, Serializable {
+public class UserDatabase implements UserCollection, Closeable, Serializable {
     /**
      * Campo de serialização.
      */
     private static final long serialVersionUID = -1222122104L;
 
     /**
-     * Usuários dessa base de dados.
+     * Quantidade máxima de mudanças retidas para sincronização incremental.
+     */
+    static final int CHANGE_LOG_CAPACITY = 1 << 16;
+
+    /**
+     * Vetor vazio de habilidades, utilizado ao contar as habilidades de um usuário recém-adicionado.
+     */
+    private static final int[] NO_ABILITIES = new int[0];
+
+    /**
+     * Usuários dessa base de dados, indexados pelo e-mail normalizado.
+     */
+    private final ConcurrentMap<String, UserRecord> users = new ConcurrentHashMap<>();
+
+    /**
+     * Dicionário que codifica os campos repetíveis dos usuários e as chaves dos índices secundários.
+     */
+    private final StringDictionary dictionary = new StringDictionary();
+
+    /**
+     * E-mails normalizados dos usuários dessa base de dados, em ordem crescente.
+     * <p>
+     * Utilizado para percorrer essa base em páginas, onde o cursor de cada página é o último e-mail lido.
+     */
+    private final ConcurrentSkipListSet<String> emails = new ConcurrentSkipListSet<>();
+
+    /**
+     * Índice secundário dos usuários dessa base de dados pelo código da formação acadêmica normalizada.
+     */
+    private final ConcurrentMap<Integer, Collection<UserRecord>> usersByFormation = new ConcurrentHashMap<>();
+
+    /**
+     * Índice secundário dos usuários dessa base de dados pelo código do endereço normalizado.
+     */
+    private final ConcurrentMap<Integer, Collection<UserRecord>> usersByAddress = new ConcurrentHashMap<>();
+
+    /**
+     * Índice textual das habilidades e experiências dos usuários dessa base de dados.
+     */
+    private final transient TextIndex text = new TextIndex();
+
+    /**
+     * Quantidade de usuários de cada formação acadêmica normalizada dessa base de dados.
+     */
+    private final transient CountTable usersPerFormation = new CountTable();
+
+    /**
+     * Quantidade de usuários com cada habilidade normalizada, por código do endereço normalizado.
+     */
+    private final transient ConcurrentMap<Integer, CountTable> abilitiesPerAddress = new ConcurrentHashMap<>();
+
+    /**
+     * Fotos de perfil dos usuários dessa base de dados.
+     */
+    private final PictureStore pictures = new PictureStore();
+
+    /**
+     * Região onde os registros dos usuários são armazenados ou null caso eles sejam mantidos no <i>heap</i>.
+     */
+    private final transient OffHeapArena arena;
+
+    /**
+     * Armazenamento durável dessa base de dados ou null caso ela seja mantida apenas em memória.
      */
-    private final Set<User> users = new HashSet<>();
+    private final transient UserJournal journal;
+
+    /**
+     * Trava que coordena escritas e imagens dessa base de dados.
+     * <p>
+     * Escritas a adquirem de forma compartilhada entre aplicar a operação e registrá-la em {@link #journal}, e
+     * {@link #checkpoint()} a adquire de forma exclusiva para capturar um estado que corresponda exatamente ao início
+     * de um segmento.
+     */
+    private final transient ReadWriteLock checkpointLock = new ReentrantReadWriteLock();
+
+    /**
+     * Registro das mudanças recentes dessa base de dados, consultado por {@link #changesSince(long)}.
+     */
+    private final transient ChangeLog changes =
+        new ChangeLog(CHANGE_LOG_CAPACITY, TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis()));
+
+    /**
+     * Tamanho máximo, em bytes, da imagem codificada mantida entre chamadas a {@link #read()}.
+     */
+    private static final int MAX_SNAPSHOT_SIZE = 32 * 1024 * 1024;
+
+    /**
+     * Imagem mais recente da lista de todos os usuários dessa base de dados, retornada por {@link #read()}, ou null
+     * caso a base tenha mudado desde que ela foi construída ou ela não seja mantida.
+     */
+    private final transient AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+    /**
+     * Notificador que envia as mudanças dessa base de dados aos objetos registrados.
+     */
+    private final transient ChangeNotifier notifier = new ChangeNotifier(email -> {
+        final UserRecord record = users.get(email);
+        return record == null ? null : record.toUser(dictionary);
+    });
+
+    /**
+     * Constrói uma base de dados mantida apenas em memória, com os registros no <i>heap</i>.
+     */
+    public UserDatabase() {
+        this(false);
+    }
+
+    /**
+     * Constrói uma base de dados mantida apenas em memória.
+     *
+     * @param offHeap se os registros dos usuários são mantidos fora do <i>heap</i>.
+     */
+    public UserDatabase(final boolean offHeap) {
+        this.arena = offHeap ? new OffHeapArena() : null;
+        this.journal = null;
+    }
+
+    /**
+     * Constrói uma base de dados durável, com os registros no <i>heap</i>.
+     * <p>
+     * Caso o diretório já possua dados, a base é restaurada a partir deles.
+     *
+     * @param directory o diretório onde os dados da base são mantidos.
+     * @throws IOException caso os dados não possam ser lidos.
+     */
+    public UserDatabase(final Path directory) throws IOException {
+        this(directory, false);
+    }
+
+    /**
+     * Constrói uma base de dados durável.
+     * <p>
+     * Caso o diretório já possua dados, a base é restaurada a partir deles.
+     *
+     * @param directory o diretório onde os dados da base são mantidos.
+     * @param offHeap   se os registros dos usuários são mantidos fora do <i>heap</i>.
+     * @throws IOException caso os dados não possam ser lidos.
+     */
+    public UserDatabase(final Path directory, final boolean offHeap) throws IOException {
+        this.arena = offHeap ? new OffHeapArena() : null;
+        this.journal = new UserJournal(directory);
+        journal.recover(this);
+    }
+
+    /**
+     * Constrói o registro de um usuário, no <i>heap</i> ou fora dele conforme essa base de dados.
+     *
+     * @param user o usuário.
+     * @return o registro, que deve ser descartado caso não seja adicionado a essa base.
+     */
+    private UserRecord record(final User user) {
+        return arena == null ? new HeapUserRecord(user, dictionary) : new OffHeapUserRecord(user, dictionary, arena);
+    }
+
+    /**
+     * Normaliza uma chave de busca, de forma que a comparação não diferencie letras maiúsculas de minúsculas.
+     *
+     * @param value a chave a ser normalizada.
+     * @return a chave normalizada.
+     */
+    private static String normalize(final String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Adiciona um usuário a um índice secundário.
+     *
+     * @param index  o índice onde o usuário será adicionado.
+     * @param key    a chave, ainda não normalizada, sob a qual o usuário será adicionado.
+     * @param record o usuário a ser adicionado.
+     */
+    private void index(final ConcurrentMap<Integer, Collection<UserRecord>> index, final String key, final UserRecord record) {
+        index.computeIfAbsent(dictionary.encode(normalize(key)), k -> new ConcurrentLinkedQueue<>()).add(record);
+    }
+
+    /**
+     * Lê os usuários de um índice secundário.
+     *
+     * @param index o índice a ser lido.
+     * @param key   a chave, ainda não normalizada, a ser buscada.
+     * @return os usuários sob a chave informada.
+     */
+    private Collection<UserRecord> lookup(final ConcurrentMap<Integer, Collection<UserRecord>> index, final String key) {
+        final int code = dictionary.lookup(normalize(key));
+        return code < 0 ? Collections.emptyList() : index.getOrDefault(code, Collections.emptyList());
+    }
+
+    /**
+     * Converte registros dessa base de dados em usuários.
+     *
+     * @param records os registros a serem convertidos.
+     * @return os usuários convertidos.
+     */
+    private List<User> decode(final Collection<UserRecord> records) {
+        final List<User> users = new ArrayList<>();
+        for (final UserRecord record : records) {
+            users.add(record.toUser(dictionary));
+        }
+        return users;
+    }
+
+    /**
+     * Aguarda até que registros de {@link #journal} sejam gravados em disco.
+     *
+     * @param commits os <i>futures</i> dos registros.
+     */
+    private static void awaitCommits(final List<CompletableFuture<?>> commits) {
+        try {
+            for (final CompletableFuture<?> commit : commits) {
+                commit.join();
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw new UncheckedIOException((IOException) e.getCause());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Inicia uma escrita nessa base de dados, impedindo que uma imagem seja capturada até {@link #endWrite()}.
+     */
+    private void beginWrite() {
+        if (journal != null) {
+            checkpointLock.readLock().lock();
+        }
+    }
+
+    /**
+     * Termina uma escrita iniciada por {@link #beginWrite()}.
+     */
+    private void endWrite() {
+        if (journal != null) {
+            checkpointLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adiciona um usuário aos índices dessa base de dados.
+     *
+     * @param email  o e-mail normalizado do usuário.
+     * @param user   o usuário a ser adicionado.
+     * @param record o registro do usuário.
+     */
+    private void index(final String email, final User user, final UserRecord record) {
+        emails.add(email);
+        index(usersByFormation, user.formation, record);
+        index(usersByAddress, user.address, record);
+    }
+
+    /**
+     * Adiciona as habilidades e experiências de um usuário ao índice textual e às contagens dessa base de dados.
+     * <p>
+     * Deve ser chamado sincronizado no registro, logo após ele ser adicionado a {@link #users}, de forma que nenhuma
+     * atualização do usuário seja aplicada antes.
+     *
+     * @param record o registro do usuário.
+     */
+    private void indexContents(final UserRecord record) {
+        text.add(record, record.texts(dictionary));
+        usersPerFormation.add(dictionary.encode(normalize(dictionary.decode(record.formation))), record.formation, 1);
+        count(record, NO_ABILITIES, record.abilities());
+    }
+
+    /**
+     * Atualiza as contagens de habilidades do endereço de um usuário após uma mudança nas suas habilidades.
+     * <p>
+     * Cada habilidade é contada uma única vez por usuário, sem diferenciar letras maiúsculas de minúsculas.
+     *
+     * @param record   o registro do usuário.
+     * @param previous os códigos das habilidades anteriores do usuário.
+     * @param current  os códigos das habilidades atuais do usuário.
+     */
+    private void count(final UserRecord record, final int[] previous, final int[] current) {
+        final Map<Integer, Integer> added = normalizedAbilities(current);
+        final Map<Integer, Integer> removed = normalizedAbilities(previous);
+        for (final Iterator<Integer> iterator = added.keySet().iterator(); iterator.hasNext(); ) {
+            if (removed.remove(iterator.next()) != null) {
+                iterator.remove();
+            }
+        }
+        if (added.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+
+        final int address = dictionary.encode(normalize(dictionary.decode(record.address)));
+        final CountTable table = abilitiesPerAddress.computeIfAbsent(address, k -> new CountTable());
+        for (final Map.Entry<Integer, Integer> ability : added.entrySet()) {
+            table.add(ability.getKey(), ability.getValue(), 1);
+        }
+        for (final Map.Entry<Integer, Integer> ability : removed.entrySet()) {
+            table.add(ability.getKey(), ability.getValue(), -1);
+        }
+    }
+
+    /**
+     * Normaliza habilidades.
+     *
+     * @param abilities os códigos das habilidades.
+     * @return o código da primeira grafia de cada habilidade, indexado pelo código da habilidade normalizada.
+     */
+    private Map<Integer, Integer> normalizedAbilities(final int[] abilities) {
+        final Map<Integer, Integer> normalized = new HashMap<>();
+        for (final int ability : abilities) {
+            normalized.putIfAbsent(dictionary.encode(normalize(dictionary.decode(ability))), ability);
+        }
+        return normalized;
+    }
+
+    /**
+     * Verifica se uma chave de atualização é válida.
+     *
+     * @param key a chave a ser verificada.
+     * @throws IllegalArgumentException caso a chave seja inválida.
+     */
+    private static void checkKey(final String key) {
+        if (!UserCollection.UPDATE_KEY_ABILITY.equals(key) && !UserCollection.UPDATE_KEY_EXPERIENCE.equals(key)) {
+            throw new IllegalArgumentException("chave de atualização inválida: " + key);
+        }
+    }
+
+    /**
+     * Aplica uma atualização ao perfil de um usuário.
+     *
+     * @param record o registro do usuário a ser atualizado.
+     * @param key    o campo a ser atualizado.
+     * @param value  o valor a ser atualizado.
+     */
+    private void apply(final UserRecord record, final String key, final String value) {
+        switch (key) {
+            case UserCollection.UPDATE_KEY_ABILITY: {
+                record.addAbility(dictionary.encode(value));
+                break;
+            }
+            case UserCollection.UPDATE_KEY_EXPERIENCE: {
+                record.addExperience(value);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("chave de atualização inválida: " + key);
+        }
+    }
+
+    /**
+     * Registra uma mudança em {@link #changes} e a envia aos objetos registrados em {@link #notifier}.
+     *
+     * @param changed os e-mails normalizados dos usuários modificados, possivelmente vazio.
+     */
+    private void publish(final List<String> changed) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        // O notificador deve receber as mudanças na ordem das suas versões
+        synchronized (changes) {
+            notifier.publish(changed, changes.append(changed));
+        }
+        // A imagem seria descartada pela próxima leitura; descartá-la já libera a sua memória
+        snapshot.set(null);
+    }
+
+    /**
+     * Adiciona um usuário a essa base de dados.
+     * <p>
+     * Deve ser chamado entre {@link #beginWrite()} e {@link #endWrite()}.
+     *
+     * @param user        o usuário a ser adicionado.
+     * @param pictureData o conteúdo da foto do usuário ou null caso ele não possua foto.
+     * @param commits     a lista onde o <i>future</i> do registro da adição é colocado.
+     * @return se o usuário conseguiu ser adicionado.
+     */
+    private boolean insert(final User user, final byte[] pictureData, final List<CompletableFuture<?>> commits) {
+        final String email = normalize(user.email);
+        final UserRecord record = record(user);
+
+        // Uma atualização desse usuário só é registrada após a sua adição, pois também sincroniza no registro
+        synchronized (record) {
+            if (users.putIfAbsent(email, record) != null) {
+                record.discard();
+                return false;
+            }
+            indexContents(record);
+            if (journal != null) {
+                commits.add(journal.logCreate(user, pictureData));
+            }
+        }
+        index(email, user, record);
+        return true;
+    }
+
+    /**
+     * Atualiza o perfil de um usuário dessa base de dados.
+     * <p>
+     * Deve ser chamado entre {@link #beginWrite()} e {@link #endWrite()}.
+     *
+     * @param email   o e-mail do usuário a ser atualizado.
+     * @param key     o campo a ser atualizado, já verificado.
+     * @param value   o valor a ser atualizado.
+     * @param commits a lista onde o <i>future</i> do registro da atualização é colocado.
+     * @return se o usuário conseguiu ser atualizado.
+     */
+    private boolean modify(final String email, final String key, final String value, final List<CompletableFuture<?>> commits) {
+        final UserRecord record = users.get(normalize(email));
+        if (record == null) {
+            return false;
+        }
+
+        // As atualizações de um mesmo usuário são registradas na mesma ordem em que são aplicadas
+        synchronized (record) {
+            final int[] previous = record.abilities();
+            apply(record, key, value);
+            text.append(record, Collections.singletonList(value));
+            count(record, previous, record.abilities());
+            if (journal != null) {
+                commits.add(journal.logUpdate(record.email(), key, value));
+            }
+        }
+        return true;
+    }
 
     @Override
     public boolean create(final User user) {
-        return users.add(user);
+        return createAll(Collections.singletonList(user)).get(0);
     }
 
+    @Override
+    public List<Boolean> createAll(final List<User> batch) {
+        // As fotos são verificadas antes que qualquer usuário seja adicionado, e o seu conteúdo só é removido dos
+        // usuários adicionados, de forma que quem chama pode repetir o envio dos demais
+        final byte[][] pictureData = new byte[batch.size()][];
+        final boolean[] retained = new boolean[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            final User user = batch.get(i);
+            pictureData[i] = user.pendingPictureData();
+            try {
+                retained[i] = acquirePicture(user, pictureData[i]);
+            } catch (IllegalArgumentException e) {
+                for (int j = 0; j < i; j++) {
+                    if (retained[j]) {
+                        pictures.release(batch.get(j).pictureId);
+                    }
+                }
+                throw e;
+            }
+        }
+
+        final List<Boolean> results = new ArrayList<>(batch.size());
+        final List<String> changed = new ArrayList<>(batch.size());
+        final List<CompletableFuture<?>> commits = new ArrayList<>();
+        beginWrite();
+        try {
+            for (int i = 0; i < batch.size(); i++) {
+                final boolean created = insert(batch.get(i), pictureData[i], commits);
+                if (created) {
+                    batch.get(i).detachPictureData();
+                    changed.add(normalize(batch.get(i).email));
+                } else if (retained[i]) {
+                    // A referência adquirida à foto pertence apenas aos usuários adicionados
+                    pictures.release(batch.get(i).pictureId);
+                }
+                results.add(created);
+            }
+        } finally {
+            endWrite();
+        }
+        publish(changed);
+        awaitCommits(commits);
+        return results;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * A lista é construída a partir de uma imagem da base já codificada para a serialização, e só decodifica os
+     * usuários caso eles sejam acessados. A imagem é construída na primeira leitura após cada mudança, de forma que
+     * leituras sem mudanças entre elas retornam os mesmos bytes sem percorrer a base. Leituras simultâneas a uma
+     * construção aguardam por ela em vez de construírem outra imagem.
+     * <p>
+     * A imagem só é mantida após a construção caso tenha até {@link #MAX_SNAPSHOT_SIZE} bytes e os registros estejam no
+     * <i>heap</i>; com os registros fora do <i>heap</i>, mantê-la traria os usuários de volta ao <i>heap</i>.
+     */
     @Override
     public List<User> read() {
-        return new ArrayList<>(users);
+        // A versão é lida antes dos usuários, de forma que a imagem reflete ao menos todas as mudanças até ela
+        final long version = changes.version();
+        for (; ; ) {
+            final Snapshot current = snapshot.get();
+            if (current != null && current.version >= version) {
+                return new UserList(current.await());
+            }
+
+            final Snapshot created = new Snapshot(version);
+            if (snapshot.compareAndSet(current, created)) {
+                final byte[] encoded;
+                try {
+                    // Os usuários são codificados um de cada vez, sem que todos sejam decodificados ao mesmo tempo
+                    encoded = UserList.encode(() -> this.users.values().stream()
+                        .map(record -> record.toUser(dictionary))
+                        .iterator());
+                } catch (RuntimeException | Error e) {
+                    snapshot.compareAndSet(created, null);
+                    created.encoded.completeExceptionally(e);
+                    throw e;
+                }
+
+                created.encoded.complete(encoded);
+                if (arena != null || encoded.length > MAX_SNAPSHOT_SIZE) {
+                    // As leituras que aguardavam a construção já a receberam
+                    snapshot.compareAndSet(created, null);
+                }
+                return new UserList(encoded);
+            }
+        }
+    }
+
+    @Override
+    public UserPage read(final String cursor, final int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("o limite da página deve ser positivo: " + limit);
+        }
+
+        final NavigableSet<String> remaining = cursor == null ? emails : emails.tailSet(normalize(cursor), false);
+        final List<User> page = new ArrayList<>(Math.min(limit, 1024));
+        String last = null;
+        for (final String email : remaining) {
+            if (page.size() == limit) {
+                return new UserPage(page, last);
+            }
+            page.add(users.get(email).toUser(dictionary));
+            last = email;
+        }
+        return new UserPage(page, null);
+    }
+
+    @Override
+    public ChangeSet changesSince(final long version) {
+        final Set<String> changed = new LinkedHashSet<>();
+        final long current = changes.since(version, changed);
+        if (current < 0) {
+            return new ChangeSet(Collections.emptyList(), changes.version(), true);
+        }
+
+        // Os usuários são lidos após a versão, de forma que refletem ao menos todas as mudanças até ela
+        final List<User> users = new ArrayList<>(changed.size());
+        for (final String email : changed) {
+            users.add(this.users.get(email).toUser(dictionary));
+        }
+        return new ChangeSet(users, current, false);
+    }
+
+    @Override
+    public long version() {
+        return changes.version();
     }
 
     @Override
     public boolean update(final String email, final String key, final String value) {
-        final Optional<User> optional = users.stream().filter(user -> user.email.equalsIgnoreCase(email)).findFirst();
-        if (optional.isEmpty()) {
-            return false;
+        return updateAll(Collections.singletonList(new UserUpdate(email, key, value))).get(0);
+    }
+
+    @Override
+    public List<Boolean> updateAll(final List<UserUpdate> updates) {
+        for (final UserUpdate update : updates) {
+            checkKey(update.key);
         }
 
-        final User user = optional.get();
-        switch (key) {
-            case UserCollection.UPDATE_KEY_ABILITY: {
-                user.addAbility(value);
-                return true;
+        final List<Boolean> results = new ArrayList<>(updates.size());
+        final List<String> changed = new ArrayList<>(updates.size());
+        final List<CompletableFuture<?>> commits = new ArrayList<>();
+        beginWrite();
+        try {
+            for (final UserUpdate update : updates) {
+                final boolean modified = modify(update.email, update.key, update.value, commits);
+                if (modified) {
+                    changed.add(normalize(update.email));
+                }
+                results.add(modified);
             }
-            case UserCollection.UPDATE_KEY_EXPERIENCE: {
-                user.addExperience(value);
-                return true;
+        } finally {
+            endWrite();
+        }
+        publish(changed);
+        awaitCommits(commits);
+        return results;
+    }
+
+    @Override
+    public byte[] readPicture(final String pictureId, final int offset, final int length) {
+        return pictures.read(pictureId, offset, length);
+    }
+
+    @Override
+    public User findByEmail(final String email) {
+        final UserRecord record = users.get(normalize(email));
+        return record == null ? null : record.toUser(dictionary);
+    }
+
+    @Override
+    public List<User> findByFormation(final String formation) {
+        return new UserList(decode(lookup(usersByFormation, formation)));
+    }
+
+    @Override
+    public Map<String, List<String>> abilitiesByAddress(final String address) {
+        final Map<String, List<String>> result = new LinkedHashMap<>();
+        for (final UserRecord record : lookup(usersByAddress, address)) {
+            result.put(record.email(), record.decodeAbilities(dictionary));
+        }
+        return result;
+    }
+
+    @Override
+    public SearchResult search(final String query, final int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("o limite da busca deve ser positivo: " + limit);
+        }
+
+        final TextIndex.Matches matches = text.search(query, limit);
+        return new SearchResult(decode(matches.records), matches.scores);
+    }
+
+    @Override
+    public Map<String, Long> aggregate(final String view, final String key, final int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("o limite da agregação deve ser positivo: " + limit);
+        }
+
+        switch (view) {
+            case UserCollection.AGGREGATE_USERS_BY_FORMATION:
+                return usersPerFormation.top(limit, dictionary);
+
+            case UserCollection.AGGREGATE_ABILITIES_BY_ADDRESS: {
+                final int code = dictionary.lookup(normalize(key));
+                final CountTable table = code < 0 ? null : abilitiesPerAddress.get(code);
+                return table == null ? new LinkedHashMap<>() : table.top(limit, dictionary);
             }
             default:
-                throw new IllegalArgumentException("chave de atualização inválida: " + key);
+                throw new IllegalArgumentException("agregação inválida: " + view);
+        }
+    }
+
+    @Override
+    public void addListener(final UserListener listener) {
+        notifier.add(listener);
+    }
+
+    @Override
+    public void removeListener(final UserListener listener) {
+        notifier.remove(listener);
+    }
+
+    @Override
+    public Map<String, MethodStats> stats() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Restaura a adição de um usuário registrada em {@link #journal}.
+     *
+     * @param user        o usuário adicionado.
+     * @param pictureData o conteúdo da foto do usuário ou null caso ele já esteja armazenado.
+     */
+    void restore(final User user, final byte[] pictureData) {
+        final boolean retained = retainPicture(user, pictureData);
+        final String email = normalize(user.email);
+        final UserRecord record = record(user);
+        synchronized (record) {
+            if (users.putIfAbsent(email, record) != null) {
+                record.discard();
+                if (retained) {
+                    pictures.release(user.pictureId);
+                }
+                return;
+            }
+            indexContents(record);
+        }
+        index(email, user, record);
+    }
+
+    /**
+     * Restaura a atualização de um usuário registrada em {@link #journal}.
+     *
+     * @param email o e-mail do usuário atualizado.
+     * @param key   o campo atualizado.
+     * @param value o valor atualizado.
+     */
+    void restore(final String email, final String key, final String value) {
+        final UserRecord record = users.get(normalize(email));
+        if (record != null) {
+            synchronized (record) {
+                final int[] previous = record.abilities();
+                apply(record, key, value);
+                text.append(record, Collections.singletonList(value));
+                count(record, previous, record.abilities());
+            }
+        }
+    }
+
+    /**
+     * Aplica o estado de usuários copiado de outra base de dados, como faz uma réplica.
+     * <p>
+     * Usuários inexistentes são adicionados, e as habilidades e experiências dos existentes são substituídas. As
+     * fotos dos usuários adicionados devem estar nessa base de dados ou em <code>pictureData</code>. Essa operação não
+     * é registrada em {@link #journal}.
+     *
+     * @param batch       o estado atual dos usuários.
+     * @param pictureData o conteúdo das fotos copiadas de outra base de dados, indexado pelo identificador da foto.
+     */
+    void replicate(final List<User> batch, final Map<String, byte[]> pictureData) {
+        final List<String> changed = new ArrayList<>(batch.size());
+        for (final User user : batch) {
+            final String email = normalize(user.email);
+            final UserRecord record = record(user);
+            final boolean retained = !users.containsKey(email)
+                && retainPicture(user, user.hasPicture() ? pictureData.get(user.pictureId) : null);
+            final UserRecord existing;
+            synchronized (record) {
+                existing = users.putIfAbsent(email, record);
+                if (existing == null) {
+                    indexContents(record);
+                }
+            }
+            if (existing == null) {
+                index(email, user, record);
+            } else {
+                if (retained) {
+                    pictures.release(user.pictureId);
+                }
+                synchronized (existing) {
+                    final List<String> previousTexts = existing.texts(dictionary);
+                    final int[] previousAbilities = existing.abilities();
+                    existing.assign(record);
+                    record.discard();
+                    text.replace(existing, previousTexts, existing.texts(dictionary));
+                    count(existing, previousAbilities, existing.abilities());
+                }
+            }
+            changed.add(email);
+        }
+        publish(changed);
+    }
+
+    /**
+     * Adquire uma referência à foto de um usuário sendo adicionado por um cliente, armazenando-a caso o seu conteúdo
+     * seja dado.
+     * <p>
+     * Um usuário enviado sem o conteúdo da foto, como um usuário lido dessa base, só pode referenciar uma foto já
+     * armazenada e com o mesmo tamanho.
+     *
+     * @param user        o usuário.
+     * @param pictureData o conteúdo da foto do usuário ou null caso ela já esteja armazenada.
+     * @return se a referência foi adquirida, e deve ser devolvida caso o usuário não seja adicionado.
+     * @throws IllegalArgumentException caso o identificador da foto não corresponda ao seu conteúdo ou a foto
+     *                                  referenciada não se encontre nessa base de dados.
+     */
+    private boolean acquirePicture(final User user, final byte[] pictureData) {
+        if (pictureData != null) {
+            if (!pictures.put(pictureData).equals(user.pictureId)) {
+                pictures.release(PictureStore.hash(pictureData));
+                throw new IllegalArgumentException("o identificador da foto não corresponde ao seu conteúdo.");
+            }
+            return true;
+        }
+        if (!user.hasPicture()) {
+            return false;
+        }
+        if (!pictures.retain(user.pictureId)) {
+            throw new IllegalArgumentException("foto desconhecida: " + user.pictureId);
+        }
+        if (pictures.size(user.pictureId) != user.pictureSize) {
+            pictures.release(user.pictureId);
+            throw new IllegalArgumentException("o tamanho da foto não corresponde ao armazenado: " + user.pictureSize);
+        }
+        return true;
+    }
+
+    /**
+     * Adquire uma referência à foto de um usuário sendo adicionado, armazenando-a caso o seu conteúdo seja dado.
+     *
+     * @param user        o usuário.
+     * @param pictureData o conteúdo da foto do usuário ou null caso ela já esteja armazenada.
+     * @return se a referência foi adquirida, e deve ser devolvida caso o usuário não seja adicionado.
+     */
+    private boolean retainPicture(final User user, final byte[] pictureData) {
+        if (pictureData != null) {
+            pictures.put(pictureData);
+            return true;
+        }
+        return user.hasPicture() && pictures.retain(user.pictureId);
+    }
+
+    /**
+     * @param pictureId o identificador de uma foto.
+     * @return se a foto se encontra nessa base de dados.
+     */
+    boolean hasPicture(final String pictureId) {
+        return pictures.contains(pictureId);
+    }
+
+    /**
+     * Grava uma imagem compactada dessa base de dados, descartando os registros que ela torna desnecessários.
+     * <p>
+     * As escritas ficam bloqueadas apenas enquanto o estado dos usuários é capturado em memória; a imagem é gravada
+     * em disco de forma concorrente a novas escritas. Caso essa base seja mantida apenas em memória, nada é feito.
+     *
+     * @throws IOException caso a imagem não possa ser gravada.
+     */
+    void checkpoint() throws IOException {
+        if (journal == null) {
+            return;
+        }
+
+        final CompletableFuture<Long> rotation;
+        final List<User> images = new ArrayList<>(users.size());
+        checkpointLock.writeLock().lock();
+        try {
+            rotation = journal.rotate();
+            for (final UserRecord record : users.values()) {
+                images.add(record.toUser(dictionary));
+            }
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+
+        final long firstSegment;
+        try {
+            firstSegment = rotation.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+        journal.writeSnapshot(firstSegment, images, pictures);
+    }
+
+    /**
+     * Fecha essa base de dados, aguardando que as escritas pendentes sejam gravadas em disco.
+     * <p>
+     * Os objetos registrados deixam de ser notificados.
+     */
+    @Override
+    public void close() {
+        notifier.close();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Representa uma imagem da lista de todos os usuários de uma base de dados, possivelmente ainda em construção.
+     */
+    private static final class Snapshot {
+        /**
+         * Versão da base de dados refletida por essa imagem.
+         */
+        final long version;
+
+        /**
+         * Usuários dessa imagem codificados por {@link UserList#encode(Iterable)}, completados quando a sua construção
+         * termina.
+         */
+        final CompletableFuture<byte[]> encoded = new CompletableFuture<>();
+
+        /**
+         * Constrói uma imagem ainda em construção.
+         *
+         * @param version a versão da base de dados refletida pela imagem.
+         */
+        Snapshot(final long version) {
+            this.version = version;
+        }
+
+        /**
+         * Aguarda a construção dessa imagem.
+         *
+         * @return os usuários codificados dessa imagem.
+         */
+        byte[] await() {
+            try {
+                return encoded.join();
+            } catch (CompletionException e) {
+                // A exceção é a mesma lançada para a leitura que construía a imagem
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
         }
     }
 }
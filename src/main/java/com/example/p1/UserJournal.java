@@ -0,0 +1,726 @@
+package com.example.p1;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Representa o armazenamento durável de uma {@link UserDatabase}.
+ * <p>
+ * Cada operação de escrita da base é registrada em um <i>log</i> de escrita antecipada, dividido em segmentos que
+ * só recebem dados ao final. Os registros são gravados por uma única <i>thread</i>, que agrupa todos os registros
+ * pendentes em uma única chamada a {@link FileChannel#force(boolean)}, de forma que várias escritas concorrentes
+ * compartilham o custo de um mesmo <i>fsync</i>.
+ * <p>
+ * Periodicamente, a base grava uma imagem compactada do seu estado. Os segmentos anteriores a essa imagem são
+ * então descartados, e a recuperação da base consiste em ler a imagem mais recente e reaplicar os segmentos
+ * seguintes. Tanto a imagem quanto os segmentos são lidos por meio de arquivos mapeados em memória.
+ */
+final class UserJournal implements Closeable {
+    /**
+     * Tamanho, em bytes, a partir do qual um segmento é fechado e um novo segmento é iniciado.
+     */
+    static final long SEGMENT_SIZE = 64L << 20;
+
+    /**
+     * Tamanho, em bytes, da janela de um arquivo mapeada em memória de uma só vez durante a recuperação.
+     */
+    private static final long MAPPING_SIZE = 256L << 20;
+
+    /**
+     * Quantidade máxima de registros gravados em um mesmo <i>fsync</i>.
+     */
+    private static final int MAX_BATCH_SIZE = 4096;
+
+    /**
+     * Tipo de registro que representa a adição de um usuário.
+     */
+    private static final byte RECORD_CREATE = 1;
+
+    /**
+     * Tipo de registro que representa a atualização de um usuário.
+     */
+    private static final byte RECORD_UPDATE = 2;
+
+    /**
+     * Número que identifica o início de um arquivo de imagem.
+     */
+    private static final int SNAPSHOT_MAGIC = 0x55444231;
+
+    /**
+     * Nome do arquivo da imagem mais recente da base.
+     */
+    private static final String SNAPSHOT_FILE = "snapshot.dat";
+
+    /**
+     * Nome do arquivo temporário utilizado enquanto uma imagem é gravada.
+     */
+    private static final String SNAPSHOT_TEMPORARY_FILE = "snapshot.tmp";
+
+    /**
+     * Diretório onde os arquivos desse armazenamento são mantidos.
+     */
+    private final Path directory;
+
+    /**
+     * Registros ainda não gravados, na ordem em que devem aparecer no <i>log</i>.
+     */
+    private final BlockingQueue<Entry> pending = new LinkedBlockingQueue<>();
+
+    /**
+     * <i>Thread</i> responsável por gravar os registros pendentes.
+     */
+    private final Thread writer = new Thread(this::write, "user-journal-writer");
+
+    /**
+     * Segmento que está recebendo registros.
+     * <p>
+     * Esse campo só é acessado por {@link #writer} após a recuperação.
+     */
+    private FileChannel segment;
+
+    /**
+     * Número do segmento que está recebendo registros.
+     */
+    private long segmentNumber;
+
+    /**
+     * Se esse armazenamento foi fechado.
+     * <p>
+     * Só é modificado sincronizado em {@link #pending}, de forma que nenhum registro é adicionado após o fechamento.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Falha de gravação que impede novos registros ou null caso o <i>log</i> esteja íntegro.
+     * <p>
+     * Um registro gravado pela metade que não pode ser descartado faria a recuperação parar nele, perdendo os
+     * registros seguintes. Por isso, após uma falha desse tipo, os registros passam a ser recusados.
+     */
+    private volatile IOException failure;
+
+    /**
+     * Constrói um armazenamento.
+     *
+     * @param directory o diretório onde os arquivos serão mantidos, que é criado caso não exista.
+     * @throws IOException caso o diretório não possa ser criado.
+     */
+    UserJournal(final Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        writer.setDaemon(true);
+    }
+
+    /**
+     * Restaura uma base a partir dos arquivos desse armazenamento e passa a aceitar novos registros.
+     *
+     * @param database a base, ainda vazia, a ser restaurada.
+     * @throws IOException caso ocorra um erro de leitura ou os arquivos estejam corrompidos.
+     */
+    void recover(final UserDatabase database) throws IOException {
+        long firstSegment = 0;
+        final Path snapshot = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshot)) {
+            try (final DataInputStream input = new DataInputStream(new BufferedInputStream(new MappedInput(snapshot)))) {
+                if (input.readInt() != SNAPSHOT_MAGIC) {
+                    throw new IOException("arquivo de imagem inválido: " + snapshot);
+                }
+                firstSegment = input.readLong();
+                final long count = input.readLong();
+                for (long i = 0; i < count; i++) {
+                    final byte[] record = readRecord(input);
+                    if (record == null) {
+                        throw new IOException("arquivo de imagem incompleto: " + snapshot);
+                    }
+                    replay(database, record);
+                }
+            }
+        }
+        Files.deleteIfExists(directory.resolve(SNAPSHOT_TEMPORARY_FILE));
+
+        final List<Long> segments = listSegments();
+        long lastSegment = firstSegment - 1;
+        for (final long number : segments) {
+            if (number < firstSegment) {
+                Files.delete(segmentPath(number));
+                continue;
+            }
+
+            final Path path = segmentPath(number);
+            long valid = 0;
+            try (final CountingInput counter = new CountingInput(new BufferedInputStream(new MappedInput(path)));
+                 final DataInputStream input = new DataInputStream(counter)) {
+                byte[] record;
+                while ((record = readRecord(input)) != null) {
+                    replay(database, record);
+                    valid = counter.count;
+                }
+            }
+            if (valid < Files.size(path)) {
+                if (number != segments.get(segments.size() - 1)) {
+                    throw new IOException("segmento corrompido: " + path);
+                }
+                // A última escrita antes de uma falha pode ter sido interrompida pela metade
+                try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                    channel.truncate(valid);
+                }
+            }
+            lastSegment = number;
+        }
+
+        openSegment(lastSegment + 1);
+        writer.start();
+    }
+
+    /**
+     * Registra a adição de um usuário.
+     *
+     * @param user        o usuário adicionado.
+     * @param pictureData o conteúdo da foto do usuário ou null caso ele não possua foto.
+     * @return um <i>future</i> que é completado quando o registro estiver gravado em disco.
+     */
+    CompletableFuture<Long> logCreate(final User user, final byte[] pictureData) {
+        return append(encodeCreate(user, pictureData));
+    }
+
+    /**
+     * Registra a atualização de um usuário.
+     *
+     * @param email o e-mail do usuário atualizado.
+     * @param key   o campo atualizado.
+     * @param value o valor atualizado.
+     * @return um <i>future</i> que é completado quando o registro estiver gravado em disco.
+     */
+    CompletableFuture<Long> logUpdate(final String email, final String key, final String value) {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (final DataOutputStream output = new DataOutputStream(buffer)) {
+            output.writeByte(RECORD_UPDATE);
+            writeString(output, email);
+            writeString(output, key);
+            writeString(output, value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return append(buffer.toByteArray());
+    }
+
+    /**
+     * Inicia um novo segmento.
+     * <p>
+     * Todos os registros feitos antes dessa chamada são gravados em segmentos anteriores ao novo segmento.
+     *
+     * @return um <i>future</i> que é completado com o número do novo segmento.
+     */
+    CompletableFuture<Long> rotate() {
+        return append(null);
+    }
+
+    /**
+     * Grava uma imagem da base e descarta os segmentos anteriores a ela.
+     *
+     * @param firstSegment o número do primeiro segmento cujos registros não estão contidos na imagem.
+     * @param images       cópias dos usuários da base no momento em que esse segmento foi iniciado.
+     * @param pictures     o armazém de onde o conteúdo das fotos dos usuários é lido.
+     * @throws IOException caso ocorra um erro de escrita.
+     */
+    void writeSnapshot(final long firstSegment, final Collection<User> images, final PictureStore pictures) throws IOException {
+        final Path temporary = directory.resolve(SNAPSHOT_TEMPORARY_FILE);
+        try (final FileOutputStream file = new FileOutputStream(temporary.toFile());
+             final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            output.writeInt(SNAPSHOT_MAGIC);
+            output.writeLong(firstSegment);
+            output.writeLong(images.size());
+
+            // Fotos idênticas são gravadas uma única vez, junto ao primeiro usuário que a possui
+            final Set<String> written = new HashSet<>();
+            for (final User image : images) {
+                final String pictureId = image.pictureId;
+                final byte[] pictureData = pictureId != null && written.add(pictureId) ? pictures.get(pictureId) : null;
+                writeRecord(output, encodeCreate(image, pictureData));
+            }
+            output.flush();
+            file.getFD().sync();
+        }
+        Files.move(temporary, directory.resolve(SNAPSHOT_FILE),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        for (final long number : listSegments()) {
+            if (number < firstSegment) {
+                Files.delete(segmentPath(number));
+            }
+        }
+    }
+
+    /**
+     * Fecha esse armazenamento, aguardando a gravação dos registros pendentes.
+     * <p>
+     * Registros feitos após o fechamento são recusados.
+     */
+    @Override
+    public void close() {
+        synchronized (pending) {
+            closed = true;
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Adiciona um registro à fila de registros pendentes.
+     *
+     * @param record o registro a ser adicionado ou null para iniciar um novo segmento.
+     * @return um <i>future</i> que é completado com o número do segmento do registro quando ele estiver gravado, ou
+     * completado com a falha que impede novos registros.
+     * @throws IllegalStateException caso esse armazenamento tenha sido fechado.
+     */
+    private CompletableFuture<Long> append(final byte[] record) {
+        final IOException failure = this.failure;
+        if (failure != null) {
+            return CompletableFuture.failedFuture(failure);
+        }
+        final Entry entry = new Entry(record);
+        synchronized (pending) {
+            if (closed) {
+                throw new IllegalStateException("o armazenamento foi fechado.");
+            }
+            pending.add(entry);
+        }
+        return entry.future;
+    }
+
+    /**
+     * Grava os registros pendentes até que esse armazenamento seja fechado.
+     */
+    private void write() {
+        final List<Entry> batch = new ArrayList<>();
+        for (; ; ) {
+            final Entry first;
+            try {
+                first = pending.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (first == null) {
+                // Após o fechamento, nenhum registro é adicionado, e a fila vazia não volta a receber registros
+                if (closed && pending.isEmpty()) {
+                    break;
+                }
+                continue;
+            }
+            batch.add(first);
+            pending.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+            final IOException failure = this.failure;
+            if (failure != null) {
+                batch.forEach(entry -> entry.future.completeExceptionally(failure));
+                batch.clear();
+                continue;
+            }
+
+            try {
+                int start = 0;
+                for (int i = 0; i <= batch.size(); i++) {
+                    if (i < batch.size() && batch.get(i).record != null) {
+                        continue;
+                    }
+                    flush(batch.subList(start, i));
+                    if (i < batch.size() || segment.position() >= SEGMENT_SIZE) {
+                        segment.close();
+                        openSegment(segmentNumber + 1);
+                    }
+                    if (i < batch.size()) {
+                        batch.get(i).future.complete(segmentNumber);
+                    }
+                    start = i + 1;
+                }
+
+            } catch (IOException e) {
+                batch.forEach(entry -> entry.future.completeExceptionally(e));
+            }
+            batch.clear();
+        }
+
+        try {
+            segment.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Grava um grupo de registros no segmento atual com um único <i>fsync</i>.
+     *
+     * @param entries os registros a serem gravados.
+     * @throws IOException caso ocorra um erro de escrita.
+     */
+    private void flush(final List<Entry> entries) throws IOException {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        final ByteBuffer[] buffers = new ByteBuffer[entries.size() * 2];
+        for (int i = 0; i < entries.size(); i++) {
+            final byte[] record = entries.get(i).record;
+            final CRC32 checksum = new CRC32();
+            checksum.update(record);
+            buffers[2 * i] = ByteBuffer.allocate(8).putInt(record.length).putInt((int) checksum.getValue()).flip();
+            buffers[2 * i + 1] = ByteBuffer.wrap(record);
+        }
+        final long size = segment.size();
+        try {
+            while (buffers[buffers.length - 1].hasRemaining()) {
+                segment.write(buffers);
+            }
+            segment.force(false);
+        } catch (IOException e) {
+            discard(size, e);
+            throw e;
+        }
+
+        for (final Entry entry : entries) {
+            entry.future.complete(segmentNumber);
+        }
+    }
+
+    /**
+     * Descarta os registros de uma gravação que falhou, que podem ter sido gravados apenas em parte.
+     * <p>
+     * Caso o segmento não possa ser restaurado ao tamanho anterior à gravação, esse armazenamento passa a recusar
+     * registros.
+     *
+     * @param size  o tamanho, em bytes, do segmento antes da gravação.
+     * @param cause a falha da gravação.
+     */
+    private void discard(final long size, final IOException cause) {
+        try {
+            segment.truncate(size);
+            segment.force(false);
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+            failure = cause;
+        }
+    }
+
+    /**
+     * Abre um segmento para receber registros.
+     *
+     * @param number o número do segmento.
+     * @throws IOException caso o segmento não possa ser aberto.
+     */
+    private void openSegment(final long number) throws IOException {
+        segment = FileChannel.open(segmentPath(number),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentNumber = number;
+    }
+
+    /**
+     * @param number o número de um segmento.
+     * @return o caminho do arquivo do segmento.
+     */
+    private Path segmentPath(final long number) {
+        return directory.resolve(String.format("journal-%016d.log", number));
+    }
+
+    /**
+     * @return os números dos segmentos existentes, em ordem crescente.
+     * @throws IOException caso o diretório não possa ser lido.
+     */
+    private List<Long> listSegments() throws IOException {
+        try (final Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                .filter(name -> name.startsWith("journal-") && name.endsWith(".log"))
+                .map(name -> Long.parseLong(name.substring("journal-".length(), name.length() - ".log".length())))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Reaplica um registro sobre uma base.
+     *
+     * @param database a base onde o registro será aplicado.
+     * @param record   o registro a ser aplicado.
+     * @throws IOException caso o registro esteja corrompido.
+     */
+    private static void replay(final UserDatabase database, final byte[] record) throws IOException {
+        final DataInputStream input = new DataInputStream(new ByteArrayInputStream(record));
+        switch (input.readByte()) {
+            case RECORD_CREATE: {
+                final User.Builder builder = new User.Builder()
+                    .setEmail(readString(input))
+                    .setName(readString(input))
+                    .setAddress(readString(input))
+                    .setFormation(readString(input));
+                final String pictureId = readString(input);
+                final int pictureSize = input.readInt();
+                if (pictureId != null) {
+                    builder.setPictureReference(pictureId, pictureSize);
+                }
+                final byte[] pictureData = input.readBoolean() ? input.readNBytes(pictureSize) : null;
+                builder.setAbilities(readStrings(input));
+                builder.setExperience(readStrings(input));
+                database.restore(builder.build(), pictureData);
+                break;
+            }
+            case RECORD_UPDATE: {
+                database.restore(readString(input), readString(input), readString(input));
+                break;
+            }
+            default:
+                throw new IOException("tipo de registro inválido.");
+        }
+    }
+
+    /**
+     * Codifica a adição de um usuário.
+     *
+     * @param user        o usuário adicionado.
+     * @param pictureData o conteúdo da foto do usuário ou null caso ele já tenha sido registrado.
+     * @return o registro codificado.
+     */
+    private static byte[] encodeCreate(final User user, final byte[] pictureData) {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (final DataOutputStream output = new DataOutputStream(buffer)) {
+            output.writeByte(RECORD_CREATE);
+            writeString(output, user.email);
+            writeString(output, user.name);
+            writeString(output, user.address);
+            writeString(output, user.formation);
+            writeString(output, user.pictureId);
+            output.writeInt(user.pictureSize);
+            output.writeBoolean(pictureData != null);
+            if (pictureData != null) {
+                output.write(pictureData);
+            }
+            writeStrings(output, user.getAbilities());
+            writeStrings(output, user.getExperiences());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Grava um registro precedido do seu tamanho e da sua soma de verificação.
+     *
+     * @param output o destino do registro.
+     * @param record o registro a ser gravado.
+     * @throws IOException caso ocorra um erro de escrita.
+     */
+    private static void writeRecord(final DataOutput output, final byte[] record) throws IOException {
+        final CRC32 checksum = new CRC32();
+        checksum.update(record);
+        output.writeInt(record.length);
+        output.writeInt((int) checksum.getValue());
+        output.write(record);
+    }
+
+    /**
+     * Lê um registro gravado por {@link #writeRecord(DataOutput, byte[])}.
+     *
+     * @param input a origem do registro.
+     * @return o registro lido ou null caso a origem tenha terminado ou o registro esteja incompleto ou corrompido.
+     * @throws IOException caso ocorra um erro de leitura.
+     */
+    private static byte[] readRecord(final DataInputStream input) throws IOException {
+        final int length;
+        final int expected;
+        try {
+            length = input.readInt();
+            expected = input.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < 0) {
+            return null;
+        }
+
+        final byte[] record = input.readNBytes(length);
+        if (record.length < length) {
+            return null;
+        }
+        final CRC32 checksum = new CRC32();
+        checksum.update(record);
+        return (int) checksum.getValue() == expected ? record : null;
+    }
+
+    /**
+     * Grava uma cadeia de caracteres, que pode ser nula, em UTF-8 precedida do seu tamanho.
+     *
+     * @param output o destino da cadeia.
+     * @param value  a cadeia a ser gravada.
+     * @throws IOException caso ocorra um erro de escrita.
+     */
+    private static void writeString(final DataOutput output, final String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Lê uma cadeia de caracteres gravada por {@link #writeString(DataOutput, String)}.
+     *
+     * @param input a origem da cadeia.
+     * @return a cadeia lida.
+     * @throws IOException caso ocorra um erro de leitura.
+     */
+    private static String readString(final DataInputStream input) throws IOException {
+        final int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Grava uma lista de cadeias de caracteres precedida do seu tamanho.
+     *
+     * @param output o destino da lista.
+     * @param values a lista a ser gravada.
+     * @throws IOException caso ocorra um erro de escrita.
+     */
+    private static void writeStrings(final DataOutput output, final List<String> values) throws IOException {
+        output.writeInt(values.size());
+        for (final String value : values) {
+            writeString(output, value);
+        }
+    }
+
+    /**
+     * Lê uma lista de cadeias de caracteres gravada por {@link #writeStrings(DataOutput, List)}.
+     *
+     * @param input a origem da lista.
+     * @return a lista lida.
+     * @throws IOException caso ocorra um erro de leitura.
+     */
+    private static List<String> readStrings(final DataInputStream input) throws IOException {
+        final int size = input.readInt();
+        final List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(readString(input));
+        }
+        return values;
+    }
+
+    /**
+     * Representa um registro aguardando gravação.
+     */
+    private static final class Entry {
+        /**
+         * O registro a ser gravado ou null caso essa entrada indique o início de um novo segmento.
+         */
+        final byte[] record;
+
+        /**
+         * <i>Future</i> completado quando o registro for gravado.
+         */
+        final CompletableFuture<Long> future = new CompletableFuture<>();
+
+        Entry(final byte[] record) {
+            this.record = record;
+        }
+    }
+
+    /**
+     * Fluxo de entrada que lê um arquivo por meio de janelas mapeadas em memória.
+     */
+    private static final class MappedInput extends InputStream {
+        private final FileChannel channel;
+        private final long size;
+        private long position;
+        private MappedByteBuffer window;
+
+        MappedInput(final Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.size = channel.size();
+        }
+
+        /**
+         * @return se ainda existem bytes a serem lidos, mapeando a próxima janela se necessário.
+         * @throws IOException caso a janela não possa ser mapeada.
+         */
+        private boolean ensureWindow() throws IOException {
+            if (window != null && window.hasRemaining()) {
+                return true;
+            }
+            if (position >= size) {
+                return false;
+            }
+            final long length = Math.min(MAPPING_SIZE, size - position);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            position += length;
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return ensureWindow() ? window.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!ensureWindow()) {
+                return -1;
+            }
+            final int count = Math.min(len, window.remaining());
+            window.get(b, off, count);
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Fluxo de entrada que conta quantos bytes foram lidos.
+     */
+    private static final class CountingInput extends FilterInputStream {
+        private long count;
+
+        CountingInput(final InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int result = super.read();
+            if (result >= 0) {
+                count++;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            final int result = super.read(b, off, len);
+            if (result > 0) {
+                count += result;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.p1;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Representa uma lista imutável de usuários retornada por uma {@link UserCollection}.
+ * <p>
+ * Ao ser serializada, a lista grava apenas a sua quantidade de usuários seguida de cada usuário no formato compacto
+ * de {@link UserCodec}, sem os descritores de classe e as referências que a serialização padrão de uma lista grava
+ * para cada elemento. As cadeias que se repetem entre os usuários da lista são gravadas uma única vez.
+ * <p>
+ * Uma lista gravada várias vezes, como a retornada por {@link UserDatabase#read()} a chamadas simultâneas, pode ser
+ * construída a partir dos usuários já codificados por {@link #encode(Iterable)}, de forma que cada gravação apenas copia
+ * os mesmos bytes. Essa lista só decodifica os usuários caso eles sejam acessados.
+ */
+public final class UserList extends AbstractList<User> implements RandomAccess, Externalizable {
+    /**
+     * Campo de serialização.
+     */
+    private static final long serialVersionUID = 2092174611L;
+
+    /**
+     * Usuários dessa lista ou null caso eles ainda não tenham sido decodificados de {@link #encoded}.
+     */
+    private volatile User[] users;
+
+    /**
+     * Usuários dessa lista já codificados por {@link #encode(Iterable)} ou null caso eles sejam codificados a cada
+     * gravação.
+     */
+    private transient byte[] encoded;
+
+    /**
+     * Quantidade de usuários dessa lista.
+     */
+    private int size;
+
+    /**
+     * Constrói uma lista vazia.
+     * <p>
+     * Esse construtor é utilizado pela desserialização.
+     */
+    public UserList() {
+        this.users = new User[0];
+    }
+
+    /**
+     * Constrói uma lista com uma cópia dos usuários de uma coleção.
+     *
+     * @param users os usuários da lista.
+     */
+    UserList(final Collection<User> users) {
+        this.users = users.toArray(new User[0]);
+        this.size = this.users.length;
+    }
+
+    /**
+     * Constrói uma lista a partir de usuários já codificados, que são decodificados apenas quando acessados.
+     *
+     * @param encoded os usuários codificados por {@link #encode(Iterable)}, que não devem ser modificados.
+     */
+    UserList(final byte[] encoded) {
+        this.encoded = encoded;
+        try {
+            this.size = UserCodec.readVarInt(new DataInputStream(new ByteArrayInputStream(encoded)));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("lista codificada inválida.", e);
+        }
+    }
+
+    /**
+     * Codifica usuários no formato gravado por uma lista, um de cada vez.
+     *
+     * @param users os usuários a serem codificados.
+     * @return os usuários codificados.
+     */
+    static byte[] encode(final Iterable<User> users) {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            final DataOutputStream output = new DataOutputStream(body);
+            final Map<String, Integer> table = new HashMap<>();
+            int count = 0;
+            for (final User user : users) {
+                UserCodec.write(output, user, table);
+                count++;
+            }
+
+            UserCodec.writeVarInt(new DataOutputStream(bytes), count);
+            body.writeTo(bytes);
+        } catch (IOException e) {
+            // A escrita em memória não lança exceções
+            throw new AssertionError(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Retorna os usuários dessa lista, decodificando-os caso ainda não tenham sido decodificados.
+     *
+     * @return os usuários dessa lista.
+     */
+    private User[] users() {
+        User[] users = this.users;
+        if (users == null) {
+            synchronized (this) {
+                users = this.users;
+                if (users == null) {
+                    try {
+                        users = read(new DataInputStream(new ByteArrayInputStream(encoded)));
+                    } catch (IOException e) {
+                        // Os bytes foram gravados por essa classe
+                        throw new AssertionError(e);
+                    }
+                    this.users = users;
+                }
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Lê usuários gravados por {@link #write(DataOutput)}.
+     *
+     * @param input a origem dos usuários.
+     * @return os usuários lidos.
+     * @throws IOException caso ocorra um erro de leitura ou os usuários estejam mal formatados.
+     */
+    private static User[] read(final DataInput input) throws IOException {
+        final List<String> table = new ArrayList<>();
+        final int size = UserCodec.readVarInt(input);
+        final List<User> users = new ArrayList<>(UserCodec.capacity(size));
+        for (int i = 0; i < size; i++) {
+            users.add(UserCodec.read(input, table));
+        }
+        return users.toArray(new User[0]);
+    }
+
+    @Override
+    public User get(final int index) {
+        return users()[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Grava os usuários dessa lista.
+     *
+     * @param output o destino da lista.
+     * @throws IOException caso ocorra um erro de escrita.
+     */
+    void write(final DataOutput output) throws IOException {
+        if (encoded != null) {
+            output.write(encoded);
+            return;
+        }
+
+        final Map<String, Integer> table = new HashMap<>();
+        UserCodec.writeVarInt(output, users.length);
+        for (final User user : users) {
+            UserCodec.write(output, user, table);
+        }
+    }
+
+    @Override
+    public void writeExternal(final ObjectOutput output) throws IOException {
+        write(output);
+    }
+
+    @Override
+    public void readExternal(final ObjectInput input) throws IOException {
+        users = read(input);
+        size = users.length;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.p1;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * Representa um objeto remoto que recebe as mudanças de uma {@link UserCollection}.
+ * <p>
+ * Um cliente exporta um objeto que implementa essa interface e o registra com
+ * {@link UserCollection#addListener(UserListener)}. As mudanças são enviadas em lotes, fora das chamadas que as
+ * causaram, e mudanças sucessivas de um mesmo usuário que ainda não foram enviadas são combinadas em uma só.
+ */
+public interface UserListener extends Remote {
+    /**
+     * Recebe as mudanças de uma coleção.
+     * <p>
+     * Cada chamada reflete todas as mudanças até {@link ChangeSet#version}, de forma que essa versão pode ser passada
+     * para {@link UserCollection#changesSince(long)} caso o objeto deixe de receber mudanças. As chamadas a um mesmo
+     * objeto nunca são simultâneas e chegam em ordem crescente de versão.
+     *
+     * @param changes os usuários adicionados ou atualizados desde a chamada anterior.
+     * @throws RemoteException caso ocorra uma exceção durante a conexão RMI.
+     */
+    void usersChanged(final ChangeSet changes) throws RemoteException;
+}
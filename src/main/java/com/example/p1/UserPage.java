@@ -0,0 +1,47 @@
+package com.example.p1;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Representa uma página de usuários lida de uma {@link UserCollection}.
+ * <p>
+ * As páginas são percorridas em ordem de e-mail. Para ler a página seguinte, basta passar {@link #nextCursor} para
+ * {@link UserCollection#read(String, int)}.
+ */
+public final class UserPage implements Serializable {
+    /**
+     * Campo de serialização.
+     */
+    private static final long serialVersionUID = 1736081502L;
+
+    /**
+     * Usuários dessa página.
+     */
+    public final List<User> users;
+
+    /**
+     * Cursor que aponta para a página seguinte.
+     * <p>
+     * Caso essa seja a última página, esse campo é nulo.
+     */
+    public final String nextCursor;
+
+    /**
+     * Constrói uma página.
+     *
+     * @param users      os usuários da página.
+     * @param nextCursor o cursor que aponta para a página seguinte ou null caso essa seja a última página.
+     */
+    public UserPage(final List<User> users, final String nextCursor) {
+        this.users = new UserList(users);
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @return se existe uma página após essa.
+     */
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
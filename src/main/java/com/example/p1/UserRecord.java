@@ -0,0 +1,126 @@
+package com.example.p1;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Representa o perfil de um usuário como armazenado em uma {@link UserDatabase}.
+ * <p>
+ * Diferente de {@link User}, os campos que se repetem entre perfis são guardados como códigos de um
+ * {@link StringDictionary}. Um registro só é convertido em {@link User} quando precisa sair da base.
+ * <p>
+ * O endereço e a formação acadêmica, utilizados pelos índices da base, ficam sempre no próprio registro; os demais
+ * campos são guardados por {@link HeapUserRecord}, em objetos do <i>heap</i>, ou por {@link OffHeapUserRecord}, em
+ * um registro binário fora do <i>heap</i>.
+ * <p>
+ * As atualizações de um registro devem ser sincronizadas nele. As leituras não precisam de sincronização e sempre
+ * refletem o registro antes ou depois de cada atualização, nunca durante.
+ */
+abstract class UserRecord {
+    /**
+     * Código do endereço do usuário.
+     */
+    final int address;
+
+    /**
+     * Código da formação acadêmica do usuário.
+     */
+    final int formation;
+
+    /**
+     * Número desse registro no {@link TextIndex} da base ou -1 caso ele ainda não tenha sido indexado.
+     * <p>
+     * Deve ser acessado sincronizado nesse registro.
+     */
+    int document = -1;
+
+    /**
+     * Constrói um registro a partir de um usuário.
+     *
+     * @param user       o usuário.
+     * @param dictionary o dicionário que codifica os campos repetíveis.
+     */
+    UserRecord(final User user, final StringDictionary dictionary) {
+        this.address = dictionary.encode(user.address);
+        this.formation = dictionary.encode(user.formation);
+    }
+
+    /**
+     * @return o e-mail do usuário.
+     */
+    abstract String email();
+
+    /**
+     * Substitui as habilidades e experiências desse registro pelas de outro registro do mesmo usuário.
+     *
+     * @param other o outro registro, construído com o mesmo dicionário e da mesma classe.
+     */
+    abstract void assign(final UserRecord other);
+
+    /**
+     * @return os códigos das habilidades do usuário, que não devem ser modificados.
+     */
+    abstract int[] abilities();
+
+    /**
+     * Adiciona uma habilidade a esse registro.
+     *
+     * @param ability o código da habilidade.
+     */
+    abstract void addAbility(final int ability);
+
+    /**
+     * Adiciona uma experiência a esse registro.
+     *
+     * @param experience a experiência.
+     */
+    abstract void addExperience(final String experience);
+
+    /**
+     * Obtém os textos desse registro pesquisáveis por {@link TextIndex}.
+     *
+     * @param dictionary o dicionário que codificou as habilidades.
+     * @return as habilidades e as experiências do usuário.
+     */
+    abstract List<String> texts(final StringDictionary dictionary);
+
+    /**
+     * Converte esse registro em um usuário.
+     *
+     * @param dictionary o dicionário que codificou os campos repetíveis.
+     * @return o usuário, independente desse registro.
+     */
+    abstract User toUser(final StringDictionary dictionary);
+
+    /**
+     * Descarta esse registro, que não chegou a ser adicionado à base, liberando a memória que ele ocupa fora do
+     * <i>heap</i>.
+     */
+    void discard() {
+    }
+
+    /**
+     * Decodifica as habilidades desse registro.
+     *
+     * @param dictionary o dicionário que codificou as habilidades.
+     * @return as habilidades do usuário.
+     */
+    List<String> decodeAbilities(final StringDictionary dictionary) {
+        return decode(abilities(), dictionary);
+    }
+
+    /**
+     * Decodifica códigos de habilidades.
+     *
+     * @param codes      os códigos das habilidades.
+     * @param dictionary o dicionário que codificou as habilidades.
+     * @return as habilidades.
+     */
+    static List<String> decode(final int[] codes, final StringDictionary dictionary) {
+        final List<String> values = new ArrayList<>(codes.length);
+        for (final int code : codes) {
+            values.add(dictionary.decode(code));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.p1;
+
+import java.io.Serializable;
+
+/**
+ * Representa uma atualização do perfil de um usuário, a ser aplicada em lote por
+ * {@link UserCollection#updateAll(java.util.List)}.
+ * <p>
+ * Os campos dessa classe têm o mesmo significado dos parâmetros de {@link UserCollection#update(String, String, String)}.
+ */
+public final class UserUpdate implements Serializable {
+    /**
+     * Campo de serialização.
+     */
+    private static final long serialVersionUID = -1876306270L;
+
+    /**
+     * E-mail do usuário a ser atualizado.
+     */
+    public final String email;
+
+    /**
+     * Campo a ser atualizado, podendo ser {@link UserCollection#UPDATE_KEY_ABILITY} ou
+     * {@link UserCollection#UPDATE_KEY_EXPERIENCE}.
+     */
+    public final String key;
+
+    /**
+     * Valor a ser atualizado.
+     */
+    public final String value;
+
+    /**
+     * Constrói uma atualização.
+     *
+     * @param email o e-mail do usuário a ser atualizado.
+     * @param key   o campo a ser atualizado.
+     * @param value o valor a ser atualizado.
+     */
+    public UserUpdate(final String email, final String key, final String value) {
+        this.email = email;
+        this.key = key;
+        this.value = value;
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.p1;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testa as chamadas assíncronas de uma {@link AsyncUserCollection}.
+ */
+public class AsyncUserCollectionTest {
+    /**
+     * Tempo máximo, em milissegundos, de espera por um evento.
+     */
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * E-mails buscados na coleção, na ordem em que as chamadas começaram.
+     */
+    private final List<String> calls = new CopyOnWriteArrayList<>();
+
+    /**
+     * Se a <i>thread</i> de cada chamada já estava interrompida quando ela começou, na mesma ordem de {@link #calls}.
+     */
+    private final List<Boolean> interruptedOnStart = new CopyOnWriteArrayList<>();
+
+    /**
+     * Liberado quando uma chamada bloqueada começa.
+     */
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    /**
+     * Liberado quando uma chamada bloqueada é interrompida.
+     */
+    private final CountDownLatch interrupted = new CountDownLatch(1);
+
+    /**
+     * Liberado para que as chamadas bloqueadas terminem.
+     */
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    /**
+     * Fachada testada.
+     */
+    private AsyncUserCollection async;
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (async != null) {
+            async.close();
+        }
+    }
+
+    /**
+     * Cria uma coleção cujas buscas pelo e-mail se comportam de acordo com o e-mail buscado.
+     * <p>
+     * O e-mail "bloqueia" aguarda {@link #release} e, caso seja interrompido, volta a se interromper antes de
+     * retornar; "remota", "execucao" e "erro" lançam as exceções correspondentes; os demais retornam null
+     * imediatamente.
+     *
+     * @return a coleção.
+     */
+    private UserCollection collection() {
+        return (UserCollection) Proxy.newProxyInstance(UserCollection.class.getClassLoader(),
+            new Class<?>[]{UserCollection.class}, (proxy, method, args) -> {
+                final String email = (String) args[0];
+                interruptedOnStart.add(Thread.currentThread().isInterrupted());
+                calls.add(email);
+                switch (email) {
+                    case "bloqueia":
+                        started.countDown();
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            interrupted.countDown();
+                            // Uma chamada que ignora a interrupção não deve deixar a thread interrompida
+                            Thread.currentThread().interrupt();
+                        }
+                        return null;
+                    case "remota":
+                        throw new RemoteException("falha");
+                    case "execucao":
+                        throw new IllegalStateException("falha");
+                    case "erro":
+                        throw new AssertionError("falha");
+                    default:
+                        return null;
+                }
+            });
+    }
+
+    /**
+     * Aguarda o término de um resultado pendente.
+     *
+     * @param future o resultado pendente.
+     * @return a causa da falha do resultado ou null caso ele tenha terminado normalmente.
+     * @throws Exception caso a espera falhe.
+     */
+    private static Throwable failure(final CompletableFuture<?> future) throws Exception {
+        try {
+            future.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            return null;
+        } catch (ExecutionException e) {
+            return e.getCause();
+        } catch (CancellationException e) {
+            return e;
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void timeoutsInterruptTheCall() throws Exception {
+        async = new AsyncUserCollection(collection(), 1, 2, 100);
+        assertTrue(failure(async.findByEmail("bloqueia")) instanceof TimeoutException);
+        assertTrue(interrupted.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+
+        // A próxima chamada usa a mesma thread, que não está mais interrompida
+        assertNull(failure(async.findByEmail("seguinte")));
+        assertEquals(Boolean.FALSE, interruptedOnStart.get(1));
+    }
+
+    @Test(timeout = 30000)
+    public void cancellationInterruptsTheCall() throws Exception {
+        async = new AsyncUserCollection(collection(), 1, 2, 0);
+        final CompletableFuture<User> future = async.findByEmail("bloqueia");
+        assertTrue(started.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        assertTrue(future.cancel(true));
+        assertTrue(interrupted.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+
+        assertNull(failure(async.findByEmail("seguinte")));
+        assertEquals(Boolean.FALSE, interruptedOnStart.get(1));
+    }
+
+    @Test(timeout = 30000)
+    public void queuedCallsCancelledBeforeStartingAreNotSent() throws Exception {
+        async = new AsyncUserCollection(collection(), 1, 3, 0);
+        final CompletableFuture<User> blocked = async.findByEmail("bloqueia");
+        assertTrue(started.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        final CompletableFuture<User> cancelled = async.findByEmail("cancelada");
+        final CompletableFuture<User> expired = async.findByEmail("expirada").orTimeout(1, TimeUnit.MILLISECONDS);
+        final CompletableFuture<User> next = async.findByEmail("seguinte");
+
+        assertTrue(cancelled.cancel(true));
+        assertTrue(failure(expired) instanceof TimeoutException);
+        release.countDown();
+        assertNull(failure(blocked));
+        assertNull(failure(next));
+        assertEquals(Arrays.asList("bloqueia", "seguinte"), calls);
+    }
+
+    @Test(timeout = 30000)
+    public void everyOutcomeReleasesItsPendingSlot() throws Exception {
+        // Com uma única chamada pendente, qualquer vaga não devolvida bloquearia o pedido seguinte
+        async = new AsyncUserCollection(collection(), 1, 1, 0);
+        assertNull(failure(async.findByEmail("a")));
+        assertTrue(failure(async.findByEmail("remota")) instanceof RemoteException);
+        assertTrue(failure(async.findByEmail("execucao")) instanceof IllegalStateException);
+        assertTrue(failure(async.findByEmail("erro")) instanceof AssertionError);
+
+        final CompletableFuture<User> cancelled = async.findByEmail("bloqueia");
+        assertTrue(started.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        cancelled.cancel(true);
+        assertNull(failure(async.findByEmail("b")));
+        assertTrue(failure(async.findByEmail("bloqueia").orTimeout(10, TimeUnit.MILLISECONDS))
+            instanceof TimeoutException);
+        release.countDown();
+        assertNull(failure(async.findByEmail("c")));
+
+        // Após o encerramento, os pedidos falham sem ocupar vagas
+        async.close();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(failure(async.findByEmail("d")) instanceof RejectedExecutionException);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidLimits() {
+        new AsyncUserCollection(collection(), 2, 1, 0);
+    }
+}
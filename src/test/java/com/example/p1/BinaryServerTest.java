@@ -0,0 +1,173 @@
+package com.example.p1;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testa o enquadramento das respostas de {@link BinaryServer}.
+ */
+public class BinaryServerTest {
+    /**
+     * Quantidade de pedidos enviados sem aguardar as respostas.
+     */
+    private static final int PIPELINED_REQUESTS = 4000;
+
+    /**
+     * Base de dados exposta pelo servidor.
+     */
+    private UserDatabase database;
+
+    /**
+     * Servidor testado.
+     */
+    private BinaryServer server;
+
+    /**
+     * Conteúdo da foto armazenada na base.
+     */
+    private byte[] picture;
+
+    /**
+     * Identificador da foto armazenada na base.
+     */
+    private String pictureId;
+
+    @Before
+    public void setUp() throws IOException {
+        picture = new byte[3 * PictureStore.CHUNK_SIZE];
+        new Random(1).nextBytes(picture);
+        database = new UserDatabase();
+        database.create(new User.Builder()
+            .setEmail("foto@exemplo.com")
+            .setName("Foto")
+            .setAddress("Belém")
+            .setFormation("Computação")
+            .setPictureData(picture)
+            .build());
+        pictureId = database.findByEmail("foto@exemplo.com").pictureId;
+        server = new BinaryServer(database, 0, 4);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+        database.close();
+    }
+
+    /**
+     * Respostas com blocos vazios, enviadas entre respostas grandes a um cliente lento, devem manter o fluxo de
+     * quadros íntegro.
+     */
+    @Test(timeout = 60000)
+    public void emptyChunksKeepFramesInSync() throws Exception {
+        try (Socket socket = new Socket("localhost", server.port())) {
+            final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            final DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            final Map<Long, Integer> expected = new HashMap<>();
+            final Thread writer = new Thread(() -> {
+                try {
+                    for (long id = 1; id <= PIPELINED_REQUESTS; id++) {
+                        // Pedidos alternam um bloco completo e um bloco além do fim da foto
+                        final int offset = id % 2 == 0 ? 0 : picture.length + 1;
+                        final BinaryProtocol.Frame frame = new BinaryProtocol.Frame(id);
+                        UserCodec.writeString(frame.data, pictureId);
+                        frame.data.writeInt(offset);
+                        frame.data.writeInt(PictureStore.CHUNK_SIZE);
+                        final ByteBuffer buffer = frame.finish(BinaryProtocol.OP_READ_PICTURE, null)[0];
+                        output.write(buffer.array(), 0, buffer.limit());
+                    }
+                    output.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            for (long id = 1; id <= PIPELINED_REQUESTS; id++) {
+                expected.put(id, id % 2 == 0 ? PictureStore.CHUNK_SIZE : 0);
+            }
+            writer.start();
+
+            for (int i = 0; i < PIPELINED_REQUESTS; i++) {
+                if (i % 100 == 0) {
+                    // Lê devagar, de forma que as respostas se acumulem no servidor
+                    Thread.sleep(5);
+                }
+                final int length = input.readInt();
+                assertTrue("quadro inválido: " + length,
+                    length >= BinaryProtocol.HEADER_SIZE - 4 && length <= BinaryProtocol.MAX_FRAME_SIZE);
+                final long id = input.readLong();
+                assertEquals(BinaryProtocol.STATUS_OK, input.readByte());
+                final int size = input.readInt();
+                final Integer chunk = expected.remove(id);
+                assertNotNull("resposta inesperada: " + id, chunk);
+                assertEquals((int) chunk, size);
+                assertEquals(length - (BinaryProtocol.HEADER_SIZE - 4) - 4, size);
+                final byte[] data = new byte[size];
+                input.readFully(data);
+                assertArrayEquals(Arrays.copyOf(picture, size), data);
+            }
+            writer.join();
+            assertTrue(expected.isEmpty());
+        }
+    }
+
+    /**
+     * Um bloco além do fim da foto deve ser lido como vazio pelo cliente.
+     */
+    @Test(timeout = 60000)
+    public void emptyChunkThroughClient() throws RemoteException {
+        try (BinaryUserCollection client = BinaryUserCollection.connect("localhost", server.port())) {
+            assertEquals(0, client.readPicture(pictureId, picture.length, PictureStore.CHUNK_SIZE).length);
+            assertArrayEquals(Arrays.copyOfRange(picture, 10, 20), client.readPicture(pictureId, 10, 10));
+            assertNull(client.readPicture("0".repeat(64), 0, 10));
+        }
+    }
+
+    /**
+     * Um quadro maior que o máximo do protocolo deve ser recusado antes de ser enviado.
+     */
+    @Test
+    public void oversizedFrameIsRejected() {
+        final BinaryProtocol.Frame frame = new BinaryProtocol.Frame(1);
+        try {
+            frame.finish(BinaryProtocol.STATUS_OK, ByteBuffer.allocateDirect(BinaryProtocol.MAX_FRAME_SIZE));
+            fail("o quadro deveria ser recusado.");
+        } catch (IOException e) {
+            // Esperado
+        }
+    }
+
+    /**
+     * Um pedido maior que o máximo do protocolo deve falhar sem derrubar a conexão.
+     */
+    @Test(timeout = 60000)
+    public void oversizedRequestKeepsConnection() throws RemoteException {
+        try (BinaryUserCollection client = BinaryUserCollection.connect("localhost", server.port())) {
+            try {
+                client.create(new User.Builder()
+                    .setEmail("grande@exemplo.com")
+                    .setName("Grande")
+                    .setAddress("Belém")
+                    .setFormation("Computação")
+                    .setPictureData(new byte[BinaryProtocol.MAX_FRAME_SIZE])
+                    .build());
+                fail("o pedido deveria ser recusado.");
+            } catch (RemoteException e) {
+                // Esperado
+            }
+            assertNotNull(client.findByEmail("foto@exemplo.com"));
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.p1;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testa o registro de mudanças {@link ChangeLog} e as mudanças retornadas por
+ * {@link UserDatabase#changesSince(long)}.
+ */
+public class ChangeLogTest {
+    /**
+     * Base de dados testada.
+     */
+    private UserDatabase database;
+
+    @Before
+    public void setUp() {
+        database = new UserDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * Cria um usuário de teste.
+     *
+     * @param email o e-mail do usuário.
+     * @return o usuário.
+     */
+    private static User user(final String email) {
+        return new User.Builder()
+            .setEmail(email)
+            .setName("Usuário")
+            .setAddress("Belém")
+            .setFormation("Computação")
+            .build();
+    }
+
+    /**
+     * @param changes mudanças de uma coleção.
+     * @return os e-mails dos usuários das mudanças, em ordem.
+     */
+    private static List<String> emails(final ChangeSet changes) {
+        final List<String> emails = new ArrayList<>();
+        for (final User user : changes.users) {
+            emails.add(user.email);
+        }
+        return emails;
+    }
+
+    @Test
+    public void readsOnlyRetainedChanges() {
+        final ChangeLog log = new ChangeLog(4, 100);
+        assertEquals(100, log.version());
+        assertEquals(100, log.since(100, new ArrayList<>()));
+
+        assertEquals(102, log.append(Arrays.asList("a", "b")));
+        assertEquals(102, log.append(Collections.emptyList()));
+        final List<String> changed = new ArrayList<>();
+        assertEquals(102, log.since(100, changed));
+        assertEquals(Arrays.asList("a", "b"), changed);
+
+        // O vetor circular dá a volta e descarta as mudanças 101 e 102
+        assertEquals(106, log.append(Arrays.asList("c", "d", "e", "f")));
+        assertEquals(-1, log.since(100, new ArrayList<>()));
+        assertEquals(-1, log.since(101, new ArrayList<>()));
+        changed.clear();
+        assertEquals(106, log.since(102, changed));
+        assertEquals(Arrays.asList("c", "d", "e", "f"), changed);
+    }
+
+    @Test
+    public void rejectsVersionsOfOtherLogs() {
+        final ChangeLog log = new ChangeLog(4, 100);
+        log.append(Collections.singletonList("a"));
+
+        // Versões anteriores ao início ou posteriores à mais recente pertencem a outro registro
+        assertEquals(-1, log.since(99, new ArrayList<>()));
+        assertEquals(-1, log.since(102, new ArrayList<>()));
+        assertEquals(-1, log.since(Long.MIN_VALUE, new ArrayList<>()));
+    }
+
+    @Test
+    public void firstAndForeignVersionsReset() {
+        final long initial = database.version();
+        assertTrue(database.create(user("a@exemplo.com")));
+
+        for (final long version : new long[]{Long.MIN_VALUE, initial - 1, database.version() + 1, Long.MAX_VALUE}) {
+            final ChangeSet changes = database.changesSince(version);
+            assertTrue(changes.reset);
+            assertTrue(changes.users.isEmpty());
+            assertEquals(database.version(), changes.version);
+        }
+    }
+
+    @Test
+    public void deltasContainOnlyTheChangedUsers() {
+        final long initial = database.version();
+        assertTrue(database.create(user("a@exemplo.com")));
+        assertTrue(database.create(user("B@exemplo.com")));
+        assertTrue(database.create(user("c@exemplo.com")));
+        final long created = database.version();
+
+        ChangeSet changes = database.changesSince(initial);
+        assertFalse(changes.reset);
+        assertEquals(Arrays.asList("a@exemplo.com", "B@exemplo.com", "c@exemplo.com"), emails(changes));
+        assertEquals(created, changes.version);
+
+        assertTrue(database.update("b@exemplo.com", UserCollection.UPDATE_KEY_ABILITY, "Java"));
+        assertTrue(database.update("B@EXEMPLO.COM", UserCollection.UPDATE_KEY_ABILITY, "Redes"));
+        assertFalse(database.update("d@exemplo.com", UserCollection.UPDATE_KEY_ABILITY, "Java"));
+        assertFalse(database.create(user("c@exemplo.com")));
+
+        // Um usuário modificado várias vezes aparece uma vez, no seu estado atual
+        changes = database.changesSince(created);
+        assertFalse(changes.reset);
+        assertEquals(Collections.singletonList("B@exemplo.com"), emails(changes));
+        assertEquals(Arrays.asList("Java", "Redes"), changes.users.get(0).getAbilities());
+        assertEquals(database.version(), changes.version);
+
+        changes = database.changesSince(changes.version);
+        assertFalse(changes.reset);
+        assertTrue(changes.users.isEmpty());
+        assertEquals(database.version(), changes.version);
+    }
+
+    @Test
+    public void resetsOnceTheLogWraps() {
+        assertTrue(database.create(user("a@exemplo.com")));
+        assertTrue(database.create(user("b@exemplo.com")));
+        final long before = database.version();
+
+        final List<UserUpdate> updates = new ArrayList<>();
+        for (int i = 0; i < 4096; i++) {
+            updates.add(new UserUpdate("b@exemplo.com", UserCollection.UPDATE_KEY_EXPERIENCE, "e" + i));
+        }
+        for (int i = 0; i < UserDatabase.CHANGE_LOG_CAPACITY / updates.size(); i++) {
+            database.updateAll(updates);
+        }
+        assertEquals(before + UserDatabase.CHANGE_LOG_CAPACITY, database.version());
+
+        // A versão mais antiga ainda retida é exatamente a capacidade do registro atrás da mais recente
+        final ChangeSet retained = database.changesSince(before);
+        assertFalse(retained.reset);
+        assertEquals(Collections.singletonList("b@exemplo.com"), emails(retained));
+
+        assertTrue(database.changesSince(before - 1).reset);
+        assertTrue(database.update("a@exemplo.com", UserCollection.UPDATE_KEY_ABILITY, "Java"));
+        assertTrue(database.changesSince(before).reset);
+        assertEquals(Collections.singletonList("a@exemplo.com"), emails(database.changesSince(database.version() - 1)));
+    }
+}
@@ -0,0 +1,326 @@
+package com.example.p1;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testa o envio das mudanças de usuários aos objetos registrados em um {@link ChangeNotifier}.
+ */
+public class ChangeNotifierTest {
+    /**
+     * Tempo máximo, em milissegundos, de espera por um envio.
+     */
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * Tempo, em milissegundos, durante o qual um objeto que não deve receber mais nada é observado.
+     */
+    private static final long QUIET_MILLIS = 200;
+
+    /**
+     * Usuários lidos pelo notificador, indexados pelo e-mail normalizado.
+     */
+    private final Map<String, User> users = new ConcurrentHashMap<>();
+
+    /**
+     * Notificador testado.
+     */
+    private ChangeNotifier notifier;
+
+    @Before
+    public void setUp() {
+        notifier = new ChangeNotifier(users::get);
+    }
+
+    @After
+    public void tearDown() {
+        notifier.close();
+    }
+
+    /**
+     * Representa um objeto registrado que guarda as mudanças recebidas e pode bloquear ou falhar na primeira chamada.
+     */
+    private static final class Listener implements UserListener {
+        /**
+         * Mudanças recebidas, na ordem das chamadas.
+         */
+        final BlockingQueue<ChangeSet> received = new LinkedBlockingQueue<>();
+
+        /**
+         * Liberado quando a primeira chamada começa.
+         */
+        final CountDownLatch entered = new CountDownLatch(1);
+
+        /**
+         * Liberado para que a primeira chamada termine.
+         */
+        final CountDownLatch resume = new CountDownLatch(1);
+
+        /**
+         * Exceção lançada pela primeira chamada ou null caso ela termine normalmente.
+         */
+        private final Exception failure;
+
+        /**
+         * Constrói um objeto cuja primeira chamada bloqueia até {@link #resume} e então lança uma exceção.
+         *
+         * @param failure a exceção lançada ou null caso a chamada termine normalmente.
+         */
+        Listener(final Exception failure) {
+            this.failure = failure;
+        }
+
+        /**
+         * Constrói um objeto que nunca bloqueia.
+         */
+        Listener() {
+            this(null);
+            resume.countDown();
+        }
+
+        @Override
+        public void usersChanged(final ChangeSet changes) throws RemoteException {
+            received.add(changes);
+            if (entered.getCount() > 0) {
+                entered.countDown();
+                try {
+                    resume.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (failure instanceof RemoteException) {
+                    throw (RemoteException) failure;
+                }
+                if (failure != null) {
+                    throw (RuntimeException) failure;
+                }
+            }
+        }
+
+        /**
+         * Aguarda a próxima chamada.
+         *
+         * @return as mudanças recebidas.
+         * @throws InterruptedException caso a espera seja interrompida.
+         */
+        ChangeSet next() throws InterruptedException {
+            final ChangeSet changes = received.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            assertNotNull("nenhuma mudança recebida", changes);
+            return changes;
+        }
+
+        /**
+         * Verifica se nenhuma chamada é recebida durante algum tempo.
+         *
+         * @throws InterruptedException caso a espera seja interrompida.
+         */
+        void assertQuiet() throws InterruptedException {
+            assertNull(received.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    /**
+     * Modifica um usuário e publica a mudança.
+     *
+     * @param version a versão da mudança.
+     * @param emails  os e-mails dos usuários modificados.
+     */
+    private void change(final long version, final String... emails) {
+        for (final String email : emails) {
+            final User previous = users.get(email);
+            users.put(email, new User.Builder()
+                .setEmail(email)
+                .setName("Usuário")
+                .setAddress("Belém")
+                .setFormation("Computação")
+                .setExperience(Collections.singletonList("v" + version))
+                .setAbilities(previous == null ? Collections.emptyList() : previous.getAbilities())
+                .build());
+        }
+        notifier.publish(Arrays.asList(emails), version);
+    }
+
+    /**
+     * @param changes mudanças recebidas.
+     * @return os e-mails dos usuários das mudanças, em ordem.
+     */
+    private static List<String> emails(final ChangeSet changes) {
+        final List<String> emails = new ArrayList<>();
+        for (final User user : changes.users) {
+            emails.add(user.email);
+        }
+        return emails;
+    }
+
+    @Test(timeout = 30000)
+    public void coalescesChangesWhileTheListenerIsBusy() throws Exception {
+        final Listener listener = new Listener(null);
+        notifier.add(listener);
+
+        change(1, "a");
+        assertTrue(listener.entered.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        change(2, "b");
+        change(3, "a");
+        change(4, "c", "b");
+        change(5, "a");
+        listener.resume.countDown();
+
+        final ChangeSet first = listener.next();
+        assertEquals(Collections.singletonList("a"), emails(first));
+        assertEquals(1, first.version);
+
+        // As mudanças pendentes chegam em uma única chamada, com o estado atual de cada usuário
+        final ChangeSet second = listener.next();
+        assertEquals(Arrays.asList("b", "a", "c"), emails(second));
+        assertEquals(5, second.version);
+        assertEquals(Collections.singletonList("v5"), second.users.get(1).getExperiences());
+        listener.assertQuiet();
+
+        change(6, "d");
+        assertEquals(Collections.singletonList("d"), emails(listener.next()));
+    }
+
+    @Test(timeout = 30000)
+    public void keepsListenersUpToTheLimit() throws Exception {
+        final Listener listener = new Listener(null);
+        notifier.add(listener);
+        change(1, "primeiro");
+        assertTrue(listener.entered.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+
+        final String[] emails = new String[ChangeNotifier.MAX_PENDING_CHANGES];
+        for (int i = 0; i < emails.length; i++) {
+            emails[i] = "u" + i;
+        }
+        change(2, emails);
+        change(3, "u0");
+        listener.resume.countDown();
+
+        listener.next();
+        final ChangeSet pending = listener.next();
+        assertEquals(ChangeNotifier.MAX_PENDING_CHANGES, pending.users.size());
+        assertEquals(3, pending.version);
+    }
+
+    @Test(timeout = 30000)
+    public void dropsListenersThatFallTooFarBehind() throws Exception {
+        final Listener listener = new Listener(null);
+        notifier.add(listener);
+        change(1, "primeiro");
+        assertTrue(listener.entered.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+
+        final String[] emails = new String[ChangeNotifier.MAX_PENDING_CHANGES];
+        for (int i = 0; i < emails.length; i++) {
+            emails[i] = "u" + i;
+        }
+        change(2, emails);
+        change(3, "último");
+        listener.resume.countDown();
+
+        // O objeto termina a chamada em andamento e não recebe mais nada
+        assertEquals(1, listener.next().version);
+        listener.assertQuiet();
+        change(4, "primeiro");
+        listener.assertQuiet();
+
+        // Um novo registro volta a receber as mudanças posteriores a ele
+        notifier.add(listener);
+        change(5, "primeiro");
+        final ChangeSet changes = listener.next();
+        assertEquals(Collections.singletonList("primeiro"), emails(changes));
+        assertEquals(5, changes.version);
+    }
+
+    @Test(timeout = 30000)
+    public void dropsListenersWhoseCallsFail() throws Exception {
+        for (final Exception failure : new Exception[]{new RemoteException("falha"), new IllegalStateException()}) {
+            final Listener listener = new Listener(failure);
+            notifier.add(listener);
+            change(1, "a");
+            assertTrue(listener.entered.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+            change(2, "b");
+            listener.resume.countDown();
+
+            // A mudança pendente é descartada junto com o registro
+            assertEquals(1, listener.next().version);
+            listener.assertQuiet();
+            change(3, "c");
+            listener.assertQuiet();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void removedListenersStopReceivingChanges() throws Exception {
+        final Listener listener = new Listener();
+        notifier.add(listener);
+        notifier.add(listener);
+        change(1, "a");
+        assertEquals(1, listener.next().version);
+
+        notifier.remove(listener);
+        change(2, "b");
+        listener.assertQuiet();
+    }
+
+    @Test(timeout = 60000)
+    public void databaseVersionsReachListenersInOrder() throws Exception {
+        final UserDatabase database = new UserDatabase();
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final Listener listener = new Listener();
+            database.addListener(listener);
+
+            final List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int thread = t;
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        database.create(new User.Builder()
+                            .setEmail("t" + thread + "-" + i + "@exemplo.com")
+                            .setName("Usuário")
+                            .setAddress("Belém")
+                            .setFormation("Computação")
+                            .build());
+                    }
+                }));
+            }
+            for (final Future<?> writer : writers) {
+                writer.get();
+            }
+
+            // As versões recebidas crescem, e a última reflete todos os usuários adicionados
+            final Set<String> received = new HashSet<>();
+            long version = Long.MIN_VALUE;
+            while (version < database.version()) {
+                final ChangeSet changes = listener.next();
+                assertTrue(changes.version > version);
+                version = changes.version;
+                received.addAll(emails(changes));
+            }
+            assertEquals(database.version(), version);
+            assertEquals(8 * 500, received.size());
+        } finally {
+            executor.shutdownNow();
+            database.close();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.p1;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testa as conexões criadas por {@link CompressingSocketFactory}.
+ */
+public class CompressingSocketFactoryTest {
+    /**
+     * Canal que aceita as conexões do teste.
+     */
+    private ServerSocket server;
+
+    /**
+     * Lado do cliente da conexão do teste.
+     */
+    private Socket client;
+
+    /**
+     * Lado do servidor da conexão do teste.
+     */
+    private Socket accepted;
+
+    /**
+     * Executor das threads do teste.
+     */
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws IOException {
+        final CompressingSocketFactory factory = new CompressingSocketFactory(Deflater.BEST_SPEED, 64);
+        server = factory.createServerSocket(0);
+        client = factory.createSocket("localhost", server.getLocalPort());
+        accepted = server.accept();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        client.close();
+        accepted.close();
+        server.close();
+    }
+
+    @Test(timeout = 30000)
+    public void roundTripsCompressedAndRawBlocks() throws Exception {
+        // Metade dos dados se repete e é comprimida; a outra metade é aleatória e enviada sem compressão
+        final byte[] data = new byte[4 * CompressingSocketFactory.BLOCK_SIZE + 123];
+        final Random random = new Random(42);
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (i / CompressingSocketFactory.BLOCK_SIZE) % 2 == 0 ? (byte) (i % 7) : (byte) random.nextInt();
+        }
+
+        final Future<?> writer = executor.submit(() -> {
+            final OutputStream output = client.getOutputStream();
+            output.write(data);
+            output.write(1);
+            output.flush();
+            return null;
+        });
+        final byte[] received = new byte[data.length];
+        final DataInputStream input = new DataInputStream(accepted.getInputStream());
+        input.readFully(received);
+        assertEquals(1, input.read());
+        writer.get();
+        assertArrayEquals(data, received);
+    }
+
+    @Test(timeout = 30000)
+    public void closingDuringWritesOnlyFailsWithIOException() throws Exception {
+        final Future<?> reader = executor.submit(() -> {
+            final byte[] buffer = new byte[8192];
+            while (accepted.getInputStream().read(buffer) >= 0) {
+                // Os dados são descartados
+            }
+            return null;
+        });
+        final Future<?> writer = executor.submit(() -> {
+            final byte[] block = new byte[CompressingSocketFactory.BLOCK_SIZE];
+            final OutputStream output = client.getOutputStream();
+            try {
+                for (; ; ) {
+                    output.write(block);
+                    output.flush();
+                }
+            } catch (IOException e) {
+                // Esperado após o fechamento
+            }
+            return null;
+        });
+
+        Thread.sleep(200);
+        client.close();
+        writer.get();
+        accepted.close();
+        try {
+            reader.get();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.p1;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testa a leitura dos arquivos importados por {@link Importer}.
+ */
+public class ImporterTest {
+    /**
+     * Lê todos os perfis de um arquivo.
+     *
+     * @param profiles   o leitor dos perfis.
+     * @param batchSize  a quantidade de perfis por lote.
+     * @param statistics as estatísticas da importação.
+     * @return os lotes lidos.
+     * @throws IOException caso ocorra um erro de leitura.
+     */
+    private static List<List<User>> read(final Importer.ProfileReader profiles, final int batchSize,
+                                         final Importer.Statistics statistics) throws IOException {
+        final List<List<User>> batches = new ArrayList<>();
+        Importer.read(profiles, Paths.get("."), batchSize, batches::add, statistics, System.nanoTime());
+        return batches;
+    }
+
+    /**
+     * Cria um leitor de um arquivo CSV.
+     *
+     * @param lines as linhas do arquivo.
+     * @return o leitor.
+     */
+    private static Importer.ProfileReader csv(final String... lines) {
+        return new Importer.CsvProfileReader(new BufferedReader(new StringReader(String.join("\n", lines))));
+    }
+
+    /**
+     * Cria um leitor de um arquivo JSON Lines.
+     *
+     * @param lines as linhas do arquivo.
+     * @return o leitor.
+     */
+    private static Importer.ProfileReader jsonl(final String... lines) {
+        return new Importer.JsonProfileReader(new BufferedReader(new StringReader(String.join("\n", lines))));
+    }
+
+    /**
+     * Junta os lotes em uma única lista.
+     *
+     * @param batches os lotes.
+     * @return os perfis de todos os lotes, em ordem.
+     */
+    private static List<User> flatten(final List<List<User>> batches) {
+        final List<User> users = new ArrayList<>();
+        batches.forEach(users::addAll);
+        return users;
+    }
+
+    @Test
+    public void readsCsvWithHeaderAndQuotedFields() throws IOException {
+        final Importer.Statistics statistics = new Importer.Statistics();
+        final List<User> users = flatten(read(csv(
+            "Name,Email,Formation,Address,Abilities,Experiences",
+            "\"Silva, Ana\",ana@exemplo.com,Computação,Belém,Java; Redes ;,\"Estágio na \"\"Empresa\"\"\"",
+            "",
+            "Bruno,bruno@exemplo.com,\"Engenharia",
+            "de Software\",\"Rua A,",
+            "Belém\",,\r"), 10, statistics));
+
+        assertEquals(2, statistics.rows.get());
+        assertEquals(0, statistics.invalid.get());
+        assertEquals(2, users.size());
+
+        final User ana = users.get(0);
+        assertEquals("ana@exemplo.com", ana.email);
+        assertEquals("Silva, Ana", ana.name);
+        assertEquals("Belém", ana.address);
+        assertEquals("Computação", ana.formation);
+        assertEquals(Arrays.asList("Java", "Redes"), ana.getAbilities());
+        assertEquals(Collections.singletonList("Estágio na \"Empresa\""), ana.getExperiences());
+
+        final User bruno = users.get(1);
+        assertEquals("Engenharia\nde Software", bruno.formation);
+        assertEquals("Rua A,\nBelém", bruno.address);
+        assertTrue(bruno.getAbilities().isEmpty());
+    }
+
+    @Test
+    public void readsCsvWithoutHeaderInTheDefaultOrder() throws IOException {
+        final Importer.Statistics statistics = new Importer.Statistics();
+        final List<User> users = flatten(read(csv(
+            "ana@exemplo.com,Ana,Belém,Computação,,Java,Estágio"), 10, statistics));
+
+        assertEquals(1, users.size());
+        assertEquals("Ana", users.get(0).name);
+        assertNull(users.get(0).pictureId);
+        assertEquals(Collections.singletonList("Java"), users.get(0).getAbilities());
+        assertEquals(Collections.singletonList("Estágio"), users.get(0).getExperiences());
+    }
+
+    @Test
+    public void countsMalformedCsvRowsAsInvalid() throws IOException {
+        final Importer.Statistics statistics = new Importer.Statistics();
+        final List<User> users = flatten(read(csv(
+            "email,name,address,formation",
+            "ana@exemplo.com,Ana,Belém,Computação",
+            "bruno@exemplo.com,Bruno,Belém,Computação,sobrando",
+            "carla@exemplo.com,Carla,Belém",
+            "daniel@exemplo.com,Daniel,Belém,Computação",
+            "\"eva@exemplo.com,Eva,Belém,Computação"), 10, statistics));
+
+        assertEquals(5, statistics.rows.get());
+        assertEquals(3, statistics.invalid.get());
+        assertEquals(2, users.size());
+        assertEquals("ana@exemplo.com", users.get(0).email);
+        assertEquals("daniel@exemplo.com", users.get(1).email);
+    }
+
+    @Test
+    public void readsJsonLinesWithEscapes() throws IOException {
+        final Importer.Statistics statistics = new Importer.Statistics();
+        final List<User> users = flatten(read(jsonl(
+            "{\"email\": \"ana@exemplo.com\", \"name\": \"Ana \\\"A\\\" Souza\", \"address\": \"Bel\\u00e9m\",",
+            "",
+            "{\"email\":\"bruno@exemplo.com\",\"name\":\"Bruno\",\"address\":\"Belém\",\"formation\":\"Computa\\u00E7\\u00e3o\","
+                + "\"picture\":null,\"abilities\":[\"Java\",\"IoT\"],\"experiences\":[]}"), 10, statistics));
+
+        // A primeira linha não fecha o objeto
+        assertEquals(2, statistics.rows.get());
+        assertEquals(1, statistics.invalid.get());
+        assertEquals(1, users.size());
+
+        final User bruno = users.get(0);
+        assertEquals("Computação", bruno.formation);
+        assertEquals(Arrays.asList("Java", "IoT"), bruno.getAbilities());
+        assertTrue(bruno.getExperiences().isEmpty());
+
+        final List<User> escaped = flatten(read(jsonl(
+            "{\"email\":\"ana@exemplo.com\",\"name\":\"Ana \\\"A\\\"\\nSouza\",\"address\":\"Bel\\u00e9m\","
+                + "\"formation\":\"Computação\"}"), 10, new Importer.Statistics()));
+        assertEquals("Ana \"A\"\nSouza", escaped.get(0).name);
+        assertEquals("Belém", escaped.get(0).address);
+    }
+
+    @Test
+    public void countsMalformedJsonLinesAsInvalid() throws IOException {
+        final Importer.Statistics statistics = new Importer.Statistics();
+        final List<User> users = flatten(read(jsonl(
+            "{\"email\":\"a@exemplo.com\",\"name\":\"A\",\"address\":\"B\",\"formation\":\"C\"}",
+            "{\"email\":\"b@exemplo.com\",\"name\":\"\\u00zz\",\"address\":\"B\",\"formation\":\"C\"}",
+            "{\"email\":\"c@exemplo.com\",\"name\":\"\\u00",
+            "{\"email\":\"d@exemplo.com\",\"name\":\"D\",\"address\":\"B\",\"formation\":\"C\"} lixo",
+            "{\"email\":\"e@exemplo.com\",\"name\":[\"E\"],\"address\":\"B\",\"formation\":\"C\"}",
+            "{\"email\":\"f@exemplo.com\",\"name\":\"F\",\"address\":\"B\"}",
+            "[]",
+            "{\"email\":\"g@exemplo.com\",\"name\":\"G\",\"address\":\"B\",\"formation\":\"C\"}"), 10, statistics));
+
+        assertEquals(8, statistics.rows.get());
+        assertEquals(6, statistics.invalid.get());
+        assertEquals(2, users.size());
+        assertEquals("a@exemplo.com", users.get(0).email);
+        assertEquals("g@exemplo.com", users.get(1).email);
+    }
+
+    @Test
+    public void groupsProfilesInBoundedBatches() throws IOException {
+        final StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            lines.append("u").append(i).append("@exemplo.com,Nome,Belém,Computação\n");
+        }
+        final Importer.Statistics statistics = new Importer.Statistics();
+        final List<List<User>> batches = read(csv(lines.toString()), 2, statistics);
+
+        assertEquals(3, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertEquals(2, batches.get(1).size());
+        assertEquals(1, batches.get(2).size());
+        assertEquals("u4@exemplo.com", batches.get(2).get(0).email);
+    }
+}
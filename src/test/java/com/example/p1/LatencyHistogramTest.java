@@ -0,0 +1,127 @@
+package com.example.p1;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testa os percentis calculados por {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+    /**
+     * Erro relativo máximo de um percentil, a largura de uma faixa em relação ao seu início.
+     */
+    private static final double MAX_ERROR = 1.0 / 16;
+
+    /**
+     * Verifica se um percentil aproximado está dentro do erro documentado.
+     *
+     * @param expected o valor exato.
+     * @param actual   o valor aproximado.
+     */
+    private static void assertClose(final long expected, final long actual) {
+        assertTrue(expected + " ≉ " + actual, Math.abs((double) actual - expected) <= expected * MAX_ERROR);
+    }
+
+    @Test
+    public void emptyHistogramsReturnZeros() {
+        assertArrayEquals(new long[3], new LatencyHistogram().percentiles(0.5, 0.99, 0.999));
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        for (long value = 0; value < 32; value++) {
+            final LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(value);
+            assertArrayEquals(new long[]{value, value}, histogram.percentiles(0, 1));
+        }
+
+        final LatencyHistogram negative = new LatencyHistogram();
+        negative.record(-5);
+        assertArrayEquals(new long[]{0}, negative.percentiles(0.5));
+    }
+
+    @Test
+    public void everyValueFallsInANearbyBucket() {
+        final Random random = new Random(42);
+        final long[] values = new long[10_000];
+        for (int i = 0; i < values.length; i++) {
+            // Valores em todas as potências de dois, inclusive os limites entre faixas
+            final int exponent = random.nextInt(62);
+            final long base = 1L << exponent;
+            switch (i % 4) {
+                case 0:
+                    values[i] = base;
+                    break;
+                case 1:
+                    values[i] = base - 1 + base;
+                    break;
+                default:
+                    values[i] = base + (long) (random.nextDouble() * base);
+            }
+        }
+        values[0] = Long.MAX_VALUE;
+
+        for (final long value : values) {
+            final LatencyHistogram histogram = new LatencyHistogram();
+            histogram.record(value);
+            final long[] percentiles = histogram.percentiles(0.5, 0.999);
+            assertClose(value, percentiles[0]);
+            assertEquals(percentiles[0], percentiles[1]);
+            assertTrue(percentiles[0] >= 0);
+        }
+    }
+
+    @Test
+    public void percentilesOfUniformValues() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value);
+        }
+        final long[] percentiles = histogram.percentiles(0.5, 0.99, 0.999);
+        assertClose(50_000, percentiles[0]);
+        assertClose(99_000, percentiles[1]);
+        assertClose(99_900, percentiles[2]);
+    }
+
+    @Test
+    public void percentilesOfSkewedValues() {
+        // 99% das chamadas levam 1 µs, 0,9% levam 1 ms e 0,1% levam 1 s
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 990; i++) {
+            histogram.record(1_000);
+        }
+        for (int i = 0; i < 9; i++) {
+            histogram.record(1_000_000);
+        }
+        histogram.record(1_000_000_000);
+
+        final long[] percentiles = histogram.percentiles(0.5, 0.99, 0.999, 1);
+        assertClose(1_000, percentiles[0]);
+        assertClose(1_000, percentiles[1]);
+        assertClose(1_000_000, percentiles[2]);
+        assertClose(1_000_000_000, percentiles[3]);
+    }
+
+    @Test
+    public void percentilesMatchExactRanks() {
+        final Random random = new Random(7);
+        final long[] values = new long[200_000];
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < values.length; i++) {
+            // Distribuição log-normal em torno de 100 µs
+            values[i] = (long) Math.exp(Math.log(100_000) + random.nextGaussian());
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        final double[] ranks = {0.5, 0.9, 0.99, 0.999};
+        final long[] percentiles = histogram.percentiles(ranks);
+        for (int i = 0; i < ranks.length; i++) {
+            assertClose(values[(int) Math.ceil(ranks[i] * values.length) - 1], percentiles[i]);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.p1;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testa as métricas acumuladas por um {@link MetricsUserCollection}.
+ */
+public class MetricsUserCollectionTest {
+    /**
+     * Base de dados medida.
+     */
+    private UserDatabase database;
+
+    /**
+     * Decorador testado.
+     */
+    private MetricsUserCollection metrics;
+
+    /**
+     * Se a próxima busca pelo e-mail deve falhar.
+     */
+    private boolean failNextFind;
+
+    @Before
+    public void setUp() {
+        database = new UserDatabase() {
+            @Override
+            public User findByEmail(final String email) {
+                if (failNextFind) {
+                    failNextFind = false;
+                    throw new IllegalStateException("falha");
+                }
+                return super.findByEmail(email);
+            }
+        };
+        metrics = new MetricsUserCollection(database);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * Cria um usuário de teste.
+     *
+     * @param email o e-mail do usuário.
+     * @return o usuário.
+     */
+    private static User user(final String email) {
+        return new User.Builder()
+            .setEmail(email)
+            .setName("Usuário")
+            .setAddress("Belém")
+            .setFormation("Computação")
+            .setAbilities(Arrays.asList("Java"))
+            .build();
+    }
+
+    @Test
+    public void countsCallsErrorsAndPayloads() throws RemoteException {
+        assertTrue(metrics.create(user("a@exemplo.com")));
+        assertEquals(Arrays.asList(true, false, true),
+            metrics.createAll(Arrays.asList(user("b@exemplo.com"), user("a@exemplo.com"), user("c@exemplo.com"))));
+        assertEquals(3, metrics.read().size());
+        assertEquals(2, metrics.read(null, 2).users.size());
+        assertNotNull(metrics.findByEmail("a@exemplo.com"));
+        assertNull(metrics.findByEmail("z@exemplo.com"));
+        assertEquals(3, metrics.search("java", 10).users.size());
+
+        // Exceções da coleção são repassadas e contadas como erros
+        try {
+            metrics.search("java", 0);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Esperado
+        }
+        try {
+            metrics.aggregate("inexistente", null, 1);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Esperado
+        }
+        failNextFind = true;
+        try {
+            metrics.findByEmail("a@exemplo.com");
+            fail();
+        } catch (IllegalStateException e) {
+            // Esperado
+        }
+
+        final Map<String, MethodStats> stats = metrics.stats();
+        assertStats(stats.get("create"), 1, 0, 1);
+        assertStats(stats.get("createAll"), 1, 0, 3);
+        assertStats(stats.get("read"), 1, 0, 3);
+        assertStats(stats.get("readPage"), 1, 0, 2);
+        assertStats(stats.get("findByEmail"), 3, 1, 1);
+        assertStats(stats.get("search"), 2, 1, 3);
+        assertStats(stats.get("aggregate"), 1, 1, 0);
+        assertStats(stats.get("update"), 0, 0, 0);
+        assertEquals(0, stats.get("update").p50);
+    }
+
+    /**
+     * Verifica os contadores das estatísticas de um método.
+     *
+     * @param stats   as estatísticas do método.
+     * @param calls   a quantidade esperada de chamadas.
+     * @param errors  a quantidade esperada de erros.
+     * @param payload a quantidade esperada de itens transferidos.
+     */
+    private static void assertStats(final MethodStats stats, final long calls, final long errors, final long payload) {
+        assertEquals(calls, stats.calls);
+        assertEquals(errors, stats.errors);
+        assertEquals(payload, stats.payload);
+        assertTrue(stats.p50 <= stats.p99);
+        assertTrue(stats.p99 <= stats.p999);
+        if (calls > 0) {
+            assertTrue(stats.p999 > 0);
+        }
+    }
+
+    @Test
+    public void exposesMetricsThroughJmx() throws Exception {
+        final String scope = "teste" + System.nanoTime();
+        metrics.registerMBeans(scope);
+        assertTrue(metrics.create(user("a@exemplo.com")));
+        assertFalse(metrics.create(user("a@exemplo.com")));
+
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName name = new ObjectName("com.example.p1:type=UserCollection,scope=" + scope + ",name=create");
+        assertEquals(2L, server.getAttribute(name, "Calls"));
+        assertEquals(0L, server.getAttribute(name, "Errors"));
+        assertEquals(2L, server.getAttribute(name, "Payload"));
+        assertTrue((Long) server.getAttribute(name, "P999Nanos") > 0);
+        server.queryNames(new ObjectName("com.example.p1:type=UserCollection,scope=" + scope + ",*"), null)
+            .forEach(registered -> {
+                try {
+                    server.unregisterMBean(registered);
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+            });
+    }
+}
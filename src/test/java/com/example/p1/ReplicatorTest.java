@@ -0,0 +1,164 @@
+package com.example.p1;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.rmi.RemoteException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testa a cópia contínua de um primário por {@link Replicator}.
+ */
+public class ReplicatorTest {
+    /**
+     * Quantidade de usuários adicionados ao primário durante o teste.
+     */
+    private static final int USERS = 3000;
+
+    /**
+     * Tempo máximo, em milissegundos, para que a réplica alcance o primário.
+     */
+    private static final long CONVERGENCE_TIMEOUT_MILLIS = 10_000;
+
+    /**
+     * Se o próximo registro no primário deve ser seguido de uma escrita, enviada ao replicador antes que ele
+     * sincronize.
+     */
+    private final AtomicBoolean writeOnSubscribe = new AtomicBoolean();
+
+    /**
+     * Base de dados primária.
+     */
+    private UserDatabase primary;
+
+    /**
+     * Base de dados da réplica.
+     */
+    private UserDatabase replica;
+
+    /**
+     * Replicador testado.
+     */
+    private Replicator replicator;
+
+    @Before
+    public void setUp() throws RemoteException {
+        primary = new UserDatabase() {
+            @Override
+            public void addListener(final UserListener listener) {
+                super.addListener(listener);
+                if (writeOnSubscribe.getAndSet(false)) {
+                    create(user(USERS));
+                    awaitReplication(version());
+                }
+            }
+        };
+        replica = new UserDatabase();
+        replicator = new Replicator(primary, replica);
+        replicator.start();
+    }
+
+    @After
+    public void tearDown() {
+        replicator.close();
+        replica.close();
+        primary.close();
+    }
+
+    /**
+     * Cria um usuário de teste.
+     *
+     * @param i o número do usuário.
+     * @return o usuário.
+     */
+    private static User user(final int i) {
+        return new User.Builder()
+            .setEmail("usuario" + i + "@exemplo.com")
+            .setName("Usuário " + i)
+            .setAddress("Cidade " + i % 10)
+            .setFormation("Formação " + i % 5)
+            .build();
+    }
+
+    /**
+     * Aguarda até que o replicador aplique uma versão do primário, ou por no máximo um segundo.
+     *
+     * @param version a versão do primário.
+     */
+    private void awaitReplication(final long version) {
+        final long deadline = System.currentTimeMillis() + 1000;
+        while (replicator.version() < version && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Resume os usuários de uma base de dados, em ordem de e-mail.
+     *
+     * @param database a base de dados.
+     * @return o resumo dos usuários.
+     */
+    private static List<String> contents(final UserDatabase database) {
+        final List<String> contents = new ArrayList<>();
+        for (final User user : database.read()) {
+            contents.add(user.email + user.getAbilities() + user.getExperiences());
+        }
+        Collections.sort(contents);
+        return contents;
+    }
+
+    /**
+     * A réplica deve alcançar o primário mesmo que o seu registro seja removido repetidamente durante as escritas.
+     */
+    @Test(timeout = 60000)
+    public void convergesAfterDroppedSubscriptions() throws Exception {
+        final Thread writer = new Thread(() -> {
+            for (int i = 0; i < USERS; i++) {
+                primary.create(user(i));
+                if (i % 3 == 0) {
+                    primary.update(user(i / 2).email, UserCollection.UPDATE_KEY_EXPERIENCE, "Experiência " + i);
+                }
+            }
+        });
+        writer.start();
+
+        final Random random = new Random(1);
+        while (writer.isAlive()) {
+            primary.removeListener(replicator);
+            Thread.sleep(random.nextInt(5));
+        }
+        writer.join();
+
+        final long deadline = System.currentTimeMillis() + CONVERGENCE_TIMEOUT_MILLIS;
+        while (!contents(replica).equals(contents(primary)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(contents(primary), contents(replica));
+        assertEquals(primary.version(), replicator.version());
+    }
+
+    /**
+     * Uma mudança enviada por um registro refeito antes da sincronização que o segue não deve fazer a réplica pular
+     * as mudanças feitas enquanto ela não estava registrada.
+     */
+    @Test(timeout = 60000)
+    public void pushBeforeResyncDoesNotSkipMissedChanges() throws Exception {
+        primary.removeListener(replicator);
+        for (int i = 0; i < 10; i++) {
+            primary.create(user(i));
+        }
+        writeOnSubscribe.set(true);
+
+        final long deadline = System.currentTimeMillis() + CONVERGENCE_TIMEOUT_MILLIS;
+        while ((writeOnSubscribe.get() || !contents(replica).equals(contents(primary)))
+            && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertFalse(writeOnSubscribe.get());
+        assertEquals(contents(primary), contents(replica));
+    }
+}
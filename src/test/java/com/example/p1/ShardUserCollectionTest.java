@@ -0,0 +1,116 @@
+package com.example.p1;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testa a verificação dos usuários aceitos por um {@link ShardUserCollection}.
+ */
+public class ShardUserCollectionTest {
+    /**
+     * Quantidade de fragmentos do teste.
+     */
+    private static final int SHARDS = 3;
+
+    /**
+     * Bases de dados de cada fragmento.
+     */
+    private final List<UserDatabase> databases = new ArrayList<>();
+
+    /**
+     * Coleções exportadas por cada fragmento.
+     */
+    private final List<UserCollection> shards = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        for (int i = 0; i < SHARDS; i++) {
+            final UserDatabase database = new UserDatabase();
+            databases.add(database);
+            shards.add(new ShardUserCollection(database, i, SHARDS));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        databases.forEach(UserDatabase::close);
+    }
+
+    /**
+     * Cria um usuário de teste.
+     *
+     * @param i o número do usuário.
+     * @return o usuário.
+     */
+    private static User user(final int i) {
+        return new User.Builder()
+            .setEmail("Usuario" + i + "@exemplo.com")
+            .setName("Usuário " + i)
+            .setAddress("Belém")
+            .setFormation("Computação")
+            .build();
+    }
+
+    /**
+     * @param user um usuário.
+     * @return o índice do fragmento dono do usuário.
+     */
+    private static int owner(final User user) {
+        return new ConsistentHashRing(SHARDS).shardOf(user.email.toLowerCase(Locale.ROOT));
+    }
+
+    @Test
+    public void acceptsUsersRoutedByTheClient() throws Exception {
+        final ShardedUserCollection collection = new ShardedUserCollection(shards);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(collection.create(user(i)));
+            assertTrue(collection.update(user(i).email, UserCollection.UPDATE_KEY_ABILITY, "Java"));
+        }
+        assertEquals(100, collection.read().size());
+    }
+
+    @Test
+    public void rejectsUsersOfOtherShards() throws Exception {
+        final User user = user(1);
+        final UserCollection wrong = shards.get((owner(user) + 1) % SHARDS);
+        try {
+            wrong.create(user);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Esperado
+        }
+        try {
+            wrong.update(user.email, UserCollection.UPDATE_KEY_ABILITY, "Java");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Esperado
+        }
+        assertTrue(databases.stream().allMatch(database -> database.read().isEmpty()));
+    }
+
+    @Test
+    public void rejectsWholeBatchesWithForeignUsers() throws Exception {
+        final User first = user(1);
+        User foreign = null;
+        for (int i = 2; foreign == null; i++) {
+            if (owner(user(i)) != owner(first)) {
+                foreign = user(i);
+            }
+        }
+        try {
+            shards.get(owner(first)).createAll(Arrays.asList(first, foreign));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Esperado
+        }
+        assertTrue(databases.get(owner(first)).read().isEmpty());
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.p1;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testa a combinação dos resultados de vários fragmentos por um {@link ShardedUserCollection}.
+ */
+public class ShardedUserCollectionTest {
+    /**
+     * Quantidade de fragmentos do teste.
+     */
+    private static final int SHARDS = 2;
+
+    /**
+     * Formações dos usuários de teste.
+     */
+    private static final String[] FORMATIONS = {"Computação", "Engenharia", "Física", "Matemática", "Química"};
+
+    /**
+     * Bases de dados de cada fragmento.
+     */
+    private final List<UserDatabase> databases = new ArrayList<>();
+
+    /**
+     * Base de dados com todos os usuários, usada como referência.
+     */
+    private UserDatabase reference;
+
+    /**
+     * Coleção testada.
+     */
+    private ShardedUserCollection collection;
+
+    @Before
+    public void setUp() {
+        final List<UserCollection> shards = new ArrayList<>();
+        for (int i = 0; i < SHARDS; i++) {
+            final UserDatabase database = new UserDatabase();
+            databases.add(database);
+            shards.add(new ShardUserCollection(database, i, SHARDS));
+        }
+        collection = new ShardedUserCollection(shards);
+        reference = new UserDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        databases.forEach(UserDatabase::close);
+        reference.close();
+    }
+
+    /**
+     * Adiciona usuários aleatórios à coleção testada e à referência.
+     *
+     * @param count a quantidade de usuários.
+     * @throws Exception caso a adição falhe.
+     */
+    private void populate(final int count) throws Exception {
+        final Random random = new Random(42);
+        final List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // As formações mais ao início são mais frequentes, e algumas contagens empatam
+            final double u = random.nextDouble();
+            users.add(new User.Builder()
+                .setEmail((i % 3 == 0 ? "Usuario" : "usuario") + random.nextInt(1_000_000) + "@exemplo.com")
+                .setName("Usuário " + i)
+                .setAddress(i % 2 == 0 ? "Belém" : "Ananindeua")
+                .setFormation(FORMATIONS[(int) (u * u * FORMATIONS.length)])
+                .setAbilities(Arrays.asList("Java", "Habilidade " + i % 7))
+                .build());
+        }
+        assertEquals(reference.createAll(users), collection.createAll(users));
+    }
+
+    @Test
+    public void pagesMergeShardsInEmailOrder() throws Exception {
+        populate(500);
+        assertTrue(databases.stream().allMatch(database -> database.read().size() > 100));
+
+        for (final int limit : new int[]{1, 3, 50, 249, 250, 499, 500, 501}) {
+            assertEquals("limite " + limit, UserDatabasePagingTest.readAll(reference, limit),
+                UserDatabasePagingTest.readAll(collection, limit));
+        }
+    }
+
+    @Test
+    public void lastMergedPageHasNoCursor() throws Exception {
+        final List<User> users = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            users.add(new User.Builder()
+                .setEmail("u" + i + "@exemplo.com").setName("Usuário").setAddress("Belém").setFormation("Computação")
+                .build());
+        }
+        assertEquals(Arrays.asList(true, true, true, true), collection.createAll(users));
+
+        assertNull(collection.read(null, 4).nextCursor);
+        final UserPage first = collection.read(null, 3);
+        assertEquals("u2@exemplo.com", first.nextCursor);
+        final UserPage last = collection.read(first.nextCursor, 3);
+        assertEquals(1, last.users.size());
+        assertNull(last.nextCursor);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositivePageLimits() throws Exception {
+        collection.read(null, 0);
+    }
+
+    @Test
+    public void aggregatesSumCountsOfEveryShard() throws Exception {
+        populate(500);
+
+        for (final int limit : new int[]{1, 2, 3, FORMATIONS.length, 100}) {
+            assertEquals(new ArrayList<>(reference.aggregate(UserCollection.AGGREGATE_USERS_BY_FORMATION, null, limit)
+                    .entrySet()),
+                new ArrayList<>(collection.aggregate(UserCollection.AGGREGATE_USERS_BY_FORMATION, null, limit)
+                    .entrySet()));
+            assertEquals(new ArrayList<>(reference.aggregate(UserCollection.AGGREGATE_ABILITIES_BY_ADDRESS, "belém",
+                    limit).entrySet()),
+                new ArrayList<>(collection.aggregate(UserCollection.AGGREGATE_ABILITIES_BY_ADDRESS, "belém", limit)
+                    .entrySet()));
+        }
+
+        final Map<String, Long> total = collection.aggregate(UserCollection.AGGREGATE_USERS_BY_FORMATION, null, 100);
+        assertEquals(reference.read().size(), total.values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Test
+    public void aggregatesMergeValuesSpelledDifferentlyAcrossShards() throws Exception {
+        // Procura dois usuários que pertencem a fragmentos diferentes
+        final ConsistentHashRing ring = new ConsistentHashRing(SHARDS);
+        String second = null;
+        for (int i = 1; second == null; i++) {
+            if (ring.shardOf("u" + i + "@exemplo.com") != ring.shardOf("u0@exemplo.com")) {
+                second = "u" + i + "@exemplo.com";
+            }
+        }
+        assertTrue(collection.create(new User.Builder()
+            .setEmail("u0@exemplo.com").setName("A").setAddress("Belém").setFormation("Computação").build()));
+        assertTrue(collection.create(new User.Builder()
+            .setEmail(second).setName("B").setAddress("Belém").setFormation("COMPUTAÇÃO").build()));
+
+        final Map<String, Long> counts = collection.aggregate(UserCollection.AGGREGATE_USERS_BY_FORMATION, null, 10);
+        assertEquals(1, counts.size());
+        assertEquals(Long.valueOf(2), counts.values().iterator().next());
+        assertEquals("computação", counts.keySet().iterator().next().toLowerCase(Locale.ROOT));
+    }
+
+    @Test
+    public void scatteredQueriesCombineEveryShard() throws Exception {
+        populate(500);
+
+        assertEquals(reference.findByFormation("computação").size(), collection.findByFormation("computação").size());
+        assertEquals(reference.abilitiesByAddress("Ananindeua").keySet(),
+            collection.abilitiesByAddress("Ananindeua").keySet());
+        assertEquals(reference.read().size(), collection.read().size());
+
+        // A busca retorna as maiores pontuações de todos os fragmentos, em ordem decrescente
+        final SearchResult result = collection.search("habilidade 3", 20);
+        assertEquals(20, result.users.size());
+        for (int i = 1; i < result.scores.length; i++) {
+            assertTrue(result.scores[i - 1] >= result.scores[i]);
+        }
+        for (final User user : result.users) {
+            assertTrue(user.getAbilities().contains("Habilidade 3"));
+        }
+    }
+}
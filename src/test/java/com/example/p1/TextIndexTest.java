@@ -0,0 +1,227 @@
+package com.example.p1;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testa a busca textual de uma {@link UserDatabase}, feita por {@link TextIndex}.
+ */
+@RunWith(Parameterized.class)
+public class TextIndexTest {
+    /**
+     * Tolerância na comparação de pontuações, que podem ser somadas em ordens diferentes.
+     */
+    private static final double EPSILON = 1e-9;
+
+    /**
+     * Termos das habilidades e experiências dos usuários aleatórios.
+     */
+    private static final String[] WORDS = {
+        "java", "redes", "iot", "python", "banco", "dados", "sistemas", "embarcados", "web", "android",
+        "kotlin", "segurança", "nuvem", "linux", "compiladores", "grafos", "robótica", "design", "testes", "rust"};
+
+    /**
+     * Se os registros da base são mantidos fora do heap.
+     */
+    private final boolean offHeap;
+
+    /**
+     * Base de dados testada.
+     */
+    private UserDatabase database;
+
+    /**
+     * Constrói o teste para um modo de armazenamento.
+     *
+     * @param offHeap se os registros da base são mantidos fora do heap.
+     */
+    public TextIndexTest(final boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * @return os modos de armazenamento testados.
+     */
+    @Parameterized.Parameters(name = "offHeap={0}")
+    public static Collection<Object[]> modes() {
+        return Arrays.asList(new Object[]{false}, new Object[]{true});
+    }
+
+    @Before
+    public void setUp() {
+        database = new UserDatabase(offHeap);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * Cria um usuário de teste.
+     *
+     * @param email       o e-mail do usuário.
+     * @param abilities   as habilidades do usuário.
+     * @param experiences as experiências do usuário.
+     * @return o usuário.
+     */
+    private static User user(final String email, final List<String> abilities, final List<String> experiences) {
+        return new User.Builder()
+            .setEmail(email)
+            .setName("Usuário")
+            .setAddress("Belém")
+            .setFormation("Computação")
+            .setAbilities(abilities)
+            .setExperience(experiences)
+            .build();
+    }
+
+    /**
+     * Sorteia um texto com termos mais frequentes no início de {@link #WORDS}.
+     *
+     * @param random o gerador de números aleatórios.
+     * @return o texto.
+     */
+    private static String text(final Random random) {
+        final StringBuilder text = new StringBuilder();
+        for (int i = random.nextInt(4); i >= 0; i--) {
+            final double u = random.nextDouble();
+            text.append(' ').append(WORDS[(int) (u * u * WORDS.length)]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Busca os e-mails dos usuários encontrados por uma consulta.
+     *
+     * @param query a consulta.
+     * @return os e-mails dos usuários encontrados, do mais relevante ao menos relevante.
+     */
+    private List<String> emails(final String query) {
+        final List<String> emails = new ArrayList<>();
+        for (final User user : database.search(query, 100).users) {
+            emails.add(user.email);
+        }
+        return emails;
+    }
+
+    @Test
+    public void topResultsArePrefixesOfTheFullRanking() {
+        final Random random = new Random(42);
+        final int users = 3000;
+        for (int i = 0; i < users; i++) {
+            final List<String> abilities = new ArrayList<>();
+            final List<String> experiences = new ArrayList<>();
+            for (int j = random.nextInt(3); j >= 0; j--) {
+                abilities.add(text(random));
+            }
+            for (int j = random.nextInt(3); j > 0; j--) {
+                experiences.add(text(random));
+            }
+            assertTrue(database.create(user("u" + i + "@exemplo.com", abilities, experiences)));
+        }
+        // As atualizações acrescentam termos ao final das listas invertidas de registros anteriores
+        for (int i = 0; i < users / 2; i++) {
+            final String key = random.nextBoolean() ? UserCollection.UPDATE_KEY_ABILITY
+                : UserCollection.UPDATE_KEY_EXPERIENCE;
+            assertTrue(database.update("u" + random.nextInt(users) + "@exemplo.com", key, text(random)));
+        }
+
+        for (int q = 0; q < 300; q++) {
+            final String query = text(random) + (random.nextInt(4) == 0 ? " inexistente" : "");
+            final SearchResult full = database.search(query, users);
+            final Map<String, Double> scores = new HashMap<>();
+            for (int i = 0; i < full.users.size(); i++) {
+                scores.put(full.users.get(i).email, full.scores[i]);
+                if (i > 0) {
+                    assertTrue(full.scores[i - 1] >= full.scores[i]);
+                }
+            }
+
+            final int limit = 1 + random.nextInt(30);
+            final SearchResult top = database.search(query, limit);
+            assertEquals(query, Math.min(limit, full.users.size()), top.users.size());
+            final Set<String> found = new HashSet<>();
+            for (int i = 0; i < top.users.size(); i++) {
+                final String email = top.users.get(i).email;
+                assertTrue(query, found.add(email));
+                assertEquals(query, full.scores[i], top.scores[i], EPSILON);
+                assertEquals(query, scores.get(email), top.scores[i], EPSILON);
+
+                // Usuários com a mesma pontuação podem trocar de posição pela ordem das somas
+                final boolean tied = i > 0 && Math.abs(full.scores[i - 1] - full.scores[i]) <= EPSILON
+                    || i + 1 < full.users.size() && Math.abs(full.scores[i + 1] - full.scores[i]) <= EPSILON;
+                if (!tied) {
+                    assertEquals(query, full.users.get(i).email, email);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void foldsAccentsCaseAndStopWords() {
+        assertTrue(database.create(user("a@exemplo.com",
+            Arrays.asList("Programação", "Banco de Dados"), Arrays.asList("Estágio em IoT"))));
+        assertTrue(database.create(user("b@exemplo.com",
+            Arrays.asList("Redes"), Arrays.asList("Programador de Sistemas"))));
+
+        assertEquals(Arrays.asList("a@exemplo.com"), emails("programacao"));
+        assertEquals(Arrays.asList("a@exemplo.com"), emails("PROGRAMAÇÃO"));
+        assertEquals(Arrays.asList("a@exemplo.com"), emails("estagio iot"));
+        assertEquals(Arrays.asList("a@exemplo.com"), emails("bancos dados"));
+        assertEquals(Arrays.asList("b@exemplo.com"), emails("programador"));
+
+        // Palavras muito comuns não são indexadas
+        assertTrue(emails("de").isEmpty());
+        assertTrue(emails("em, de!").isEmpty());
+        assertTrue(emails("").isEmpty());
+    }
+
+    @Test
+    public void rarerAndRepeatedTermsRankHigher() {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(database.create(user("u" + i + "@exemplo.com",
+                Arrays.asList("Java"), i == 3 ? Arrays.asList("Java e Kotlin") : Arrays.asList())));
+        }
+
+        // Apenas um usuário possui o termo raro e repete o termo comum
+        final List<String> emails = emails("java kotlin");
+        assertEquals(10, emails.size());
+        assertEquals("u3@exemplo.com", emails.get(0));
+    }
+
+    @Test
+    public void updatedAbilitiesBecomeSearchable() {
+        assertTrue(database.create(user("a@exemplo.com", Arrays.asList("Java"), Arrays.asList())));
+        assertTrue(database.create(user("b@exemplo.com", Arrays.asList("Rust"), Arrays.asList())));
+        assertTrue(emails("kotlin").isEmpty());
+
+        assertTrue(database.update("a@exemplo.com", UserCollection.UPDATE_KEY_ABILITY, "Kotlin"));
+        assertEquals(Arrays.asList("a@exemplo.com"), emails("kotlin"));
+
+        assertTrue(database.update("b@exemplo.com", UserCollection.UPDATE_KEY_EXPERIENCE, "Robótica com Kotlin"));
+        assertEquals(new HashSet<>(Arrays.asList("a@exemplo.com", "b@exemplo.com")), new HashSet<>(emails("kotlin")));
+        assertEquals(Arrays.asList("b@exemplo.com"), emails("robotica"));
+        assertEquals(Arrays.asList("a@exemplo.com"), emails("java"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveLimits() {
+        database.search("java", 0);
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.p1;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testa a cópia local dos usuários consultados pelo e-mail, {@link UserCache}.
+ */
+public class UserCacheTest {
+    /**
+     * Base de dados copiada.
+     */
+    private UserDatabase database;
+
+    /**
+     * Quantidade de buscas pelo e-mail feitas na base de dados.
+     */
+    private final AtomicInteger finds = new AtomicInteger();
+
+    /**
+     * Ação executada após cada busca pelo e-mail feita na base de dados, antes de retornar o usuário lido.
+     */
+    private Runnable afterFind = () -> {
+    };
+
+    /**
+     * Cópia testada.
+     */
+    private UserCache cache;
+
+    @Before
+    public void setUp() {
+        database = new UserDatabase();
+        // As buscas pelo e-mail são contadas e podem ser seguidas de uma ação, simulando uma mudança simultânea
+        final UserCollection collection = (UserCollection) Proxy.newProxyInstance(
+            UserCollection.class.getClassLoader(), new Class<?>[]{UserCollection.class}, (proxy, method, args) -> {
+                try {
+                    final Object result = method.invoke(database, args);
+                    if (method.getName().equals("findByEmail")) {
+                        finds.incrementAndGet();
+                        final Runnable action = afterFind;
+                        afterFind = () -> {
+                        };
+                        action.run();
+                    }
+                    return result;
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            });
+        cache = new UserCache(collection);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * Cria um usuário de teste.
+     *
+     * @param email o e-mail do usuário.
+     * @return o usuário.
+     */
+    private static User user(final String email) {
+        return new User.Builder()
+            .setEmail(email)
+            .setName("Usuário")
+            .setAddress("Belém")
+            .setFormation("Computação")
+            .build();
+    }
+
+    @Test
+    public void cachesUsersAndAppliesDeltas() throws Exception {
+        assertTrue(database.create(user("a@exemplo.com")));
+        assertNull(cache.findByEmail("b@exemplo.com"));
+        assertEquals(1, finds.get());
+
+        assertEquals("a@exemplo.com", cache.findByEmail("A@exemplo.com").email);
+        assertEquals("a@exemplo.com", cache.findByEmail("a@exemplo.com").email);
+        assertEquals(2, finds.get());
+
+        // A mudança chega pela atualização seguinte, sem uma nova busca
+        assertTrue(database.update("a@exemplo.com", UserCollection.UPDATE_KEY_ABILITY, "Java"));
+        assertEquals(Collections.singletonList("Java"), cache.findByEmail("a@exemplo.com").getAbilities());
+        assertEquals(2, finds.get());
+
+        // Usuários ausentes não são guardados, e passam a ser encontrados assim que adicionados
+        assertTrue(database.create(user("b@exemplo.com")));
+        assertEquals("b@exemplo.com", cache.findByEmail("b@exemplo.com").email);
+        assertEquals(3, finds.get());
+
+        cache.invalidate("A@EXEMPLO.COM");
+        assertEquals(Collections.singletonList("Java"), cache.findByEmail("a@exemplo.com").getAbilities());
+        assertEquals(4, finds.get());
+    }
+
+    @Test
+    public void discardsUsersWhenTheLogWraps() throws Exception {
+        assertTrue(database.create(user("a@exemplo.com")));
+        assertTrue(database.create(user("b@exemplo.com")));
+        assertNotNull(cache.findByEmail("a@exemplo.com"));
+
+        final List<UserUpdate> updates = new ArrayList<>();
+        for (int i = 0; i < 4096; i++) {
+            updates.add(new UserUpdate("b@exemplo.com", UserCollection.UPDATE_KEY_EXPERIENCE, "e" + i));
+        }
+        for (int i = 0; i <= UserDatabase.CHANGE_LOG_CAPACITY / updates.size(); i++) {
+            database.updateAll(updates);
+        }
+        assertTrue(database.update("a@exemplo.com", UserCollection.UPDATE_KEY_ABILITY, "Java"));
+
+        // A mudança de a@exemplo.com não pode ser obtida como delta, e o usuário é lido novamente
+        assertEquals(Collections.singletonList("Java"), cache.findByEmail("a@exemplo.com").getAbilities());
+        assertEquals(2, finds.get());
+    }
+
+    @Test
+    public void doesNotCacheUsersReadDuringAChange() throws Exception {
+        assertTrue(database.create(user("a@exemplo.com")));
+        assertTrue(database.create(user("b@exemplo.com")));
+        assertNotNull(cache.findByEmail("b@exemplo.com"));
+
+        // O usuário é lido, e então atualizado; outra consulta aplica a mudança antes que a primeira termine
+        afterFind = () -> {
+            assertTrue(database.update("a@exemplo.com", UserCollection.UPDATE_KEY_ABILITY, "Java"));
+            try {
+                assertNotNull(cache.findByEmail("b@exemplo.com"));
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        };
+        assertTrue(cache.findByEmail("a@exemplo.com").getAbilities().isEmpty());
+
+        // A cópia desatualizada não foi guardada
+        assertEquals(Collections.singletonList("Java"), cache.findByEmail("a@exemplo.com").getAbilities());
+        assertEquals(3, finds.get());
+        assertTrue(database.update("a@exemplo.com", UserCollection.UPDATE_KEY_ABILITY, "Redes"));
+        assertEquals(Arrays.asList("Java", "Redes"), cache.findByEmail("a@exemplo.com").getAbilities());
+        assertEquals(3, finds.get());
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.p1;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testa a codificação de usuários por {@link UserCodec}, inclusive a leitura de entradas mal formatadas.
+ */
+public class UserCodecTest {
+    /**
+     * Cria um usuário de teste.
+     *
+     * @param i o número do usuário.
+     * @return o usuário.
+     */
+    private static User user(final int i) {
+        return new User.Builder()
+            .setEmail("usuário" + i + "@exemplo.com")
+            .setName("Usuário Nº " + i)
+            .setAddress(i % 2 == 0 ? "Belém" : "Ananindeua")
+            .setFormation("Ciência da Computação")
+            .setAbilities(Arrays.asList("Java", "Redes", "Habilidade " + i))
+            .setExperience(Collections.singletonList("Estágio"))
+            .setPictureReference(i % 3 == 0 ? null : String.format("%064x", i), i % 3 == 0 ? 0 : 1000 + i)
+            .build();
+    }
+
+    /**
+     * Verifica se dois usuários possuem os mesmos campos.
+     *
+     * @param expected o usuário esperado.
+     * @param actual   o usuário obtido.
+     */
+    private static void assertSameUser(final User expected, final User actual) {
+        assertEquals(expected.email, actual.email);
+        assertEquals(expected.name, actual.name);
+        assertEquals(expected.address, actual.address);
+        assertEquals(expected.formation, actual.formation);
+        assertEquals(expected.pictureId, actual.pictureId);
+        assertEquals(expected.pictureSize, actual.pictureSize);
+        assertArrayEquals(expected.pendingPictureData(), actual.pendingPictureData());
+        assertEquals(expected.getAbilities(), actual.getAbilities());
+        assertEquals(expected.getExperiences(), actual.getExperiences());
+    }
+
+    /**
+     * Serializa e desserializa um objeto.
+     *
+     * @param value o objeto.
+     * @return a cópia desserializada do objeto.
+     * @throws Exception caso o objeto não possa ser serializado ou desserializado.
+     */
+    private static Object copy(final Object value) throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(value);
+        }
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return input.readObject();
+        }
+    }
+
+    /**
+     * Codifica um usuário isoladamente.
+     *
+     * @param user o usuário.
+     * @return os bytes do usuário.
+     * @throws IOException caso o usuário não possa ser codificado.
+     */
+    private static byte[] encode(final User user) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        UserCodec.write(new DataOutputStream(bytes), user);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Cria uma entrada a partir de bytes.
+     *
+     * @param bytes os bytes da entrada.
+     * @return a entrada.
+     */
+    private static DataInput input(final int... bytes) {
+        final byte[] data = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            data[i] = (byte) bytes[i];
+        }
+        return new DataInputStream(new ByteArrayInputStream(data));
+    }
+
+    @Test
+    public void roundTripsUsers() throws Exception {
+        for (int i = 0; i < 6; i++) {
+            final User user = user(i);
+            assertSameUser(user, UserCodec.read(new DataInputStream(new ByteArrayInputStream(encode(user)))));
+            assertSameUser(user, (User) copy(user));
+        }
+
+        // Identificadores que não são um hash em hexadecimal minúsculo são gravados como cadeias
+        final User named = new User.Builder()
+            .setEmail("a@b.c").setName("").setAddress("").setFormation("")
+            .setPictureReference(String.format("%064X", 255), 1)
+            .build();
+        assertSameUser(named, (User) copy(named));
+
+        final User pending = new User.Builder()
+            .setEmail("a@b.c").setName("Nome").setAddress("Belém").setFormation("Computação")
+            .setPictureData(new byte[]{1, 2, 3})
+            .build();
+        assertSameUser(pending, (User) copy(pending));
+    }
+
+    @Test
+    public void roundTripsUserListsWithSharedStrings() throws Exception {
+        final List<User> users = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            users.add(user(i));
+        }
+        @SuppressWarnings("unchecked") final List<User> copy = (List<User>) copy(new UserList(users));
+        assertEquals(users.size(), copy.size());
+        for (int i = 0; i < users.size(); i++) {
+            assertSameUser(users.get(i), copy.get(i));
+        }
+
+        assertEquals(0, ((List<?>) copy(new UserList(Collections.emptyList()))).size());
+    }
+
+    @Test
+    public void encodedListsMatchDecodedLists() throws Exception {
+        final List<User> users = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            users.add(user(i));
+        }
+        final UserList encoded = new UserList(UserList.encode(users));
+        assertEquals(users.size(), encoded.size());
+        for (int i = 0; i < users.size(); i++) {
+            assertSameUser(users.get(i), encoded.get(i));
+        }
+
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        new UserList(users).write(new DataOutputStream(expected));
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        new UserList(UserList.encode(users)).write(new DataOutputStream(actual));
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+
+    @Test
+    public void roundTripsVarInts() throws IOException {
+        final int[] values = {0, 1, 127, 128, 16383, 16384, (1 << 28) - 1, 1 << 28, Integer.MAX_VALUE};
+        for (final int value : values) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            UserCodec.writeVarInt(new DataOutputStream(bytes), value);
+            assertEquals(value, UserCodec.readVarInt(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+        }
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void rejectsNegativeVarInts() throws IOException {
+        UserCodec.readVarInt(input(0xFF, 0xFF, 0xFF, 0xFF, 0x0F));
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void rejectsOverflowingVarInts() throws IOException {
+        UserCodec.readVarInt(input(0x80, 0x80, 0x80, 0x80, 0x10));
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void rejectsUnterminatedVarInts() throws IOException {
+        UserCodec.readVarInt(input(0x80, 0x80, 0x80, 0x80, 0x80, 0x01));
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void rejectsNegativeStringLengths() throws IOException {
+        UserCodec.readString(input(0xFF, 0xFF, 0xFF, 0xFF, 0x0F, 'a'));
+    }
+
+    @Test(expected = EOFException.class, timeout = 10000)
+    public void truncatedHugeStringsEndInEof() throws IOException {
+        // O tamanho indica 2 GiB, mas a entrada termina logo depois
+        UserCodec.readString(input(0xFF, 0xFF, 0xFF, 0xFF, 0x07, 'a', 'b', 'c'));
+    }
+
+    @Test(expected = InvalidObjectException.class)
+    public void rejectsUnknownVersions() throws IOException {
+        final byte[] bytes = encode(user(1));
+        bytes[0] = UserCodec.VERSION + 1;
+        UserCodec.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void rejectsInvalidSharedReferences() throws IOException {
+        // Versão, e-mail e nome vazios e um endereço que referencia uma cadeia inexistente
+        UserCodec.read(input(UserCodec.VERSION, 0, 0, 1));
+    }
+
+    @Test(expected = StreamCorruptedException.class)
+    public void rejectsInvalidPictureIds() throws IOException {
+        UserCodec.readPictureId(input(3));
+    }
+
+    @Test(timeout = 30000)
+    public void corruptedInputOnlyFailsWithIOException() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream output = new DataOutputStream(bytes);
+        final Map<String, Integer> written = new HashMap<>();
+        for (int i = 0; i < 3; i++) {
+            UserCodec.write(output, user(i), written);
+        }
+        final byte[] valid = bytes.toByteArray();
+
+        final Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            final byte[] corrupted = Arrays.copyOf(valid, random.nextInt(valid.length + 1));
+            for (int j = random.nextInt(4); j > 0 && corrupted.length > 0; j--) {
+                corrupted[random.nextInt(corrupted.length)] = (byte) random.nextInt(256);
+            }
+
+            final DataInput input = new DataInputStream(new ByteArrayInputStream(corrupted));
+            final List<String> table = new ArrayList<>();
+            try {
+                for (int j = 0; j < 3; j++) {
+                    UserCodec.read(input, table);
+                }
+            } catch (IOException e) {
+                // Esperado
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.example.p1;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testa se as adições e atualizações simultâneas de uma {@link UserDatabase} se comportam como se fossem executadas
+ * uma de cada vez, em alguma ordem compatível com o instante em que cada uma foi chamada e retornou.
+ */
+@RunWith(Parameterized.class)
+public class UserDatabaseConcurrencyTest {
+    /**
+     * Quantidade de threads que escrevem ao mesmo tempo.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * Se os registros da base são mantidos fora do heap.
+     */
+    private final boolean offHeap;
+
+    /**
+     * Executor das threads do teste.
+     */
+    private ExecutorService executor;
+
+    /**
+     * Base de dados testada.
+     */
+    private UserDatabase database;
+
+    /**
+     * Constrói o teste para um modo de armazenamento.
+     *
+     * @param offHeap se os registros da base são mantidos fora do heap.
+     */
+    public UserDatabaseConcurrencyTest(final boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * @return os modos de armazenamento testados.
+     */
+    @Parameterized.Parameters(name = "offHeap={0}")
+    public static Collection<Object[]> modes() {
+        return Arrays.asList(new Object[]{false}, new Object[]{true});
+    }
+
+    @Before
+    public void setUp() {
+        executor = Executors.newCachedThreadPool();
+        database = new UserDatabase(offHeap);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        database.close();
+    }
+
+    /**
+     * Cria um usuário de teste.
+     *
+     * @param email o e-mail do usuário.
+     * @param name  o nome do usuário.
+     * @return o usuário.
+     */
+    private static User user(final String email, final String name) {
+        return new User.Builder()
+            .setEmail(email)
+            .setName(name)
+            .setAddress("Belém")
+            .setFormation("Computação")
+            .build();
+    }
+
+    /**
+     * Executa tarefas ao mesmo tempo, liberando-as juntas, e aguarda seus resultados.
+     *
+     * @param tasks as tarefas, que recebem o índice da thread que as executa.
+     * @param <T>   o tipo do resultado das tarefas.
+     * @return os resultados, na ordem das tarefas.
+     * @throws Exception caso alguma tarefa falhe.
+     */
+    private <T> List<T> race(final List<IndexedTask<T>> tasks) throws Exception {
+        final CyclicBarrier barrier = new CyclicBarrier(tasks.size());
+        final List<Future<T>> futures = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            final int index = i;
+            final IndexedTask<T> task = tasks.get(i);
+            futures.add(executor.submit((Callable<T>) () -> {
+                barrier.await();
+                return task.call(index);
+            }));
+        }
+
+        final List<T> results = new ArrayList<>();
+        for (final Future<T> future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+
+    /**
+     * Representa uma tarefa que recebe o índice da thread que a executa.
+     *
+     * @param <T> o tipo do resultado.
+     */
+    private interface IndexedTask<T> {
+        /**
+         * Executa a tarefa.
+         *
+         * @param index o índice da thread.
+         * @return o resultado.
+         * @throws Exception caso a tarefa falhe.
+         */
+        T call(int index) throws Exception;
+    }
+
+    /**
+     * Repete uma mesma tarefa em todas as threads.
+     *
+     * @param task a tarefa.
+     * @param <T>  o tipo do resultado.
+     * @return uma tarefa por thread.
+     */
+    private static <T> List<IndexedTask<T>> everyThread(final IndexedTask<T> task) {
+        final List<IndexedTask<T>> tasks = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentCreatesHaveExactlyOneWinner() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            final String email = "usuario" + round + "@exemplo.com";
+            // As grafias diferentes do e-mail devem disputar o mesmo usuário
+            final List<Boolean> results = race(everyThread(i -> database.create(user(
+                i % 2 == 0 ? email : email.toUpperCase(), "Usuário " + i))));
+
+            int winner = -1;
+            for (int i = 0; i < results.size(); i++) {
+                if (results.get(i)) {
+                    assertEquals("mais de uma adição do mesmo e-mail foi aceita", -1, winner);
+                    winner = i;
+                }
+            }
+            assertNotEquals("nenhuma adição foi aceita", -1, winner);
+            assertEquals("Usuário " + winner, database.findByEmail(email).name);
+        }
+
+        assertEquals(200, database.read().size());
+        assertEquals(200, database.findByFormation("computação").size());
+        assertEquals(Long.valueOf(200),
+            database.aggregate(UserCollection.AGGREGATE_USERS_BY_FORMATION, null, 1).get("Computação"));
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentUpdatesAppearAtomicallyAndInOrder() throws Exception {
+        final String email = "usuario@exemplo.com";
+        assertTrue(database.create(user(email, "Usuário")));
+
+        final int updates = 500;
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        // Cada leitura é guardada como o seu tamanho e o hash da lista lida
+        final List<List<int[]>> observed = new ArrayList<>();
+        final List<Future<?>> readers = new ArrayList<>();
+        for (int r = 0; r < 2; r++) {
+            final List<int[]> snapshots = new ArrayList<>();
+            observed.add(snapshots);
+            readers.add(executor.submit(() -> {
+                while (writing.get()) {
+                    final List<String> snapshot = database.findByEmail(email).getExperiences();
+                    snapshots.add(new int[]{snapshot.size(), snapshot.hashCode()});
+                }
+            }));
+        }
+
+        final List<Boolean> results = race(everyThread(i -> {
+            boolean accepted = true;
+            for (int j = 0; j < updates; j++) {
+                accepted &= database.update(email, UserCollection.UPDATE_KEY_EXPERIENCE, "t" + i + "-" + j);
+            }
+            return accepted;
+        }));
+        writing.set(false);
+        for (final Future<?> reader : readers) {
+            reader.get();
+        }
+        assertFalse(results.contains(false));
+
+        final List<String> experiences = database.findByEmail(email).getExperiences();
+        assertEquals(THREADS * updates, experiences.size());
+        assertEquals(experiences.size(), new HashSet<>(experiences).size());
+
+        // Cada thread vê suas atualizações aplicadas na ordem em que as fez
+        final int[] next = new int[THREADS];
+        for (final String experience : experiences) {
+            final String[] parts = experience.substring(1).split("-");
+            final int thread = Integer.parseInt(parts[0]);
+            assertEquals(next[thread]++, Integer.parseInt(parts[1]));
+        }
+
+        // Toda leitura vê um prefixo da ordem final, e nunca um estado anterior a uma leitura passada
+        final int[] prefixHashes = new int[experiences.size() + 1];
+        prefixHashes[0] = 1;
+        for (int i = 0; i < experiences.size(); i++) {
+            prefixHashes[i + 1] = 31 * prefixHashes[i] + experiences.get(i).hashCode();
+        }
+        for (final List<int[]> snapshots : observed) {
+            int previous = 0;
+            for (final int[] snapshot : snapshots) {
+                assertTrue(snapshot[0] >= previous);
+                assertEquals(prefixHashes[snapshot[0]], snapshot[1]);
+                previous = snapshot[0];
+            }
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void updatesRacingCreateAreKeptOnlyWhenAccepted() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            final String email = "usuario" + round + "@exemplo.com";
+            final List<IndexedTask<Boolean>> tasks = new ArrayList<>();
+            tasks.add(i -> database.create(user(email, "Usuário")));
+            for (int i = 1; i < THREADS; i++) {
+                tasks.add(index -> database.update(email, UserCollection.UPDATE_KEY_ABILITY, "Habilidade " + index));
+            }
+            final List<Boolean> results = race(tasks);
+            assertTrue(results.get(0));
+
+            final Set<String> accepted = new HashSet<>();
+            for (int i = 1; i < results.size(); i++) {
+                if (results.get(i)) {
+                    accepted.add("Habilidade " + i);
+                }
+            }
+            assertEquals(accepted, new HashSet<>(database.findByEmail(email).getAbilities()));
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void countsMatchAfterConcurrentUpdates() throws Exception {
+        final int users = 100;
+        for (int i = 0; i < users; i++) {
+            assertTrue(database.create(user("usuario" + i + "@exemplo.com", "Usuário " + i)));
+        }
+
+        // Todas as threads dão as mesmas habilidades aos mesmos usuários, com grafias diferentes
+        race(everyThread(t -> {
+            for (int i = 0; i < users; i++) {
+                database.update("usuario" + i + "@exemplo.com", UserCollection.UPDATE_KEY_ABILITY,
+                    t % 2 == 0 ? "Java" : "JAVA");
+                if (i % 2 == 0) {
+                    database.update("usuario" + i + "@exemplo.com", UserCollection.UPDATE_KEY_ABILITY, "Python");
+                }
+            }
+            return null;
+        }));
+
+        final Map<String, Long> counts = database.aggregate(UserCollection.AGGREGATE_ABILITIES_BY_ADDRESS, "Belém", 10);
+        assertEquals(2, counts.size());
+        assertEquals(Long.valueOf(users), counts.entrySet().stream()
+            .filter(entry -> entry.getKey().equalsIgnoreCase("java"))
+            .map(Map.Entry::getValue)
+            .findFirst()
+            .orElse(null));
+        assertEquals(Long.valueOf(users / 2), counts.get("Python"));
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.p1;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testa a leitura em páginas de uma {@link UserDatabase}, por {@link UserDatabase#read(String, int)}.
+ */
+public class UserDatabasePagingTest {
+    /**
+     * Base de dados testada.
+     */
+    private UserDatabase database;
+
+    @Before
+    public void setUp() {
+        database = new UserDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * Cria um usuário de teste.
+     *
+     * @param email o e-mail do usuário.
+     * @return o usuário.
+     */
+    private static User user(final String email) {
+        return new User.Builder()
+            .setEmail(email)
+            .setName("Usuário")
+            .setAddress("Belém")
+            .setFormation("Computação")
+            .build();
+    }
+
+    /**
+     * Lê todas as páginas de uma coleção.
+     *
+     * @param collection a coleção.
+     * @param limit      a quantidade máxima de usuários por página.
+     * @return os e-mails normalizados dos usuários lidos, na ordem das páginas.
+     * @throws Exception caso a leitura falhe.
+     */
+    static List<String> readAll(final UserCollection collection, final int limit) throws Exception {
+        final List<String> emails = new ArrayList<>();
+        String cursor = null;
+        do {
+            final UserPage page = collection.read(cursor, limit);
+            assertTrue(page.users.size() <= limit);
+            // Apenas a última página pode estar incompleta, e ela não aponta para outra
+            if (page.hasNext()) {
+                assertEquals(limit, page.users.size());
+            }
+            for (final User user : page.users) {
+                emails.add(user.email.toLowerCase(Locale.ROOT));
+            }
+            cursor = page.nextCursor;
+        } while (cursor != null);
+        return emails;
+    }
+
+    @Test
+    public void pagesCoverEveryUserOnceInOrder() throws Exception {
+        final Random random = new Random(42);
+        final TreeSet<String> expected = new TreeSet<>();
+        for (int i = 0; i < 1000; i++) {
+            final String email = "Usuario" + random.nextInt(100_000) + "@Exemplo.com";
+            assertEquals(expected.add(email.toLowerCase(Locale.ROOT)), database.create(user(email)));
+        }
+
+        for (final int limit : new int[]{1, 7, 100, expected.size() - 1, expected.size(), expected.size() + 1, 10_000}) {
+            assertEquals("limite " + limit, new ArrayList<>(expected), readAll(database, limit));
+        }
+    }
+
+    @Test
+    public void lastPageHasNoCursor() {
+        assertTrue(database.read(null, 10).users.isEmpty());
+        assertNull(database.read(null, 10).nextCursor);
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(database.create(user("u" + i + "@exemplo.com")));
+        }
+        // Uma página que termina exatamente no último usuário já é a última
+        final UserPage full = database.read(null, 4);
+        assertEquals(4, full.users.size());
+        assertNull(full.nextCursor);
+
+        final UserPage first = database.read(null, 3);
+        assertEquals("u2@exemplo.com", first.nextCursor);
+        final UserPage last = database.read(first.nextCursor, 3);
+        assertEquals(1, last.users.size());
+        assertEquals("u3@exemplo.com", last.users.get(0).email);
+        assertNull(last.nextCursor);
+
+        // Um cursor após todos os usuários, ou que não pertence a nenhum, continua a partir da sua posição
+        assertTrue(database.read("z", 3).users.isEmpty());
+        assertEquals("u1@exemplo.com", database.read("U0@EXEMPLO.COM", 1).users.get(0).email);
+        assertEquals("u0@exemplo.com", database.read("a", 1).users.get(0).email);
+    }
+
+    @Test
+    public void writesBetweenPagesDoNotDuplicateUsers() {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(database.create(user("u" + i + "@exemplo.com")));
+        }
+        final UserPage first = database.read(null, 5);
+
+        // Usuários adicionados antes do cursor não são lidos; os adicionados após ele são
+        assertTrue(database.create(user("a@exemplo.com")));
+        assertTrue(database.create(user("u7a@exemplo.com")));
+        final UserPage second = database.read(first.nextCursor, 10);
+        final List<String> emails = new ArrayList<>();
+        for (final User user : second.users) {
+            emails.add(user.email);
+        }
+        assertEquals(List.of("u5@exemplo.com", "u6@exemplo.com", "u7@exemplo.com", "u7a@exemplo.com",
+            "u8@exemplo.com", "u9@exemplo.com"), emails);
+        assertNull(second.nextCursor);
+    }
+
+    @Test
+    public void rejectsNonPositiveLimits() {
+        for (final int limit : new int[]{0, -1, Integer.MIN_VALUE}) {
+            try {
+                database.read(null, limit);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // Esperado
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.p1;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testa as referências às fotos dos usuários adicionados a uma {@link UserDatabase}.
+ */
+public class UserDatabasePictureTest {
+    /**
+     * Conteúdo da foto de teste.
+     */
+    private static final byte[] PICTURE = {1, 2, 3, 4, 5};
+
+    /**
+     * Base de dados testada.
+     */
+    private UserDatabase database;
+
+    @Before
+    public void setUp() {
+        database = new UserDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    /**
+     * Cria um construtor de usuário de teste.
+     *
+     * @param email o e-mail do usuário.
+     * @return o construtor.
+     */
+    private static User.Builder builder(final String email) {
+        return new User.Builder()
+            .setEmail(email)
+            .setName("Usuário")
+            .setAddress("Belém")
+            .setFormation("Computação");
+    }
+
+    @Test
+    public void reusesStoredPictures() {
+        assertTrue(database.create(builder("a@exemplo.com").setPictureData(PICTURE).build()));
+        final User stored = database.findByEmail("a@exemplo.com");
+
+        // Um usuário lido da base referencia a foto sem enviar o seu conteúdo
+        assertTrue(database.create(builder("b@exemplo.com")
+            .setPictureReference(stored.pictureId, stored.pictureSize)
+            .build()));
+        assertArrayEquals(PICTURE, database.readPicture(database.findByEmail("b@exemplo.com").pictureId, 0, 100));
+    }
+
+    @Test
+    public void rejectsUnknownPictures() {
+        final User user = builder("a@exemplo.com")
+            .setPictureReference(PictureStore.hash(PICTURE), PICTURE.length)
+            .build();
+        try {
+            database.create(user);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Esperado
+        }
+        assertNull(database.findByEmail("a@exemplo.com"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPictureSizeMismatches() {
+        assertTrue(database.create(builder("a@exemplo.com").setPictureData(PICTURE).build()));
+        database.create(builder("b@exemplo.com")
+            .setPictureReference(PictureStore.hash(PICTURE), PICTURE.length + 1)
+            .build());
+    }
+
+    @Test
+    public void rejectedBatchesReleaseTheirPictures() {
+        final User valid = builder("a@exemplo.com").setPictureData(PICTURE).build();
+        final User invalid = builder("b@exemplo.com")
+            .setPictureReference(PictureStore.hash(new byte[]{9}), 1)
+            .build();
+        try {
+            database.createAll(Arrays.asList(valid, invalid));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Esperado
+        }
+        assertFalse(database.hasPicture(PictureStore.hash(PICTURE)));
+        assertTrue(database.read().isEmpty());
+    }
+
+    @Test
+    public void rejectedUsersKeepTheirPictureData() {
+        final User valid = builder("a@exemplo.com").setPictureData(PICTURE).build();
+        final User invalid = builder("b@exemplo.com")
+            .setPictureReference(PictureStore.hash(new byte[]{9}), 1)
+            .build();
+        try {
+            database.createAll(Arrays.asList(valid, invalid));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Esperado
+        }
+        assertArrayEquals(PICTURE, valid.pendingPictureData());
+
+        // O mesmo usuário pode ser enviado novamente, e o conteúdo só é removido após ser adicionado
+        assertEquals(Arrays.asList(true), database.createAll(Arrays.asList(valid)));
+        assertNull(valid.pendingPictureData());
+        assertArrayEquals(PICTURE, database.readPicture(database.findByEmail("a@exemplo.com").pictureId, 0, 100));
+    }
+
+    @Test
+    public void duplicateUsersKeepTheirPictureData() {
+        assertTrue(database.create(builder("a@exemplo.com").build()));
+        final User duplicate = builder("a@exemplo.com").setPictureData(PICTURE).build();
+        assertFalse(database.create(duplicate));
+        assertArrayEquals(PICTURE, duplicate.pendingPictureData());
+        assertFalse(database.hasPicture(duplicate.pictureId));
+
+        // O usuário continua válido para outra base
+        final UserDatabase other = new UserDatabase();
+        try {
+            assertTrue(other.create(duplicate));
+            assertArrayEquals(PICTURE, other.readPicture(duplicate.pictureId, 0, 100));
+        } finally {
+            other.close();
+        }
+    }
+}
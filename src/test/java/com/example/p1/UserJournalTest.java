@@ -0,0 +1,215 @@
+package com.example.p1;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testa a persistência e a recuperação de uma {@link UserDatabase} por {@link UserJournal}.
+ */
+public class UserJournalTest {
+    /**
+     * Diretório de dados do teste.
+     */
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("user-journal-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (final Path path : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Cria um usuário de teste.
+     *
+     * @param i o número do usuário.
+     * @return o usuário.
+     */
+    private static User user(final int i) {
+        return new User.Builder()
+            .setEmail("usuario" + i + "@exemplo.com")
+            .setName("Usuário " + i)
+            .setAddress("Belém")
+            .setFormation("Computação")
+            .build();
+    }
+
+    /**
+     * @return os segmentos do diretório de dados, em ordem crescente.
+     * @throws IOException caso o diretório não possa ser lido.
+     */
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith("journal-"))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Cria uma base durável com usuários e a fecha.
+     *
+     * @param count a quantidade de usuários.
+     * @throws IOException caso a base não possa ser gravada.
+     */
+    private void populate(final int count) throws IOException {
+        final UserDatabase database = new UserDatabase(directory);
+        for (int i = 0; i < count; i++) {
+            assertTrue(database.create(user(i)));
+        }
+        database.update(user(0).email, UserCollection.UPDATE_KEY_EXPERIENCE, "Estágio");
+        database.close();
+    }
+
+    /**
+     * Uma escrita interrompida no meio do último segmento deve ser descartada, mantendo as escritas anteriores e
+     * permitindo novas escritas.
+     */
+    @Test
+    public void recoversFromTornTail() throws IOException {
+        populate(10);
+        final Path last = segments().get(segments().size() - 1);
+        final long size = Files.size(last);
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            // Cabeçalho de um registro de 100 bytes seguido de apenas parte dele
+            channel.write(ByteBuffer.allocate(8 + 30).putInt(100).putInt(12345).flip());
+        }
+
+        UserDatabase database = new UserDatabase(directory);
+        assertEquals(10, database.read().size());
+        assertEquals("[Estágio]", database.findByEmail(user(0).email).getExperiences().toString());
+        assertEquals(size, Files.size(last));
+        assertTrue(database.create(user(10)));
+        database.close();
+
+        database = new UserDatabase(directory);
+        assertEquals(11, database.read().size());
+        database.close();
+    }
+
+    /**
+     * Um registro corrompido ao final do último segmento deve ser descartado.
+     */
+    @Test
+    public void discardsCorruptedLastRecord() throws IOException {
+        populate(10);
+        final Path last = segments().get(segments().size() - 1);
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE)) {
+            // O último byte pertence ao registro da atualização
+            channel.write(ByteBuffer.wrap(new byte[]{'#'}), channel.size() - 1);
+        }
+
+        final UserDatabase database = new UserDatabase(directory);
+        assertEquals(10, database.read().size());
+        assertTrue(database.findByEmail(user(0).email).getExperiences().isEmpty());
+        database.close();
+    }
+
+    /**
+     * Um segmento corrompido seguido de outro segmento não pode ser recuperado sem perder registros confirmados.
+     */
+    @Test(expected = IOException.class)
+    public void rejectsCorruptedMiddleSegment() throws IOException {
+        populate(10);
+        final Path last = segments().get(segments().size() - 1);
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+        final String name = last.getFileName().toString();
+        final long number = Long.parseLong(name.substring("journal-".length(), name.length() - ".log".length()));
+        Files.createFile(directory.resolve(String.format("journal-%016d.log", number + 1)));
+
+        new UserDatabase(directory).close();
+    }
+
+    /**
+     * A imagem e os segmentos seguintes devem restaurar todas as escritas.
+     */
+    @Test
+    public void recoversFromSnapshotAndSegments() throws IOException {
+        UserDatabase database = new UserDatabase(directory);
+        for (int i = 0; i < 20; i++) {
+            database.create(user(i));
+        }
+        database.checkpoint();
+        for (int i = 20; i < 30; i++) {
+            database.create(user(i));
+        }
+        database.update(user(25).email, UserCollection.UPDATE_KEY_ABILITY, "Java");
+        database.close();
+
+        database = new UserDatabase(directory);
+        assertEquals(30, database.read().size());
+        assertEquals("[Java]", database.findByEmail(user(25).email).getAbilities().toString());
+        database.close();
+    }
+
+    /**
+     * Registros feitos durante o fechamento devem ser gravados ou recusados, nunca deixados sem resposta.
+     */
+    @Test(timeout = 60000)
+    public void appendsRacingCloseAlwaysComplete() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            final UserJournal journal = new UserJournal(directory);
+            journal.recover(new UserDatabase());
+            final List<CompletableFuture<Long>> futures = new ArrayList<>();
+            final Thread appender = new Thread(() -> {
+                try {
+                    for (int i = 0; ; i++) {
+                        final CompletableFuture<Long> future = journal.logUpdate("usuario@exemplo.com", "ability", "h" + i);
+                        synchronized (futures) {
+                            futures.add(future);
+                        }
+                    }
+                } catch (IllegalStateException e) {
+                    // O armazenamento foi fechado
+                }
+            });
+            appender.start();
+            Thread.sleep(5);
+            journal.close();
+            appender.join();
+
+            synchronized (futures) {
+                for (final CompletableFuture<Long> future : futures) {
+                    future.get(10, TimeUnit.SECONDS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Registros feitos após o fechamento devem ser recusados.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void rejectsAppendsAfterClose() throws IOException {
+        final UserJournal journal = new UserJournal(directory);
+        journal.recover(new UserDatabase());
+        journal.close();
+        journal.logUpdate("usuario@exemplo.com", "ability", "Java");
+    }
+}